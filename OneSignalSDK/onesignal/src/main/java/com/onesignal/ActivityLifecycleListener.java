@@ -30,7 +30,7 @@ package com.onesignal;
 import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.app.Application;
-import android.content.ComponentCallbacks;
+import android.content.ComponentCallbacks2;
 import android.content.res.Configuration;
 import android.os.Bundle;
 
@@ -43,7 +43,7 @@ class ActivityLifecycleListener implements Application.ActivityLifecycleCallback
    @SuppressLint("StaticFieldLeak")
    @Nullable
    private static ActivityLifecycleHandler activityLifecycleHandler;
-   @Nullable private static ComponentCallbacks configuration;
+   @Nullable private static ComponentCallbacks2 configuration;
 
    static void registerActivityLifecycleCallbacks(@NonNull final Application application) {
       // Activity lifecycle listener setup
@@ -58,7 +58,7 @@ class ActivityLifecycleListener implements Application.ActivityLifecycleCallback
 
       // Configuration change listener setup
       if (configuration == null) {
-         configuration = new ComponentCallbacks() {
+         configuration = new ComponentCallbacks2() {
             @Override
             public void onConfigurationChanged(Configuration newConfig) {
                activityLifecycleHandler.onConfigurationChanged(newConfig, activityLifecycleHandler.getCurActivity());
@@ -66,7 +66,16 @@ class ActivityLifecycleListener implements Application.ActivityLifecycleCallback
 
             @Override
             public void onLowMemory() {
+               OSWebViewPool.onTrimMemory(TRIM_MEMORY_COMPLETE);
+               OSNotificationMediaLoader.onTrimMemory(TRIM_MEMORY_COMPLETE);
+               OSNotificationResourceCache.onTrimMemory(TRIM_MEMORY_COMPLETE);
+            }
 
+            @Override
+            public void onTrimMemory(int level) {
+               OSWebViewPool.onTrimMemory(level);
+               OSNotificationMediaLoader.onTrimMemory(level);
+               OSNotificationResourceCache.onTrimMemory(level);
             }
          };
          application.registerComponentCallbacks(configuration);
@@ -20,10 +20,17 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * 1. OSSessionManager.session changed (onSessionEnded) - Send any attributed session time
  * 2. App is foregrounded (appForegrounded) - Set start focused time
  * 3. App is backgrounded (appBackgrounded) - Kick off job to sync when session ends
+ *
+ * Time of each focus is added to the unsent time saved in prefs, a background event sends it in one
+ *    on_focus request per flush window (onFocusFlushInterval remote param). Backgrounds in the window of
+ *    the last request only move the sync job to the end of it, so their time goes in the next request.
+ *    The attributed time is sent on session end regardless of the window as the influences change.
  */
 
 class FocusTimeController {
 
+   static final int DEFAULT_ON_FOCUS_FLUSH_INTERVAL_SEC = 5 * 60;
+
    @Nullable
    // Only present if app is currently in focus.
    private Long timeFocusedAtMs;
@@ -63,11 +70,24 @@ class FocusTimeController {
       timeFocusedAtMs = null;
    }
 
-   void doBlockingBackgroundSyncOfUnsentTime() {
+   /**
+    * @return delay of the sync job needed to send time held for the flush window, 0 if none.
+    *    Scheduled by the sync job once it is finished, see OSSyncService.SyncRunnable
+    */
+   long doBlockingBackgroundSyncOfUnsentTime() {
       if (OneSignal.isInForeground())
-         return;
+         return 0;
 
-      processorFactory.getTimeProcessorSaved().syncUnsentTimeFromSyncJob();
+      return processorFactory.getTimeProcessorSaved().syncUnsentTimeFromSyncJob();
+   }
+
+   // Background events whose time was sent in the request of another one instead of its own
+   long getOnFocusRequestsSaved() {
+      return OneSignalPrefs.getLong(
+              OneSignalPrefs.PREFS_ONESIGNAL,
+              OneSignalPrefs.PREFS_OS_ON_FOCUS_REQUESTS_SAVED,
+              0
+      );
    }
 
    void onSessionEnded(@NonNull List<OSInfluence> lastInfluences) {
@@ -107,6 +127,8 @@ class FocusTimeController {
       FocusTimeProcessorUnattributed() {
          MIN_ON_FOCUS_TIME_SEC = 60;
          PREF_KEY_FOR_UNSENT_TIME = OneSignalPrefs.PREFS_GT_UNSENT_ACTIVE_TIME;
+         PREF_KEY_FOR_UNSENT_BACKGROUND_EVENTS = OneSignalPrefs.PREFS_OS_UNSENT_BACKGROUND_EVENTS;
+         PREF_KEY_FOR_LAST_ON_FOCUS_TIME = OneSignalPrefs.PREFS_OS_LAST_UNATTRIBUTED_ON_FOCUS_TIME;
       }
 
       protected void sendTime(@NonNull FocusEventType focusType) {
@@ -133,6 +155,8 @@ class FocusTimeController {
       FocusTimeProcessorAttributed() {
          MIN_ON_FOCUS_TIME_SEC = 1;
          PREF_KEY_FOR_UNSENT_TIME = OneSignalPrefs.PREFS_OS_UNSENT_ATTRIBUTED_ACTIVE_TIME;
+         PREF_KEY_FOR_UNSENT_BACKGROUND_EVENTS = OneSignalPrefs.PREFS_OS_UNSENT_ATTRIBUTED_BACKGROUND_EVENTS;
+         PREF_KEY_FOR_LAST_ON_FOCUS_TIME = OneSignalPrefs.PREFS_OS_LAST_ATTRIBUTED_ON_FOCUS_TIME;
       }
 
       protected List<OSInfluence> getInfluences() {
@@ -181,7 +205,7 @@ class FocusTimeController {
          if (focusType.equals(FocusEventType.END_SESSION))
             syncOnFocusTime();
          else
-            OSSyncService.getInstance().scheduleSyncTask(OneSignal.appContext);
+            scheduleSyncOfUnsentTime();
       }
    }
 
@@ -190,6 +214,8 @@ class FocusTimeController {
       // These values are set by child classes that inherit this base class
       protected long MIN_ON_FOCUS_TIME_SEC;
       protected @NonNull String PREF_KEY_FOR_UNSENT_TIME;
+      protected @NonNull String PREF_KEY_FOR_UNSENT_BACKGROUND_EVENTS;
+      protected @NonNull String PREF_KEY_FOR_LAST_ON_FOCUS_TIME;
 
       protected abstract void sendTime(@NonNull FocusEventType focusType);
 
@@ -258,13 +284,88 @@ class FocusTimeController {
       protected void syncUnsentTimeOnBackgroundEvent() {
          if (!hasMinSyncTime())
             return;
-         // Schedule this sync in case app is killed before completing
-         OSSyncService.getInstance().scheduleSyncTask(OneSignal.appContext);
+         scheduleSyncOfUnsentTime();
       }
 
-      private void syncUnsentTimeFromSyncJob() {
+      protected void scheduleSyncOfUnsentTime() {
          if (hasMinSyncTime())
-            syncOnFocusTime();
+            saveUnsentBackgroundEvents(getUnsentBackgroundEvents() + 1);
+
+         // Schedule this sync in case app is killed before completing
+         long flushDelayMs = getFlushDelayMs();
+         if (flushDelayMs > 0)
+            OSSyncService.getInstance().scheduleSyncTask(OneSignal.appContext, Math.max(flushDelayMs, OneSignal.MIN_ON_SESSION_TIME_MILLIS));
+         else
+            OSSyncService.getInstance().scheduleSyncTask(OneSignal.appContext);
+      }
+
+      // Returns the time left in the flush window if the unsent time is held, 0 if it was sent
+      private long syncUnsentTimeFromSyncJob() {
+         if (!hasMinSyncTime())
+            return 0;
+
+         long flushDelayMs = getFlushDelayMs();
+         // Job ran before the end of the window, scheduled for another sync like a location update
+         if (flushDelayMs > 0)
+            return flushDelayMs;
+
+         syncOnFocusTime();
+         return 0;
+      }
+
+      // Time left before the end of the flush window of the last on_focus request, 0 if it can be sent now
+      private long getFlushDelayMs() {
+         long lastOnFocusTime = OneSignalPrefs.getLong(
+                 OneSignalPrefs.PREFS_ONESIGNAL,
+                 PREF_KEY_FOR_LAST_ON_FOCUS_TIME,
+                 0
+         );
+         long flushIntervalMs = OneSignalPrefs.getInt(
+                 OneSignalPrefs.PREFS_ONESIGNAL,
+                 OneSignalPrefs.PREFS_OS_ON_FOCUS_FLUSH_INTERVAL,
+                 DEFAULT_ON_FOCUS_FLUSH_INTERVAL_SEC
+         ) * 1_000L;
+         long now = OneSignal.getTime().getCurrentTimeMillis();
+         // Clock set back since the last request, don't hold the time until it catches up
+         if (lastOnFocusTime > now)
+            return 0;
+         return Math.max(lastOnFocusTime + flushIntervalMs - now, 0);
+      }
+
+      private void saveUnsentBackgroundEvents(int backgroundEvents) {
+         OneSignalPrefs.saveInt(
+                 OneSignalPrefs.PREFS_ONESIGNAL,
+                 PREF_KEY_FOR_UNSENT_BACKGROUND_EVENTS,
+                 backgroundEvents
+         );
+      }
+
+      private int getUnsentBackgroundEvents() {
+         return OneSignalPrefs.getInt(
+                 OneSignalPrefs.PREFS_ONESIGNAL,
+                 PREF_KEY_FOR_UNSENT_BACKGROUND_EVENTS,
+                 0
+         );
+      }
+
+      // All the background events of the unsent time went in one request
+      private void onUnsentTimeSent() {
+         int backgroundEvents = getUnsentBackgroundEvents();
+         if (backgroundEvents > 1) {
+            long requestsSaved = OneSignalPrefs.getLong(
+                    OneSignalPrefs.PREFS_ONESIGNAL,
+                    OneSignalPrefs.PREFS_OS_ON_FOCUS_REQUESTS_SAVED,
+                    0
+            ) + backgroundEvents - 1;
+            OneSignalPrefs.saveLong(
+                    OneSignalPrefs.PREFS_ONESIGNAL,
+                    OneSignalPrefs.PREFS_OS_ON_FOCUS_REQUESTS_SAVED,
+                    requestsSaved
+            );
+            OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, this.getClass().getSimpleName() + ":onUnsentTimeSent merged background events: " + backgroundEvents + " total requests saved: " + requestsSaved);
+         }
+         if (backgroundEvents > 0)
+            saveUnsentBackgroundEvents(0);
       }
 
       @NonNull private final AtomicBoolean runningOnFocusTime = new AtomicBoolean();
@@ -294,6 +395,7 @@ class FocusTimeController {
                //          is cleared no matter which one is successful.
                // TODO: PRE-EXISTING: This could be clearing time more then was persisted while the network call was in flight
                saveUnsentActiveTime(0);
+               onUnsentTimeSent();
             }
          };
          String url = "players/" + userId + "/on_focus";
@@ -317,6 +419,11 @@ class FocusTimeController {
       private void sendOnFocus(long totalTimeActive) {
          try {
             OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, this.getClass().getSimpleName() + ":sendOnFocus with totalTimeActive: " + totalTimeActive);
+            OneSignalPrefs.saveLong(
+                    OneSignalPrefs.PREFS_ONESIGNAL,
+                    PREF_KEY_FOR_LAST_ON_FOCUS_TIME,
+                    OneSignal.getTime().getCurrentTimeMillis()
+            );
             JSONObject jsonBody = generateOnFocusPayload(totalTimeActive);
             additionalFieldsToAddToOnFocusPayload(jsonBody);
             sendOnFocusToPlayer(OneSignal.getUserId(), jsonBody);
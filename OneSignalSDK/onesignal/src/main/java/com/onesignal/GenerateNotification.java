@@ -34,7 +34,6 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.Resources;
-import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
@@ -55,9 +54,11 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.math.BigInteger;
-import java.net.URL;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -77,11 +78,16 @@ class GenerateNotification {
    //   notification Intent.
    public static final String BUNDLE_KEY_ONESIGNAL_DATA = "onesignalData";
 
+   // Extensions tried when an asset name is given without one
+   private static final List<String> IMAGE_EXTENSIONS = Arrays.asList(".png", ".webp", ".jpg", ".gif", ".bmp");
+
    private static Class<?> notificationOpenedClass = NotificationOpenedReceiver.class;
    private static Class<?> notificationDismissedClass = NotificationDismissReceiver.class;
    private static Resources contextResources = null;
    private static Context currentContext = null;
    private static String packageName = null;
+   // Elapsed realtime after which remote images of the notification being built are not waited on
+   private static long mediaLoadDeadline;
 
    private static class OneSignalNotificationBuilder {
       NotificationCompat.Builder compatBuilder;
@@ -92,6 +98,7 @@ class GenerateNotification {
       currentContext = inContext;
       packageName = currentContext.getPackageName();
       contextResources = currentContext.getResources();
+      mediaLoadDeadline = OneSignal.getTime().getElapsedRealtime() + OSNotificationMediaLoader.LOAD_TIMEOUT_MS;
    }
 
    @WorkerThread
@@ -199,7 +206,9 @@ class GenerateNotification {
          notificationBuilder.setLargeIcon(largeIcon);
       }
 
-      Bitmap bigPictureIcon = getBitmap(fcmJson.optString("bicon", null));
+      // Big picture style is shown at the full width of the notification with a 2:1 aspect ratio
+      int screenWidth = contextResources.getDisplayMetrics().widthPixels;
+      Bitmap bigPictureIcon = getBitmap(fcmJson.optString("bicon", null), screenWidth, screenWidth / 2);
       if (bigPictureIcon != null)
          notificationBuilder.setStyle(new NotificationCompat.BigPictureStyle().bigPicture(bigPictureIcon).setSummaryText(message));
 
@@ -271,8 +280,10 @@ class GenerateNotification {
    // Put the message into a notification and post it.
    private static boolean showNotification(OSNotificationGenerationJob notificationJob) {
       int notificationId = notificationJob.getAndroidId();
-      JSONObject fcmJson = notificationJob.getJsonPayload();
-      String group = fcmJson.optString("grp", null);
+      OSNotificationPayload payload = notificationJob.getPayload();
+      String group = payload.getJson().optString("grp", null);
+
+      prefetchRemoteImages(payload);
 
       ArrayList<StatusBarNotification> grouplessNotifs = new ArrayList<>();
       if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
@@ -289,10 +300,10 @@ class GenerateNotification {
       OneSignalNotificationBuilder oneSignalNotificationBuilder = getBaseOneSignalNotificationBuilder(notificationJob);
       NotificationCompat.Builder notifBuilder = oneSignalNotificationBuilder.compatBuilder;
 
-      addNotificationActionButtons(fcmJson, notifBuilder, notificationId, null);
+      addNotificationActionButtons(payload, notifBuilder, notificationId, null);
       
       try {
-         addBackgroundImage(fcmJson, notifBuilder);
+         addBackgroundImage(payload, notifBuilder);
       } catch (Throwable t) {
          OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Could not set background notification image!", t);
       }
@@ -310,17 +321,18 @@ class GenerateNotification {
 
       Notification notification;
       if (group != null) {
-         createGenericPendingIntentsForGroup(notifBuilder, fcmJson, group, notificationId);
+         createGenericPendingIntentsForGroup(notifBuilder, payload, group, notificationId);
          notification = createSingleNotificationBeforeSummaryBuilder(notificationJob, notifBuilder);
 
          // Create PendingIntents for notifications in a groupless or defined summary
          if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N &&
                  group.equals(OneSignalNotificationManager.getGrouplessSummaryKey()))
             createGrouplessSummaryNotification(notificationJob, grouplessNotifs.size() + 1);
-         else
+         // Restoring rebuilds the summary from all notifications in the group, only needed once per restore
+         else if (!notificationJob.isRestoring() || OSNotificationRestoreWorkManager.shouldRestoreSummary(group))
             createSummaryNotification(notificationJob, oneSignalNotificationBuilder);
       } else {
-         notification = createGenericPendingIntentsForNotif(notifBuilder, fcmJson, notificationId);
+         notification = createGenericPendingIntentsForNotif(notifBuilder, payload, notificationId);
       }
       // NotificationManagerCompat does not auto omit the individual notification on the device when using
       //   stacked notifications on Android 4.2 and older
@@ -338,18 +350,18 @@ class GenerateNotification {
       return true;
    }
 
-   private static Notification createGenericPendingIntentsForNotif(NotificationCompat.Builder notifBuilder, JSONObject gcmBundle, int notificationId) {
+   private static Notification createGenericPendingIntentsForNotif(NotificationCompat.Builder notifBuilder, OSNotificationPayload payload, int notificationId) {
       Random random = new SecureRandom();
-      PendingIntent contentIntent = getNewActionPendingIntent(random.nextInt(), getNewBaseIntent(notificationId).putExtra(BUNDLE_KEY_ONESIGNAL_DATA, gcmBundle.toString()));
+      PendingIntent contentIntent = getNewActionPendingIntent(random.nextInt(), getNewBaseIntent(notificationId).putExtra(BUNDLE_KEY_ONESIGNAL_DATA, payload.getRawPayload()));
       notifBuilder.setContentIntent(contentIntent);
       PendingIntent deleteIntent = getNewDismissActionPendingIntent(random.nextInt(), getNewBaseDismissIntent(notificationId));
       notifBuilder.setDeleteIntent(deleteIntent);
       return notifBuilder.build();
    }
 
-   private static void createGenericPendingIntentsForGroup(NotificationCompat.Builder notifBuilder, JSONObject gcmBundle, String group, int notificationId) {
+   private static void createGenericPendingIntentsForGroup(NotificationCompat.Builder notifBuilder, OSNotificationPayload payload, String group, int notificationId) {
       Random random = new SecureRandom();
-      PendingIntent contentIntent = getNewActionPendingIntent(random.nextInt(), getNewBaseIntent(notificationId).putExtra(BUNDLE_KEY_ONESIGNAL_DATA, gcmBundle.toString()).putExtra("grp", group));
+      PendingIntent contentIntent = getNewActionPendingIntent(random.nextInt(), getNewBaseIntent(notificationId).putExtra(BUNDLE_KEY_ONESIGNAL_DATA, payload.getRawPayload()).putExtra("grp", group));
       notifBuilder.setContentIntent(contentIntent);
       PendingIntent deleteIntent = getNewDismissActionPendingIntent(random.nextInt(), getNewBaseDismissIntent(notificationId).putExtra("grp", group));
       notifBuilder.setDeleteIntent(deleteIntent);
@@ -449,7 +461,8 @@ class GenerateNotification {
    // This summary notification will be visible instead of the normal one on pre-Android 7.0 devices.
    private static void createSummaryNotification(OSNotificationGenerationJob notificationJob, OneSignalNotificationBuilder notifBuilder) {
       boolean updateSummary = notificationJob.isRestoring();
-      JSONObject fcmJson = notificationJob.getJsonPayload();
+      OSNotificationPayload payload = notificationJob.getPayload();
+      JSONObject fcmJson = payload.getJson();
 
       String group = fcmJson.optString("grp", null);
 
@@ -457,78 +470,43 @@ class GenerateNotification {
       PendingIntent summaryDeleteIntent = getNewDismissActionPendingIntent(random.nextInt(), getNewBaseDismissIntent(0).putExtra("summary", group));
       
       Notification summaryNotification;
-      Integer summaryNotificationId = null;
-   
-      String firstFullData = null;
       Collection<SpannableString> summaryList = null;
-      
+
+      // Group is read from the db once, later summary updates only read the in memory copy
       OneSignalDbHelper dbHelper = OneSignalDbHelper.getInstance(currentContext);
-      Cursor cursor = null;
-      
-      try {
-         String[] retColumn = { NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID,
-             NotificationTable.COLUMN_NAME_FULL_DATA,
-             NotificationTable.COLUMN_NAME_IS_SUMMARY,
-             NotificationTable.COLUMN_NAME_TITLE,
-             NotificationTable.COLUMN_NAME_MESSAGE };
-   
-         String whereStr =  NotificationTable.COLUMN_NAME_GROUP_ID + " = ? AND " +   // Where String
-             NotificationTable.COLUMN_NAME_DISMISSED + " = 0 AND " +
-             NotificationTable.COLUMN_NAME_OPENED + " = 0";
-         String[] whereArgs = { group };
-         
+      OSNotificationSummaryIndex.Group indexedGroup = OSNotificationSummaryIndex.getGroup(dbHelper, group);
+      Integer summaryNotificationId = indexedGroup.summaryAndroidNotificationId;
+
+      OSNotificationSummaryIndex.Child firstChild = null;
+      for (OSNotificationSummaryIndex.Child child : indexedGroup.children) {
          // Make sure to omit any old existing matching android ids in-case we are replacing it.
-         if (!updateSummary && notificationJob.getAndroidId() != -1)
-            whereStr += " AND " + NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " <> " + notificationJob.getAndroidId();
-         
-         cursor = dbHelper.query(
-             NotificationTable.TABLE_NAME,
-             retColumn,
-             whereStr,
-             whereArgs,
-             null,                              // group by
-             null,                              // filter by row groups
-             NotificationTable._ID + " DESC"    // sort order, new to old
-         );
-         
-         if (cursor.moveToFirst()) {
-            SpannableString spannableString;
+         if (!updateSummary && notificationJob.getAndroidId() != -1 && child.androidNotificationId == notificationJob.getAndroidId())
+            continue;
+
+         if (summaryList == null)
             summaryList = new ArrayList<>();
 
-            do {
-               if (cursor.getInt(cursor.getColumnIndex(NotificationTable.COLUMN_NAME_IS_SUMMARY)) == 1)
-                  summaryNotificationId = cursor.getInt(cursor.getColumnIndex(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID));
-               else {
-                  String title = cursor.getString(cursor.getColumnIndex(NotificationTable.COLUMN_NAME_TITLE));
-                  if (title == null)
-                     title = "";
-                  else
-                     title += " ";
-
-                  String msg = cursor.getString(cursor.getColumnIndex(NotificationTable.COLUMN_NAME_MESSAGE));
-
-                  spannableString = new SpannableString(title + msg);
-                  if (title.length() > 0)
-                     spannableString.setSpan(new StyleSpan(android.graphics.Typeface.BOLD), 0, title.length(), 0);
-                  summaryList.add(spannableString);
-
-                  if (firstFullData == null)
-                     firstFullData = cursor.getString(cursor.getColumnIndex(NotificationTable.COLUMN_NAME_FULL_DATA));
-               }
-            } while (cursor.moveToNext());
-
-            if (updateSummary && firstFullData != null) {
-               try {
-                  fcmJson = new JSONObject(firstFullData);
-               } catch (JSONException e) {
-                  e.printStackTrace();
-               }
-            }
-         }
+         String title = child.title;
+         if (title == null)
+            title = "";
+         else
+            title += " ";
+
+         SpannableString spannableString = new SpannableString(title + child.message);
+         if (title.length() > 0)
+            spannableString.setSpan(new StyleSpan(android.graphics.Typeface.BOLD), 0, title.length(), 0);
+         summaryList.add(spannableString);
+
+         if (firstChild == null)
+            firstChild = child;
       }
-      finally {
-         if (cursor != null && !cursor.isClosed())
-            cursor.close();
+
+      if (updateSummary && firstChild != null) {
+         OSNotificationPayload firstPayload = firstChild.getPayload();
+         if (firstPayload != null) {
+            payload = firstPayload;
+            fcmJson = firstPayload.getJson();
+         }
       }
       
       if (summaryNotificationId == null) {
@@ -536,7 +514,7 @@ class GenerateNotification {
          createSummaryIdDatabaseEntry(dbHelper, group, summaryNotificationId);
       }
       
-      PendingIntent summaryContentIntent = getNewActionPendingIntent(random.nextInt(), createBaseSummaryIntent(summaryNotificationId, fcmJson, group));
+      PendingIntent summaryContentIntent = getNewActionPendingIntent(random.nextInt(), createBaseSummaryIntent(summaryNotificationId, payload, group));
       
       // 2 or more notifications with a group received, group them together as a single notification.
       if (summaryList != null &&
@@ -622,7 +600,7 @@ class GenerateNotification {
          //  extender setup all the settings will carry over.
          //  Note: However their buttons will not carry over as we need to be setup with this new summaryNotificationId.
          summaryBuilder.mActions.clear();
-         addNotificationActionButtons(fcmJson, summaryBuilder, summaryNotificationId, group);
+         addNotificationActionButtons(payload, summaryBuilder, summaryNotificationId, group);
 
          summaryBuilder.setContentIntent(summaryContentIntent)
                        .setDeleteIntent(summaryDeleteIntent)
@@ -656,7 +634,7 @@ class GenerateNotification {
       String summaryMessage = grouplessNotifCount + " new messages";
       int summaryNotificationId = OneSignalNotificationManager.getGrouplessSummaryId();
 
-      PendingIntent summaryContentIntent = getNewActionPendingIntent(random.nextInt(), createBaseSummaryIntent(summaryNotificationId, fcmJson, group));
+      PendingIntent summaryContentIntent = getNewActionPendingIntent(random.nextInt(), createBaseSummaryIntent(summaryNotificationId, notificationJob.getPayload(), group));
       PendingIntent summaryDeleteIntent = getNewDismissActionPendingIntent(random.nextInt(), getNewBaseDismissIntent(0).putExtra("summary", group));
 
       NotificationCompat.Builder summaryBuilder = getBaseOneSignalNotificationBuilder(notificationJob).compatBuilder;
@@ -696,8 +674,8 @@ class GenerateNotification {
       NotificationManagerCompat.from(currentContext).notify(summaryNotificationId, summaryNotification);
    }
    
-   private static Intent createBaseSummaryIntent(int summaryNotificationId, JSONObject fcmJson, String group) {
-     return getNewBaseIntent(summaryNotificationId).putExtra(BUNDLE_KEY_ONESIGNAL_DATA, fcmJson.toString()).putExtra("summary", group);
+   private static Intent createBaseSummaryIntent(int summaryNotificationId, OSNotificationPayload payload, String group) {
+     return getNewBaseIntent(summaryNotificationId).putExtra(BUNDLE_KEY_ONESIGNAL_DATA, payload.getRawPayload()).putExtra("summary", group);
    }
    
    private static void createSummaryIdDatabaseEntry(OneSignalDbHelper dbHelper, String group, int id) {
@@ -708,22 +686,28 @@ class GenerateNotification {
       values.put(NotificationTable.COLUMN_NAME_GROUP_ID, group);
       values.put(NotificationTable.COLUMN_NAME_IS_SUMMARY, 1);
       dbHelper.insertOrThrow(NotificationTable.TABLE_NAME, null, values);
+      OSNotificationSummaryIndex.onSummaryInserted(group, id);
    }
 
    // Keep 'throws Throwable' as 'onesignal_bgimage_notif_layout' may not be available
    //    This maybe the case if a jar is used instead of an aar.
-   private static void addBackgroundImage(JSONObject fcmJson, NotificationCompat.Builder notifBuilder) throws Throwable {
+   private static void addBackgroundImage(OSNotificationPayload payload, NotificationCompat.Builder notifBuilder) throws Throwable {
       // Required to right align image
       if (android.os.Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN)
          return;
 
+      JSONObject fcmJson = payload.getJson();
       Bitmap bg_image = null;
-      JSONObject jsonBgImage = null;
-      String jsonStrBgImage = fcmJson.optString("bg_img", null);
+      JSONObject jsonBgImage = payload.getBackgroundImage();
+
+      if (jsonBgImage == null && fcmJson.has("bg_img"))
+         throw new JSONException("bg_img is not a JSON object: " + fcmJson.optString("bg_img"));
 
-      if (jsonStrBgImage != null) {
-         jsonBgImage = new JSONObject(jsonStrBgImage);
-         bg_image = getBitmap(jsonBgImage.optString("img", null));
+      if (jsonBgImage != null) {
+         // Shown at the full width of a collapsed notification
+         bg_image = getBitmap(jsonBgImage.optString("img", null),
+             contextResources.getDisplayMetrics().widthPixels,
+             (int) contextResources.getDimension(android.R.dimen.notification_large_icon_height));
       }
 
       if (bg_image == null)
@@ -740,7 +724,7 @@ class GenerateNotification {
          if (jsonBgImage != null && jsonBgImage.has("img_align"))
             alignSetting = jsonBgImage.getString("img_align");
          else {
-            int iAlignSetting = contextResources.getIdentifier("onesignal_bgimage_notif_image_align", "string", packageName);
+            int iAlignSetting = OSNotificationResourceCache.getIdentifier(contextResources, "onesignal_bgimage_notif_image_align", "string", packageName);
             if (iAlignSetting != 0)
                alignSetting = contextResources.getString(iAlignSetting);
          }
@@ -770,7 +754,7 @@ class GenerateNotification {
       if (color != null)
          customView.setTextColor(viewId, color);
       else {
-         int colorId = contextResources.getIdentifier(colorDefaultResource, "color", packageName);
+         int colorId = OSNotificationResourceCache.getIdentifier(contextResources, colorDefaultResource, "color", packageName);
          if (colorId != 0)
             customView.setTextColor(viewId, AndroidSupportV4Compat.ContextCompat.getColor(currentContext, colorId));
       }
@@ -786,19 +770,42 @@ class GenerateNotification {
    }
 
    private static Bitmap getLargeIcon(JSONObject fcmJson) {
-      Bitmap bitmap = getBitmap(fcmJson.optString("licon"));
-      if (bitmap == null)
-         bitmap = getBitmapFromAssetsOrResourceName("ic_onesignal_large_icon_default");
-      
+      String largeIcon = fcmJson.optString("licon");
+      Bitmap bitmap;
+      if (OSNotificationMediaLoader.isRemoteUrl(largeIcon)) {
+         bitmap = resizeBitmapForLargeIconArea(getBitmapFromURL(largeIcon.trim(),
+             (int) contextResources.getDimension(android.R.dimen.notification_large_icon_width),
+             (int) contextResources.getDimension(android.R.dimen.notification_large_icon_height)));
+      }
+      else
+         bitmap = getLargeIconFromAssetsOrResourceName(largeIcon);
+
       if (bitmap == null)
-         return null;
-   
-      return resizeBitmapForLargeIconArea(bitmap);
+         bitmap = getDefaultLargeIcon();
+
+      return bitmap;
    }
    
    private static Bitmap getDefaultLargeIcon() {
-      Bitmap bitmap = getBitmapFromAssetsOrResourceName("ic_onesignal_large_icon_default");
-      return resizeBitmapForLargeIconArea(bitmap);
+      return getLargeIconFromAssetsOrResourceName("ic_onesignal_large_icon_default");
+   }
+
+   // Cached already resized, so scaling is only done once per icon
+   private static Bitmap getLargeIconFromAssetsOrResourceName(final String bitmapStr) {
+      if (bitmapStr == null || bitmapStr.isEmpty())
+         return null;
+
+      try {
+         return OSNotificationResourceCache.getBitmap("large_icon/" + bitmapStr, new OSNotificationResourceCache.BitmapLoader() {
+            @Override
+            public Bitmap load() throws IOException {
+               return resizeBitmapForLargeIconArea(getCachedBitmapFromAssetsOrResourceName(bitmapStr));
+            }
+         });
+      } catch (Throwable t) {
+         OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Could not load large icon: " + bitmapStr, t);
+         return null;
+      }
    }
    
    // Resize to prevent extra cropping and boarders.
@@ -829,51 +836,94 @@ class GenerateNotification {
       return bitmap;
    }
 
-   private static Bitmap getBitmapFromAssetsOrResourceName(String bitmapStr) {
+   private static Bitmap getBitmapFromAssetsOrResourceName(final String bitmapStr) {
       try {
-         Bitmap bitmap = null;
+         return getCachedBitmapFromAssetsOrResourceName(bitmapStr);
+      } catch (Throwable t) {
+         OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Could not load bitmap: " + bitmapStr, t);
+         return null;
+      }
+   }
 
-         try {
-            bitmap = BitmapFactory.decodeStream(currentContext.getAssets().open(bitmapStr));
-         } catch (Throwable t) {}
+   private static Bitmap getCachedBitmapFromAssetsOrResourceName(final String bitmapStr) throws IOException {
+      return OSNotificationResourceCache.getBitmap(bitmapStr, new OSNotificationResourceCache.BitmapLoader() {
+         @Override
+         public Bitmap load() throws IOException {
+            return loadBitmapFromAssetsOrResourceName(bitmapStr);
+         }
+      });
+   }
+
+   // null if there is no asset or resource named bitmapStr, throws if one exists but could not be read
+   private static Bitmap loadBitmapFromAssetsOrResourceName(String bitmapStr) throws IOException {
+      Bitmap bitmap = getBitmapFromAssets(bitmapStr);
+      if (bitmap != null)
+         return bitmap;
 
+      for (String extension : IMAGE_EXTENSIONS) {
+         bitmap = getBitmapFromAssets(bitmapStr + extension);
          if (bitmap != null)
             return bitmap;
+      }
 
-         final List<String> image_extensions = Arrays.asList(".png", ".webp", ".jpg", ".gif", ".bmp");
-         for (String extension : image_extensions) {
-            try {
-               bitmap = BitmapFactory.decodeStream(currentContext.getAssets().open(bitmapStr + extension));
-            } catch (Throwable t) {}
-            if (bitmap != null)
-               return bitmap;
-         }
-
-         int bitmapId = getResourceIcon(bitmapStr);
-         if (bitmapId != 0)
-            return BitmapFactory.decodeResource(contextResources, bitmapId);
-      } catch (Throwable t) {}
+      int bitmapId = getResourceIcon(bitmapStr);
+      if (bitmapId != 0)
+         return BitmapFactory.decodeResource(contextResources, bitmapId);
 
       return null;
    }
 
-   private static Bitmap getBitmapFromURL(String location) {
+   // Starts downloading all remote images of the notification at once, instead of one after the other while building it
+   private static void prefetchRemoteImages(OSNotificationPayload payload) {
+      JSONObject fcmJson = payload.getJson();
+      List<String> urls = new ArrayList<>();
+      String largeIcon = fcmJson.optString("licon", null);
+      if (OSNotificationMediaLoader.isRemoteUrl(largeIcon))
+         urls.add(largeIcon);
+
+      String bigPicture = fcmJson.optString("bicon", null);
+      if (OSNotificationMediaLoader.isRemoteUrl(bigPicture))
+         urls.add(bigPicture);
+
+      JSONObject jsonBgImage = payload.getBackgroundImage();
+      if (jsonBgImage != null) {
+         String bgImage = jsonBgImage.optString("img", null);
+         if (OSNotificationMediaLoader.isRemoteUrl(bgImage))
+            urls.add(bgImage);
+      }
+
+      if (!urls.isEmpty())
+         mediaLoadDeadline = OSNotificationMediaLoader.getInstance(currentContext).prefetch(urls);
+   }
+
+   private static Bitmap getBitmapFromAssets(String fileName) throws IOException {
+      InputStream inputStream = null;
       try {
-         return BitmapFactory.decodeStream(new URL(location).openConnection().getInputStream());
-      } catch (Throwable t) {
-         OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Could not download image!", t);
+         inputStream = currentContext.getAssets().open(fileName);
+         return BitmapFactory.decodeStream(inputStream);
+      } catch (FileNotFoundException e) {
+         return null;
+      } finally {
+         if (inputStream != null) {
+            try {
+               inputStream.close();
+            } catch (IOException e) {}
+         }
       }
+   }
 
-      return null;
+   private static Bitmap getBitmapFromURL(String location, int targetWidth, int targetHeight) {
+      long timeoutMillis = mediaLoadDeadline - OneSignal.getTime().getElapsedRealtime();
+      return OSNotificationMediaLoader.getInstance(currentContext).getBitmap(location, targetWidth, targetHeight, timeoutMillis);
    }
 
-   private static Bitmap getBitmap(String name) {
+   private static Bitmap getBitmap(String name, int targetWidth, int targetHeight) {
       if (name == null)
          return null;
       String trimmedName = name.trim();
       
-      if (trimmedName.startsWith("http://") || trimmedName.startsWith("https://"))
-         return getBitmapFromURL(trimmedName);
+      if (OSNotificationMediaLoader.isRemoteUrl(trimmedName))
+         return getBitmapFromURL(trimmedName, targetWidth, targetHeight);
 
       return getBitmapFromAssetsOrResourceName(name);
    }
@@ -891,11 +941,7 @@ class GenerateNotification {
          return notificationIcon;
 
       // Get system icon resource
-      try {
-         return drawable.class.getField(iconName).getInt(null);
-      } catch (Throwable t) {}
-
-      return 0;
+      return OSNotificationResourceCache.getSystemDrawableId(iconName);
    }
 
    private static int getSmallIconId(JSONObject fcmJson) {
@@ -923,7 +969,7 @@ class GenerateNotification {
    }
 
    private static int getDrawableId(String name) {
-      return contextResources.getIdentifier(name, "drawable", packageName);
+      return OSNotificationResourceCache.getIdentifier(contextResources, name, "drawable", packageName);
    }
 
    private static boolean isSoundEnabled(JSONObject fcmJson) {
@@ -958,40 +1004,31 @@ class GenerateNotification {
       return null;
    }
 
-   private static void addNotificationActionButtons(JSONObject fcmJson, NotificationCompat.Builder mBuilder, int notificationId, String groupSummary) {
+   private static void addNotificationActionButtons(OSNotificationPayload payload, NotificationCompat.Builder mBuilder, int notificationId, String groupSummary) {
       try {
-         JSONObject customJson = new JSONObject(fcmJson.optString("custom"));
-         
-         if (!customJson.has("a"))
-            return;
-         
-         JSONObject additionalDataJSON = customJson.getJSONObject("a");
-         if (!additionalDataJSON.has("actionButtons"))
-            return;
-
-         JSONArray buttons = additionalDataJSON.getJSONArray("actionButtons");
+         List<OSNotification.ActionButton> buttons = payload.getActionButtons();
 
-         for (int i = 0; i < buttons.length(); i++) {
-            JSONObject button = buttons.optJSONObject(i);
-            JSONObject bundle = new JSONObject(fcmJson.toString());
+         for (int i = 0; i < buttons.size(); i++) {
+            OSNotification.ActionButton button = buttons.get(i);
+            JSONObject bundle = payload.copyJson();
 
             Intent buttonIntent = getNewBaseIntent(notificationId);
             buttonIntent.setAction("" + i); // Required to keep each action button from replacing extras of each other
             buttonIntent.putExtra("action_button", true);
-            bundle.put(BUNDLE_KEY_ACTION_ID, button.optString("id"));
+            bundle.put(BUNDLE_KEY_ACTION_ID, button.getId());
             buttonIntent.putExtra(BUNDLE_KEY_ONESIGNAL_DATA, bundle.toString());
             if (groupSummary != null)
                buttonIntent.putExtra("summary", groupSummary);
-            else if (fcmJson.has("grp"))
-               buttonIntent.putExtra("grp", fcmJson.optString("grp"));
+            else if (payload.getJson().has("grp"))
+               buttonIntent.putExtra("grp", payload.getJson().optString("grp"));
 
             PendingIntent buttonPIntent = getNewActionPendingIntent(notificationId, buttonIntent);
 
             int buttonIcon = 0;
-            if (button.has("icon"))
-               buttonIcon = getResourceIcon(button.optString("icon"));
+            if (button.getIcon() != null)
+               buttonIcon = getResourceIcon(button.getIcon());
             
-            mBuilder.addAction(buttonIcon, button.optString("text"), buttonPIntent);
+            mBuilder.addAction(buttonIcon, button.getText(), buttonPIntent);
          }
       } catch (Throwable t) {
          t.printStackTrace();
@@ -1,5 +1,9 @@
 package com.onesignal;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.MalformedJsonException;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
@@ -7,7 +11,9 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -29,8 +35,6 @@ class JSONUtils {
             return baseOutput;
 
         Iterator<String> keys = changedTo.keys();
-        String key;
-        Object value;
 
         JSONObject output;
         if (baseOutput != null)
@@ -38,53 +42,73 @@ class JSONUtils {
         else
             output = new JSONObject();
 
-        while (keys.hasNext()) {
-            try {
-                key = keys.next();
-                value = changedTo.get(key);
-
-                if (cur.has(key)) {
-                    if (value instanceof JSONObject) {
-                        JSONObject curValue = cur.getJSONObject(key);
-                        JSONObject outValue = null;
-                        if (baseOutput != null && baseOutput.has(key))
-                            outValue = baseOutput.getJSONObject(key);
-                        JSONObject returnedJson = generateJsonDiff(curValue, (JSONObject) value, outValue, includeFields);
-                        String returnedJsonStr = returnedJson.toString();
-                        if (!returnedJsonStr.equals("{}"))
-                            output.put(key, new JSONObject(returnedJsonStr));
-                    }
-                    else if (value instanceof JSONArray)
-                        handleJsonArray(key, (JSONArray) value, cur.getJSONArray(key), output);
-                    else if (includeFields != null && includeFields.contains(key))
-                        output.put(key, value);
-                    else {
-                        Object curValue = cur.get(key);
-                        if (!value.equals(curValue)) {
-                            // Work around for JSON serializer turning doubles/floats into ints since it drops ending 0's
-                            if (curValue instanceof Integer && !"".equals(value)) {
-                                if ( ((Number)curValue).doubleValue() != ((Number)value).doubleValue())
-                                    output.put(key, value);
-                            }
-                            else
+        while (keys.hasNext())
+            generateJsonDiffForKey(keys.next(), cur, changedTo, baseOutput, output, includeFields);
+
+        return output;
+    }
+
+    /**
+     * Same as {@link #generateJsonDiff(JSONObject, JSONObject, JSONObject, Set)} but only compares the given keys,
+     *    used when the caller knows the other keys of changedTo have no differences.
+     * Keys that had differences are added to changedKeys.
+     */
+    static JSONObject generateJsonDiff(JSONObject cur, JSONObject changedTo, Collection<String> keys, Set<String> includeFields, @Nullable Set<String> changedKeys) {
+        JSONObject output = new JSONObject();
+        for (String key : keys) {
+            if (!changedTo.has(key))
+                continue;
+
+            int outputLength = output.length();
+            generateJsonDiffForKey(key, cur, changedTo, null, output, includeFields);
+            if (changedKeys != null && output.length() != outputLength)
+                changedKeys.add(key);
+        }
+        return output;
+    }
+
+    private static void generateJsonDiffForKey(String key, JSONObject cur, JSONObject changedTo, JSONObject baseOutput, JSONObject output, Set<String> includeFields) {
+        try {
+            Object value = changedTo.get(key);
+
+            if (cur.has(key)) {
+                if (value instanceof JSONObject) {
+                    JSONObject curValue = cur.getJSONObject(key);
+                    JSONObject outValue = null;
+                    if (baseOutput != null && baseOutput.has(key))
+                        outValue = baseOutput.getJSONObject(key);
+                    JSONObject returnedJson = generateJsonDiff(curValue, (JSONObject) value, outValue, includeFields);
+                    if (returnedJson.length() > 0)
+                        output.put(key, deepCopy(returnedJson));
+                }
+                else if (value instanceof JSONArray)
+                    handleJsonArray(key, (JSONArray) value, cur.getJSONArray(key), output);
+                else if (includeFields != null && includeFields.contains(key))
+                    output.put(key, value);
+                else {
+                    Object curValue = cur.get(key);
+                    if (!value.equals(curValue)) {
+                        // Work around for JSON serializer turning doubles/floats into ints since it drops ending 0's
+                        if (curValue instanceof Integer && !"".equals(value)) {
+                            if ( ((Number)curValue).doubleValue() != ((Number)value).doubleValue())
                                 output.put(key, value);
                         }
+                        else
+                            output.put(key, value);
                     }
                 }
-                else {
-                    if (value instanceof JSONObject)
-                        output.put(key, new JSONObject(value.toString()));
-                    else if (value instanceof JSONArray)
-                        handleJsonArray(key, (JSONArray) value, null, output);
-                    else
-                        output.put(key, value);
-                }
-            } catch (JSONException e) {
-                e.printStackTrace();
             }
+            else {
+                if (value instanceof JSONObject)
+                    output.put(key, deepCopy((JSONObject) value));
+                else if (value instanceof JSONArray)
+                    handleJsonArray(key, (JSONArray) value, null, output);
+                else
+                    output.put(key, value);
+            }
+        } catch (JSONException e) {
+            e.printStackTrace();
         }
-
-        return output;
     }
 
     private static void handleJsonArray(String key, JSONArray newArray, JSONArray curArray, JSONObject output) throws JSONException {
@@ -113,9 +137,9 @@ class JSONUtils {
             }
         }
 
-        if (!newOutArray.toString().equals("[]"))
+        if (newOutArray.length() > 0)
             output.put(key + "_a", newOutArray);
-        if (!remOutArray.toString().equals("[]"))
+        if (remOutArray.length() > 0)
             output.put(key + "_d", remOutArray);
     }
 
@@ -261,4 +285,170 @@ class JSONUtils {
         return object;
     }
 
+    /**
+     * Same result as new JSONObject(jsonObject.toString()) without writing and parsing the JSON string
+     * Values are converted to the types the parser would return, ex: a Double without a fraction becomes an Integer
+     */
+    static JSONObject deepCopy(@NonNull JSONObject jsonObject) {
+        JSONObject copy = new JSONObject();
+        Iterator<String> keys = jsonObject.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            try {
+                copy.put(key, copyValue(jsonObject.opt(key)));
+            } catch (JSONException e) {
+                // Not possible, values were already validated when put into jsonObject
+                e.printStackTrace();
+            }
+        }
+        return copy;
+    }
+
+    static JSONArray deepCopy(@NonNull JSONArray jsonArray) {
+        JSONArray copy = new JSONArray();
+        for (int i = 0; i < jsonArray.length(); i++)
+            copy.put(copyValue(jsonArray.opt(i)));
+        return copy;
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof JSONObject)
+            return deepCopy((JSONObject) value);
+        if (value instanceof JSONArray)
+            return deepCopy((JSONArray) value);
+        if (value instanceof Number)
+            return parseNumber(numberToString((Number) value));
+        if (value == null || value == JSONObject.NULL || value instanceof Boolean || value instanceof String)
+            return value == null ? JSONObject.NULL : value;
+        // JSONStringer writes any other type as a string
+        return value.toString();
+    }
+
+    // Same format as JSONObject.numberToString
+    private static String numberToString(Number number) {
+        double doubleValue = number.doubleValue();
+        long longValue = number.longValue();
+        if (doubleValue == (double) longValue)
+            return Long.toString(longValue);
+        return number.toString();
+    }
+
+    /**
+     * Reads the next value of the reader as the same type JSONObject.opt would return for it
+     * Numbers follow JSONTokener, Integer if it fits, Long if not, Double if it has a fraction or exponent
+     */
+    static Object nextValue(@NonNull JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        switch (token) {
+            case BEGIN_OBJECT:
+                return nextJSONObject(reader);
+            case BEGIN_ARRAY:
+                return nextJSONArray(reader);
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NUMBER:
+                return parseNumber(reader.nextString());
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            case STRING:
+                return reader.nextString();
+            default:
+                throw new MalformedJsonException("Unexpected token: " + token);
+        }
+    }
+
+    static JSONObject nextJSONObject(@NonNull JsonReader reader) throws IOException {
+        JSONObject object = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            try {
+                object.put(name, nextValue(reader));
+            } catch (JSONException e) {
+                throw new MalformedJsonException(e.getMessage());
+            }
+        }
+        reader.endObject();
+        return object;
+    }
+
+    static JSONArray nextJSONArray(@NonNull JsonReader reader) throws IOException {
+        JSONArray array = new JSONArray();
+        reader.beginArray();
+        while (reader.hasNext())
+            array.put(nextValue(reader));
+        reader.endArray();
+        return array;
+    }
+
+    /**
+     * String, number or boolean value as a String, like JSONObject.getString
+     * Null for a null, object or array value, which is skipped instead of throwing the IllegalStateException of nextString
+     */
+    static @Nullable String nextStringOrNull(@NonNull JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case STRING:
+            case NUMBER:
+                return reader.nextString();
+            case BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    /**
+     * Skips the next value and throws a JSONException if it isn't of the expected type, so a wrong type
+     * only invalidates this value instead of throwing an IllegalStateException that stops reading the response
+     */
+    static void expectNext(@NonNull JsonReader reader, @NonNull JsonToken expected, @NonNull String name) throws IOException, JSONException {
+        JsonToken token = reader.peek();
+        if (token == expected)
+            return;
+        reader.skipValue();
+        throw new JSONException(name + " expected " + expected + " but was " + token);
+    }
+
+    /**
+     * Same conversion as JSONObject.optBoolean for a value read with {@link #nextValue(JsonReader)}
+     */
+    static boolean optBoolean(Object value, boolean fallback) {
+        if (value instanceof Boolean)
+            return (Boolean) value;
+        if (value instanceof String) {
+            if ("true".equalsIgnoreCase((String) value))
+                return true;
+            if ("false".equalsIgnoreCase((String) value))
+                return false;
+        }
+        return fallback;
+    }
+
+    /**
+     * Same conversion as JSONObject.optString for a value read with {@link #nextValue(JsonReader)}
+     */
+    static String optString(Object value, String fallback) {
+        return value == null ? fallback : String.valueOf(value);
+    }
+
+    private static Object parseNumber(String number) {
+        if (number.indexOf('.') == -1 && number.indexOf('e') == -1 && number.indexOf('E') == -1) {
+            try {
+                long longValue = Long.parseLong(number);
+                if (longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE)
+                    return (int) longValue;
+                return longValue;
+            } catch (NumberFormatException e) {
+                // Too large for a long, read as a double below
+            }
+        }
+
+        try {
+            return Double.valueOf(number);
+        } catch (NumberFormatException e) {
+            return number;
+        }
+    }
 }
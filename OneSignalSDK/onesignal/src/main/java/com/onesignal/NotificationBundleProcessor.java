@@ -162,8 +162,9 @@ class NotificationBundleProcessor {
 
             // No need to keep notification duplicate check on memory, we have database check at this point
             // Without removing duplicate, summary restoration might not happen
-            String osNotificationId = OSNotificationFormatHelper.getOSNotificationIdFromJson(notificationController.getNotificationJob().getJsonPayload());
-            OSNotificationWorkManager.removeNotificationIdProcessed(osNotificationId);
+            String osNotificationId = notificationJob.getApiNotificationId();
+            if (isStringNotEmpty(osNotificationId))
+                OSNotificationDedupeIndex.finishProcessing(osNotificationId);
             OneSignal.handleNotificationReceived(notificationJob);
         } else {
             CallbackToFutureAdapter.Completer<ListenableWorker.Result>  callbackCompleter = notificationJob.getCallbackCompleter();
@@ -212,57 +213,75 @@ class NotificationBundleProcessor {
    private static void saveNotification(OSNotificationGenerationJob notificationJob, boolean opened) {
       OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "Saving Notification job: " + notificationJob.toString());
       Context context = notificationJob.getContext();
-      JSONObject jsonPayload = notificationJob.getJsonPayload();
+      OSNotificationPayload payload = notificationJob.getPayload();
+      JSONObject jsonPayload = payload.getJson();
 
-      try {
-         JSONObject customJSON = getCustomJSONObject(notificationJob.getJsonPayload());
-
-         OneSignalDbHelper dbHelper = OneSignalDbHelper.getInstance(notificationJob.getContext());
-
-         // Count any notifications with duplicated android notification ids as dismissed.
-         // -1 is used to note never displayed
-         if (notificationJob.isNotificationToDisplay()) {
-            String whereStr = NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " = " + notificationJob.getAndroidIdWithoutCreate();
+      if (!payload.isOneSignalPayload()) {
+         OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Not saving notification without a valid 'custom' field: " + payload.getRawPayload());
+         return;
+      }
 
-            ContentValues values = new ContentValues();
-            values.put(NotificationTable.COLUMN_NAME_DISMISSED, 1);
+      OneSignalDbHelper dbHelper = OneSignalDbHelper.getInstance(notificationJob.getContext());
+
+      // Save just received notification to DB
+      final ContentValues values = new ContentValues();
+      values.put(NotificationTable.COLUMN_NAME_NOTIFICATION_ID, payload.getNotificationId());
+      if (jsonPayload.has("grp"))
+         values.put(NotificationTable.COLUMN_NAME_GROUP_ID, jsonPayload.optString("grp"));
+      if (jsonPayload.has("collapse_key") && !"do_not_collapse".equals(jsonPayload.optString("collapse_key")))
+         values.put(NotificationTable.COLUMN_NAME_COLLAPSE_ID, jsonPayload.optString("collapse_key"));
+
+      values.put(NotificationTable.COLUMN_NAME_OPENED, opened ? 1 : 0);
+      if (!opened)
+         values.put(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID, notificationJob.getAndroidIdWithoutCreate());
+
+      if (notificationJob.getTitle() != null)
+         values.put(NotificationTable.COLUMN_NAME_TITLE, notificationJob.getTitle().toString());
+      if (notificationJob.getBody() != null)
+         values.put(NotificationTable.COLUMN_NAME_MESSAGE, notificationJob.getBody().toString());
+
+      // Set expire_time
+      long sentTime = jsonPayload.optLong("google.sent_time", OneSignal.getTime().getCurrentThreadTimeMillis()) / 1_000L;
+      int ttl = jsonPayload.optInt("google.ttl", OSNotificationRestoreWorkManager.DEFAULT_TTL_IF_NOT_IN_PAYLOAD);
+      long expireTime = sentTime + ttl;
+      values.put(NotificationTable.COLUMN_NAME_EXPIRE_TIME, expireTime);
+
+      values.put(NotificationTable.COLUMN_NAME_FULL_DATA, payload.getRawPayload());
+
+      final boolean dismissDuplicates = notificationJob.isNotificationToDisplay();
+      final int androidNotificationId = notificationJob.getAndroidIdWithoutCreate();
+      boolean saved = dbHelper.runInTransaction(new OneSignalDbBatch.Writes() {
+         @Override
+         public void run(@NonNull OneSignalDbBatch batch) {
+            // Count any notifications with duplicated android notification ids as dismissed.
+            // -1 is used to note never displayed
+            if (dismissDuplicates) {
+               ContentValues dismissedValues = new ContentValues();
+               dismissedValues.put(NotificationTable.COLUMN_NAME_DISMISSED, 1);
+               batch.update(NotificationTable.TABLE_NAME, dismissedValues, NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " = " + androidNotificationId, null);
+            }
 
-            dbHelper.update(NotificationTable.TABLE_NAME, values, whereStr, null);
-            BadgeCountUpdater.update(dbHelper, context);
+            batch.insert(NotificationTable.TABLE_NAME, values);
          }
-
-         // Save just received notification to DB
-         ContentValues values = new ContentValues();
-         values.put(NotificationTable.COLUMN_NAME_NOTIFICATION_ID, customJSON.optString("i"));
-         if (jsonPayload.has("grp"))
-            values.put(NotificationTable.COLUMN_NAME_GROUP_ID, jsonPayload.optString("grp"));
-         if (jsonPayload.has("collapse_key") && !"do_not_collapse".equals(jsonPayload.optString("collapse_key")))
-            values.put(NotificationTable.COLUMN_NAME_COLLAPSE_ID, jsonPayload.optString("collapse_key"));
-
-         values.put(NotificationTable.COLUMN_NAME_OPENED, opened ? 1 : 0);
-         if (!opened)
-            values.put(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID, notificationJob.getAndroidIdWithoutCreate());
-
-         if (notificationJob.getTitle() != null)
-            values.put(NotificationTable.COLUMN_NAME_TITLE, notificationJob.getTitle().toString());
-         if (notificationJob.getBody() != null)
-            values.put(NotificationTable.COLUMN_NAME_MESSAGE, notificationJob.getBody().toString());
-
-         // Set expire_time
-         long sentTime = jsonPayload.optLong("google.sent_time", OneSignal.getTime().getCurrentThreadTimeMillis()) / 1_000L;
-         int ttl = jsonPayload.optInt("google.ttl", OSNotificationRestoreWorkManager.DEFAULT_TTL_IF_NOT_IN_PAYLOAD);
-         long expireTime = sentTime + ttl;
-         values.put(NotificationTable.COLUMN_NAME_EXPIRE_TIME, expireTime);
-
-         values.put(NotificationTable.COLUMN_NAME_FULL_DATA, jsonPayload.toString());
-
-         dbHelper.insertOrThrow(NotificationTable.TABLE_NAME, null, values);
-         OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "Notification saved values: " + values.toString());
-         if (!opened)
-            BadgeCountUpdater.update(dbHelper, context);
-      } catch (JSONException e) {
-         e.printStackTrace();
+      });
+      if (!saved)
+         return;
+
+      OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "Notification saved values: " + values.toString());
+      if (payload.getNotificationId() != null)
+         OSNotificationDedupeIndex.onNotificationSaved(payload.getNotificationId());
+      if (dismissDuplicates)
+         OSNotificationSummaryIndex.onNotificationRemoved(androidNotificationId);
+      if (!opened && jsonPayload.has("grp")) {
+         OSNotificationSummaryIndex.onChildInserted(
+                 jsonPayload.optString("grp"),
+                 androidNotificationId,
+                 values.getAsString(NotificationTable.COLUMN_NAME_TITLE),
+                 values.getAsString(NotificationTable.COLUMN_NAME_MESSAGE),
+                 values.getAsString(NotificationTable.COLUMN_NAME_FULL_DATA));
       }
+      if (dismissDuplicates || !opened)
+         BadgeCountUpdater.update(dbHelper, context);
    }
 
     static void markNotificationAsDismissed(OSNotificationGenerationJob notifiJob) {
@@ -278,6 +297,7 @@ class NotificationBundleProcessor {
         values.put(NotificationTable.COLUMN_NAME_DISMISSED, 1);
 
         dbHelper.update(NotificationTable.TABLE_NAME, values, whereStr, null);
+        OSNotificationSummaryIndex.onNotificationRemoved(notifiJob.getAndroidIdWithoutCreate());
         BadgeCountUpdater.update(dbHelper, notifiJob.getContext());
    }
 
@@ -88,7 +88,10 @@ class NotificationChannelManager {
          return createDefaultChannel(notificationManager);
       
       try {
-         return createChannel(context, notificationManager, jsonPayload);
+         JSONObject channelPayload = notificationJob.getPayload().getChannel();
+         if (channelPayload == null)
+            throw new JSONException("chnl is not a JSON object: " + jsonPayload.optString("chnl"));
+         return createChannel(context, notificationManager, channelPayload, jsonPayload);
       } catch (JSONException e) {
          OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Could not create notification channel due to JSON payload error!", e);
       }
@@ -100,16 +103,7 @@ class NotificationChannelManager {
    // Returns channel id after it is created.
    // Language dependent fields will be passed localized
    @RequiresApi(api = Build.VERSION_CODES.O)
-   private static String createChannel(Context context, NotificationManager notificationManager, JSONObject payload) throws JSONException {
-      // 'chnl' will be a string if coming from FCM and it will be a JSONObject when coming from
-      //   a cold start sync.
-      Object objChannelPayload = payload.opt("chnl");
-      JSONObject channelPayload = null;
-      if (objChannelPayload instanceof String)
-         channelPayload = new JSONObject((String)objChannelPayload);
-      else
-         channelPayload = (JSONObject)objChannelPayload;
-      
+   private static String createChannel(Context context, NotificationManager notificationManager, JSONObject channelPayload, JSONObject payload) throws JSONException {
       String channel_id = channelPayload.optString("id", DEFAULT_CHANNEL_ID);
       // Ensure we don't try to use the system reserved id
       if (channel_id.equals(NotificationChannel.DEFAULT_CHANNEL_ID))
@@ -230,7 +224,9 @@ class NotificationChannelManager {
       int jsonArraySize = list.length();
       for (int i = 0; i < jsonArraySize; i++) {
          try {
-            syncedChannelSet.add(createChannel(context, notificationManager, list.getJSONObject(i)));
+            // 'chnl' is a JSONObject when coming from a cold start sync, it is a string in a push payload
+            JSONObject channelListItem = list.getJSONObject(i);
+            syncedChannelSet.add(createChannel(context, notificationManager, channelListItem.getJSONObject("chnl"), channelListItem));
          } catch (JSONException e) {
             OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Could not create notification channel due to JSON payload error!", e);
          }
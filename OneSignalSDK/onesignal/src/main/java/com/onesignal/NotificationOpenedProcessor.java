@@ -210,6 +210,10 @@ class NotificationOpenedProcessor {
 
       clearStatusBarNotifications(context, writableDb, summaryGroup);
       writableDb.update(NotificationTable.TABLE_NAME, newContentValuesWithConsumed(intent), whereStr, whereArgs);
+      if (summaryGroup == null)
+         OSNotificationSummaryIndex.onNotificationRemoved(intent.getIntExtra(BUNDLE_KEY_ANDROID_NOTIFICATION_ID, 0));
+      else
+         OSNotificationSummaryIndex.invalidate(summaryGroup);
       BadgeCountUpdater.update(writableDb, context);
    }
 
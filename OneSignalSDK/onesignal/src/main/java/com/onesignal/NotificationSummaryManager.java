@@ -33,42 +33,26 @@ class NotificationSummaryManager {
    
    // Called from an opened / dismissed / cancel event of a single notification to update it's parent the summary notification.
    static void updateSummaryNotificationAfterChildRemoved(Context context, OneSignalDb db, String group, boolean dismissed) {
-      Cursor cursor = null;
       try {
-         cursor = internalUpdateSummaryNotificationAfterChildRemoved(context, db, group, dismissed);
+         internalUpdateSummaryNotificationAfterChildRemoved(context, db, group, dismissed);
       } catch (Throwable t) {
          OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error running updateSummaryNotificationAfterChildRemoved!", t);
-      } finally {
-         if (cursor != null && !cursor.isClosed())
-            cursor.close();
       }
    }
    
-   private static Cursor internalUpdateSummaryNotificationAfterChildRemoved(Context context, OneSignalDb db, String group, boolean dismissed) {
-      Cursor cursor = db.query(
-          NotificationTable.TABLE_NAME,
-          new String[] { NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID, // return columns
-              NotificationTable.COLUMN_NAME_CREATED_TIME },
-          NotificationTable.COLUMN_NAME_GROUP_ID + " = ? AND " + // Where String
-              NotificationTable.COLUMN_NAME_DISMISSED + " = 0 AND " +
-              NotificationTable.COLUMN_NAME_OPENED + " = 0 AND " +
-              NotificationTable.COLUMN_NAME_IS_SUMMARY + " = 0" ,
-          new String[] { group }, // whereArgs
-          null, null,
-          NotificationTable._ID + " DESC");   // sort order, new to old);
-   
-      int notificationsInGroup = cursor.getCount();
+   private static void internalUpdateSummaryNotificationAfterChildRemoved(Context context, OneSignalDb db, String group, boolean dismissed) {
+      // Child was already removed from the index when it was marked as opened or dismissed
+      OSNotificationSummaryIndex.Group indexedGroup = OSNotificationSummaryIndex.getGroup(db, group);
+      int notificationsInGroup = indexedGroup.children.size();
    
       // If all individual notifications consumed
       //   - Remove summary notification from the shade.
       //   - Mark summary notification as consumed.
       if (notificationsInGroup == 0) {
-         cursor.close();
-   
-         Integer androidNotifId = getSummaryNotificationId(db, group);
+         Integer androidNotifId = indexedGroup.summaryAndroidNotificationId;
          if (androidNotifId == null)
-            return cursor;
-      
+            return;
+
          // Remove the summary notification from the shade.
          NotificationManager notificationManager = OneSignalNotificationManager.getNotificationManager(context);
          notificationManager.cancel(androidNotifId);
@@ -80,19 +64,16 @@ class NotificationSummaryManager {
              values,
              NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " = " + androidNotifId,
              null);
-         return cursor;
+         OSNotificationSummaryIndex.onSummaryRemoved(group);
+         return;
       }
    
       // Only a single notification now in the group
       //   - Need to recreate a summary notification so it looks like a normal notifications since we
       //        only have one notification now.
       if (notificationsInGroup == 1) {
-         cursor.close();
-         Integer androidNotifId = getSummaryNotificationId(db, group);
-         if (androidNotifId == null)
-            return cursor;
          restoreSummary(context, group);
-         return cursor;
+         return;
       }
       
       // 2 or more still left in the group
@@ -100,13 +81,7 @@ class NotificationSummaryManager {
       //  - Don't need start a broadcast / service as the extender doesn't support overriding
       //      the summary notification.
       try {
-         cursor.moveToFirst();
-         Long datetime = cursor.getLong(cursor.getColumnIndex(NotificationTable.COLUMN_NAME_CREATED_TIME));
-         cursor.close();
-   
-         Integer androidNotifId = getSummaryNotificationId(db, group);
-         if (androidNotifId == null)
-            return cursor;
+         Long datetime = indexedGroup.children.get(0).createdTime;
          
          OSNotificationGenerationJob notificationJob = new OSNotificationGenerationJob(context);
          notificationJob.setRestoring(true);
@@ -118,8 +93,6 @@ class NotificationSummaryManager {
       
          GenerateNotification.updateSummaryNotification(notificationJob);
       } catch (JSONException e) {}
-      
-      return cursor;
    }
    
    private static void restoreSummary(Context context, String group) {
@@ -153,41 +126,14 @@ class NotificationSummaryManager {
    }
    
    static Integer getSummaryNotificationId(OneSignalDb db, String group) {
-      Integer androidNotifId = null;
-      Cursor cursor = null;
-
-      String whereStr = NotificationTable.COLUMN_NAME_GROUP_ID + " = ? AND " +
-              NotificationTable.COLUMN_NAME_DISMISSED + " = 0 AND " +
-              NotificationTable.COLUMN_NAME_OPENED + " = 0 AND " +
-              NotificationTable.COLUMN_NAME_IS_SUMMARY + " = 1";
-      String[] whereArgs = new String[] { group };
-
       try {
          // Get the Android Notification ID of the summary notification
-         cursor = db.query(
-             NotificationTable.TABLE_NAME,
-                 new String[] { NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID }, // retColumn
-                 whereStr,
-                 whereArgs,
-                 null,
-                 null,
-                 null);
-      
-         boolean hasRecord = cursor.moveToFirst();
-         if (!hasRecord) {
-            cursor.close();
-            return null;
-         }
-         androidNotifId = cursor.getInt(cursor.getColumnIndex(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID));
-         cursor.close();
+         return OSNotificationSummaryIndex.getGroup(db, group).summaryAndroidNotificationId;
       } catch (Throwable t) {
          OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error getting android notification id for summary notification group: " + group, t);
-      } finally {
-         if (cursor != null && !cursor.isClosed())
-            cursor.close();
       }
       
-      return androidNotifId;
+      return null;
    }
 
    /**
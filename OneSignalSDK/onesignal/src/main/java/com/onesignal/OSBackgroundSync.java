@@ -66,6 +66,11 @@ abstract class OSBackgroundSync {
         syncBgThread.start();
     }
 
+    // Work of the sync thread is done, a job scheduled after this replaces the finishing one instead of waiting on it
+    void onSyncBgThreadFinished() {
+        syncBgThread = null;
+    }
+
     boolean stopSyncBgThread() {
         if (syncBgThread == null)
             return false;
@@ -83,13 +88,15 @@ abstract class OSBackgroundSync {
      *
      * @param context - Any context type
      * @param delayMs - How long to wait before doing work
+     * @return false if not scheduled, ex: the job is running and will be rescheduled once finished
      */
-    protected void scheduleBackgroundSyncTask(Context context, long delayMs) {
+    protected boolean scheduleBackgroundSyncTask(Context context, long delayMs) {
         synchronized (LOCK) {
             if (useJob())
-                scheduleSyncServiceAsJob(context, delayMs);
-            else
-                scheduleSyncServiceAsAlarm(context, delayMs);
+                return scheduleSyncServiceAsJob(context, delayMs);
+
+            scheduleSyncServiceAsAlarm(context, delayMs);
+            return true;
         }
     }
 
@@ -111,8 +118,11 @@ abstract class OSBackgroundSync {
         return false;
     }
 
+    /**
+     * @return false if the job is running, it is rescheduled with the job backoff once finished instead
+     */
     @RequiresApi(21)
-    private void scheduleSyncServiceAsJob(Context context, long delayMs) {
+    private boolean scheduleSyncServiceAsJob(Context context, long delayMs) {
         OneSignal.Log(OneSignal.LOG_LEVEL.VERBOSE, "OSBackgroundSync scheduleSyncServiceAsJob:atTime: " + delayMs);
 
         if (isJobIdRunning(context)) {
@@ -120,7 +130,7 @@ abstract class OSBackgroundSync {
             // If a JobScheduler is schedule again while running it will stop current job. We will schedule again when finished.
             // This will avoid InterruptionException due to thread.join() or queue.take() running.
             needsJobReschedule = true;
-            return;
+            return false;
         }
 
         JobInfo.Builder jobBuilder = new JobInfo.Builder(
@@ -145,7 +155,9 @@ abstract class OSBackgroundSync {
             OneSignal.Log(OneSignal.LOG_LEVEL.ERROR,
                     "scheduleSyncServiceAsJob called JobScheduler.jobScheduler which " +
                             "triggered an internal null Android error. Skipping job.", e);
+            return false;
         }
+        return true;
     }
 
     private void scheduleSyncServiceAsAlarm(Context context, long delayMs) {
@@ -0,0 +1,296 @@
+package com.onesignal;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared threads used by {@link OneSignalRestClient}
+ * - A bounded pool running the HTTP connections, idle threads are released after {@link #keepAliveMillis}
+ * - A single timer thread enforcing the per request timeout, replaces a watchdog thread per request
+ * - A cached pool dispatching {@link OneSignalRestClient.ResponseHandler} callbacks, reusing idle threads
+ */
+class OSHttpRequestExecutor {
+
+    static final String OS_HTTP_EXECUTOR = "OS_HTTP_EXECUTOR_";
+    static final String OS_HTTP_CALLBACK = "OS_REST_CALLBACK_";
+    // Daemon thread that only waits on timers and never runs a request
+    static final String OS_HTTP_TIMEOUT = "OS_HTTP_TIMEOUT";
+
+    static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+    private static final long DEFAULT_KEEP_ALIVE_MILLIS = 10_000;
+
+    private static int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+    private static long keepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
+
+    private static ThreadPoolExecutor requestExecutor;
+    private static ThreadPoolExecutor callbackExecutor;
+    private static ScheduledThreadPoolExecutor timeoutExecutor;
+
+    // Metrics
+    private static final AtomicInteger inFlightRequests = new AtomicInteger();
+    private static final AtomicLong completedRequests = new AtomicLong();
+    private static final AtomicLong totalLatencyMillis = new AtomicLong();
+    private static final AtomicLong totalQueueWaitMillis = new AtomicLong();
+    private static final AtomicLong timedOutRequests = new AtomicLong();
+    private static final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    /**
+     * Handle used to release a timeout started with {@link #startTimeout(int, Runnable)}
+     */
+    static class TimeoutHandle {
+        private final Object lock = new Object();
+        private ScheduledFuture<?> scheduledFuture;
+        private boolean finished;
+        private boolean timedOut;
+
+        /**
+         * Releases the timeout, after this call the onTimeout runnable is guaranteed not to run
+         * @return true if the timeout already fired
+         */
+        boolean finish() {
+            synchronized (lock) {
+                finished = true;
+                if (scheduledFuture != null)
+                    scheduledFuture.cancel(false);
+            }
+            return timedOut;
+        }
+
+        private void fire(Runnable onTimeout) {
+            synchronized (lock) {
+                if (finished)
+                    return;
+                timedOut = true;
+                onTimeout.run();
+            }
+        }
+    }
+
+    /**
+     * Max amount of HTTP requests running at the same time, other requests wait on the queue
+     */
+    static synchronized void setMaxConcurrentRequests(int maxRequests) {
+        if (maxRequests < 1)
+            throw new IllegalArgumentException("maxRequests must be greater than 0, was: " + maxRequests);
+
+        maxConcurrentRequests = maxRequests;
+        if (requestExecutor != null) {
+            // Order matters, core size can't be set over the current max size
+            if (maxRequests > requestExecutor.getMaximumPoolSize()) {
+                requestExecutor.setMaximumPoolSize(maxRequests);
+                requestExecutor.setCorePoolSize(maxRequests);
+            } else {
+                requestExecutor.setCorePoolSize(maxRequests);
+                requestExecutor.setMaximumPoolSize(maxRequests);
+            }
+        }
+    }
+
+    static synchronized void setKeepAliveMillis(long keepAlive) {
+        keepAliveMillis = keepAlive;
+        if (requestExecutor != null)
+            requestExecutor.setKeepAliveTime(keepAlive, TimeUnit.MILLISECONDS);
+        if (callbackExecutor != null)
+            callbackExecutor.setKeepAliveTime(keepAlive, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the request on the HTTP pool, request waits on the queue if {@link #maxConcurrentRequests} are running
+     */
+    static void executeRequest(@NonNull final Runnable request) {
+        final long enqueuedAt = System.currentTimeMillis();
+        Runnable trackedRequest = new Runnable() {
+            @Override
+            public void run() {
+                long startedAt = System.currentTimeMillis();
+                totalQueueWaitMillis.addAndGet(startedAt - enqueuedAt);
+                inFlightRequests.incrementAndGet();
+                try {
+                    request.run();
+                } finally {
+                    inFlightRequests.decrementAndGet();
+                    onRequestFinished(System.currentTimeMillis() - startedAt);
+                }
+            }
+        };
+
+        ThreadPoolExecutor executor = getRequestExecutor();
+        try {
+            executor.execute(trackedRequest);
+        } catch (RejectedExecutionException e) {
+            // Executor was shutdown, keep the previous behaviour of running the request on its own thread
+            OneSignal.Log(OneSignal.LOG_LEVEL.INFO, "OSHttpRequestExecutor: Executor is shutdown, running request on a new thread");
+            new Thread(trackedRequest, OS_HTTP_EXECUTOR + "FALLBACK").start();
+            return;
+        }
+        updateMaxQueueDepth(executor.getQueue().size());
+    }
+
+    /**
+     * Runs the ResponseHandler callback reusing an idle callback thread if any
+     */
+    static void dispatchCallback(@NonNull Runnable callback) {
+        try {
+            getCallbackExecutor().execute(callback);
+        } catch (RejectedExecutionException e) {
+            new Thread(callback, OS_HTTP_CALLBACK + "FALLBACK").start();
+        }
+    }
+
+    /**
+     * Schedules onTimeout to run after timeoutMillis unless {@link TimeoutHandle#finish()} is called before
+     */
+    static TimeoutHandle startTimeout(int timeoutMillis, @NonNull final Runnable onTimeout) {
+        final TimeoutHandle handle = new TimeoutHandle();
+        synchronized (handle.lock) {
+            handle.scheduledFuture = getTimeoutExecutor().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    handle.fire(onTimeout);
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return handle;
+    }
+
+    static void onRequestTimedOut() {
+        timedOutRequests.incrementAndGet();
+    }
+
+    static int getQueueDepth() {
+        ThreadPoolExecutor executor = requestExecutor;
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    static int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    static int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    static long getCompletedRequests() {
+        return completedRequests.get();
+    }
+
+    static long getTimedOutRequests() {
+        return timedOutRequests.get();
+    }
+
+    static long getAverageLatencyMillis() {
+        long completed = completedRequests.get();
+        return completed == 0 ? 0 : totalLatencyMillis.get() / completed;
+    }
+
+    static long getAverageQueueWaitMillis() {
+        long completed = completedRequests.get();
+        return completed == 0 ? 0 : totalQueueWaitMillis.get() / completed;
+    }
+
+    static synchronized void shutdownNow() {
+        if (requestExecutor != null)
+            requestExecutor.shutdownNow();
+        if (callbackExecutor != null)
+            callbackExecutor.shutdownNow();
+        if (timeoutExecutor != null)
+            timeoutExecutor.shutdownNow();
+
+        requestExecutor = null;
+        callbackExecutor = null;
+        timeoutExecutor = null;
+    }
+
+    private static void onRequestFinished(long latencyMillis) {
+        long completed = completedRequests.incrementAndGet();
+        totalLatencyMillis.addAndGet(latencyMillis);
+
+        OneSignal.Log(OneSignal.LOG_LEVEL.VERBOSE, "OSHttpRequestExecutor: Request finished in " + latencyMillis + "ms" +
+                ", queue depth: " + getQueueDepth() +
+                ", in flight: " + inFlightRequests.get() +
+                ", completed: " + completed +
+                ", average latency: " + getAverageLatencyMillis() + "ms" +
+                ", average queue wait: " + getAverageQueueWaitMillis() + "ms");
+    }
+
+    private static void updateMaxQueueDepth(int queueDepth) {
+        int currentMax;
+        do {
+            currentMax = maxQueueDepth.get();
+            if (queueDepth <= currentMax)
+                return;
+        } while (!maxQueueDepth.compareAndSet(currentMax, queueDepth));
+    }
+
+    private static synchronized ThreadPoolExecutor getRequestExecutor() {
+        if (requestExecutor == null) {
+            requestExecutor = new ThreadPoolExecutor(
+                    maxConcurrentRequests,
+                    maxConcurrentRequests,
+                    keepAliveMillis,
+                    TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new NamedThreadFactory(OS_HTTP_EXECUTOR)
+            );
+            requestExecutor.allowCoreThreadTimeOut(true);
+        }
+        return requestExecutor;
+    }
+
+    private static synchronized ExecutorService getCallbackExecutor() {
+        if (callbackExecutor == null) {
+            // Callbacks might block or start other requests, never queue them behind each other
+            callbackExecutor = new ThreadPoolExecutor(
+                    0,
+                    Integer.MAX_VALUE,
+                    keepAliveMillis,
+                    TimeUnit.MILLISECONDS,
+                    new SynchronousQueue<Runnable>(),
+                    new NamedThreadFactory(OS_HTTP_CALLBACK)
+            );
+        }
+        return callbackExecutor;
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor getTimeoutExecutor() {
+        if (timeoutExecutor == null) {
+            timeoutExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, OS_HTTP_TIMEOUT);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            timeoutExecutor.setKeepAliveTime(keepAliveMillis, TimeUnit.MILLISECONDS);
+            timeoutExecutor.allowCoreThreadTimeOut(true);
+        }
+        return timeoutExecutor;
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread newThread = new Thread(runnable);
+            newThread.setName(prefix + newThread.getId());
+            return newThread;
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package com.onesignal;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * File backed cache of GET responses that came with an ETag, used by {@link OneSignalRestClient}
+ * - Each response is one file, the ETag is the first line followed by the body
+ * - Only the index of files is kept in memory, it is loaded on first use and bodies are only read on a 304
+ * - Least recently used responses are deleted once the cache goes over {@link #maxBytes}
+ * - {@link OSInAppMessageContentCache} uses its own instance, with a content version in place of the ETag
+ *
+ * Responses used to be saved in SharedPreferences, those are moved here on first use,
+ *    see {@link #migrateFromPrefs()}
+ */
+class OSHttpResponseCache {
+
+    private static final String CACHE_DIR = "onesignal_http_cache";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final char HEADER_END = '\n';
+    private static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+
+    // Cache keys that were saved in SharedPreferences before this cache
+    private static final List<String> PREFS_CACHE_KEYS = Arrays.asList(
+            OneSignalRestClient.CACHE_KEY_GET_TAGS,
+            OneSignalRestClient.CACHE_KEY_REMOTE_PARAMS
+    );
+
+    private static OSHttpResponseCache instance;
+
+    /**
+     * @return null if OneSignal doesn't have a context yet
+     */
+    static synchronized @Nullable OSHttpResponseCache getInstance() {
+        if (instance == null) {
+            Context context = OneSignal.appContext;
+            if (context == null)
+                return null;
+            instance = new OSHttpResponseCache(new File(context.getCacheDir(), CACHE_DIR), DEFAULT_MAX_BYTES, true);
+        }
+        return instance;
+    }
+
+    private static class Entry {
+        final File file;
+        long size;
+        // Read from the file header on first use
+        @Nullable String eTag;
+
+        Entry(File file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+    }
+
+    private final File directory;
+    // Only the REST client cache takes over the responses saved in SharedPreferences
+    private final boolean migratesFromPrefs;
+    private long maxBytes;
+    private long totalBytes;
+    private boolean loaded;
+    // Keyed by file name, in access order so the first entry is the least recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    OSHttpResponseCache(@NonNull File directory, long maxBytes, boolean migratesFromPrefs) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.migratesFromPrefs = migratesFromPrefs;
+    }
+
+    synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        if (loaded)
+            trimToSize();
+    }
+
+    synchronized long getSizeBytes() {
+        ensureLoaded();
+        return totalBytes;
+    }
+
+    synchronized @Nullable String getETag(@NonNull String key) {
+        ensureLoaded();
+        Entry entry = entries.get(fileNameForKey(key));
+        if (entry == null)
+            return null;
+
+        if (entry.eTag == null) {
+            try {
+                InputStream inputStream = new BufferedInputStream(new FileInputStream(entry.file));
+                try {
+                    entry.eTag = readHeader(inputStream);
+                } finally {
+                    inputStream.close();
+                }
+            } catch (IOException e) {
+                // File was removed, ex: Android cleared the cache directory
+                OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSHttpResponseCache: Could not read cached response for key: " + key, e);
+                removeEntry(fileNameForKey(key));
+                return null;
+            }
+        }
+        return entry.eTag;
+    }
+
+    /**
+     * @return the cached body positioned after the ETag, the caller has to close it
+     */
+    synchronized @Nullable InputStream openBody(@NonNull String key) {
+        ensureLoaded();
+        String fileName = fileNameForKey(key);
+        Entry entry = entries.get(fileName);
+        if (entry == null)
+            return null;
+
+        try {
+            InputStream inputStream = new BufferedInputStream(new FileInputStream(entry.file));
+            String eTag = readHeader(inputStream);
+            if (entry.eTag == null)
+                entry.eTag = eTag;
+            // Keeps the LRU order across process restarts
+            entry.file.setLastModified(System.currentTimeMillis());
+            return inputStream;
+        } catch (IOException e) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSHttpResponseCache: Could not read cached response for key: " + key, e);
+            removeEntry(fileName);
+            return null;
+        }
+    }
+
+    @Nullable String getBody(@NonNull String key) {
+        InputStream inputStream = openBody(key);
+        if (inputStream == null)
+            return null;
+
+        try {
+            try {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8 * 1024];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1)
+                    body.write(buffer, 0, read);
+                return body.toString("UTF-8");
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSHttpResponseCache: Could not read cached response for key: " + key, e);
+            return null;
+        }
+    }
+
+    void put(@NonNull String key, @NonNull String eTag, @NonNull String body) {
+        Editor editor = edit(key, eTag);
+        if (editor == null)
+            return;
+
+        try {
+            editor.outputStream.write(body.getBytes("UTF-8"));
+            editor.commit();
+        } catch (IOException e) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSHttpResponseCache: Could not cache response for key: " + key, e);
+            editor.abort();
+        }
+    }
+
+    /**
+     * Starts writing a response to a temp file, it replaces the cached response once committed.
+     * Other requests keep using the previous response until then.
+     */
+    @Nullable Editor edit(@NonNull String key, @NonNull String eTag) {
+        synchronized (this) {
+            ensureLoaded();
+        }
+
+        try {
+            if (!directory.exists() && !directory.mkdirs())
+                throw new IOException("Could not create " + directory);
+
+            File tempFile = File.createTempFile(fileNameForKey(key), TEMP_FILE_SUFFIX, directory);
+            Editor editor = new Editor(key, eTag, tempFile);
+            editor.outputStream.write((eTag + HEADER_END).getBytes("UTF-8"));
+            return editor;
+        } catch (IOException e) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSHttpResponseCache: Could not create cache file for key: " + key, e);
+            return null;
+        }
+    }
+
+    synchronized void remove(@NonNull String key) {
+        ensureLoaded();
+        removeEntry(fileNameForKey(key));
+    }
+
+    class Editor {
+        private final String key;
+        private final String eTag;
+        private final File tempFile;
+        final OutputStream outputStream;
+        private boolean done;
+
+        private Editor(String key, String eTag, File tempFile) throws IOException {
+            this.key = key;
+            this.eTag = eTag;
+            this.tempFile = tempFile;
+            this.outputStream = new BufferedOutputStream(new FileOutputStream(tempFile));
+        }
+
+        /**
+         * Copies everything read from inputStream to the cache file
+         */
+        InputStream copyWhileReading(@NonNull InputStream inputStream) {
+            return new FilterInputStream(inputStream) {
+                @Override
+                public int read() throws IOException {
+                    int result = super.read();
+                    if (result != -1)
+                        outputStream.write(result);
+                    return result;
+                }
+
+                @Override
+                public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+                    int result = super.read(buffer, offset, length);
+                    if (result > 0)
+                        outputStream.write(buffer, offset, result);
+                    return result;
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    // Skipped bytes have to be in the cached copy too
+                    byte[] buffer = new byte[(int) Math.min(n, 8 * 1024)];
+                    int read = read(buffer, 0, buffer.length);
+                    return Math.max(read, 0);
+                }
+
+                @Override
+                public boolean markSupported() {
+                    return false;
+                }
+            };
+        }
+
+        void commit() throws IOException {
+            if (done)
+                return;
+            done = true;
+
+            try {
+                outputStream.close();
+            } catch (IOException e) {
+                deleteFile(tempFile);
+                throw e;
+            }
+            onEditorCommitted(this);
+        }
+
+        void abort() {
+            if (done)
+                return;
+            done = true;
+
+            try {
+                outputStream.close();
+            } catch (IOException e) {
+                // Temp file is deleted either way
+            }
+            deleteFile(tempFile);
+        }
+    }
+
+    private synchronized void onEditorCommitted(Editor editor) {
+        String fileName = fileNameForKey(editor.key);
+        long size = editor.tempFile.length();
+        removeEntry(fileName);
+
+        if (size > maxBytes) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSHttpResponseCache: Response for key: " + editor.key + " of " + size + " bytes is over the cache max size, not caching it");
+            deleteFile(editor.tempFile);
+            return;
+        }
+
+        File file = new File(directory, fileName);
+        if (!editor.tempFile.renameTo(file)) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSHttpResponseCache: Could not save response for key: " + editor.key);
+            deleteFile(editor.tempFile);
+            return;
+        }
+
+        Entry entry = new Entry(file, size);
+        entry.eTag = editor.eTag;
+        entries.put(fileName, entry);
+        totalBytes += size;
+        trimToSize();
+    }
+
+    private void ensureLoaded() {
+        if (loaded)
+            return;
+        loaded = true;
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            List<File> cacheFiles = new ArrayList<>();
+            for (File file : files) {
+                // Left over from a process that died while writing
+                if (file.getName().endsWith(TEMP_FILE_SUFFIX))
+                    deleteFile(file);
+                else
+                    cacheFiles.add(file);
+            }
+
+            Collections.sort(cacheFiles, new Comparator<File>() {
+                @Override
+                public int compare(File file1, File file2) {
+                    long lastModified1 = file1.lastModified();
+                    long lastModified2 = file2.lastModified();
+                    return lastModified1 < lastModified2 ? -1 : (lastModified1 == lastModified2 ? 0 : 1);
+                }
+            });
+
+            for (File file : cacheFiles) {
+                long size = file.length();
+                entries.put(file.getName(), new Entry(file, size));
+                totalBytes += size;
+            }
+        }
+
+        if (migratesFromPrefs)
+            migrateFromPrefs();
+        trimToSize();
+    }
+
+    /**
+     * Moves responses saved in SharedPreferences by older SDK versions and removes them from there
+     */
+    private void migrateFromPrefs() {
+        for (String key : PREFS_CACHE_KEYS) {
+            String eTagPrefKey = OneSignalPrefs.PREFS_OS_ETAG_PREFIX + key;
+            String bodyPrefKey = OneSignalPrefs.PREFS_OS_HTTP_CACHE_PREFIX + key;
+            String eTag = OneSignalPrefs.getString(OneSignalPrefs.PREFS_ONESIGNAL, eTagPrefKey, null);
+            String body = OneSignalPrefs.getString(OneSignalPrefs.PREFS_ONESIGNAL, bodyPrefKey, null);
+            if (eTag == null && body == null)
+                continue;
+
+            if (eTag != null && body != null && !entries.containsKey(fileNameForKey(key)))
+                put(key, eTag, body);
+
+            OneSignalPrefs.saveString(OneSignalPrefs.PREFS_ONESIGNAL, eTagPrefKey, null);
+            OneSignalPrefs.saveString(OneSignalPrefs.PREFS_ONESIGNAL, bodyPrefKey, null);
+        }
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            iterator.remove();
+            totalBytes -= entry.size;
+            deleteFile(entry.file);
+            OneSignal.Log(OneSignal.LOG_LEVEL.VERBOSE, "OSHttpResponseCache: Evicted " + entry.file.getName() + " of " + entry.size + " bytes, cache size: " + totalBytes);
+        }
+    }
+
+    private void removeEntry(String fileName) {
+        Entry entry = entries.remove(fileName);
+        if (entry == null)
+            return;
+
+        totalBytes -= entry.size;
+        deleteFile(entry.file);
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete())
+            OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSHttpResponseCache: Could not delete " + file);
+    }
+
+    private static String readHeader(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        int read;
+        while ((read = inputStream.read()) != HEADER_END) {
+            if (read == -1)
+                throw new IOException("Cache file ended before the end of its header");
+            header.write(read);
+        }
+        return header.toString("UTF-8");
+    }
+
+    // Keys can be urls so they are hashed to get a valid file name
+    private static String fileNameForKey(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+            StringBuilder fileName = new StringBuilder(digest.length * 2);
+            for (byte b : digest)
+                fileName.append(String.format("%02x", b));
+            return fileName.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+}
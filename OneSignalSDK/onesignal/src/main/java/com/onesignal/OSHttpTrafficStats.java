@@ -0,0 +1,102 @@
+package com.onesignal;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Byte counts per endpoint of requests made by {@link OneSignalRestClient}
+ * Ids in the url are replaced so all requests of the same endpoint share one entry, ex: players/{id}/on_session
+ */
+class OSHttpTrafficStats {
+
+    // UUIDs, numeric ids and long hex ids
+    private static final Pattern ID_SEGMENT = Pattern.compile("^([0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}|[0-9]+|[0-9a-fA-F]{16,})$");
+
+    static class EndpointStats {
+        final AtomicLong requests = new AtomicLong();
+        // Body bytes before compression
+        final AtomicLong bytesSent = new AtomicLong();
+        // Body bytes written to the network, after compression if any
+        final AtomicLong bytesSentOnWire = new AtomicLong();
+        // Body bytes after decompression
+        final AtomicLong bytesReceived = new AtomicLong();
+        // Body bytes read from the network, before decompression if any
+        final AtomicLong bytesReceivedOnWire = new AtomicLong();
+
+        @Override
+        public String toString() {
+            return "EndpointStats{" +
+                    "requests=" + requests +
+                    ", bytesSent=" + bytesSent +
+                    ", bytesSentOnWire=" + bytesSentOnWire +
+                    ", bytesReceived=" + bytesReceived +
+                    ", bytesReceivedOnWire=" + bytesReceivedOnWire +
+                    '}';
+        }
+    }
+
+    private static final ConcurrentHashMap<String, EndpointStats> statsByEndpoint = new ConcurrentHashMap<>();
+
+    static void onRequestSent(@NonNull String url, long bytes, long bytesOnWire) {
+        EndpointStats stats = getStats(url);
+        stats.requests.incrementAndGet();
+        stats.bytesSent.addAndGet(bytes);
+        stats.bytesSentOnWire.addAndGet(bytesOnWire);
+    }
+
+    static void onResponseReceived(@NonNull String url, long bytes, long bytesOnWire) {
+        EndpointStats stats = getStats(url);
+        stats.bytesReceived.addAndGet(bytes);
+        stats.bytesReceivedOnWire.addAndGet(bytesOnWire);
+    }
+
+    /**
+     * Logged after each request next to the {@link OSHttpRequestExecutor} request metrics
+     */
+    static void logStats(@NonNull String url) {
+        String endpoint = endpointForUrl(url);
+        EndpointStats stats = statsByEndpoint.get(endpoint);
+        if (stats != null)
+            OneSignal.Log(OneSignal.LOG_LEVEL.VERBOSE, "OSHttpTrafficStats: " + endpoint + " " + stats);
+    }
+
+    static Map<String, EndpointStats> getStatsByEndpoint() {
+        return new HashMap<String, EndpointStats>(statsByEndpoint);
+    }
+
+    static void reset() {
+        statsByEndpoint.clear();
+    }
+
+    static String endpointForUrl(@NonNull String url) {
+        int queryStart = url.indexOf('?');
+        if (queryStart >= 0)
+            url = url.substring(0, queryStart);
+
+        String[] segments = url.split("/");
+        StringBuilder endpoint = new StringBuilder();
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0)
+                endpoint.append('/');
+            endpoint.append(ID_SEGMENT.matcher(segments[i]).matches() ? "{id}" : segments[i]);
+        }
+        return endpoint.toString();
+    }
+
+    private static EndpointStats getStats(String url) {
+        String endpoint = endpointForUrl(url);
+        EndpointStats stats = statsByEndpoint.get(endpoint);
+        if (stats == null) {
+            EndpointStats newStats = new EndpointStats();
+            stats = statsByEndpoint.putIfAbsent(endpoint, newStats);
+            if (stats == null)
+                stats = newStats;
+        }
+        return stats;
+    }
+}
@@ -1,11 +1,15 @@
 package com.onesignal;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
+
 import androidx.annotation.NonNull;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -92,6 +96,60 @@ class OSInAppMessage {
             this.redisplayStats = new OSInAppMessageRedisplayStats(json.getJSONObject(IAM_REDISPLAY_STATS));
     }
 
+    /**
+     * Reads the message object from the reader, a JSONException for an invalid value is only thrown
+     * after the whole object is read so the reader can keep going
+     */
+    OSInAppMessage(JsonReader reader) throws IOException, JSONException {
+        this.clickedClickIds = new HashSet<>();
+        JSONException invalidValue = null;
+
+        JSONUtils.expectNext(reader, JsonToken.BEGIN_OBJECT, "In app message");
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case IAM_ID:
+                    this.messageId = JSONUtils.nextStringOrNull(reader);
+                    break;
+                case IAM_VARIANTS:
+                    try {
+                        this.variants = parseVariants(reader);
+                    } catch (JSONException e) {
+                        invalidValue = e;
+                    }
+                    break;
+                case IAM_TRIGGERS:
+                    try {
+                        this.triggers = parseTriggers(reader);
+                    } catch (JSONException e) {
+                        invalidValue = e;
+                    }
+                    break;
+                case END_TIME:
+                    this.endTime = parseEndTime(JSONUtils.nextStringOrNull(reader));
+                    break;
+                case HAS_LIQUID:
+                    this.hasLiquid = JSONUtils.optBoolean(JSONUtils.nextValue(reader), false);
+                    break;
+                case IAM_REDISPLAY_STATS:
+                    try {
+                        this.redisplayStats = new OSInAppMessageRedisplayStats(reader);
+                    } catch (JSONException e) {
+                        invalidValue = e;
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (invalidValue != null)
+            throw invalidValue;
+        if (this.variants == null || this.triggers == null)
+            throw new JSONException("In app message " + messageId + " is missing " + IAM_VARIANTS + " or " + IAM_TRIGGERS);
+    }
+
     private Date parseEndTimeJson(JSONObject json) {
         String endTimeString;
         try {
@@ -100,7 +158,11 @@ class OSInAppMessage {
             return null;
         }
 
-        if (endTimeString.equals("null"))
+        return parseEndTime(endTimeString);
+    }
+
+    private Date parseEndTime(String endTimeString) {
+        if (endTimeString == null || endTimeString.equals("null"))
             return null;
 
         try {
@@ -134,6 +196,80 @@ class OSInAppMessage {
         return variantTypes;
     }
 
+    private HashMap<String, HashMap<String, String>> parseVariants(JsonReader reader) throws IOException, JSONException {
+        HashMap<String, HashMap<String, String>> variantTypes = new HashMap<>();
+        JSONException invalidVariant = null;
+
+        JSONUtils.expectNext(reader, JsonToken.BEGIN_OBJECT, IAM_VARIANTS);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String variantType = reader.nextName();
+            try {
+                variantTypes.put(variantType, parseVariant(reader, variantType));
+            } catch (JSONException e) {
+                invalidVariant = e;
+            }
+        }
+        reader.endObject();
+
+        if (invalidVariant != null)
+            throw invalidVariant;
+        return variantTypes;
+    }
+
+    private HashMap<String, String> parseVariant(JsonReader reader, String variantType) throws IOException, JSONException {
+        HashMap<String, String> variantMap = new HashMap<>();
+        String invalidLanguageType = null;
+
+        JSONUtils.expectNext(reader, JsonToken.BEGIN_OBJECT, variantType);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String languageType = reader.nextName();
+            String variantId = JSONUtils.nextStringOrNull(reader);
+            if (variantId == null)
+                invalidLanguageType = languageType;
+            else
+                variantMap.put(languageType, variantId);
+        }
+        reader.endObject();
+
+        if (invalidLanguageType != null)
+            throw new JSONException("Variant " + variantType + " has no id for " + invalidLanguageType);
+        return variantMap;
+    }
+
+    private ArrayList<ArrayList<OSTrigger>> parseTriggers(JsonReader reader) throws IOException, JSONException {
+        ArrayList<ArrayList<OSTrigger>> parsedTriggers = new ArrayList<>();
+        JSONException invalidTrigger = null;
+
+        JSONUtils.expectNext(reader, JsonToken.BEGIN_ARRAY, IAM_TRIGGERS);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            ArrayList<OSTrigger> converted = new ArrayList<>();
+            try {
+                JSONUtils.expectNext(reader, JsonToken.BEGIN_ARRAY, IAM_TRIGGERS);
+            } catch (JSONException e) {
+                invalidTrigger = e;
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                try {
+                    converted.add(new OSTrigger(reader));
+                } catch (JSONException e) {
+                    invalidTrigger = e;
+                }
+            }
+            reader.endArray();
+            parsedTriggers.add(converted);
+        }
+        reader.endArray();
+
+        if (invalidTrigger != null)
+            throw invalidTrigger;
+        return parsedTriggers;
+    }
+
     protected ArrayList<ArrayList<OSTrigger>> parseTriggerJson(JSONArray triggersJson) throws JSONException {
         // initialize triggers
         ArrayList<ArrayList<OSTrigger>> parsedTriggers = new ArrayList<>();
@@ -209,6 +345,17 @@ class OSInAppMessage {
         return actionTaken = true;
     }
 
+    /**
+     * Same as {@link #toJSONObject()} but redisplay stats are only kept if they came from the server,
+     * so the message is read back the same way from the cache on the next cold start
+     */
+    JSONObject toCacheJSONObject() {
+        JSONObject json = toJSONObject();
+        if (!redisplayStats.isRedisplayEnabled())
+            json.remove(IAM_REDISPLAY_STATS);
+        return json;
+    }
+
     double getDisplayDuration() {
         return displayDuration;
     }
@@ -0,0 +1,108 @@
+package com.onesignal;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+
+/**
+ * Disk cache of in-app message html responses, so a message can be displayed without waiting on the network
+ * - Keyed by message, variant and language, the same message in another language is its own entry
+ * - Entries are saved with {@link #CONTENT_VERSION}, entries saved with another version are dropped on read
+ * - The ETag of the response is saved with it so a refresh can be a conditional GET, see {@link #getETag(String)}
+ * - Least recently used entries are deleted once the cache goes over its max size, see {@link OSHttpResponseCache}
+ *
+ * Cached content is displayed right away and refreshed in the background by {@link OSInAppMessageController}
+ */
+class OSInAppMessageContentCache {
+
+    private static final String CACHE_DIR = "onesignal_iam_content";
+    private static final long DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+    // Change when the cached response format changes
+    static final String CONTENT_VERSION = "1";
+    // Saved in the response cache ETag slot as [CONTENT_VERSION]:[response ETag]
+    private static final char HEADER_SEPARATOR = ':';
+
+    private static OSInAppMessageContentCache instance;
+
+    /**
+     * @return null if OneSignal doesn't have a context yet
+     */
+    static synchronized @Nullable OSInAppMessageContentCache getInstance() {
+        if (instance == null) {
+            Context context = OneSignal.appContext;
+            if (context == null)
+                return null;
+            instance = new OSInAppMessageContentCache(new OSHttpResponseCache(new File(context.getCacheDir(), CACHE_DIR), DEFAULT_MAX_BYTES, false));
+        }
+        return instance;
+    }
+
+    static @NonNull String keyFor(@NonNull String messageId, @NonNull String variantId, @Nullable String language) {
+        return messageId + "/" + variantId + "/" + language;
+    }
+
+    private final OSHttpResponseCache cache;
+
+    OSInAppMessageContentCache(@NonNull OSHttpResponseCache cache) {
+        this.cache = cache;
+    }
+
+    boolean contains(@NonNull String key) {
+        return CONTENT_VERSION.equals(versionOf(cache.getETag(key)));
+    }
+
+    /**
+     * @return the html response saved for the key, null if missing or saved by another version
+     */
+    @Nullable String get(@NonNull String key) {
+        String version = versionOf(cache.getETag(key));
+        if (version == null)
+            return null;
+
+        if (!CONTENT_VERSION.equals(version)) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSInAppMessageContentCache: Removing content of version " + version + " for key: " + key);
+            cache.remove(key);
+            return null;
+        }
+        return cache.getBody(key);
+    }
+
+    /**
+     * @return ETag of the response saved for the key, null if it had none or it was saved by another version
+     */
+    @Nullable String getETag(@NonNull String key) {
+        String header = cache.getETag(key);
+        if (!CONTENT_VERSION.equals(versionOf(header)))
+            return null;
+
+        int separator = header.indexOf(HEADER_SEPARATOR);
+        return separator == -1 ? null : header.substring(separator + 1);
+    }
+
+    void put(@NonNull String key, @NonNull String response, @Nullable String eTag) {
+        cache.put(key, eTag == null ? CONTENT_VERSION : CONTENT_VERSION + HEADER_SEPARATOR + eTag, response);
+    }
+
+    private static @Nullable String versionOf(@Nullable String header) {
+        if (header == null)
+            return null;
+
+        int separator = header.indexOf(HEADER_SEPARATOR);
+        return separator == -1 ? header : header.substring(0, separator);
+    }
+
+    void remove(@NonNull String key) {
+        cache.remove(key);
+    }
+
+    void setMaxBytes(long maxBytes) {
+        cache.setMaxBytes(maxBytes);
+    }
+
+    long getSizeBytes() {
+        return cache.getSizeBytes();
+    }
+}
@@ -2,6 +2,8 @@ package com.onesignal;
 
 import android.app.AlertDialog;
 import android.content.DialogInterface;
+import android.util.JsonReader;
+import android.util.JsonToken;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -14,6 +16,8 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
@@ -27,6 +31,10 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
 
     private static final Object LOCK = new Object();
     private final static String OS_IAM_DB_ACCESS = "OS_IAM_DB_ACCESS";
+    private final static String OS_IAM_PREFETCH = "OS_IAM_PREFETCH";
+    private final static String OS_IAM_CONTENT_CACHE = "OS_IAM_CONTENT_CACHE";
+    // Max messages to download the content of ahead of display each time messages are received
+    private static final int MAX_PREFETCHED_MESSAGES = 3;
     public static final String IN_APP_MESSAGES_JSON_KEY = "in_app_messages";
     private static final String LIQUID_TAG_SCRIPT = "\n\n" +
             "<script>\n" +
@@ -51,6 +59,9 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
     //   If on_session won't be called this will be loaded from cache
     @NonNull
     private ArrayList<OSInAppMessage> messages;
+    // Trigger keys used by each of the messages, replaced together with messages
+    @NonNull
+    private OSInAppMessageTriggerIndex messagesTriggerIndex;
     // IAMs that have been dismissed by the user
     //   This mean they have already displayed to the user
     @NonNull
@@ -89,9 +100,24 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
     Date lastTimeInAppDismissed = null;
     private int htmlNetworkRequestAttemptCount = 0;
 
+    /**
+     * Notified each time a message is shown, with the time it took from starting to display it
+     */
+    interface DisplayTimingListener {
+        void onMessageDisplayed(@NonNull String messageId, long timeToDisplayMillis, boolean contentFromCache);
+    }
+
+    @Nullable
+    private DisplayTimingListener displayTimingListener;
+    // Elapsed realtime when displayMessage started, 0 when no message is being displayed
+    private volatile long displayStartTime = 0;
+    // Set on the content cache thread, read when the message is shown
+    private volatile boolean displayContentFromCache = false;
+
     protected OSInAppMessageController(OneSignalDbHelper dbHelper, OSTaskController controller, OSLogger logger, LanguageContext languageContext) {
         taskController = controller;
         messages = new ArrayList<>();
+        messagesTriggerIndex = new OSInAppMessageTriggerIndex(messages);
         dismissedMessages = OSUtils.newConcurrentSet();
         messageDisplayQueue = new ArrayList<>();
         impressionedMessages = OSUtils.newConcurrentSet();
@@ -208,49 +234,82 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
                 if (!messages.isEmpty())
                     return;
 
-                processInAppMessageJson(new JSONArray(cachedInAppMessageString));
-            } catch (JSONException e) {
+                JsonReader reader = new JsonReader(new StringReader(cachedInAppMessageString));
+                try {
+                    processInAppMessages(parseInAppMessages(reader));
+                } finally {
+                    reader.close();
+                }
+            } catch (IOException | IllegalStateException | JSONException e) {
                 e.printStackTrace();
             }
         }
     }
 
+    /**
+     * Reads the in app message array decoding each message as it is streamed,
+     * the response is never held as a String or JSONArray.
+     * Like the JSONArray parsing an invalid message fails the whole list, the JSONException is thrown
+     * after the array is read so the rest of the response can still be read.
+     */
+    static @NonNull List<OSInAppMessage> parseInAppMessages(@NonNull JsonReader reader) throws IOException, JSONException {
+        ArrayList<OSInAppMessage> messages = new ArrayList<>();
+        JSONException invalidMessage = null;
+
+        JSONUtils.expectNext(reader, JsonToken.BEGIN_ARRAY, "In app messages");
+        reader.beginArray();
+        while (reader.hasNext()) {
+            try {
+                messages.add(new OSInAppMessage(reader));
+            } catch (JSONException e) {
+                invalidMessage = e;
+            }
+        }
+        reader.endArray();
+
+        if (invalidMessage != null)
+            throw invalidMessage;
+        return messages;
+    }
+
     /**
      * Called after the device is registered from UserStateSynchronizer
      * which is the REST call to create the player record on_session
      */
-    void receivedInAppMessageJson(@NonNull final JSONArray json) throws JSONException {
+    void receivedInAppMessages(@NonNull final List<OSInAppMessage> newMessages) {
         // Cache copy for quick cold starts
         OneSignalPrefs.saveString(
                 OneSignalPrefs.PREFS_ONESIGNAL,
                 OneSignalPrefs.PREFS_OS_CACHED_IAMS,
-                json.toString());
+                inAppMessagesToCacheJson(newMessages).toString());
 
         executeRedisplayIAMDataDependantTask(new Runnable() {
             @Override
             public void run() {
                 resetRedisplayMessagesBySession();
-                try {
-                    processInAppMessageJson(json);
-                } catch (JSONException e) {
-                    OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "ERROR processing InAppMessageJson JSON Response.", e);
-                }
+                processInAppMessages(newMessages);
             }
         });
     }
 
+    private static JSONArray inAppMessagesToCacheJson(@NonNull List<OSInAppMessage> messages) {
+        JSONArray json = new JSONArray();
+        for (OSInAppMessage message : messages) {
+            json.put(message.toCacheJSONObject());
+        }
+        return json;
+    }
+
     private void resetRedisplayMessagesBySession() {
         for (OSInAppMessage redisplayInAppMessage : redisplayedInAppMessages) {
             redisplayInAppMessage.setDisplayedInSession(false);
         }
     }
 
-    private void processInAppMessageJson(@NonNull JSONArray json) throws JSONException {
+    private void processInAppMessages(@NonNull List<OSInAppMessage> parsedMessages) {
         synchronized (LOCK) {
             ArrayList<OSInAppMessage> newMessages = new ArrayList<>();
-            for (int i = 0; i < json.length(); i++) {
-                JSONObject messageJson = json.getJSONObject(i);
-                OSInAppMessage message = new OSInAppMessage(messageJson);
+            for (OSInAppMessage message : parsedMessages) {
                 // Avoid null checks later if IAM already comes with null id
                 if (message.messageId != null) {
                     newMessages.add(message);
@@ -258,12 +317,113 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
             }
 
             messages = newMessages;
+            messagesTriggerIndex = new OSInAppMessageTriggerIndex(newMessages);
         }
 
         evaluateInAppMessages();
+
+        if (!parsedMessages.isEmpty())
+            OSWebViewPool.prewarm();
+
+        Runnable prefetchRunnable = new BackgroundRunnable() {
+            @Override
+            public void run() {
+                super.run();
+                prefetchMessagesContent();
+            }
+        };
+        runRunnableOnThread(prefetchRunnable, OS_IAM_PREFETCH);
+    }
+
+    /**
+     * Downloads the content of messages likely to display soon so their first display doesn't wait on the network.
+     * Only done on unmetered networks since these messages might never display.
+     */
+    private void prefetchMessagesContent() {
+        OSInAppMessageContentCache contentCache = OSInAppMessageContentCache.getInstance();
+        if (contentCache == null)
+            return;
+
+        Integer netType = new OSUtils().getNetType();
+        if (netType == null || netType != 0) {
+            logger.verbose("Not on an unmetered network, skipping in-app message content prefetch");
+            return;
+        }
+
+        int prefetchCount = 0;
+        for (OSInAppMessage message : messages) {
+            if (prefetchCount >= MAX_PREFETCHED_MESSAGES)
+                break;
+            if (!isMessageLikelyToDisplay(message))
+                continue;
+
+            String contentCacheKey = contentCacheKeyForMessage(message);
+            if (contentCacheKey == null || contentCache.contains(contentCacheKey))
+                continue;
+
+            prefetchCount++;
+            logger.debug("Prefetching content of in-app message: " + message.messageId);
+            fetchContentForCache(message, contentCache, contentCacheKey);
+        }
+    }
+
+    /**
+     * Messages waiting in the display queue, or only using time based triggers which display without
+     * the app doing anything
+     */
+    private boolean isMessageLikelyToDisplay(@NonNull OSInAppMessage message) {
+        if (dismissedMessages.contains(message.messageId) || message.isFinished())
+            return false;
+
+        synchronized (messageDisplayQueue) {
+            int queueIndex = messageDisplayQueue.indexOf(message);
+            // The first message of the queue is already being displayed
+            if (queueIndex != -1)
+                return queueIndex > 0;
+        }
+
+        return triggerController.messageHasOnlyDynamicTriggers(message);
+    }
+
+    /**
+     * Refreshes the cached content, a conditional GET with the ETag of the cached copy if there is one.
+     * Must be called off the main thread, reading the ETag is disk IO.
+     */
+    private void fetchContentForCache(@NonNull final OSInAppMessage message, @NonNull final OSInAppMessageContentCache contentCache, @NonNull final String contentCacheKey) {
+        // Kept in contentCache, so not also in the url keyed response cache
+        OneSignalRestClient.getWithETag(htmlPathForMessage(message), contentCache.getETag(contentCacheKey), new OneSignalRestClient.ETagResponseHandler() {
+            @Override
+            void onFailure(int statusCode, String response, Throwable throwable) {
+                printHttpErrorForInAppMessageRequest("html", statusCode, response);
+            }
+
+            @Override
+            void onSuccess(String response, @Nullable String eTag) {
+                try {
+                    // Only cache responses that can be displayed
+                    new JSONObject(response).getString("html");
+                } catch (JSONException e) {
+                    logger.debug("Not caching in-app message content without html for message: " + message.messageId);
+                    return;
+                }
+                contentCache.put(contentCacheKey, response, eTag);
+            }
+
+            @Override
+            void onNotModified() {
+                logger.debug("Cached content of in-app message is current: " + message.messageId);
+            }
+        });
     }
 
     private void evaluateInAppMessages() {
+        evaluateInAppMessages(null);
+    }
+
+    /**
+     * @param changedTriggerKeys only messages using these trigger keys are evaluated, all messages if null
+     */
+    private void evaluateInAppMessages(@Nullable final Collection<String> changedTriggerKeys) {
         OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "Starting evaluateInAppMessages");
 
         if (shouldRunTaskThroughQueue()) {
@@ -271,13 +431,16 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
                 @Override
                 public void run() {
                     OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "Delaying evaluateInAppMessages due to redisplay data not retrieved yet");
-                    evaluateInAppMessages();
+                    evaluateInAppMessages(changedTriggerKeys);
                 }
             });
             return;
         }
 
-        for (OSInAppMessage message : messages) {
+        List<OSInAppMessage> messagesToEvaluate = changedTriggerKeys == null ?
+                messages : messagesTriggerIndex.getMessagesToEvaluate(changedTriggerKeys);
+
+        for (OSInAppMessage message : messagesToEvaluate) {
             // Make trigger evaluation first, dynamic trigger might change "trigger changed" flag value for redisplay messages
             if (triggerController.evaluateMessageTriggers(message)) {
                 setDataForRedisplay(message);
@@ -317,6 +480,14 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
         if (message.isPreview)
             return;
 
+        if (displayStartTime > 0) {
+            long timeToDisplay = OneSignal.getTime().getElapsedRealtime() - displayStartTime;
+            displayStartTime = 0;
+            logger.debug("In-app message " + message.messageId + " displayed in " + timeToDisplay + "ms, content from cache: " + displayContentFromCache);
+            if (displayTimingListener != null)
+                displayTimingListener.onMessageDisplayed(message.messageId, timeToDisplay, displayContentFromCache);
+        }
+
         // Check that the messageId is in impressionedMessages so we return early without a second post being made
         if (impressionedMessages.contains(message.messageId))
             return;
@@ -329,7 +500,7 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
             return;
 
         try {
-            JSONObject json = new JSONObject() {{
+            final JSONObject json = new JSONObject() {{
                 put("app_id", OneSignal.appId);
                 put("player_id", OneSignal.getUserId());
                 put("variant_id", variantId);
@@ -337,7 +508,8 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
                 put("first_impression", true);
             }};
 
-            OneSignalRestClient.post("in_app_messages/" + message.messageId + "/impression", json, new ResponseHandler() {
+            final String impressionUrl = "in_app_messages/" + message.messageId + "/impression";
+            OneSignalRestClient.post(impressionUrl, json, new ResponseHandler() {
                 @Override
                 void onSuccess(String response) {
                     printHttpSuccessForInAppMessageRequest("impression", response);
@@ -351,6 +523,11 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
                 @Override
                 void onFailure(int statusCode, String response, Throwable throwable) {
                     printHttpErrorForInAppMessageRequest("impression", statusCode, response);
+                    // Network or server error, the queue sends the impression later so keep it as impressioned
+                    if (OSOutboundRequestQueue.getInstance().enqueueIfRetryable(statusCode, "iam_impression_" + message.messageId, OSOutboundRequestQueue.METHOD_POST, impressionUrl, json)) {
+                        OneSignalPrefs.saveStringSet(OneSignalPrefs.PREFS_ONESIGNAL, OneSignalPrefs.PREFS_OS_IMPRESSIONED_IAMS, impressionedMessages);
+                        return;
+                    }
                     // Post failed, impressionedMessage should be removed and this way another post can be attempted
                     impressionedMessages.remove(message.messageId);
                 }
@@ -523,7 +700,7 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
         viewedPageIds.add(messagePrefixedPageId);
 
         try {
-            JSONObject json = new JSONObject() {{
+            final JSONObject json = new JSONObject() {{
                 put("app_id", OneSignal.appId);
                 put("player_id", OneSignal.getUserId());
                 put("variant_id", variantId);
@@ -531,7 +708,8 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
                 put("page_id", pageId);
             }};
 
-            OneSignalRestClient.post("in_app_messages/" + message.messageId + "/pageImpression", json, new ResponseHandler() {
+            final String pageImpressionUrl = "in_app_messages/" + message.messageId + "/pageImpression";
+            OneSignalRestClient.post(pageImpressionUrl, json, new ResponseHandler() {
                 @Override
                 void onSuccess(String response) {
                     printHttpSuccessForInAppMessageRequest("page impression", response);
@@ -541,6 +719,10 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
                 @Override
                 void onFailure(int statusCode, String response, Throwable throwable) {
                     printHttpErrorForInAppMessageRequest("page impression", statusCode, response);
+                    if (OSOutboundRequestQueue.getInstance().enqueueIfRetryable(statusCode, "iam_page_impression_" + messagePrefixedPageId, OSOutboundRequestQueue.METHOD_POST, pageImpressionUrl, json)) {
+                        saveViewedPageIdsToPrefs();
+                        return;
+                    }
                     // Post failed, viewed page should be removed and this way another post can be attempted
                     viewedPageIds.remove(messagePrefixedPageId);
                 }
@@ -569,7 +751,7 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
         message.addClickId(clickId);
 
         try {
-            JSONObject json = new JSONObject() {{
+            final JSONObject json = new JSONObject() {{
                 put("app_id", OneSignal.getSavedAppId());
                 put("device_type", new OSUtils().getDeviceType());
                 put("player_id", OneSignal.getUserId());
@@ -579,7 +761,8 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
                     put("first_click", true);
             }};
 
-            OneSignalRestClient.post("in_app_messages/" + message.messageId + "/click", json, new ResponseHandler() {
+            final String clickUrl = "in_app_messages/" + message.messageId + "/click";
+            OneSignalRestClient.post(clickUrl, json, new ResponseHandler() {
                 @Override
                 void onSuccess(String response) {
                     printHttpSuccessForInAppMessageRequest("engagement", response);
@@ -594,6 +777,10 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
                 @Override
                 void onFailure(int statusCode, String response, Throwable throwable) {
                     printHttpErrorForInAppMessageRequest("engagement", statusCode, response);
+                    if (OSOutboundRequestQueue.getInstance().enqueueIfRetryable(statusCode, "iam_click_" + message.messageId + "_" + clickId, OSOutboundRequestQueue.METHOD_POST, clickUrl, json)) {
+                        OneSignalPrefs.saveStringSet(OneSignalPrefs.PREFS_ONESIGNAL, OneSignalPrefs.PREFS_OS_CLICKED_CLICK_IDS_IAMS, clickedClickIds);
+                        return;
+                    }
                     clickedClickIds.remove(action.getClickId());
                 }
             });
@@ -813,6 +1000,14 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
         return "in_app_messages/" + message.messageId + "/variants/" + variantId + "/html?app_id=" + OneSignal.appId;
     }
 
+    private @Nullable String contentCacheKeyForMessage(@NonNull OSInAppMessage message) {
+        String variantId = variantIdForMessage(message);
+        if (variantId == null)
+            return null;
+
+        return OSInAppMessageContentCache.keyFor(message.messageId, variantId, languageContext.getLanguage());
+    }
+
     private void getTagsForLiquidTemplating(@NonNull final OSInAppMessage message, final boolean isPreview) {
         waitForTags = false;
         if (isPreview || message.getHasLiquid()) {
@@ -843,11 +1038,42 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
         }
 
         inAppMessageShowing = true;
+        displayStartTime = OneSignal.getTime().getElapsedRealtime();
 
         getTagsForLiquidTemplating(message, false);
 
-        String htmlPath = htmlPathForMessage(message);
-        OneSignalRestClient.get(htmlPath, new ResponseHandler() {
+        final String contentCacheKey = contentCacheKeyForMessage(message);
+        final OSInAppMessageContentCache contentCache = OSInAppMessageContentCache.getInstance();
+        if (contentCache == null || contentCacheKey == null) {
+            displayContentFromCache = false;
+            fetchContentForDisplay(message, contentCache, contentCacheKey);
+            return;
+        }
+
+        // Reading the cached content is disk IO and messages can be displayed from the main thread
+        Runnable displayFromCacheRunnable = new BackgroundRunnable() {
+            @Override
+            public void run() {
+                super.run();
+                String cachedContent = contentCache.get(contentCacheKey);
+                if (cachedContent != null) {
+                    displayContentFromCache = true;
+                    // Refresh the content for the next display, started first so it isn't delayed by the display
+                    fetchContentForCache(message, contentCache, contentCacheKey);
+                    if (showMessageContent(message, cachedContent))
+                        return;
+
+                    contentCache.remove(contentCacheKey);
+                }
+                displayContentFromCache = false;
+                fetchContentForDisplay(message, contentCache, contentCacheKey);
+            }
+        };
+        runRunnableOnThread(displayFromCacheRunnable, OS_IAM_CONTENT_CACHE);
+    }
+
+    private void fetchContentForDisplay(@NonNull final OSInAppMessage message, @Nullable final OSInAppMessageContentCache contentCache, @Nullable final String contentCacheKey) {
+        OneSignalRestClient.ETagResponseHandler responseHandler = new OneSignalRestClient.ETagResponseHandler() {
             @Override
             void onFailure(int statusCode, String response, Throwable throwable) {
                 inAppMessageShowing = false;
@@ -870,27 +1096,49 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
             }
 
             @Override
-            void onSuccess(String response) {
+            void onSuccess(String response, @Nullable String eTag) {
                 // Successful request, reset count
                 htmlNetworkRequestAttemptCount = 0;
 
-                try {
-                    JSONObject jsonResponse = new JSONObject(response);
-                    String htmlStr = jsonResponse.getString("html");
+                if (showMessageContent(message, response) && contentCache != null && contentCacheKey != null)
+                    contentCache.put(contentCacheKey, response, eTag);
+            }
 
-                    double displayDuration = jsonResponse.optDouble("display_duration");
-                    message.setDisplayDuration(displayDuration);
-                    if (waitForTags) {
-                        pendingHTMLContent = htmlStr;
-                        return;
-                    }
-                    OneSignal.getSessionManager().onInAppMessageReceived(message.messageId);
-                    WebViewManager.showHTMLString(message, taggedHTMLString(htmlStr));
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
+            @Override
+            void onNotModified() {
+                // Not called, the request is sent without an ETag
             }
-        }, null);
+        };
+
+        // Kept in contentCache with its ETag, so not also in the url keyed response cache
+        if (contentCache != null && contentCacheKey != null)
+            OneSignalRestClient.getWithETag(htmlPathForMessage(message), null, responseHandler);
+        else
+            OneSignalRestClient.get(htmlPathForMessage(message), responseHandler, null);
+    }
+
+    /**
+     * Shows the html from an html request response, or waits for tags if the message uses them
+     * @return false if the response has no html
+     */
+    private boolean showMessageContent(@NonNull OSInAppMessage message, @NonNull String response) {
+        try {
+            JSONObject jsonResponse = new JSONObject(response);
+            String htmlStr = jsonResponse.getString("html");
+
+            double displayDuration = jsonResponse.optDouble("display_duration");
+            message.setDisplayDuration(displayDuration);
+            if (waitForTags) {
+                pendingHTMLContent = htmlStr;
+                return true;
+            }
+            OneSignal.getSessionManager().onInAppMessageReceived(message.messageId);
+            WebViewManager.showHTMLString(message, taggedHTMLString(htmlStr));
+            return true;
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return false;
+        }
     }
 
     @NonNull
@@ -1006,9 +1254,8 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
      * - At least one Trigger has changed
      */
     private void makeRedisplayMessagesAvailableWithTriggers(Collection<String> newTriggersKeys) {
-        for (OSInAppMessage message : messages) {
-            if (!message.isTriggerChanged() && redisplayedInAppMessages.contains(message) &&
-                    triggerController.isTriggerOnMessage(message, newTriggersKeys)) {
+        for (OSInAppMessage message : messagesTriggerIndex.getMessagesWithTriggerKeys(newTriggersKeys)) {
+            if (!message.isTriggerChanged() && redisplayedInAppMessages.contains(message)) {
                 logger.debug("Trigger changed for message: " + message.toString());
                 message.setTriggerChanged(true);
             }
@@ -1017,7 +1264,7 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
 
     private void checkRedisplayMessagesAndEvaluate(Collection<String> newTriggersKeys) {
         makeRedisplayMessagesAvailableWithTriggers(newTriggersKeys);
-        evaluateInAppMessages();
+        evaluateInAppMessages(newTriggersKeys);
     }
 
     /**
@@ -1063,6 +1310,10 @@ class OSInAppMessageController extends OSBackgroundManager implements OSDynamicT
         return new HashMap<>(triggerController.getTriggers());
     }
 
+    void setDisplayTimingListener(@Nullable DisplayTimingListener listener) {
+        displayTimingListener = listener;
+    }
+
     boolean inAppMessagingEnabled() {
         return inAppMessagingEnabled;
     }
@@ -5,11 +5,10 @@ import androidx.annotation.Nullable;
 
 import com.onesignal.language.LanguageContext;
 
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 class OSInAppMessageDummyController extends OSInAppMessageController {
@@ -31,7 +30,7 @@ class OSInAppMessageDummyController extends OSInAppMessageController {
     void initWithCachedInAppMessages() { }
 
     @Override
-    void receivedInAppMessageJson(@NonNull JSONArray json) throws JSONException { }
+    void receivedInAppMessages(@NonNull List<OSInAppMessage> newMessages) { }
 
     @Override
     void onMessageActionOccurredOnMessage(@NonNull OSInAppMessage message, @NonNull JSONObject actionJson) { }
@@ -1,8 +1,13 @@
 package com.onesignal;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 class OSInAppMessageRedisplayStats {
 
     private static final String DISPLAY_LIMIT = "limit";
@@ -29,9 +34,37 @@ class OSInAppMessageRedisplayStats {
 
     OSInAppMessageRedisplayStats(JSONObject json) throws JSONException {
         this.redisplayEnabled = true;
-        Object displayLimit = json.get(DISPLAY_LIMIT);
-        Object displayDelay = json.get(DISPLAY_DELAY);
+        setLimitAndDelay(json.get(DISPLAY_LIMIT), json.get(DISPLAY_DELAY));
+    }
+
+    OSInAppMessageRedisplayStats(JsonReader reader) throws IOException, JSONException {
+        this.redisplayEnabled = true;
+        Object displayLimit = null;
+        Object displayDelay = null;
+
+        JSONUtils.expectNext(reader, JsonToken.BEGIN_OBJECT, "Redisplay");
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case DISPLAY_LIMIT:
+                    displayLimit = JSONUtils.nextValue(reader);
+                    break;
+                case DISPLAY_DELAY:
+                    displayDelay = JSONUtils.nextValue(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (displayLimit == null || displayDelay == null)
+            throw new JSONException("Redisplay is missing " + DISPLAY_LIMIT + " or " + DISPLAY_DELAY);
+
+        setLimitAndDelay(displayLimit, displayDelay);
+    }
 
+    private void setLimitAndDelay(Object displayLimit, Object displayDelay) {
         if (displayLimit instanceof Integer)
             this.displayLimit = (Integer) displayLimit;
 
@@ -3,6 +3,7 @@ package com.onesignal;
 import android.content.ContentValues;
 import android.database.Cursor;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.WorkerThread;
 
 import org.json.JSONArray;
@@ -23,18 +24,24 @@ class OSInAppMessageRepository {
     }
 
     @WorkerThread
-    synchronized void saveInAppMessage(OSInAppMessage inAppMessage) {
-        ContentValues values = new ContentValues();
+    synchronized void saveInAppMessage(final OSInAppMessage inAppMessage) {
+        final ContentValues values = new ContentValues();
         values.put(OneSignalDbContract.InAppMessageTable.COLUMN_NAME_MESSAGE_ID, inAppMessage.messageId);
         values.put(OneSignalDbContract.InAppMessageTable.COLUMN_NAME_DISPLAY_QUANTITY, inAppMessage.getRedisplayStats().getDisplayQuantity());
         values.put(OneSignalDbContract.InAppMessageTable.COLUMN_NAME_LAST_DISPLAY, inAppMessage.getRedisplayStats().getLastDisplayTime());
         values.put(OneSignalDbContract.InAppMessageTable.COLUMN_CLICK_IDS, inAppMessage.getClickedClickIds().toString());
         values.put(OneSignalDbContract.InAppMessageTable.COLUMN_DISPLAYED_IN_SESSION, inAppMessage.isDisplayedInSession());
 
-        int rowsUpdated = dbHelper.update(OneSignalDbContract.InAppMessageTable.TABLE_NAME, values,
-                OneSignalDbContract.InAppMessageTable.COLUMN_NAME_MESSAGE_ID + " = ?", new String[]{inAppMessage.messageId});
-        if (rowsUpdated == 0)
-            dbHelper.insert(OneSignalDbContract.InAppMessageTable.TABLE_NAME, null, values);
+        // Update or insert in one transaction
+        dbHelper.runInTransaction(new OneSignalDbBatch.Writes() {
+            @Override
+            public void run(@NonNull OneSignalDbBatch batch) {
+                int rowsUpdated = batch.update(OneSignalDbContract.InAppMessageTable.TABLE_NAME, values,
+                        OneSignalDbContract.InAppMessageTable.COLUMN_NAME_MESSAGE_ID + " = ?", new String[]{inAppMessage.messageId});
+                if (rowsUpdated == 0)
+                    batch.insert(OneSignalDbContract.InAppMessageTable.TABLE_NAME, values);
+            }
+        });
     }
 
     @WorkerThread
@@ -0,0 +1,94 @@
+package com.onesignal;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Index of the trigger keys each in-app message depends on, built once per message list.
+ * When triggers change only the messages using the changed keys need to be evaluated again,
+ * instead of walking the triggers of every message.
+ */
+class OSInAppMessageTriggerIndex {
+
+    @NonNull
+    private final List<OSInAppMessage> messages;
+
+    // Positions in messages so lookups keep the original message order
+    // Custom triggers are indexed by property, dynamic triggers by triggerId
+    private final HashMap<String, BitSet> messagesByTriggerKey = new HashMap<>();
+    // Time based triggers can become true without any trigger key changing
+    private final BitSet messagesWithDynamicTriggers = new BitSet();
+
+    OSInAppMessageTriggerIndex(@NonNull List<OSInAppMessage> messages) {
+        this.messages = messages;
+
+        for (int i = 0; i < messages.size(); i++) {
+            OSInAppMessage message = messages.get(i);
+            if (message.triggers == null)
+                continue;
+
+            for (ArrayList<OSTrigger> andConditions : message.triggers) {
+                for (OSTrigger trigger : andConditions) {
+                    indexTriggerKey(trigger.property, i);
+                    indexTriggerKey(trigger.triggerId, i);
+
+                    if (trigger.kind != OSTrigger.OSTriggerKind.CUSTOM && trigger.kind != OSTrigger.OSTriggerKind.UNKNOWN)
+                        messagesWithDynamicTriggers.set(i);
+                }
+            }
+        }
+    }
+
+    private void indexTriggerKey(String key, int position) {
+        if (key == null)
+            return;
+
+        BitSet positions = messagesByTriggerKey.get(key);
+        if (positions == null) {
+            positions = new BitSet();
+            messagesByTriggerKey.put(key, positions);
+        }
+        positions.set(position);
+    }
+
+    /**
+     * Messages with at least one trigger whose property or triggerId is one of the keys
+     */
+    @NonNull
+    List<OSInAppMessage> getMessagesWithTriggerKeys(@NonNull Collection<String> keys) {
+        return messagesAt(positionsForKeys(keys));
+    }
+
+    /**
+     * Messages whose trigger evaluation may have changed after the given keys changed.
+     * Messages with dynamic triggers are always included so their timers are still checked.
+     */
+    @NonNull
+    List<OSInAppMessage> getMessagesToEvaluate(@NonNull Collection<String> changedKeys) {
+        BitSet positions = positionsForKeys(changedKeys);
+        positions.or(messagesWithDynamicTriggers);
+        return messagesAt(positions);
+    }
+
+    private BitSet positionsForKeys(Collection<String> keys) {
+        BitSet positions = new BitSet();
+        for (String key : keys) {
+            BitSet keyPositions = messagesByTriggerKey.get(key);
+            if (keyPositions != null)
+                positions.or(keyPositions);
+        }
+        return positions;
+    }
+
+    private List<OSInAppMessage> messagesAt(BitSet positions) {
+        List<OSInAppMessage> result = new ArrayList<>(positions.cardinality());
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1))
+            result.add(messages.get(i));
+        return result;
+    }
+}
@@ -38,9 +38,6 @@ import org.json.JSONObject;
 import java.util.ArrayList;
 import java.util.List;
 
-import static com.onesignal.GenerateNotification.BUNDLE_KEY_ACTION_ID;
-import static com.onesignal.NotificationBundleProcessor.PUSH_ADDITIONAL_DATA_KEY;
-
 /**
  * The notification the user received
  * <br/><br/>
@@ -103,7 +100,15 @@ public class OSNotification {
    }
 
    OSNotification(@Nullable List<OSNotification> groupedNotifications, @NonNull JSONObject jsonPayload, int androidNotificationId) {
-      initPayloadData(jsonPayload);
+      this(groupedNotifications, new OSNotificationPayload(jsonPayload), androidNotificationId);
+   }
+
+   OSNotification(@NonNull OSNotificationPayload payload) {
+      this(null, payload, 0);
+   }
+
+   OSNotification(@Nullable List<OSNotification> groupedNotifications, @NonNull OSNotificationPayload payload, int androidNotificationId) {
+      initPayloadData(payload);
       this.groupedNotifications = groupedNotifications;
       this.androidNotificationId = androidNotificationId;
    }
@@ -135,21 +140,19 @@ public class OSNotification {
       this.rawPayload = notification.rawPayload;
    }
 
-   private void initPayloadData(JSONObject currentJsonPayload) {
-      JSONObject customJson;
-      try {
-         customJson = NotificationBundleProcessor.getCustomJSONObject(currentJsonPayload);
-      } catch (Throwable t) {
-         OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error assigning OSNotificationReceivedEvent payload values!", t);
+   private void initPayloadData(OSNotificationPayload payload) {
+      if (!payload.isOneSignalPayload()) {
+         OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error assigning OSNotificationReceivedEvent payload values! No valid 'custom' field in the payload");
          return;
       }
 
-      notificationId = customJson.optString("i");
-      templateId = customJson.optString("ti");
-      templateName = customJson.optString("tn");
-      rawPayload = currentJsonPayload.toString();
-      additionalData = customJson.optJSONObject(PUSH_ADDITIONAL_DATA_KEY);
-      launchURL = customJson.optString("u", null);
+      JSONObject currentJsonPayload = payload.getJson();
+      notificationId = payload.getNotificationId() != null ? payload.getNotificationId() : "";
+      templateId = payload.getTemplateId();
+      templateName = payload.getTemplateName();
+      rawPayload = payload.getRawPayload();
+      additionalData = payload.getAdditionalData();
+      launchURL = payload.getLaunchUrl();
 
       body = currentJsonPayload.optString("alert", null);
       title = currentJsonPayload.optString("title", null);
@@ -170,41 +173,15 @@ public class OSNotification {
       if (!"do_not_collapse".equals(collapseKey))
          collapseId = collapseKey;
 
-      try {
-         setActionButtons();
-      } catch (Throwable t) {
-         OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error assigning OSNotificationReceivedEvent.actionButtons values!", t);
-      }
-
-      try {
-         setBackgroundImageLayout(currentJsonPayload);
-      } catch (Throwable t) {
-         OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error assigning OSNotificationReceivedEvent.backgroundImageLayout values!", t);
-      }
-   }
-
-   private void setActionButtons() throws Throwable {
-      if (additionalData != null && additionalData.has("actionButtons")) {
-         JSONArray jsonActionButtons = additionalData.getJSONArray("actionButtons");
-         actionButtons = new ArrayList<>();
+      // Parsed once by the payload, copied as the list is public and can be changed
+      if (!payload.getActionButtons().isEmpty())
+         actionButtons = new ArrayList<>(payload.getActionButtons());
 
-         for (int i = 0; i < jsonActionButtons.length(); i++) {
-            JSONObject jsonActionButton = jsonActionButtons.getJSONObject(i);
-            ActionButton actionButton = new ActionButton();
-            actionButton.id = jsonActionButton.optString("id", null);
-            actionButton.text = jsonActionButton.optString("text", null);
-            actionButton.icon = jsonActionButton.optString("icon", null);
-            actionButtons.add(actionButton);
-         }
-         additionalData.remove(BUNDLE_KEY_ACTION_ID);
-         additionalData.remove("actionButtons");
-      }
+      setBackgroundImageLayout(payload.getBackgroundImage());
    }
 
-   private void setBackgroundImageLayout(JSONObject currentJsonPayload) throws Throwable {
-      String jsonStrBgImage = currentJsonPayload.optString("bg_img", null);
-      if (jsonStrBgImage != null) {
-         JSONObject jsonBgImage = new JSONObject(jsonStrBgImage);
+   private void setBackgroundImageLayout(@Nullable JSONObject jsonBgImage) {
+      if (jsonBgImage != null) {
          backgroundImageLayout = new BackgroundImageLayout();
          backgroundImageLayout.image = jsonBgImage.optString("img");
          backgroundImageLayout.titleTextColor = jsonBgImage.optString("tc");
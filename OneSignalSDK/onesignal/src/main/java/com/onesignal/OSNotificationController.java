@@ -33,8 +33,6 @@ import androidx.annotation.Nullable;
 import androidx.concurrent.futures.CallbackToFutureAdapter;
 import androidx.work.ListenableWorker;
 
-import org.json.JSONObject;
-
 import static com.onesignal.OSUtils.isStringNotEmpty;
 
 public class OSNotificationController {
@@ -55,12 +53,12 @@ public class OSNotificationController {
    }
 
    OSNotificationController(CallbackToFutureAdapter.Completer<ListenableWorker.Result> callbackCompleter,
-                            Context context, JSONObject jsonPayload, boolean restoring, boolean fromBackgroundLogic, Long timestamp) {
+                            Context context, OSNotificationPayload payload, boolean restoring, boolean fromBackgroundLogic, Long timestamp) {
       this.callbackCompleter = callbackCompleter;
       this.restoring = restoring;
       this.fromBackgroundLogic = fromBackgroundLogic;
 
-      notificationJob = createNotificationJobFromCurrent(context, jsonPayload, timestamp);
+      notificationJob = createNotificationJobFromCurrent(context, payload, timestamp);
    }
 
    /**
@@ -69,9 +67,9 @@ public class OSNotificationController {
     * <br/><br/>
     * @see OSNotificationGenerationJob
     */
-   private OSNotificationGenerationJob createNotificationJobFromCurrent(Context context, JSONObject jsonPayload, Long timestamp) {
+   private OSNotificationGenerationJob createNotificationJobFromCurrent(Context context, OSNotificationPayload payload, Long timestamp) {
       OSNotificationGenerationJob notificationJob = new OSNotificationGenerationJob(callbackCompleter, context);
-      notificationJob.setJsonPayload(jsonPayload);
+      notificationJob.setPayload(payload);
       notificationJob.setShownTimeStamp(timestamp);
       notificationJob.setRestoring(restoring);
       return notificationJob;
@@ -98,7 +96,8 @@ public class OSNotificationController {
          }
          // Delay to prevent CPU spikes
          // Normally more than one notification is restored at a time
-         if (restoring)
+         // A batch restore already paces posts with OSNotificationRateLimiter
+         if (restoring && !OSNotificationRestoreWorkManager.isRestoringBatch())
             OSUtils.sleep(100);
       } else {
          notDisplayNotificationLogic(originalNotification);
@@ -58,6 +58,8 @@ class OSNotificationDataController extends OSBackgroundManager {
                         NotificationTable.TABLE_NAME,
                         whereStr,
                         whereArgs);
+                OSNotificationSummaryIndex.invalidateAll();
+                OSNotificationDedupeIndex.onNotificationsDeleted();
             }
         };
 
@@ -101,6 +103,7 @@ class OSNotificationDataController extends OSBackgroundManager {
                 ContentValues values = new ContentValues();
                 values.put(NotificationTable.COLUMN_NAME_DISMISSED, 1);
                 dbHelper.update(NotificationTable.TABLE_NAME, values, whereStr, null);
+                OSNotificationSummaryIndex.invalidateAll();
 
                 BadgeCountUpdater.updateCount(0, appContext);
 
@@ -153,6 +156,7 @@ class OSNotificationDataController extends OSBackgroundManager {
                 values.put(NotificationTable.COLUMN_NAME_DISMISSED, 1);
 
                 dbHelper.update(NotificationTable.TABLE_NAME, values, whereStr, whereArgs);
+                OSNotificationSummaryIndex.invalidate(group);
                 BadgeCountUpdater.update(dbHelper, appContext);
             }
         };
@@ -178,6 +182,7 @@ class OSNotificationDataController extends OSBackgroundManager {
                 values.put(NotificationTable.COLUMN_NAME_DISMISSED, 1);
 
                 int records = dbHelper.update(NotificationTable.TABLE_NAME, values, whereStr, null);
+                OSNotificationSummaryIndex.onNotificationRemoved(id);
 
                 if (records > 0)
                     NotificationSummaryManager.updatePossibleDependentSummaryOnDismiss(appContext, dbHelper, id);
@@ -208,44 +213,44 @@ class OSNotificationDataController extends OSBackgroundManager {
             return;
         }
 
-        if (!OSNotificationWorkManager.addNotificationIdProcessed(id)) {
+        if (!OSNotificationDedupeIndex.startProcessing(id)) {
             logger.debug("Notification notValidOrDuplicated with id duplicated");
             callback.onResult(true);
             return;
         }
 
+        // Most pushes are answered from memory, without a thread or a query
+        OSNotificationDedupeIndex.Lookup lookup = OSNotificationDedupeIndex.lookup(id);
+        if (lookup != OSNotificationDedupeIndex.Lookup.CHECK_DB) {
+            boolean duplicated = lookup == OSNotificationDedupeIndex.Lookup.DUPLICATE;
+            if (duplicated)
+                onDuplicateNotification(id);
+            callback.onResult(duplicated);
+            return;
+        }
+
         Runnable runCancelNotification = new BackgroundRunnable() {
             @Override
             public void run() {
                 super.run();
 
-                boolean result = false;
-                String[] retColumn = {NotificationTable.COLUMN_NAME_NOTIFICATION_ID};
-                String[] whereArgs = {id};
-
-                Cursor cursor = dbHelper.query(
-                        NotificationTable.TABLE_NAME,
-                        retColumn,
-                        NotificationTable.COLUMN_NAME_NOTIFICATION_ID + " = ?",   // Where String
-                        whereArgs,
-                        null, null, null);
-
-                boolean exists = cursor.moveToFirst();
-
-                cursor.close();
-
-                if (exists) {
-                    logger.debug("Notification notValidOrDuplicated with id duplicated, duplicate FCM message received, skip processing of " + id);
-                    result = true;
-                }
+                boolean duplicated = OSNotificationDedupeIndex.isDuplicate(dbHelper, id);
+                if (duplicated)
+                    onDuplicateNotification(id);
 
-                callback.onResult(result);
+                callback.onResult(duplicated);
             }
         };
 
         runRunnableOnThread(runCancelNotification, OS_NOTIFICATIONS_THREAD);
     }
 
+    private void onDuplicateNotification(String id) {
+        logger.debug("Notification notValidOrDuplicated with id duplicated, duplicate FCM message received, skip processing of " + id);
+        // Not processed further, a later delivery is checked against the saved notification
+        OSNotificationDedupeIndex.finishProcessing(id);
+    }
+
     interface InvalidOrDuplicateNotificationCallback {
 
         /**
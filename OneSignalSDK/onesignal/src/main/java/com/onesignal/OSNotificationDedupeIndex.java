@@ -0,0 +1,226 @@
+package com.onesignal;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.onesignal.OneSignalDbContract.NotificationTable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Notification ids already received, used to drop FCM and HMS redeliveries without querying the notification table
+ * - Ids still being processed, from receipt until they are saved, see {@link #startProcessing(String)}
+ * - The last saved ids in an LRU set, a hit is a duplicate
+ * - A Bloom filter of every id in the notification table, read from the db the first time it is needed.
+ *     An id not in the filter is a new notification, only a possible match is looked up in the db
+ *
+ * The notification table stays the source of truth, deleting rows from it drops the filter so it is read again
+ */
+class OSNotificationDedupeIndex {
+
+    enum Lookup {
+        DUPLICATE,
+        NEW,
+        // Filter has a possible match or isn't read yet, needs isDuplicate(OneSignalDb, String) on a worker thread
+        CHECK_DB
+    }
+
+    private static final int MAX_RECENT_IDS = 1_000;
+    private static final int MIN_FILTER_CAPACITY = 2_000;
+
+    // Ids between receipt and save, enqueueUniqueWork is not enough as the work may already be done but not saved
+    private static final Set<String> processingIds = OSUtils.newConcurrentSet();
+
+    // Guarded by the class
+    private static final LinkedHashMap<String, Boolean> recentIds = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_RECENT_IDS;
+        }
+    };
+    // Null until read from the db, guarded by the class
+    private static BloomFilter filter;
+
+    // Lookups that needed the db, for tests and debugging
+    private static final AtomicInteger dbLookupCount = new AtomicInteger();
+
+    /**
+     * @return false if the notification is already being processed
+     */
+    static boolean startProcessing(@NonNull String id) {
+        if (!processingIds.add(id)) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSNotificationDedupeIndex notification with notificationId: " + id + " already queued");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * The notification was saved to the db or dropped, from now on it is found by {@link #lookup(String)}
+     */
+    static void finishProcessing(@NonNull String id) {
+        processingIds.remove(id);
+    }
+
+    /**
+     * Checks memory only, doesn't block on the db
+     */
+    static synchronized @NonNull Lookup lookup(@NonNull String id) {
+        if (recentIds.containsKey(id))
+            return Lookup.DUPLICATE;
+        if (filter == null || filter.mightContain(id))
+            return Lookup.CHECK_DB;
+        return Lookup.NEW;
+    }
+
+    /**
+     * Reads the filter from the db if needed, then queries the notification table only if the filter has a possible match
+     */
+    @WorkerThread
+    static boolean isDuplicate(@NonNull OneSignalDb db, @NonNull String id) {
+        synchronized (OSNotificationDedupeIndex.class) {
+            if (filter == null)
+                load(db);
+
+            Lookup lookup = lookup(id);
+            if (lookup != Lookup.CHECK_DB)
+                return lookup == Lookup.DUPLICATE;
+        }
+
+        dbLookupCount.incrementAndGet();
+        Cursor cursor = db.query(
+                NotificationTable.TABLE_NAME,
+                new String[] { NotificationTable.COLUMN_NAME_NOTIFICATION_ID },
+                NotificationTable.COLUMN_NAME_NOTIFICATION_ID + " = ?",   // Where String
+                new String[] { id },
+                null, null, null,
+                "1"
+        );
+        try {
+            boolean exists = cursor.moveToFirst();
+            if (exists)
+                onNotificationSaved(id);
+            return exists;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * A notification was inserted in the notification table
+     */
+    static synchronized void onNotificationSaved(@NonNull String id) {
+        recentIds.put(id, Boolean.TRUE);
+        if (filter == null)
+            return;
+
+        filter.add(id);
+        // Too many ids for the filter's size, it would match most lookups
+        if (filter.isFull())
+            filter = null;
+    }
+
+    /**
+     * Rows were deleted from the notification table
+     */
+    static synchronized void onNotificationsDeleted() {
+        recentIds.clear();
+        filter = null;
+    }
+
+    // Called with the class lock held so no id is saved while reading
+    private static void load(OneSignalDb db) {
+        dbLookupCount.incrementAndGet();
+        Cursor cursor = db.query(
+                NotificationTable.TABLE_NAME,
+                new String[] { NotificationTable.COLUMN_NAME_NOTIFICATION_ID },
+                NotificationTable.COLUMN_NAME_NOTIFICATION_ID + " IS NOT NULL",
+                null,
+                null, null, null
+        );
+        try {
+            BloomFilter newFilter = new BloomFilter(Math.max(cursor.getCount() * 2, MIN_FILTER_CAPACITY));
+            while (cursor.moveToNext())
+                newFilter.add(cursor.getString(0));
+            filter = newFilter;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    static int getDbLookupCount() {
+        return dbLookupCount.get();
+    }
+
+    static synchronized void clear() {
+        processingIds.clear();
+        recentIds.clear();
+        filter = null;
+        dbLookupCount.set(0);
+    }
+
+    /**
+     * About 1% false positives up to capacity ids, 10 bits and 7 hashes per id
+     */
+    private static class BloomFilter {
+        private static final int BITS_PER_ID = 10;
+        private static final int HASH_COUNT = 7;
+
+        private final long[] bits;
+        private final long bitCount;
+        private final int capacity;
+        private int count;
+
+        BloomFilter(int capacity) {
+            this.capacity = capacity;
+            this.bits = new long[(capacity * BITS_PER_ID + 63) / 64];
+            this.bitCount = bits.length * 64L;
+        }
+
+        void add(String id) {
+            long hash1 = id.hashCode();
+            long hash2 = secondHash(id);
+            for (int i = 0; i < HASH_COUNT; i++) {
+                long bit = bitIndex(hash1, hash2, i);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+            count++;
+        }
+
+        boolean mightContain(String id) {
+            long hash1 = id.hashCode();
+            long hash2 = secondHash(id);
+            for (int i = 0; i < HASH_COUNT; i++) {
+                long bit = bitIndex(hash1, hash2, i);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0)
+                    return false;
+            }
+            return true;
+        }
+
+        boolean isFull() {
+            return count > capacity;
+        }
+
+        // Double hashing, see Kirsch and Mitzenmacher "Less Hashing, Same Performance"
+        private long bitIndex(long hash1, long hash2, int i) {
+            long combined = hash1 + i * hash2;
+            return (combined & Long.MAX_VALUE) % bitCount;
+        }
+
+        // FNV-1a, independent from String.hashCode
+        private static long secondHash(String id) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < id.length(); i++) {
+                hash ^= id.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+    }
+}
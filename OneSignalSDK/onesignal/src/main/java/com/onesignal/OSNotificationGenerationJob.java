@@ -44,6 +44,8 @@ public class OSNotificationGenerationJob {
     private OSNotification notification;
     private Context context;
     private JSONObject jsonPayload;
+    // Parsed jsonPayload, shared with the notification and every processing step
+    private OSNotificationPayload payload;
     private boolean restoring;
 
     private Long shownTimeStamp;
@@ -65,7 +67,12 @@ public class OSNotificationGenerationJob {
     }
 
     OSNotificationGenerationJob(Context context, JSONObject jsonPayload) {
-        this(context, new OSNotification(jsonPayload), jsonPayload);
+        this(context, new OSNotificationPayload(jsonPayload));
+    }
+
+    private OSNotificationGenerationJob(Context context, OSNotificationPayload payload) {
+        this(context, new OSNotification(payload), payload.getJson());
+        this.payload = payload;
     }
 
     OSNotificationGenerationJob(Context context, OSNotification notification, JSONObject jsonPayload) {
@@ -116,7 +123,9 @@ public class OSNotificationGenerationJob {
     }
 
     String getApiNotificationId() {
-        return OneSignal.getNotificationIdFromFCMJson(jsonPayload);
+        if (jsonPayload == null)
+            return null;
+        return getPayload().getNotificationId();
     }
 
     int getAndroidIdWithoutCreate() {
@@ -165,6 +174,21 @@ public class OSNotificationGenerationJob {
 
     public void setJsonPayload(JSONObject jsonPayload) {
         this.jsonPayload = jsonPayload;
+        this.payload = null;
+    }
+
+    /**
+     * Parsed json payload, parsed on first use if it wasn't given with {@link #setPayload(OSNotificationPayload)}
+     */
+    OSNotificationPayload getPayload() {
+        if (payload == null)
+            payload = new OSNotificationPayload(jsonPayload);
+        return payload;
+    }
+
+    void setPayload(OSNotificationPayload payload) {
+        this.payload = payload;
+        this.jsonPayload = payload.getJson();
     }
 
     public boolean isRestoring() {
@@ -234,7 +258,7 @@ public class OSNotificationGenerationJob {
     @Override
     public String toString() {
         return "OSNotificationGenerationJob{" +
-                "jsonPayload=" + jsonPayload +
+                "jsonPayload=" + (payload != null ? payload.getRawPayload() : jsonPayload) +
                 ", isRestoring=" + restoring +
                 ", shownTimeStamp=" + shownTimeStamp +
                 ", overriddenBodyFromExtender=" + overriddenBodyFromExtender +
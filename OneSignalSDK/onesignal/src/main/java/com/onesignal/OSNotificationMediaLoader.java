@@ -0,0 +1,375 @@
+package com.onesignal;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Downloads and decodes the remote images of a notification, licon, bicon and bg_img
+ * - All images of a notification are downloaded at the same time, see {@link #prefetch(Collection)}
+ * - Downloads have connect and read timeouts, waiting on them is bounded by one {@link #LOAD_TIMEOUT_MS}
+ *     deadline per notification so a slow server doesn't use up the time the app has to process it
+ * - Downloaded files are kept in a disk LRU cache keyed by URL for {@link #MAX_AGE_MS}, see {@link OSHttpResponseCache}
+ * - Decoded bitmaps are kept in a memory LRU cache keyed by URL and size, grouped notifications
+ *     and summaries usually reuse the same images
+ * - Images are decoded with an inSampleSize close to the size they are displayed at
+ * - A URL that failed to download is not tried again for {@link #FAILED_DOWNLOAD_RETRY_MS}
+ */
+class OSNotificationMediaLoader {
+
+    private static final String CACHE_DIR = "onesignal_notification_media";
+    private static final String OS_NOTIFICATION_MEDIA_THREAD = "OS_NOTIFICATION_MEDIA_";
+    private static final long DEFAULT_MAX_DISK_BYTES = 10 * 1024 * 1024;
+    private static final int MAX_MEMORY_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_IMAGE_BYTES = 5 * 1024 * 1024;
+    private static final int MAX_CONCURRENT_DOWNLOADS = 3;
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 15_000;
+    static final long LOAD_TIMEOUT_MS = 20_000;
+    // Images are downloaded again after this, the same URL may be given a new image
+    static final long MAX_AGE_MS = 7 * 24 * 60 * 60 * 1_000L;
+    // Short so a server error doesn't hide an image for long, grouped notifications posted together don't retry it each time
+    static final long FAILED_DOWNLOAD_RETRY_MS = 60_000;
+    // Saved in place of the ETag followed by the download time, change if the way images are saved changes
+    private static final String MEDIA_VERSION = "2";
+    private static final String HEADER_SEPARATOR = ":";
+
+    private static OSNotificationMediaLoader instance;
+
+    static synchronized @NonNull OSNotificationMediaLoader getInstance(@NonNull Context context) {
+        if (instance == null)
+            instance = new OSNotificationMediaLoader(new OSHttpResponseCache(new File(context.getCacheDir(), CACHE_DIR), DEFAULT_MAX_DISK_BYTES, false));
+        return instance;
+    }
+
+    static boolean isRemoteUrl(@Nullable String location) {
+        if (location == null)
+            return false;
+        String trimmedLocation = location.trim();
+        return trimmedLocation.startsWith("http://") || trimmedLocation.startsWith("https://");
+    }
+
+    /**
+     * Called by {@link ActivityLifecycleListener} when the system asks the app to free memory
+     */
+    static void onTrimMemory(int level) {
+        OSNotificationMediaLoader loader;
+        synchronized (OSNotificationMediaLoader.class) {
+            loader = instance;
+        }
+        if (loader == null)
+            return;
+
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE)
+            loader.memoryCache.evictAll();
+        else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+            loader.memoryCache.trimToSize(loader.memoryCache.size() / 2);
+    }
+
+    private final OSHttpResponseCache diskCache;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ThreadPoolExecutor downloadExecutor;
+    // Downloads in progress by URL, so the same image is only downloaded once at a time
+    private final HashMap<String, Future<Boolean>> downloads = new HashMap<>();
+    // Elapsed realtime of the last failed download by URL, guarded by downloads
+    private final HashMap<String, Long> failedDownloads = new HashMap<>();
+
+    OSNotificationMediaLoader(@NonNull OSHttpResponseCache diskCache) {
+        this.diskCache = diskCache;
+        this.memoryCache = new LruCache<String, Bitmap>((int) Math.min(MAX_MEMORY_BYTES, Runtime.getRuntime().maxMemory() / 16)) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+        this.downloadExecutor = new ThreadPoolExecutor(
+                MAX_CONCURRENT_DOWNLOADS,
+                MAX_CONCURRENT_DOWNLOADS,
+                30,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull Runnable runnable) {
+                        Thread thread = new Thread(runnable);
+                        thread.setName(OS_NOTIFICATION_MEDIA_THREAD + thread.getId());
+                        return thread;
+                    }
+                }
+        );
+        this.downloadExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Downloads every URL not already on disk at the same time
+     * Returns once all downloads finished or after {@link #LOAD_TIMEOUT_MS}, downloads still running keep going
+     * @return the elapsed realtime deadline of the notification, pass what is left of it to {@link #getBitmap}
+     */
+    @WorkerThread
+    long prefetch(@NonNull Collection<String> urls) {
+        long deadline = OneSignal.getTime().getElapsedRealtime() + LOAD_TIMEOUT_MS;
+        List<Future<Boolean>> pending = new ArrayList<>();
+        for (String url : urls) {
+            Future<Boolean> download = startDownload(url.trim());
+            if (download != null)
+                pending.add(download);
+        }
+
+        for (Future<Boolean> download : pending)
+            awaitDownload(download, deadline - OneSignal.getTime().getElapsedRealtime());
+        return deadline;
+    }
+
+    /**
+     * @param timeoutMillis time left to wait on a download still running
+     * @return the image at url decoded to about the target size, null if it could not be loaded
+     */
+    @WorkerThread
+    @Nullable Bitmap getBitmap(@NonNull String url, int targetWidth, int targetHeight, long timeoutMillis) {
+        url = url.trim();
+        String memoryKey = url + "@" + targetWidth + "x" + targetHeight;
+        Bitmap bitmap = memoryCache.get(memoryKey);
+        if (bitmap != null)
+            return bitmap;
+
+        Future<Boolean> download = startDownload(url);
+        if (download != null && !awaitDownload(download, timeoutMillis))
+            return null;
+
+        byte[] data = readFromDisk(url);
+        if (data == null)
+            return null;
+
+        bitmap = decodeSampledBitmap(data, targetWidth, targetHeight);
+        if (bitmap != null)
+            memoryCache.put(memoryKey, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * @return null if the image is already on disk or failed to download less than {@link #FAILED_DOWNLOAD_RETRY_MS} ago
+     */
+    private @Nullable Future<Boolean> startDownload(final String url) {
+        if (isFresh(diskCache.getETag(url)))
+            return null;
+
+        synchronized (downloads) {
+            Future<Boolean> download = downloads.get(url);
+            if (download != null)
+                return download;
+
+            if (isInRetryDelay(url))
+                return null;
+
+            download = downloadExecutor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    boolean downloaded = false;
+                    try {
+                        downloaded = download(url);
+                        return downloaded;
+                    } finally {
+                        synchronized (downloads) {
+                            downloads.remove(url);
+                            if (downloaded)
+                                failedDownloads.remove(url);
+                            else
+                                failedDownloads.put(url, OneSignal.getTime().getElapsedRealtime());
+                        }
+                    }
+                }
+            });
+            downloads.put(url, download);
+            return download;
+        }
+    }
+
+    private static boolean awaitDownload(Future<Boolean> download, long timeoutMillis) {
+        try {
+            return download.get(Math.max(timeoutMillis, 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Timed out downloading notification image");
+        } catch (InterruptedException | ExecutionException e) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Could not download notification image!", e);
+        }
+        return false;
+    }
+
+    private boolean download(String url) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+
+            int responseCode = connection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Could not download image! HTTP " + responseCode + " for: " + url);
+                return false;
+            }
+
+            if (connection.getContentLength() > MAX_IMAGE_BYTES) {
+                OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Not downloading image over " + MAX_IMAGE_BYTES + " bytes: " + url);
+                return false;
+            }
+
+            // Opened before the cache file so a failing connection doesn't leave an editor open
+            InputStream inputStream = connection.getInputStream();
+            try {
+                OSHttpResponseCache.Editor editor = diskCache.edit(url, newHeader());
+                if (editor == null)
+                    return false;
+
+                try {
+                    byte[] buffer = new byte[8 * 1024];
+                    int total = 0;
+                    int read;
+                    while ((read = inputStream.read(buffer)) != -1) {
+                        total += read;
+                        if (total > MAX_IMAGE_BYTES) {
+                            OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Not downloading image over " + MAX_IMAGE_BYTES + " bytes: " + url);
+                            return false;
+                        }
+                        editor.outputStream.write(buffer, 0, read);
+                    }
+                    editor.commit();
+                    return true;
+                } finally {
+                    // No-op if committed
+                    editor.abort();
+                }
+            } finally {
+                inputStream.close();
+            }
+        } catch (Throwable t) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "Could not download image!", t);
+            return false;
+        } finally {
+            if (connection != null)
+                connection.disconnect();
+        }
+    }
+
+    // Caller holds the downloads lock
+    private boolean isInRetryDelay(String url) {
+        Long failedAt = failedDownloads.get(url);
+        if (failedAt == null)
+            return false;
+
+        long sinceFailure = OneSignal.getTime().getElapsedRealtime() - failedAt;
+        if (sinceFailure >= 0 && sinceFailure < FAILED_DOWNLOAD_RETRY_MS)
+            return true;
+
+        failedDownloads.remove(url);
+        return false;
+    }
+
+    boolean isDownloadFailing(@NonNull String url) {
+        synchronized (downloads) {
+            return isInRetryDelay(url.trim());
+        }
+    }
+
+    private @Nullable byte[] readFromDisk(String url) {
+        InputStream inputStream = diskCache.openBody(url);
+        if (inputStream == null)
+            return null;
+
+        try {
+            try {
+                ByteArrayOutputStream data = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8 * 1024];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1)
+                    data.write(buffer, 0, read);
+                return data.toByteArray();
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "Could not read cached image for: " + url, e);
+            return null;
+        }
+    }
+
+    private static @Nullable Bitmap decodeSampledBitmap(byte[] data, int targetWidth, int targetHeight) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, targetWidth, targetHeight);
+        options.inJustDecodeBounds = false;
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
+    /**
+     * @return the largest power of 2 that keeps the decoded image at least as big as the target size
+     */
+    static int calculateInSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int inSampleSize = 1;
+        if (targetWidth <= 0 || targetHeight <= 0)
+            return inSampleSize;
+
+        while (width / (inSampleSize * 2) >= targetWidth && height / (inSampleSize * 2) >= targetHeight)
+            inSampleSize *= 2;
+        return inSampleSize;
+    }
+
+    private static String newHeader() {
+        return MEDIA_VERSION + HEADER_SEPARATOR + OneSignal.getTime().getCurrentTimeMillis();
+    }
+
+    /**
+     * @return false for images saved by an older version, over {@link #MAX_AGE_MS} old or from the future
+     */
+    private static boolean isFresh(@Nullable String header) {
+        if (header == null || !header.startsWith(MEDIA_VERSION + HEADER_SEPARATOR))
+            return false;
+
+        long savedAt;
+        try {
+            savedAt = Long.parseLong(header.substring(MEDIA_VERSION.length() + HEADER_SEPARATOR.length()));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        long age = OneSignal.getTime().getCurrentTimeMillis() - savedAt;
+        return age >= 0 && age < MAX_AGE_MS;
+    }
+
+    boolean isOnDisk(@NonNull String url) {
+        return isFresh(diskCache.getETag(url.trim()));
+    }
+
+    void putOnDisk(@NonNull String url, @NonNull byte[] data) throws IOException {
+        OSHttpResponseCache.Editor editor = diskCache.edit(url.trim(), newHeader());
+        if (editor == null)
+            throw new IOException("Could not create cache file for: " + url);
+        editor.outputStream.write(data);
+        editor.commit();
+    }
+}
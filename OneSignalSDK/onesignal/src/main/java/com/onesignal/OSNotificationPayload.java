@@ -0,0 +1,200 @@
+package com.onesignal;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.onesignal.GenerateNotification.BUNDLE_KEY_ACTION_ID;
+import static com.onesignal.NotificationBundleProcessor.PUSH_ADDITIONAL_DATA_KEY;
+
+/**
+ * Push payload parsed once and shared by every step that processes it, {@link OSNotification},
+ *    {@link OSNotificationGenerationJob}, {@link NotificationChannelManager}, {@link GenerateNotification}
+ *    and {@link NotificationBundleProcessor}
+ * - JSON nested as strings, custom, bg_img and chnl, is parsed here instead of at every step
+ * - The payload is serialized once, the same string is put in every intent of the notification
+ *
+ * Immutable, the JSONObjects it returns are shared and must not be modified
+ */
+final class OSNotificationPayload {
+
+    private static final String PAYLOAD_CUSTOM = "custom";
+    private static final String PAYLOAD_BACKGROUND_IMAGE = "bg_img";
+    private static final String PAYLOAD_CHANNEL = "chnl";
+    private static final String PAYLOAD_ACTION_BUTTONS = "actionButtons";
+
+    @NonNull private final JSONObject json;
+    @NonNull private final String rawPayload;
+    // Names of json, used to copy it without serializing it again
+    @NonNull private final String[] keys;
+
+    // Null if custom is missing or isn't JSON, the payload isn't from OneSignal
+    @Nullable private final JSONObject custom;
+    @Nullable private final String notificationId;
+    @Nullable private final String templateId;
+    @Nullable private final String templateName;
+    @Nullable private final String launchUrl;
+    // Without the action buttons, those are in actionButtons
+    @Nullable private final JSONObject additionalData;
+    @NonNull private final List<OSNotification.ActionButton> actionButtons;
+
+    @Nullable private final JSONObject backgroundImage;
+    @Nullable private final JSONObject channel;
+
+    OSNotificationPayload(@NonNull JSONObject json) {
+        this.json = json;
+        this.rawPayload = json.toString();
+
+        ArrayList<String> names = new ArrayList<>(json.length());
+        Iterator<String> iterator = json.keys();
+        while (iterator.hasNext())
+            names.add(iterator.next());
+        this.keys = names.toArray(new String[0]);
+
+        custom = parseObject(json.opt(PAYLOAD_CUSTOM), PAYLOAD_CUSTOM);
+        if (custom != null) {
+            notificationId = custom.has("i") ? custom.optString("i", null) : null;
+            templateId = custom.optString("ti");
+            templateName = custom.optString("tn");
+            launchUrl = custom.optString("u", null);
+            JSONObject customAdditionalData = custom.optJSONObject(PUSH_ADDITIONAL_DATA_KEY);
+            actionButtons = parseActionButtons(customAdditionalData);
+            additionalData = withoutActionButtons(customAdditionalData);
+        } else {
+            notificationId = null;
+            templateId = null;
+            templateName = null;
+            launchUrl = null;
+            actionButtons = Collections.emptyList();
+            additionalData = null;
+        }
+
+        backgroundImage = parseObject(json.opt(PAYLOAD_BACKGROUND_IMAGE), PAYLOAD_BACKGROUND_IMAGE);
+        channel = parseObject(json.opt(PAYLOAD_CHANNEL), PAYLOAD_CHANNEL);
+    }
+
+    /**
+     * Nested JSON is a string when it comes from FCM or HMS and a JSONObject when it comes from a sync or was built in the SDK
+     */
+    private static @Nullable JSONObject parseObject(@Nullable Object value, String key) {
+        if (value instanceof JSONObject)
+            return (JSONObject) value;
+        if (!(value instanceof String))
+            return null;
+
+        try {
+            return new JSONObject((String) value);
+        } catch (JSONException e) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "Notification payload '" + key + "' is not a JSON object");
+            return null;
+        }
+    }
+
+    private static @NonNull List<OSNotification.ActionButton> parseActionButtons(@Nullable JSONObject additionalData) {
+        if (additionalData == null)
+            return Collections.emptyList();
+
+        JSONArray jsonActionButtons = additionalData.optJSONArray(PAYLOAD_ACTION_BUTTONS);
+        if (jsonActionButtons == null)
+            return Collections.emptyList();
+
+        List<OSNotification.ActionButton> actionButtons = new ArrayList<>(jsonActionButtons.length());
+        for (int i = 0; i < jsonActionButtons.length(); i++) {
+            JSONObject jsonActionButton = jsonActionButtons.optJSONObject(i);
+            if (jsonActionButton == null)
+                continue;
+
+            actionButtons.add(new OSNotification.ActionButton(
+                    jsonActionButton.optString("id", null),
+                    jsonActionButton.optString("text", null),
+                    jsonActionButton.optString("icon", null)
+            ));
+        }
+        return Collections.unmodifiableList(actionButtons);
+    }
+
+    /**
+     * @return a copy of additionalData without the action buttons, custom is left as it was received
+     */
+    private static @Nullable JSONObject withoutActionButtons(@Nullable JSONObject additionalData) {
+        if (additionalData == null || !additionalData.has(PAYLOAD_ACTION_BUTTONS))
+            return additionalData;
+
+        ArrayList<String> names = new ArrayList<>(additionalData.length());
+        Iterator<String> iterator = additionalData.keys();
+        while (iterator.hasNext()) {
+            String name = iterator.next();
+            if (!PAYLOAD_ACTION_BUTTONS.equals(name) && !BUNDLE_KEY_ACTION_ID.equals(name))
+                names.add(name);
+        }
+
+        try {
+            return new JSONObject(additionalData, names.toArray(new String[0]));
+        } catch (JSONException e) {
+            // Only thrown for null names, which keys() doesn't return
+            return additionalData;
+        }
+    }
+
+    @NonNull JSONObject getJson() {
+        return json;
+    }
+
+    /**
+     * @return the payload as a string, same as getJson().toString()
+     */
+    @NonNull String getRawPayload() {
+        return rawPayload;
+    }
+
+    /**
+     * @return a shallow copy of the payload that can be modified
+     */
+    @NonNull JSONObject copyJson() throws JSONException {
+        return new JSONObject(json, keys);
+    }
+
+    boolean isOneSignalPayload() {
+        return custom != null;
+    }
+
+    @Nullable String getNotificationId() {
+        return notificationId;
+    }
+
+    @Nullable String getTemplateId() {
+        return templateId;
+    }
+
+    @Nullable String getTemplateName() {
+        return templateName;
+    }
+
+    @Nullable String getLaunchUrl() {
+        return launchUrl;
+    }
+
+    @Nullable JSONObject getAdditionalData() {
+        return additionalData;
+    }
+
+    @NonNull List<OSNotification.ActionButton> getActionButtons() {
+        return actionButtons;
+    }
+
+    @Nullable JSONObject getBackgroundImage() {
+        return backgroundImage;
+    }
+
+    @Nullable JSONObject getChannel() {
+        return channel;
+    }
+}
@@ -0,0 +1,55 @@
+package com.onesignal;
+
+/**
+ * Paces notification posts so Android doesn't drop them.
+ * NotificationManagerService sheds posts from a package once its enqueue rate goes over 5 per second:
+ *    E/NotificationService: Package enqueue rate is 10.56985. Shedding events. package=####
+ * The rate is an exponential moving average of the time between posts, so a few posts can go out right away
+ *    and only the following ones need to wait. This keeps the same estimate and only waits as long as needed,
+ *    instead of a fixed delay between every post.
+ */
+class OSNotificationRateLimiter {
+
+    // Same values as com.android.server.notification.RateEstimator
+    private static final double RATE_ALPHA = 0.8;
+    private static final double MINIMUM_DT_SECONDS = 0.0005;
+    // System max is 5, leave room for posts we don't see, ex: from the app itself
+    private static final double MAX_POSTS_PER_SECOND = 4;
+    private static final double MIN_INTERARRIVAL_SECONDS = 1.0 / MAX_POSTS_PER_SECOND;
+
+    // Assume something was posted recently, we don't know what was posted before this limiter was created
+    private double interarrivalSeconds = 1;
+    private long lastPostTime = -1;
+
+    /**
+     * Blocks until posting another notification stays under the system rate and counts it as posted
+     * @return milliseconds waited
+     */
+    long awaitNextPost() {
+        long now = OneSignal.getTime().getElapsedRealtime();
+        long delay = delayBeforeNextPost(now);
+        if (delay > 0)
+            OSUtils.sleep((int) delay);
+
+        onPosted(Math.max(OneSignal.getTime().getElapsedRealtime(), now + delay));
+        return delay;
+    }
+
+    long delayBeforeNextPost(long now) {
+        if (lastPostTime < 0)
+            return 0;
+
+        // Time between posts needed to keep the estimate at or over MIN_INTERARRIVAL_SECONDS
+        double requiredDtSeconds = (MIN_INTERARRIVAL_SECONDS - RATE_ALPHA * interarrivalSeconds) / (1.0 - RATE_ALPHA);
+        long requiredDtMillis = (long) Math.ceil(requiredDtSeconds * 1_000);
+        return Math.max(0, lastPostTime + requiredDtMillis - now);
+    }
+
+    void onPosted(long now) {
+        if (lastPostTime >= 0) {
+            double dtSeconds = Math.max((now - lastPostTime) / 1_000.0, MINIMUM_DT_SECONDS);
+            interarrivalSeconds = RATE_ALPHA * interarrivalSeconds + (1.0 - RATE_ALPHA) * dtSeconds;
+        }
+        lastPostTime = now;
+    }
+}
@@ -0,0 +1,128 @@
+package com.onesignal;
+
+import android.R.drawable;
+import android.content.ComponentCallbacks2;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process wide cache of the app resources {@link GenerateNotification} looks up for every notification
+ * - Resource ids by type and name, including names that don't exist
+ * - Bitmaps decoded from assets or resources, ex: the default large icon already scaled to the large icon size
+ *
+ * Resources and assets can't change while the process is running, so lookups are kept until the process dies.
+ * A bitmap is only remembered as missing when its loader found nothing, a loader that failed is tried again next time.
+ * Only bitmaps use enough memory to be evicted, see {@link #onTrimMemory(int)}
+ */
+class OSNotificationResourceCache {
+
+    interface BitmapLoader {
+        /**
+         * @return null if there is no such bitmap
+         * @throws IOException if it exists but could not be read, nothing is cached
+         */
+        @Nullable Bitmap load() throws IOException;
+    }
+
+    private static final int MAX_BITMAP_BYTES = 2 * 1024 * 1024;
+    // Type used for android.R.drawable lookups
+    private static final String SYSTEM_DRAWABLE = "android:drawable";
+
+    // 0 is saved for names that were not found
+    private static final ConcurrentHashMap<String, Integer> resourceIds = new ConcurrentHashMap<>();
+    private static final Set<String> missingBitmaps = OSUtils.newConcurrentSet();
+    private static final LruCache<String, Bitmap> bitmaps = new LruCache<String, Bitmap>(MAX_BITMAP_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getByteCount();
+        }
+    };
+
+    // Lookups that missed the cache, for tests and debugging
+    private static final AtomicInteger lookupCount = new AtomicInteger();
+
+    /**
+     * Cached {@link Resources#getIdentifier(String, String, String)}
+     */
+    static int getIdentifier(@NonNull Resources resources, @NonNull String name, @NonNull String type, @NonNull String packageName) {
+        String key = type + "/" + name;
+        Integer id = resourceIds.get(key);
+        if (id != null)
+            return id;
+
+        lookupCount.incrementAndGet();
+        id = resources.getIdentifier(name, type, packageName);
+        resourceIds.put(key, id);
+        return id;
+    }
+
+    /**
+     * @return the id of an android.R.drawable icon by its field name, 0 if there isn't one
+     */
+    static int getSystemDrawableId(@NonNull String name) {
+        String key = SYSTEM_DRAWABLE + "/" + name;
+        Integer id = resourceIds.get(key);
+        if (id != null)
+            return id;
+
+        lookupCount.incrementAndGet();
+        id = 0;
+        try {
+            id = drawable.class.getField(name).getInt(null);
+        } catch (Throwable t) {}
+
+        resourceIds.put(key, id);
+        return id;
+    }
+
+    /**
+     * @return the bitmap cached for key, otherwise the one from loader which is then cached, null if loader didn't find it
+     * @throws IOException thrown by loader, the key isn't marked as missing
+     */
+    static @Nullable Bitmap getBitmap(@NonNull String key, @NonNull BitmapLoader loader) throws IOException {
+        Bitmap bitmap = bitmaps.get(key);
+        if (bitmap != null)
+            return bitmap;
+
+        if (missingBitmaps.contains(key))
+            return null;
+
+        lookupCount.incrementAndGet();
+        bitmap = loader.load();
+        if (bitmap == null)
+            missingBitmaps.add(key);
+        else
+            bitmaps.put(key, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Called by {@link ActivityLifecycleListener} when the system asks the app to free memory
+     */
+    static void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE)
+            bitmaps.evictAll();
+        else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+            bitmaps.trimToSize(bitmaps.size() / 2);
+    }
+
+    static int getLookupCount() {
+        return lookupCount.get();
+    }
+
+    static void clear() {
+        resourceIds.clear();
+        missingBitmaps.clear();
+        bitmaps.evictAll();
+        lookupCount.set(0);
+    }
+}
@@ -7,13 +7,20 @@ import android.service.notification.StatusBarNotification;
 import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.work.ExistingWorkPolicy;
 import androidx.work.OneTimeWorkRequest;
 import androidx.work.WorkManager;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 class OSNotificationRestoreWorkManager {
@@ -22,13 +29,10 @@ class OSNotificationRestoreWorkManager {
             OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID,
             OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID,
             OneSignalDbContract.NotificationTable.COLUMN_NAME_FULL_DATA,
-            OneSignalDbContract.NotificationTable.COLUMN_NAME_CREATED_TIME
+            OneSignalDbContract.NotificationTable.COLUMN_NAME_CREATED_TIME,
+            OneSignalDbContract.NotificationTable.COLUMN_NAME_GROUP_ID
     };
 
-    // Delay to prevent logcat messages and possibly skipping some notifications
-    //    This prevents the following error;
-    // E/NotificationService: Package enqueue rate is 10.56985. Shedding events. package=####
-    private static final int DELAY_BETWEEN_NOTIFICATION_RESTORES_MS = 200;
     private static final String NOTIFICATION_RESTORE_WORKER_IDENTIFIER = NotificationRestoreWorker.class.getCanonicalName();
 
     static final int DEFAULT_TTL_IF_NOT_IN_PAYLOAD = 259_200;
@@ -37,6 +41,13 @@ class OSNotificationRestoreWorkManager {
     //   so we only need to restore at most once per cold start of the app.
     public static boolean restored;
 
+    // Groups whose summary was already rebuilt by the current restore, null when not restoring
+    @Nullable
+    private static volatile Set<String> groupsWithRestoredSummary;
+
+    @Nullable
+    static RestoreMetrics lastRestoreMetrics;
+
     public static void beginEnqueueingWork(Context context, boolean shouldDelay) {
         // When boot or upgrade, add a 15 second delay to alleviate app doing to much work all at once
         int restoreDelayInSeconds = shouldDelay ? 15 : 0;
@@ -104,7 +115,7 @@ class OSNotificationRestoreWorkManager {
                     OneSignalDbContract.NotificationTable._ID + " DESC", // sort order, new to old
                     NotificationLimitManager.MAX_NUMBER_OF_NOTIFICATIONS_STR // limit
             );
-            showNotificationsFromCursor(context, cursor, DELAY_BETWEEN_NOTIFICATION_RESTORES_MS, false);
+            restoreNotificationsFromCursor(context, cursor);
             BadgeCountUpdater.update(dbHelper, context);
         } catch (Throwable t) {
             OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error restoring notification records! ", t);
@@ -139,6 +150,181 @@ class OSNotificationRestoreWorkManager {
                 .append(")");
     }
 
+    /**
+     * Restores notifications back to the notification shade in one batch
+     * - Rows are read from the cursor once and payloads are parsed before anything is posted
+     * - Notifications of the same group are posted together and the group summary is only rebuilt once
+     * - Posts are paced with {@link OSNotificationRateLimiter} so the system doesn't drop them
+     */
+    static void restoreNotificationsFromCursor(Context context, Cursor cursor) {
+        RestoreMetrics metrics = new RestoreMetrics();
+        long startTime = OneSignal.getTime().getElapsedRealtime();
+
+        List<RestoreRecord> records = readRecords(cursor);
+        long readTime = OneSignal.getTime().getElapsedRealtime();
+        metrics.readMillis = readTime - startTime;
+        metrics.notificationCount = records.size();
+        lastRestoreMetrics = metrics;
+        if (records.isEmpty())
+            return;
+
+        parsePayloads(records);
+        long parseTime = OneSignal.getTime().getElapsedRealtime();
+        metrics.parseMillis = parseTime - readTime;
+
+        OSNotificationRateLimiter rateLimiter = new OSNotificationRateLimiter();
+        Set<String> restoredSummaries = OSUtils.newConcurrentSet();
+        groupsWithRestoredSummary = restoredSummaries;
+        try {
+            for (List<RestoreRecord> group : groupRecords(records)) {
+                for (RestoreRecord record : group) {
+                    if (record.payload == null) {
+                        metrics.failedCount++;
+                        continue;
+                    }
+
+                    metrics.rateLimitWaitMillis += rateLimiter.awaitNextPost();
+                    // The first notification restored in a group also posts the group summary
+                    if (record.groupId != null && !restoredSummaries.contains(record.groupId))
+                        metrics.rateLimitWaitMillis += rateLimiter.awaitNextPost();
+
+                    OSNotificationWorkManager.processNotificationData(
+                            context,
+                            record.androidNotificationId,
+                            record.payload,
+                            true,
+                            record.createdTime
+                    );
+                    metrics.restoredCount++;
+                }
+            }
+        } finally {
+            groupsWithRestoredSummary = null;
+        }
+
+        metrics.summaryCount = restoredSummaries.size();
+        metrics.postMillis = OneSignal.getTime().getElapsedRealtime() - parseTime;
+        OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "Restored notifications: " + metrics);
+    }
+
+    /**
+     * Called when a restored notification in a group is displayed
+     * @return false if the summary of the group was already rebuilt by the current restore
+     */
+    static boolean shouldRestoreSummary(String group) {
+        Set<String> restoredSummaries = groupsWithRestoredSummary;
+        return restoredSummaries == null || restoredSummaries.add(group);
+    }
+
+    /**
+     * @return true while {@link #restoreNotificationsFromCursor} is pacing posts
+     */
+    static boolean isRestoringBatch() {
+        return groupsWithRestoredSummary != null;
+    }
+
+    private static List<RestoreRecord> readRecords(Cursor cursor) {
+        List<RestoreRecord> records = new ArrayList<>(cursor.getCount());
+        if (!cursor.moveToFirst())
+            return records;
+
+        int notificationIdIndex = cursor.getColumnIndex(OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID);
+        int androidNotificationIdIndex = cursor.getColumnIndex(OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID);
+        int fullDataIndex = cursor.getColumnIndex(OneSignalDbContract.NotificationTable.COLUMN_NAME_FULL_DATA);
+        int createdTimeIndex = cursor.getColumnIndex(OneSignalDbContract.NotificationTable.COLUMN_NAME_CREATED_TIME);
+        int groupIdIndex = cursor.getColumnIndex(OneSignalDbContract.NotificationTable.COLUMN_NAME_GROUP_ID);
+
+        do {
+            records.add(new RestoreRecord(
+                    cursor.getString(notificationIdIndex),
+                    cursor.getInt(androidNotificationIdIndex),
+                    cursor.getString(fullDataIndex),
+                    cursor.getLong(createdTimeIndex),
+                    cursor.getString(groupIdIndex)
+            ));
+        } while (cursor.moveToNext());
+
+        return records;
+    }
+
+    // Parsed on the restore thread, a pool per restore costs more to start than parsing takes
+    private static void parsePayloads(List<RestoreRecord> records) {
+        for (RestoreRecord record : records)
+            record.parsePayload();
+    }
+
+    /**
+     * Groups notifications by group_id, keeping the newest to oldest order of the cursor
+     * Notifications without a group are each their own entry
+     */
+    private static List<List<RestoreRecord>> groupRecords(List<RestoreRecord> records) {
+        LinkedHashMap<String, List<RestoreRecord>> groups = new LinkedHashMap<>();
+        for (RestoreRecord record : records) {
+            // Android notification ids are unique, use them as keys for notifications without a group
+            String key = record.groupId != null ? "grp:" + record.groupId : "id:" + record.androidNotificationId;
+            List<RestoreRecord> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+            }
+            group.add(record);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private static class RestoreRecord {
+        private final String osNotificationId;
+        private final int androidNotificationId;
+        private final String fullData;
+        private final long createdTime;
+        @Nullable
+        private final String groupId;
+        // Set by parsePayload, null if the payload could not be parsed
+        @Nullable
+        private JSONObject payload;
+
+        RestoreRecord(String osNotificationId, int androidNotificationId, String fullData, long createdTime, @Nullable String groupId) {
+            this.osNotificationId = osNotificationId;
+            this.androidNotificationId = androidNotificationId;
+            this.fullData = fullData;
+            this.createdTime = createdTime;
+            this.groupId = groupId;
+        }
+
+        void parsePayload() {
+            try {
+                payload = new JSONObject(fullData);
+            } catch (JSONException | NullPointerException e) {
+                OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Error parsing notification to restore with notificationId: " + osNotificationId, e);
+            }
+        }
+    }
+
+    static class RestoreMetrics {
+        int notificationCount;
+        int restoredCount;
+        int failedCount;
+        int summaryCount;
+        long readMillis;
+        long parseMillis;
+        long postMillis;
+        long rateLimitWaitMillis;
+
+        @Override
+        public String toString() {
+            return "RestoreMetrics{" +
+                    "notificationCount=" + notificationCount +
+                    ", restoredCount=" + restoredCount +
+                    ", failedCount=" + failedCount +
+                    ", summaryCount=" + summaryCount +
+                    ", readMillis=" + readMillis +
+                    ", parseMillis=" + parseMillis +
+                    ", postMillis=" + postMillis +
+                    ", rateLimitWaitMillis=" + rateLimitWaitMillis +
+                    '}';
+        }
+    }
+
     /**
      * Restores a set of notifications back to the notification shade based on an SQL cursor
      * @param cursor - Source cursor to generate notifications from
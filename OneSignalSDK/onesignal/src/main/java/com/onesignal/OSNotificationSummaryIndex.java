@@ -0,0 +1,263 @@
+package com.onesignal;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.onesignal.OneSignalDbContract.NotificationTable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In memory copy of the notifications in each group that are still in the shade, used to build summary notifications
+ * - A group is read from the notification table the first time it is used, the table stays the source of truth
+ * - Inserts, opens and dismisses of a notification update its group in place instead of querying the whole group again
+ * - Changes to many notifications at once, ex: {@link OneSignal#clearOneSignalNotifications()}, drop the groups
+ *     so they are read again on next use
+ *
+ * Every write to the notification table has to go through one of the on* methods or {@link #invalidate}
+ */
+class OSNotificationSummaryIndex {
+
+    static class Child {
+        final int androidNotificationId;
+        final long createdTime;
+        @Nullable final String title;
+        @Nullable final String message;
+        @Nullable private final String fullData;
+        // Parsed on first use, only the newest child of a group is normally needed
+        @Nullable private OSNotificationPayload payload;
+
+        Child(int androidNotificationId, long createdTime, @Nullable String title, @Nullable String message, @Nullable String fullData) {
+            this.androidNotificationId = androidNotificationId;
+            this.createdTime = createdTime;
+            this.title = title;
+            this.message = message;
+            this.fullData = fullData;
+        }
+
+        synchronized @Nullable OSNotificationPayload getPayload() {
+            if (payload == null && fullData != null) {
+                try {
+                    payload = new OSNotificationPayload(new JSONObject(fullData));
+                } catch (JSONException e) {
+                    e.printStackTrace();
+                }
+            }
+            return payload;
+        }
+    }
+
+    /**
+     * Copy of a group at the time it was read
+     */
+    static class Group {
+        @Nullable final Integer summaryAndroidNotificationId;
+        // Newest to oldest
+        @NonNull final List<Child> children;
+
+        private Group(@Nullable Integer summaryAndroidNotificationId, @NonNull List<Child> children) {
+            this.summaryAndroidNotificationId = summaryAndroidNotificationId;
+            this.children = children;
+        }
+    }
+
+    private static class GroupState {
+        @Nullable Integer summaryAndroidNotificationId;
+        final LinkedList<Child> children = new LinkedList<>();
+
+        boolean containsChild(int androidNotificationId) {
+            for (Child child : children) {
+                if (child.androidNotificationId == androidNotificationId)
+                    return true;
+            }
+            return false;
+        }
+
+        boolean removeChild(int androidNotificationId) {
+            Iterator<Child> iterator = children.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().androidNotificationId == androidNotificationId) {
+                    iterator.remove();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final String[] COLUMNS = {
+            NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID,
+            NotificationTable.COLUMN_NAME_IS_SUMMARY,
+            NotificationTable.COLUMN_NAME_TITLE,
+            NotificationTable.COLUMN_NAME_MESSAGE,
+            NotificationTable.COLUMN_NAME_FULL_DATA,
+            NotificationTable.COLUMN_NAME_CREATED_TIME
+    };
+
+    private static final ConcurrentHashMap<String, GroupState> groups = new ConcurrentHashMap<>();
+
+    // Incremented on every change to the notification table
+    private static final AtomicInteger writeCount = new AtomicInteger();
+    // Groups read from the db, for tests and debugging
+    private static final AtomicInteger loadCount = new AtomicInteger();
+
+    /**
+     * @return notifications of the group that were not opened or dismissed, reads them from the db on first use
+     */
+    static @NonNull Group getGroup(@NonNull OneSignalDb db, @NonNull String group) {
+        GroupState state = groups.get(group);
+        if (state == null) {
+            int writesBeforeLoad = writeCount.get();
+            GroupState loadedState = load(db, group);
+            state = groups.putIfAbsent(group, loadedState);
+            if (state == null) {
+                state = loadedState;
+                // A write during the load may not be in what was read, use it this time without keeping it
+                if (writeCount.get() != writesBeforeLoad)
+                    groups.remove(group, loadedState);
+            }
+        }
+
+        synchronized (state) {
+            return new Group(state.summaryAndroidNotificationId, new ArrayList<>(state.children));
+        }
+    }
+
+    /**
+     * A notification was saved to the notification table and is displayed
+     */
+    static void onChildInserted(@NonNull String group, int androidNotificationId, @Nullable String title, @Nullable String message, @Nullable String fullData) {
+        writeCount.incrementAndGet();
+        GroupState state = groups.get(group);
+        // Not read yet, the new row will be read with the rest of the group
+        if (state == null)
+            return;
+
+        synchronized (state) {
+            // Group may have been read from the db after the row was inserted
+            if (state.containsChild(androidNotificationId))
+                return;
+
+            long createdTime = OneSignal.getTime().getCurrentTimeMillis() / 1_000L;
+            state.children.addFirst(new Child(androidNotificationId, createdTime, title, message, fullData));
+        }
+    }
+
+    static void onSummaryInserted(@NonNull String group, int androidNotificationId) {
+        writeCount.incrementAndGet();
+        GroupState state = groups.get(group);
+        if (state == null)
+            return;
+
+        synchronized (state) {
+            state.summaryAndroidNotificationId = androidNotificationId;
+        }
+    }
+
+    static void onSummaryRemoved(@NonNull String group) {
+        writeCount.incrementAndGet();
+        GroupState state = groups.get(group);
+        if (state == null)
+            return;
+
+        synchronized (state) {
+            state.summaryAndroidNotificationId = null;
+        }
+    }
+
+    /**
+     * A notification was opened or dismissed, android notification ids are unique so its group doesn't need to be known
+     */
+    static void onNotificationRemoved(int androidNotificationId) {
+        writeCount.incrementAndGet();
+        for (GroupState state : groups.values()) {
+            synchronized (state) {
+                if (state.removeChild(androidNotificationId))
+                    return;
+                if (state.summaryAndroidNotificationId != null && state.summaryAndroidNotificationId == androidNotificationId) {
+                    state.summaryAndroidNotificationId = null;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Many notifications of the group changed at once, it is read from the db again on next use
+     */
+    static void invalidate(@NonNull String group) {
+        writeCount.incrementAndGet();
+        groups.remove(group);
+    }
+
+    static void invalidateAll() {
+        writeCount.incrementAndGet();
+        groups.clear();
+    }
+
+    private static GroupState load(OneSignalDb db, String group) {
+        loadCount.incrementAndGet();
+        GroupState state = new GroupState();
+        Cursor cursor = null;
+        try {
+            cursor = db.query(
+                    NotificationTable.TABLE_NAME,
+                    COLUMNS,
+                    NotificationTable.COLUMN_NAME_GROUP_ID + " = ? AND " +   // Where String
+                            NotificationTable.COLUMN_NAME_DISMISSED + " = 0 AND " +
+                            NotificationTable.COLUMN_NAME_OPENED + " = 0",
+                    new String[] { group },
+                    null,                              // group by
+                    null,                              // filter by row groups
+                    NotificationTable._ID + " DESC"    // sort order, new to old
+            );
+
+            if (cursor.moveToFirst()) {
+                int androidNotificationIdIndex = cursor.getColumnIndex(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID);
+                int isSummaryIndex = cursor.getColumnIndex(NotificationTable.COLUMN_NAME_IS_SUMMARY);
+                int titleIndex = cursor.getColumnIndex(NotificationTable.COLUMN_NAME_TITLE);
+                int messageIndex = cursor.getColumnIndex(NotificationTable.COLUMN_NAME_MESSAGE);
+                int fullDataIndex = cursor.getColumnIndex(NotificationTable.COLUMN_NAME_FULL_DATA);
+                int createdTimeIndex = cursor.getColumnIndex(NotificationTable.COLUMN_NAME_CREATED_TIME);
+
+                do {
+                    int androidNotificationId = cursor.getInt(androidNotificationIdIndex);
+                    if (cursor.getInt(isSummaryIndex) == 1)
+                        state.summaryAndroidNotificationId = androidNotificationId;
+                    else {
+                        state.children.add(new Child(
+                                androidNotificationId,
+                                cursor.getLong(createdTimeIndex),
+                                cursor.getString(titleIndex),
+                                cursor.getString(messageIndex),
+                                cursor.getString(fullDataIndex)
+                        ));
+                    }
+                } while (cursor.moveToNext());
+            }
+        } finally {
+            if (cursor != null && !cursor.isClosed())
+                cursor.close();
+        }
+        return state;
+    }
+
+    static int getLoadCount() {
+        return loadCount.get();
+    }
+
+    static void clear() {
+        groups.clear();
+        loadCount.set(0);
+    }
+}
@@ -17,10 +17,6 @@ import com.google.common.util.concurrent.ListenableFuture;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.util.Set;
-
-import static com.onesignal.OSUtils.isStringNotEmpty;
-
 class OSNotificationWorkManager {
 
     private static final String OS_NOTIFICATION_ID = "os_bnotification_id";
@@ -29,30 +25,6 @@ class OSNotificationWorkManager {
     private static final String TIMESTAMP_WORKER_DATA_PARAM = "timestamp";
     private static final String IS_RESTORING_WORKER_DATA_PARAM = "is_restoring";
 
-    private static Set<String> notificationIds = OSUtils.newConcurrentSet();
-
-    static boolean addNotificationIdProcessed(String osNotificationId) {
-        // Duplicate control
-        // Keep in memory on going processed notifications, to avoid fast duplicates that already finished work process but are not completed yet
-        // enqueueUniqueWork might not be enough, if the work already finished then the duplicate notification work might be queued again
-        if (isStringNotEmpty(osNotificationId)) {
-            if (notificationIds.contains(osNotificationId)) {
-                OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSNotificationWorkManager notification with notificationId: " + osNotificationId + " already queued");
-                return false;
-            } else {
-                notificationIds.add(osNotificationId);
-            }
-        }
-
-        return true;
-    }
-
-    static void removeNotificationIdProcessed(String osNotificationId) {
-        if (isStringNotEmpty(osNotificationId)) {
-            notificationIds.remove(osNotificationId);
-        }
-    }
-
     static void beginEnqueueingWork(Context context, String osNotificationId, int androidNotificationId, String jsonPayload, long timestamp,
                                     boolean isRestoring, boolean isHighPriority, boolean needsWorkerThread) {
         if (!needsWorkerThread) {
@@ -139,8 +111,10 @@ class OSNotificationWorkManager {
     static void processNotificationData(CallbackToFutureAdapter.Completer<ListenableWorker.Result> completer,
                                  Context context, int androidNotificationId, JSONObject jsonPayload,
                                  boolean isRestoring, Long timestamp) {
-        OSNotification notification = new OSNotification(null, jsonPayload, androidNotificationId);
-        OSNotificationController controller = new OSNotificationController(completer, context, jsonPayload, isRestoring, true, timestamp);
+        // Parsed once here, every step after this reads the same payload
+        OSNotificationPayload payload = new OSNotificationPayload(jsonPayload);
+        OSNotification notification = new OSNotification(null, payload, androidNotificationId);
+        OSNotificationController controller = new OSNotificationController(completer, context, payload, isRestoring, true, timestamp);
         OSNotificationReceivedEvent notificationReceived = new OSNotificationReceivedEvent(controller, notification);
 
         if (OneSignal.remoteNotificationReceivedHandler != null)
@@ -0,0 +1,400 @@
+package com.onesignal;
+
+import android.content.BroadcastReceiver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.onesignal.OneSignalDbContract.OutboundRequestTable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Persists requests that failed because of the network or a server error so they are not lost on process death.
+ * Requests are replayed with exponential backoff and jitter on the next init, app focus
+ * or connectivity regain.
+ * Only one request is kept per idempotency key, enqueueing a key twice keeps the first request.
+ */
+class OSOutboundRequestQueue {
+
+    static final String METHOD_POST = "POST";
+    static final String METHOD_PUT = "PUT";
+
+    private static final String OS_OUTBOUND_REPLAY_THREAD = "OS_OUTBOUND_REPLAY";
+
+    private static final long BASE_BACKOFF_MS = 30_000;
+    private static final long MAX_BACKOFF_MS = 6 * 60 * 60 * 1_000L; // 6 hours
+    private static final long MAX_REQUEST_AGE_MS = 7 * 24 * 60 * 60 * 1_000L; // 7 days
+    static final int MAX_ATTEMPTS = 10;
+    private static final int REPLAY_PAGE_SIZE = 50;
+
+    private static final int RESULT_NO_RESPONSE = 0;
+    private static final int RESULT_SENT = 1;
+    private static final int RESULT_DROP = 2;
+    private static final int RESULT_RETRY = 3;
+
+    private static OSOutboundRequestQueue sInstance;
+
+    private final OneSignalDb dbHelper;
+    private final OSLogger logger;
+    private final OSTime time;
+    private final Random random = new Random();
+    private final AtomicBoolean replaying = new AtomicBoolean();
+
+    private BroadcastReceiver connectivityReceiver;
+    // Avoids a query when nothing was ever queued in this process, unknown until the first replay
+    private volatile boolean mightHavePending = true;
+
+    OSOutboundRequestQueue(OneSignalDb dbHelper, OSLogger logger, OSTime time) {
+        this.dbHelper = dbHelper;
+        this.logger = logger;
+        this.time = time;
+    }
+
+    synchronized static OSOutboundRequestQueue getInstance() {
+        if (sInstance == null)
+            sInstance = new OSOutboundRequestQueue(OneSignal.getDBHelperInstance(), OneSignal.getLogger(), OneSignal.getTime());
+        return sInstance;
+    }
+
+    /**
+     * Network failures, 429 and 5xx responses might succeed later, any other 4xx will fail again
+     */
+    static boolean isRetryableFailure(int statusCode) {
+        return statusCode <= 0 || statusCode == 429 || statusCode >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+    }
+
+    /**
+     * Saves the request for replay if the failure is retryable
+     * @return true if the request is queued and will be sent later
+     */
+    @WorkerThread
+    boolean enqueueIfRetryable(int statusCode, @NonNull String idempotencyKey, @NonNull String method, @NonNull String url, @Nullable JSONObject body) {
+        if (!isRetryableFailure(statusCode))
+            return false;
+
+        return enqueue(idempotencyKey, method, url, body);
+    }
+
+    /**
+     * Callers are ResponseHandler callback threads, the insert is done on the calling thread so its result can be returned
+     * @return true if the request is saved or a request with the same idempotencyKey already was
+     */
+    @WorkerThread
+    boolean enqueue(@NonNull String idempotencyKey, @NonNull String method, @NonNull String url, @Nullable JSONObject body) {
+        synchronized (this) {
+            if (hasRequest(idempotencyKey)) {
+                logger.debug("OSOutboundRequestQueue request already queued with key: " + idempotencyKey);
+                return true;
+            }
+
+            long now = time.getCurrentTimeMillis();
+            final ContentValues values = new ContentValues();
+            values.put(OutboundRequestTable.COLUMN_NAME_IDEMPOTENCY_KEY, idempotencyKey);
+            values.put(OutboundRequestTable.COLUMN_NAME_METHOD, method);
+            values.put(OutboundRequestTable.COLUMN_NAME_URL, url);
+            values.put(OutboundRequestTable.COLUMN_NAME_BODY, body != null ? body.toString() : null);
+            values.put(OutboundRequestTable.COLUMN_NAME_ATTEMPTS, 0);
+            values.put(OutboundRequestTable.COLUMN_NAME_NEXT_ATTEMPT_TIME, now + getBackoffMillis(0));
+            values.put(OutboundRequestTable.COLUMN_NAME_CREATED_TIME, now);
+            boolean saved = dbHelper.runInTransaction(new OneSignalDbBatch.Writes() {
+                @Override
+                public void run(@NonNull OneSignalDbBatch batch) throws SQLException {
+                    batch.insert(OutboundRequestTable.TABLE_NAME, values);
+                }
+            });
+            if (!saved) {
+                logger.error("OSOutboundRequestQueue unable to queue " + method + " request to: " + url + " with key: " + idempotencyKey);
+                return false;
+            }
+            mightHavePending = true;
+        }
+
+        logger.debug("OSOutboundRequestQueue queued " + method + " request to: " + url + " with key: " + idempotencyKey);
+        registerConnectivityReceiver();
+        return true;
+    }
+
+    /**
+     * Sends due requests in the background, does nothing if a replay is already running
+     */
+    void replayPendingRequests() {
+        if (!mightHavePending || replaying.getAndSet(true))
+            return;
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    replay();
+                } finally {
+                    replaying.set(false);
+                }
+            }
+        }, OS_OUTBOUND_REPLAY_THREAD).start();
+    }
+
+    @WorkerThread
+    private void replay() {
+        long now = time.getCurrentTimeMillis();
+        deleteExpiredRequests(now);
+
+        boolean stoppedOnNetworkFailure = false;
+        while (!stoppedOnNetworkFailure) {
+            List<QueuedRequest> dueRequests = getDueRequests(now);
+            if (dueRequests.isEmpty())
+                break;
+
+            List<Long> finishedIds = new ArrayList<>();
+            for (QueuedRequest request : dueRequests) {
+                int result = send(request);
+                if (result == RESULT_SENT || result == RESULT_DROP) {
+                    finishedIds.add(request.id);
+                    continue;
+                }
+
+                if (result == RESULT_RETRY)
+                    scheduleRetry(request, now);
+                // Device is offline or consent is missing, remaining requests would fail the same way
+                stoppedOnNetworkFailure = true;
+                break;
+            }
+
+            deleteRequests(finishedIds);
+            logger.debug("OSOutboundRequestQueue replayed " + finishedIds.size() + " requests");
+
+            if (dueRequests.size() < REPLAY_PAGE_SIZE)
+                break;
+        }
+
+        if (!hasAnyRequest()) {
+            mightHavePending = false;
+            unregisterConnectivityReceiver();
+        }
+    }
+
+    @WorkerThread
+    private int send(final QueuedRequest request) {
+        final int[] result = {RESULT_NO_RESPONSE};
+        OneSignalRestClient.ResponseHandler responseHandler = new OneSignalRestClient.ResponseHandler() {
+            @Override
+            void onSuccess(String response) {
+                result[0] = RESULT_SENT;
+            }
+
+            @Override
+            void onFailure(int statusCode, String response, Throwable throwable) {
+                if (!isRetryableFailure(statusCode)) {
+                    logger.warning("OSOutboundRequestQueue dropping request with key: " + request.idempotencyKey + " statusCode: " + statusCode + " response: " + response);
+                    result[0] = RESULT_DROP;
+                } else
+                    result[0] = RESULT_RETRY;
+            }
+        };
+
+        if (METHOD_PUT.equals(request.method))
+            OneSignalRestClient.putSync(request.url, request.body, responseHandler);
+        else
+            OneSignalRestClient.postSync(request.url, request.body, responseHandler);
+
+        return result[0];
+    }
+
+    private void scheduleRetry(QueuedRequest request, long now) {
+        int attempts = request.attempts + 1;
+        if (attempts >= MAX_ATTEMPTS) {
+            logger.warning("OSOutboundRequestQueue giving up on request with key: " + request.idempotencyKey + " after " + attempts + " attempts");
+            List<Long> ids = new ArrayList<>();
+            ids.add(request.id);
+            deleteRequests(ids);
+            return;
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(OutboundRequestTable.COLUMN_NAME_ATTEMPTS, attempts);
+        values.put(OutboundRequestTable.COLUMN_NAME_NEXT_ATTEMPT_TIME, now + getBackoffMillis(attempts));
+        dbHelper.update(OutboundRequestTable.TABLE_NAME, values, OutboundRequestTable._ID + " = ?", new String[]{ String.valueOf(request.id) });
+    }
+
+    /**
+     * Exponential backoff with equal jitter, half of the delay is fixed and the other half is random
+     */
+    long getBackoffMillis(int attempts) {
+        long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempts, 20));
+        long half = backoff / 2;
+        return half + (long) (random.nextDouble() * half);
+    }
+
+    private boolean hasRequest(String idempotencyKey) {
+        Cursor cursor = null;
+        try {
+            cursor = dbHelper.query(
+                    OutboundRequestTable.TABLE_NAME,
+                    new String[]{ OutboundRequestTable._ID },
+                    OutboundRequestTable.COLUMN_NAME_IDEMPOTENCY_KEY + " = ?",
+                    new String[]{ idempotencyKey },
+                    null,
+                    null,
+                    null,
+                    "1"
+            );
+            return cursor.getCount() > 0;
+        } finally {
+            if (cursor != null && !cursor.isClosed())
+                cursor.close();
+        }
+    }
+
+    private boolean hasAnyRequest() {
+        Cursor cursor = null;
+        try {
+            cursor = dbHelper.query(OutboundRequestTable.TABLE_NAME, new String[]{ OutboundRequestTable._ID }, null, null, null, null, null, "1");
+            return cursor.getCount() > 0;
+        } finally {
+            if (cursor != null && !cursor.isClosed())
+                cursor.close();
+        }
+    }
+
+    private List<QueuedRequest> getDueRequests(long now) {
+        List<QueuedRequest> requests = new ArrayList<>();
+        List<Long> invalidIds = new ArrayList<>();
+        Cursor cursor = null;
+        try {
+            cursor = dbHelper.query(
+                    OutboundRequestTable.TABLE_NAME,
+                    null,
+                    OutboundRequestTable.COLUMN_NAME_NEXT_ATTEMPT_TIME + " <= ?",
+                    new String[]{ String.valueOf(now) },
+                    null,
+                    null,
+                    OutboundRequestTable.COLUMN_NAME_NEXT_ATTEMPT_TIME + " ASC",
+                    String.valueOf(REPLAY_PAGE_SIZE)
+            );
+
+            if (cursor.moveToFirst()) {
+                int idIndex = cursor.getColumnIndex(OutboundRequestTable._ID);
+                int keyIndex = cursor.getColumnIndex(OutboundRequestTable.COLUMN_NAME_IDEMPOTENCY_KEY);
+                int methodIndex = cursor.getColumnIndex(OutboundRequestTable.COLUMN_NAME_METHOD);
+                int urlIndex = cursor.getColumnIndex(OutboundRequestTable.COLUMN_NAME_URL);
+                int bodyIndex = cursor.getColumnIndex(OutboundRequestTable.COLUMN_NAME_BODY);
+                int attemptsIndex = cursor.getColumnIndex(OutboundRequestTable.COLUMN_NAME_ATTEMPTS);
+                do {
+                    String body = cursor.getString(bodyIndex);
+                    try {
+                        requests.add(new QueuedRequest(
+                                cursor.getLong(idIndex),
+                                cursor.getString(keyIndex),
+                                cursor.getString(methodIndex),
+                                cursor.getString(urlIndex),
+                                body != null ? new JSONObject(body) : null,
+                                cursor.getInt(attemptsIndex)
+                        ));
+                    } catch (JSONException e) {
+                        logger.error("OSOutboundRequestQueue dropping request with invalid JSON body: " + body, e);
+                        invalidIds.add(cursor.getLong(idIndex));
+                    }
+                } while (cursor.moveToNext());
+            }
+        } finally {
+            if (cursor != null && !cursor.isClosed())
+                cursor.close();
+        }
+        deleteRequests(invalidIds);
+        return requests;
+    }
+
+    private void deleteExpiredRequests(long now) {
+        dbHelper.delete(
+                OutboundRequestTable.TABLE_NAME,
+                OutboundRequestTable.COLUMN_NAME_CREATED_TIME + " < ?",
+                new String[]{ String.valueOf(now - MAX_REQUEST_AGE_MS) }
+        );
+    }
+
+    // Deletes all rows in a single statement
+    private void deleteRequests(List<Long> ids) {
+        if (ids.isEmpty())
+            return;
+
+        StringBuilder where = new StringBuilder(OutboundRequestTable._ID + " IN (");
+        String[] whereArgs = new String[ids.size()];
+        for (int i = 0; i < ids.size(); i++) {
+            where.append(i == 0 ? "?" : ",?");
+            whereArgs[i] = String.valueOf(ids.get(i));
+        }
+        where.append(")");
+
+        dbHelper.delete(OutboundRequestTable.TABLE_NAME, where.toString(), whereArgs);
+    }
+
+    private synchronized void registerConnectivityReceiver() {
+        if (connectivityReceiver != null || OneSignal.appContext == null)
+            return;
+
+        connectivityReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+                NetworkInfo netInfo = cm != null ? cm.getActiveNetworkInfo() : null;
+                if (netInfo != null && netInfo.isConnected()) {
+                    logger.debug("OSOutboundRequestQueue connectivity regained, replaying queued requests");
+                    replayPendingRequests();
+                }
+            }
+        };
+
+        try {
+            OneSignal.appContext.registerReceiver(connectivityReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        } catch (Throwable t) {
+            logger.error("OSOutboundRequestQueue unable to register connectivity receiver", t);
+            connectivityReceiver = null;
+        }
+    }
+
+    private synchronized void unregisterConnectivityReceiver() {
+        if (connectivityReceiver == null)
+            return;
+
+        try {
+            OneSignal.appContext.unregisterReceiver(connectivityReceiver);
+        } catch (Throwable t) {
+            logger.error("OSOutboundRequestQueue unable to unregister connectivity receiver", t);
+        }
+        connectivityReceiver = null;
+    }
+
+    private static class QueuedRequest {
+        private final long id;
+        private final String idempotencyKey;
+        private final String method;
+        private final String url;
+        private final JSONObject body;
+        private final int attempts;
+
+        QueuedRequest(long id, String idempotencyKey, String method, String url, JSONObject body, int attempts) {
+            this.id = id;
+            this.idempotencyKey = idempotencyKey;
+            this.method = method;
+            this.url = url;
+            this.body = body;
+            this.attempts = attempts;
+        }
+    }
+}
@@ -9,10 +9,12 @@ import com.onesignal.influence.domain.OSInfluence;
 import com.onesignal.influence.domain.OSInfluenceType;
 import com.onesignal.outcomes.data.OSOutcomeEventsFactory;
 import com.onesignal.outcomes.domain.OSOutcomeEventParams;
+import com.onesignal.outcomes.domain.OSOutcomeEventsRepository;
 import com.onesignal.outcomes.domain.OSOutcomeSource;
 import com.onesignal.outcomes.domain.OSOutcomeSourceBody;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -22,6 +24,9 @@ class OSOutcomeEventsController {
     private static final String OS_SEND_SAVED_OUTCOMES = "OS_SEND_SAVED_OUTCOMES";
     private static final String OS_SAVE_UNIQUE_OUTCOME_NOTIFICATIONS = "OS_SAVE_UNIQUE_OUTCOME_NOTIFICATIONS";
 
+    // Saved events aggregated together when sending in batches, the most held at once
+    private static final int SAVED_OUTCOMES_PAGE_SIZE = 1_000;
+
     private final static String OS_DELETE_CACHED_UNIQUE_OUTCOMES_NOTIFICATIONS_THREAD = "OS_DELETE_CACHED_UNIQUE_OUTCOMES_NOTIFICATIONS_THREAD";
 
     // Keeps track of unique outcome events sent for UNATTRIBUTED sessions on a per session level
@@ -77,6 +82,7 @@ class OSOutcomeEventsController {
     /**
      * Any outcomes cached in local DB will be reattempted to be sent again
      * Cached outcomes come from the failure callback of the network request
+     * With outcomes batch enabled, events are aggregated and sent in batch requests instead of one request per event
      */
     void sendSavedOutcomes() {
         new Thread(new Runnable() {
@@ -84,14 +90,48 @@ class OSOutcomeEventsController {
             public void run() {
                 Thread.currentThread().setPriority(Process.THREAD_PRIORITY_BACKGROUND);
 
-                List<OSOutcomeEventParams> outcomeEvents = outcomeEventsFactory.getRepository().getSavedOutcomeEvents();
-                for (OSOutcomeEventParams event : outcomeEvents) {
-                    sendSavedOutcomeEvent(event);
+                OSOutcomeEventsRepository repository = outcomeEventsFactory.getRepository();
+                // Read page by page, a long offline period can leave thousands of saved outcomes
+                Iterator<OSOutcomeEventParams> outcomeEvents = repository.getSavedOutcomeEventsIterator();
+                if (repository.isOutcomesBatchEnabled()) {
+                    List<OSOutcomeEventParams> page = new ArrayList<>();
+                    while (outcomeEvents.hasNext()) {
+                        page.add(outcomeEvents.next());
+                        if (page.size() == SAVED_OUTCOMES_PAGE_SIZE || !outcomeEvents.hasNext()) {
+                            for (List<OSOutcomeEventParams> batch : repository.getOutcomeEventBatches(page)) {
+                                sendSavedOutcomeEvents(batch);
+                            }
+                            page = new ArrayList<>();
+                        }
+                    }
+                    return;
+                }
+
+                while (outcomeEvents.hasNext()) {
+                    sendSavedOutcomeEvent(outcomeEvents.next());
                 }
             }
         }, OS_SEND_SAVED_OUTCOMES).start();
     }
 
+    private void sendSavedOutcomeEvents(@NonNull final List<OSOutcomeEventParams> events) {
+        int deviceType = new OSUtils().getDeviceType();
+        String appId = OneSignal.appId;
+
+        OneSignalApiResponseHandler responseHandler = new OneSignalApiResponseHandler() {
+            @Override
+            public void onSuccess(String response) {
+                outcomeEventsFactory.getRepository().removeEvents(events);
+            }
+
+            @Override
+            public void onFailure(int statusCode, String response, Throwable throwable) {
+            }
+        };
+
+        outcomeEventsFactory.getRepository().requestMeasureOutcomeEvents(appId, deviceType, events, responseHandler);
+    }
+
     private void sendSavedOutcomeEvent(@NonNull final OSOutcomeEventParams event) {
         int deviceType = new OSUtils().getDeviceType();
         String appId = OneSignal.appId;
@@ -131,12 +171,12 @@ class OSOutcomeEventsController {
 
     void sendOutcomeEvent(@NonNull final String name, @Nullable final OneSignal.OutcomeCallback callback) {
         List<OSInfluence> influences = osSessionManager.getInfluences();
-        sendAndCreateOutcomeEvent(name, 0, influences, callback);
+        sendAndCreateOutcomeEvent(name, 0, false, influences, callback);
     }
 
     void sendOutcomeEventWithValue(@NonNull String name, float weight, @Nullable final OneSignal.OutcomeCallback callback) {
         List<OSInfluence> influences = osSessionManager.getInfluences();
-        sendAndCreateOutcomeEvent(name, weight, influences, callback);
+        sendAndCreateOutcomeEvent(name, weight, false, influences, callback);
     }
 
     /**
@@ -176,7 +216,7 @@ class OSOutcomeEventsController {
                 return;
             }
 
-            sendAndCreateOutcomeEvent(name, 0, uniqueInfluences, callback);
+            sendAndCreateOutcomeEvent(name, 0, true, uniqueInfluences, callback);
         } else {
             // Make sure unique outcome has not been sent for current unattributed session
             if (unattributedUniqueOutcomeEventsSentOnSession.contains(name)) {
@@ -193,12 +233,13 @@ class OSOutcomeEventsController {
             }
 
             unattributedUniqueOutcomeEventsSentOnSession.add(name);
-            sendAndCreateOutcomeEvent(name, 0, influences, callback);
+            sendAndCreateOutcomeEvent(name, 0, true, influences, callback);
         }
     }
 
     private void sendAndCreateOutcomeEvent(@NonNull final String name,
                                            @NonNull final float weight,
+                                           boolean unique,
                                            @NonNull List<OSInfluence> influences,
                                            @Nullable final OneSignal.OutcomeCallback callback) {
         final long timestampSeconds = OneSignal.getTime().getCurrentTimeMillis() / 1000;
@@ -239,6 +280,7 @@ class OSOutcomeEventsController {
         OSOutcomeSource source = new OSOutcomeSource(directSourceBody, indirectSourceBody);
 
         final OSOutcomeEventParams eventParams = new OSOutcomeEventParams(name, source, weight, 0);
+        eventParams.setUnique(unique);
 
         OneSignalApiResponseHandler responseHandler = new OneSignalApiResponseHandler() {
             @Override
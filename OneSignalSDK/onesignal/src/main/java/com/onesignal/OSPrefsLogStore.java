@@ -0,0 +1,450 @@
+package com.onesignal;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Append only key-value store used by {@link OneSignalPrefs} in place of SharedPreferences
+ * - Each flush appends one record with only the changed keys, SharedPreferences rewrites the whole XML file
+ * - All values are kept in memory, the log is only read when the store is opened
+ * - The log is rewritten with only the live values once it grows over {@link #COMPACT_MIN_BYTES}
+ *     and more than {@link #COMPACT_RATIO} times the size of the values when last compacted
+ *
+ * Record format: [payload length][CRC32 of payload][payload]
+ *    payload: [change count]([key][type][value])*
+ * A record cut short by a process kill is dropped and the log is truncated to the last complete record.
+ */
+class OSPrefsLogStore {
+
+    private static final String STORE_DIR = "onesignal_prefs";
+    private static final String OS_PREFS_LOG_STORE_MIGRATION_THREAD = "OS_PREFS_LOG_STORE_MIGRATION";
+    private static final String LOG_FILE_SUFFIX = ".log";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final long COMPACT_MIN_BYTES = 32 * 1024;
+    static final int COMPACT_RATIO = 2;
+
+    private static final byte TYPE_REMOVE = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_BOOLEAN = 2;
+    private static final byte TYPE_INT = 3;
+    private static final byte TYPE_LONG = 4;
+    private static final byte TYPE_STRING_SET = 5;
+    private static final byte TYPE_FLOAT = 6;
+
+    // Record header, payload length and CRC32
+    private static final int HEADER_BYTES = 8;
+
+    private static HashMap<String, OSPrefsLogStore> stores = new HashMap<>();
+    // Prefs names already moved back into SharedPreferences
+    private static HashSet<String> migratedStores = new HashSet<>();
+
+    /**
+     * Gets the store for the prefs name, {@link #open()} has to be called before reading from it
+     * @return null if OneSignal doesn't have a context yet
+     */
+    static synchronized @Nullable OSPrefsLogStore getStore(@NonNull String prefsName) {
+        OSPrefsLogStore store = stores.get(prefsName);
+        if (store == null) {
+            Context context = OneSignal.appContext;
+            if (context == null)
+                return null;
+
+            store = new OSPrefsLogStore(getLogFile(context, prefsName), context.getSharedPreferences(prefsName, Context.MODE_PRIVATE));
+            stores.put(prefsName, store);
+        }
+        return store;
+    }
+
+    static boolean hasLogFile(@NonNull Context context, @NonNull String prefsName) {
+        return getLogFile(context, prefsName).exists();
+    }
+
+    /**
+     * Moves the values back into SharedPreferences, used when the store is turned off after being used
+     * The values can be read as soon as this returns, waiting on the disk write and deleting the log is done on another thread
+     * Only the first call for a prefs name does anything
+     */
+    static synchronized void migrateToSharedPreferences(@NonNull Context context, @NonNull final String prefsName) {
+        if (!migratedStores.add(prefsName))
+            return;
+
+        final File logFile = getLogFile(context, prefsName);
+        OSPrefsLogStore store = stores.remove(prefsName);
+        if (!logFile.exists())
+            return;
+
+        final SharedPreferences prefs = context.getSharedPreferences(prefsName, Context.MODE_PRIVATE);
+        if (store == null) {
+            store = new OSPrefsLogStore(logFile, prefs);
+            store.load();
+        }
+
+        SharedPreferences.Editor editor = prefs.edit();
+        synchronized (store) {
+            for (Map.Entry<String, Object> entry : store.values.entrySet())
+                putInEditor(editor, entry.getKey(), entry.getValue());
+        }
+        editor.apply();
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // SharedPreferences writes to disk in order, once this commit is done the applied values are on disk too
+                if (prefs.edit().commit())
+                    logFile.delete();
+                else
+                    OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "OSPrefsLogStore: Could not move " + prefsName + " back to SharedPreferences");
+            }
+        }, OS_PREFS_LOG_STORE_MIGRATION_THREAD).start();
+    }
+
+    private static File getLogFile(@NonNull Context context, @NonNull String prefsName) {
+        return new File(new File(context.getFilesDir(), STORE_DIR), prefsName + LOG_FILE_SUFFIX);
+    }
+
+    private final File logFile;
+    private final SharedPreferences sharedPreferences;
+    private final HashMap<String, Object> values = new HashMap<>();
+    private boolean opened;
+    // Bytes currently in the log file
+    private long logBytes;
+    // Bytes of the values as of the last load or compaction
+    private long liveBytes;
+    private int compactionCount;
+
+    OSPrefsLogStore(@NonNull File logFile, @NonNull SharedPreferences sharedPreferences) {
+        this.logFile = logFile;
+        this.sharedPreferences = sharedPreferences;
+    }
+
+    synchronized boolean isOpen() {
+        return opened;
+    }
+
+    // Sets are copied so changes made by the caller don't reach the store without a write, like SharedPreferences
+    synchronized @Nullable Object get(@NonNull String key) {
+        return copyValue(values.get(key));
+    }
+
+    synchronized boolean contains(@NonNull String key) {
+        return values.containsKey(key);
+    }
+
+    synchronized long getLogBytes() {
+        return logBytes;
+    }
+
+    synchronized int getCompactionCount() {
+        return compactionCount;
+    }
+
+    /**
+     * Applies the changes to the in memory values, null values remove the key
+     * Only updates memory, call {@link #write(byte[])} with the returned record to save it
+     * @return the record to append to the log, null if it could not be encoded
+     */
+    synchronized @Nullable byte[] update(@NonNull Map<String, Object> changes) {
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            if (change.getValue() == null)
+                values.remove(change.getKey());
+            else
+                values.put(change.getKey(), copyValue(change.getValue()));
+        }
+
+        try {
+            return encodeRecord(changes);
+        } catch (IOException e) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "OSPrefsLogStore: Could not encode changes", e);
+            return null;
+        }
+    }
+
+    /**
+     * Appends a record made by {@link #update(Map)} and syncs it to disk, compacts the log if needed
+     */
+    synchronized void write(@NonNull byte[] record) {
+        try {
+            FileOutputStream outputStream = new FileOutputStream(logFile, true);
+            try {
+                outputStream.write(record);
+                outputStream.getFD().sync();
+            } finally {
+                outputStream.close();
+            }
+            logBytes += record.length;
+        } catch (IOException e) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "OSPrefsLogStore: Could not append to " + logFile.getName(), e);
+            // The in memory values are still correct, rewriting them all puts the log back in sync
+            compact();
+            return;
+        }
+
+        if (logBytes > COMPACT_MIN_BYTES && logBytes > liveBytes * COMPACT_RATIO)
+            compact();
+    }
+
+    /**
+     * Rewrites the log with a single record holding the current values, the old log is replaced with a rename
+     */
+    synchronized void compact() {
+        File tempFile = new File(logFile.getPath() + TEMP_FILE_SUFFIX);
+        try {
+            byte[] record = encodeRecord(values);
+            FileOutputStream outputStream = new FileOutputStream(tempFile);
+            try {
+                outputStream.write(record);
+                outputStream.getFD().sync();
+            } finally {
+                outputStream.close();
+            }
+
+            if (!tempFile.renameTo(logFile))
+                throw new IOException("Could not rename " + tempFile.getName());
+
+            logBytes = record.length;
+            liveBytes = record.length;
+            compactionCount++;
+        } catch (IOException e) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "OSPrefsLogStore: Could not compact " + logFile.getName(), e);
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Loads the log, values saved in SharedPreferences are moved into it the first time
+     * Reads and may write the log file, call it on the prefs write thread. Does nothing if already open.
+     */
+    synchronized void open() {
+        if (opened)
+            return;
+
+        File directory = logFile.getParentFile();
+        if (!directory.exists() && !directory.mkdirs())
+            OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "OSPrefsLogStore: Could not create " + directory);
+
+        if (logFile.exists()) {
+            load();
+        } else {
+            // First use, values saved before this store existed are in SharedPreferences
+            for (Map.Entry<String, ?> entry : sharedPreferences.getAll().entrySet())
+                values.put(entry.getKey(), copyValue(entry.getValue()));
+            compact();
+
+            // Only clear SharedPreferences once the values are in the log
+            if (logFile.exists() && !values.isEmpty())
+                sharedPreferences.edit().clear().apply();
+        }
+        opened = true;
+    }
+
+    private synchronized void load() {
+        new File(logFile.getPath() + TEMP_FILE_SUFFIX).delete();
+
+        long validBytes = 0;
+        try {
+            DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+            try {
+                while (true) {
+                    int length;
+                    try {
+                        length = inputStream.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (length < 0 || length > logFile.length())
+                        break;
+
+                    long crc = inputStream.readInt() & 0xFFFFFFFFL;
+                    byte[] payload = new byte[length];
+                    inputStream.readFully(payload);
+                    if (crc != crc32(payload))
+                        break;
+
+                    decodePayload(payload);
+                    validBytes += HEADER_BYTES + length;
+                }
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            // Process was killed in the middle of an append, what was read before is kept
+            OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSPrefsLogStore: Incomplete record in " + logFile.getName(), e);
+        }
+
+        if (validBytes < logFile.length()) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "OSPrefsLogStore: Dropping " + (logFile.length() - validBytes) + " unreadable bytes from " + logFile.getName());
+            truncate(validBytes);
+        }
+
+        logBytes = validBytes;
+        try {
+            liveBytes = encodeRecord(values).length;
+        } catch (IOException e) {
+            liveBytes = logBytes;
+        }
+    }
+
+    private void truncate(long length) {
+        try {
+            RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+            try {
+                file.setLength(length);
+            } finally {
+                file.close();
+            }
+        } catch (IOException e) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "OSPrefsLogStore: Could not truncate " + logFile.getName(), e);
+        }
+    }
+
+    private void decodePayload(byte[] payload) throws IOException {
+        DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(payload));
+        int count = inputStream.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = readString(inputStream);
+            byte type = inputStream.readByte();
+            switch (type) {
+                case TYPE_REMOVE:
+                    values.remove(key);
+                    break;
+                case TYPE_STRING:
+                    values.put(key, readString(inputStream));
+                    break;
+                case TYPE_BOOLEAN:
+                    values.put(key, inputStream.readBoolean());
+                    break;
+                case TYPE_INT:
+                    values.put(key, inputStream.readInt());
+                    break;
+                case TYPE_LONG:
+                    values.put(key, inputStream.readLong());
+                    break;
+                case TYPE_STRING_SET:
+                    int size = inputStream.readInt();
+                    Set<String> set = new HashSet<>();
+                    for (int j = 0; j < size; j++)
+                        set.add(readString(inputStream));
+                    values.put(key, set);
+                    break;
+                case TYPE_FLOAT:
+                    values.put(key, inputStream.readFloat());
+                    break;
+                default:
+                    throw new IOException("Unknown value type: " + type);
+            }
+        }
+    }
+
+    private static byte[] encodeRecord(Map<String, ?> changes) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeInt(changes.size());
+        for (Map.Entry<String, ?> change : changes.entrySet()) {
+            writeString(payload, change.getKey());
+            writeValue(payload, change.getValue());
+        }
+        payload.flush();
+
+        byte[] payloadArray = payloadBytes.toByteArray();
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(HEADER_BYTES + payloadArray.length);
+        DataOutputStream record = new DataOutputStream(recordBytes);
+        record.writeInt(payloadArray.length);
+        record.writeInt((int) crc32(payloadArray));
+        record.write(payloadArray);
+        record.flush();
+        return recordBytes.toByteArray();
+    }
+
+    private static void writeValue(DataOutputStream outputStream, Object value) throws IOException {
+        if (value == null) {
+            outputStream.writeByte(TYPE_REMOVE);
+        } else if (value instanceof String) {
+            outputStream.writeByte(TYPE_STRING);
+            writeString(outputStream, (String) value);
+        } else if (value instanceof Boolean) {
+            outputStream.writeByte(TYPE_BOOLEAN);
+            outputStream.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            outputStream.writeByte(TYPE_INT);
+            outputStream.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            outputStream.writeByte(TYPE_LONG);
+            outputStream.writeLong((Long) value);
+        } else if (value instanceof Set) {
+            Set<String> set = (Set<String>) value;
+            outputStream.writeByte(TYPE_STRING_SET);
+            outputStream.writeInt(set.size());
+            for (String item : set)
+                writeString(outputStream, item);
+        } else if (value instanceof Float) {
+            outputStream.writeByte(TYPE_FLOAT);
+            outputStream.writeFloat((Float) value);
+        } else {
+            throw new IOException("Unsupported value type: " + value.getClass());
+        }
+    }
+
+    // DataOutputStream.writeUTF is limited to 64KB, cached in app messages can be larger
+    private static void writeString(DataOutputStream outputStream, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    private static String readString(DataInputStream inputStream) throws IOException {
+        byte[] bytes = new byte[inputStream.readInt()];
+        inputStream.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static long crc32(byte[] bytes) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, 0, bytes.length);
+        return crc32.getValue();
+    }
+
+    // Sets are mutable, keep our own copy like SharedPreferences does
+    private static Object copyValue(Object value) {
+        if (value instanceof Set)
+            return new HashSet<>((Set<String>) value);
+        return value;
+    }
+
+    private static void putInEditor(SharedPreferences.Editor editor, String key, Object value) {
+        if (value instanceof String)
+            editor.putString(key, (String) value);
+        else if (value instanceof Boolean)
+            editor.putBoolean(key, (Boolean) value);
+        else if (value instanceof Integer)
+            editor.putInt(key, (Integer) value);
+        else if (value instanceof Long)
+            editor.putLong(key, (Long) value);
+        else if (value instanceof Set)
+            editor.putStringSet(key, (Set<String>) value);
+        else if (value instanceof Float)
+            editor.putFloat(key, (Float) value);
+    }
+}
@@ -37,13 +37,28 @@ class OSReceiveReceiptRepository {
     private static final String APP_ID = "app_id";
     private static final String PLAYER_ID = "player_id";
 
-    void sendReceiveReceipt(@NonNull String appId, @NonNull String playerId, @NonNull String notificationId, @NonNull OneSignalRestClient.ResponseHandler responseHandler) {
+    void sendReceiveReceipt(@NonNull String appId, @NonNull String playerId, @NonNull final String notificationId, @NonNull final OneSignalRestClient.ResponseHandler responseHandler) {
         try {
-            JSONObject jsonBody = new JSONObject()
+            final JSONObject jsonBody = new JSONObject()
                     .put(APP_ID, appId)
                     .put(PLAYER_ID, playerId);
 
-            OneSignalRestClient.put("notifications/" + notificationId + "/report_received", jsonBody, responseHandler);
+            final String url = "notifications/" + notificationId + "/report_received";
+            final String idempotencyKey = "receive_receipt_" + notificationId;
+            OneSignalRestClient.put(url, jsonBody, new OneSignalRestClient.ResponseHandler() {
+                @Override
+                void onSuccess(String response) {
+                    responseHandler.onSuccess(response);
+                }
+
+                @Override
+                void onFailure(int statusCode, String response, Throwable throwable) {
+                    // Network or server error, send the receipt later instead of dropping it
+                    if (OSOutboundRequestQueue.getInstance().enqueueIfRetryable(statusCode, idempotencyKey, OSOutboundRequestQueue.METHOD_PUT, url, jsonBody))
+                        OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "Receive receipt queued for retry for notificationID: " + notificationId);
+                    responseHandler.onFailure(statusCode, response, throwable);
+                }
+            });
         } catch (JSONException e) {
             OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "Generating direct receive receipt:JSON Failed.", e);
         }
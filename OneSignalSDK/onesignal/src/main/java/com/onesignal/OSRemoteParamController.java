@@ -38,6 +38,17 @@ class OSRemoteParamController {
                 preferences.getOutcomesV2KeyName(),
                 remoteParams.influenceParams.outcomesV2ServiceEnabled
         );
+        OneSignalPrefs.saveBool(
+                OneSignalPrefs.PREFS_ONESIGNAL,
+                preferences.getOutcomesBatchKeyName(),
+                remoteParams.influenceParams.outcomesBatchEnabled
+        );
+
+        OneSignalPrefs.saveBool(
+                OneSignalPrefs.PREFS_ONESIGNAL,
+                OneSignalPrefs.PREFS_OS_GZIP_REQUESTS_ENABLED,
+                remoteParams.gzipRequestsEnabled
+        );
 
         saveReceiveReceiptEnabled(remoteParams.receiveReceiptEnabled);
 
@@ -52,6 +63,8 @@ class OSRemoteParamController {
             OneSignal.startLocationShared(remoteParams.locationShared);
         if (remoteParams.requiresUserPrivacyConsent != null)
             savePrivacyConsentRequired(remoteParams.requiresUserPrivacyConsent);
+        if (remoteParams.onFocusFlushInterval != null)
+            saveOnFocusFlushInterval(remoteParams.onFocusFlushInterval);
     }
 
     boolean isRemoteParamsCallDone() {
@@ -90,6 +103,14 @@ class OSRemoteParamController {
         );
     }
 
+    private void saveOnFocusFlushInterval(int onFocusFlushInterval) {
+        OneSignalPrefs.saveInt(
+                OneSignalPrefs.PREFS_ONESIGNAL,
+                OneSignalPrefs.PREFS_OS_ON_FOCUS_FLUSH_INTERVAL,
+                onFocusFlushInterval
+        );
+    }
+
     boolean isReceiveReceiptEnabled() {
         return OneSignalPrefs.getBool(
                 OneSignalPrefs.PREFS_ONESIGNAL,
@@ -9,6 +9,8 @@ public interface OSSharedPreferences {
 
     String getOutcomesV2KeyName();
 
+    String getOutcomesBatchKeyName();
+
     String getPreferencesName();
 
     String getString(String prefsName, String key, String defValue);
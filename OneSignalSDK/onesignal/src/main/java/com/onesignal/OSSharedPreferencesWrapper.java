@@ -12,6 +12,11 @@ class OSSharedPreferencesWrapper implements OSSharedPreferences {
         return OneSignalPrefs.PREFS_OS_OUTCOMES_V2;
     }
 
+    @Override
+    public String getOutcomesBatchKeyName() {
+        return OneSignalPrefs.PREFS_OS_OUTCOMES_BATCH;
+    }
+
     @Override
     public String getPreferencesName() {
         return OneSignalPrefs.PREFS_ONESIGNAL;
@@ -105,9 +105,9 @@ class OSSyncService extends OSBackgroundSync {
          if (delayMs < 5_000)
             delayMs = 5_000;
 
-         scheduleBackgroundSyncTask(context, delayMs);
-
-         nextScheduledSyncTimeMs = OneSignal.getTime().getCurrentTimeMillis() + delayMs;
+         // Not scheduled while the job is running, it is rescheduled with the job backoff instead
+         if (scheduleBackgroundSyncTask(context, delayMs))
+            nextScheduledSyncTimeMs = OneSignal.getTime().getCurrentTimeMillis() + delayMs;
       }
    }
 
@@ -136,6 +136,10 @@ class OSSyncService extends OSBackgroundSync {
     * Subclasses should override only the stopSync() method
     */
    static abstract class SyncRunnable implements Runnable {
+      // Sync asked for by this run, ex: on_focus time held to the end of its flush window.
+      // Scheduled once the job is finished, while it runs a new job would only get the job backoff delay
+      protected long nextSyncDelayMs;
+
       @Override
       public final void run() {
          synchronized (LOCK) {
@@ -181,11 +185,16 @@ class OSSyncService extends OSBackgroundSync {
          // Both these calls are synchronous
          // Once the queue calls take the code will continue and move on to the syncUserState
          OneSignalStateSynchronizer.syncUserState(true);
-         OneSignal.getFocusTimeController().doBlockingBackgroundSyncOfUnsentTime();
+         nextSyncDelayMs = OneSignal.getFocusTimeController().doBlockingBackgroundSyncOfUnsentTime();
          stopSync();
       }
 
       protected abstract void stopSync();
+
+      protected void scheduleNextSync() {
+         if (nextSyncDelayMs > 0)
+            OSSyncService.getInstance().scheduleSyncTask(OneSignal.appContext, nextSyncDelayMs);
+      }
    }
 
    /**
@@ -209,9 +218,14 @@ class OSSyncService extends OSBackgroundSync {
          // Reschedule if needed
          boolean reschedule = OSSyncService.getInstance().needsJobReschedule;
          OSSyncService.getInstance().needsJobReschedule = false;
+         OSSyncService.getInstance().onSyncBgThreadFinished();
 
          if (jobService.get() != null)
             jobService.get().jobFinished(jobParameters, reschedule);
+
+         // The backoff reschedule runs first, that run schedules the next sync again if still needed
+         if (!reschedule)
+            scheduleNextSync();
       }
    }
 
@@ -231,6 +245,8 @@ class OSSyncService extends OSBackgroundSync {
          OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "LegacySyncRunnable:Stopped");
          if (callerService.get() != null)
             callerService.get().stopSelf();
+
+         scheduleNextSync();
       }
    }
 }
@@ -1,11 +1,16 @@
 package com.onesignal;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 class OSTrigger {
 
     /**
@@ -106,12 +111,71 @@ class OSTrigger {
     @Nullable
     public Object value;
 
+    /**
+     * value converted once when the trigger is parsed, so evaluating the trigger on every
+     * trigger change doesn't convert it again
+     */
+    @Nullable
+    String valueString;
+    double valueDouble;
+
     OSTrigger(JSONObject json) throws JSONException {
         this.triggerId = json.getString("id");
         this.kind = OSTriggerKind.fromString(json.getString("kind"));
         this.property = json.optString("property", null);
         this.operatorType = OSTriggerOperator.fromString(json.getString("operator"));
         this.value = json.opt("value");
+        parseValue();
+    }
+
+    /**
+     * Reads the trigger object from the reader, a JSONException for a missing value is only thrown
+     * after the whole object is read so the reader can keep going
+     */
+    OSTrigger(JsonReader reader) throws IOException, JSONException {
+        String kind = null;
+        String operator = null;
+
+        JSONUtils.expectNext(reader, JsonToken.BEGIN_OBJECT, "Trigger");
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    this.triggerId = JSONUtils.nextStringOrNull(reader);
+                    break;
+                case "kind":
+                    kind = JSONUtils.nextStringOrNull(reader);
+                    break;
+                case "property":
+                    this.property = JSONUtils.nextStringOrNull(reader);
+                    break;
+                case "operator":
+                    operator = JSONUtils.nextStringOrNull(reader);
+                    break;
+                case "value":
+                    this.value = JSONUtils.nextValue(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (this.triggerId == null || kind == null || operator == null)
+            throw new JSONException("Trigger is missing id, kind or operator");
+
+        this.kind = OSTriggerKind.fromString(kind);
+        this.operatorType = OSTriggerOperator.fromString(operator);
+        parseValue();
+    }
+
+    private void parseValue() {
+        if (value == null)
+            return;
+
+        valueString = value.toString();
+        if (value instanceof Number)
+            valueDouble = ((Number) value).doubleValue();
     }
 
     public JSONObject toJSONObject() {
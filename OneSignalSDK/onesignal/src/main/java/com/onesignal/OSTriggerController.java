@@ -18,9 +18,53 @@ class OSTriggerController {
     OSDynamicTriggerController dynamicTriggerController;
 
     private final ConcurrentHashMap<String, Object> triggers;
+    // Same keys as triggers, values are converted when set instead of on each evaluation
+    private final ConcurrentHashMap<String, DeviceValue> deviceValues;
+
+    /**
+     * A trigger value set by the app, with the string and numeric forms triggers are compared against
+     */
+    private static class DeviceValue {
+        @NonNull
+        final Object value;
+        @NonNull
+        final String valueString;
+        // User may have an input text that converts 5 to 5.0, we only care about the raw value on equals
+        @NonNull
+        final String flexString;
+        final boolean isNumeric;
+        final double valueDouble;
+
+        DeviceValue(@NonNull Object value) {
+            this.value = value;
+            this.valueString = value.toString();
+
+            if (value instanceof Number) {
+                flexString = new DecimalFormat("0.#").format(value);
+                isNumeric = true;
+                valueDouble = ((Number) value).doubleValue();
+                return;
+            }
+
+            flexString = valueString;
+            double parsedValue = 0;
+            boolean parsed = false;
+            if (value instanceof String) {
+                try {
+                    parsedValue = Double.parseDouble((String) value);
+                    parsed = true;
+                } catch (NumberFormatException e) {
+                    // Not a numeric string, only string comparisons can match
+                }
+            }
+            isNumeric = parsed;
+            valueDouble = parsedValue;
+        }
+    }
 
     OSTriggerController(OSDynamicTriggerControllerObserver dynamicTriggerObserver) {
         triggers = new ConcurrentHashMap<>();
+        deviceValues = new ConcurrentHashMap<>();
         dynamicTriggerController = new OSDynamicTriggerController(dynamicTriggerObserver);
     }
 
@@ -61,7 +105,7 @@ class OSTriggerController {
             return dynamicTriggerController.dynamicTriggerShouldFire(trigger);
 
         final OSTriggerOperator operatorType = trigger.operatorType;
-        final Object deviceValue = triggers.get(trigger.property);
+        final DeviceValue deviceValue = deviceValues.get(trigger.property);
 
         if (deviceValue == null) {
             // If we don't have a local value for this trigger, can only be true in two cases;
@@ -80,19 +124,19 @@ class OSTriggerController {
             return false;
 
         if (operatorType == OSTriggerOperator.CONTAINS)
-            return deviceValue instanceof Collection && ((Collection) deviceValue).contains(trigger.value);
+            return deviceValue.value instanceof Collection && ((Collection) deviceValue.value).contains(trigger.value);
 
-        if (deviceValue instanceof String &&
+        if (deviceValue.value instanceof String &&
                 trigger.value instanceof String &&
-                triggerMatchesStringValue((String) trigger.value, (String) deviceValue, operatorType))
+                triggerMatchesStringValue(trigger.valueString, deviceValue.valueString, operatorType))
             return true;
 
         if (trigger.value instanceof Number &&
-                deviceValue instanceof Number &&
-                triggerMatchesNumericValue((Number) trigger.value, (Number) deviceValue, operatorType))
+                deviceValue.value instanceof Number &&
+                triggerMatchesNumericValue(trigger.valueDouble, deviceValue.valueDouble, operatorType))
             return true;
 
-        if (triggerMatchesFlex(trigger.value, deviceValue, operatorType))
+        if (triggerMatchesFlex(trigger, deviceValue, operatorType))
             return true;
 
         // No matches, evaluate to false
@@ -112,43 +156,25 @@ class OSTriggerController {
     }
 
     // Allow converting of deviceValues to other types to allow triggers to be more forgiving.
-    private boolean triggerMatchesFlex(@Nullable Object triggerValue, @NonNull Object deviceValue, @NonNull OSTriggerOperator operator) {
-        if (triggerValue == null)
+    private boolean triggerMatchesFlex(@NonNull OSTrigger trigger, @NonNull DeviceValue deviceValue, @NonNull OSTriggerOperator operator) {
+        if (trigger.value == null)
             return false;
 
         // If operator is equal or not equals ignore type by comparing on toString values
-        if (operator.checksEquality()) {
-            String triggerValueString = triggerValue.toString();
-            String deviceValueString = deviceValue.toString();
-            if (deviceValue instanceof Number) {
-                // User may have an input text that converts 5 to 5.0, we only care about the raw value on equals
-                DecimalFormat format = new DecimalFormat("0.#");
-                deviceValueString = format.format(deviceValue);
-            }
-            return triggerMatchesStringValue(triggerValueString, deviceValueString, operator);
-        }
-
-        if (deviceValue instanceof String &&
-            triggerValue instanceof Number)
-            return triggerMatchesNumericValueFlex((Number) triggerValue, (String) deviceValue, operator);
-        return false;
-    }
+        if (operator.checksEquality())
+            return triggerMatchesStringValue(trigger.valueString, deviceValue.flexString, operator);
 
-    private boolean triggerMatchesNumericValueFlex(@NonNull Number triggerValue, @NonNull String deviceValue, @NonNull OSTriggerOperator operator) {
-        double deviceDoubleValue;
-        try {
-            deviceDoubleValue = Double.parseDouble(deviceValue);
-        } catch (NumberFormatException e) {
-            return false;
+        if (deviceValue.value instanceof String &&
+            trigger.value instanceof Number) {
+            // Device value isn't a number, same as failing to parse it
+            if (!deviceValue.isNumeric)
+                return false;
+            return triggerMatchesNumericValue(trigger.valueDouble, deviceValue.valueDouble, operator);
         }
-
-        return triggerMatchesNumericValue(triggerValue.doubleValue(), deviceDoubleValue, operator);
+        return false;
     }
 
-    private boolean triggerMatchesNumericValue(@NonNull Number triggerValue, @NonNull Number deviceValue, @NonNull OSTriggerOperator operator) {
-        double triggerDoubleValue = triggerValue.doubleValue();
-        double deviceDoubleValue = deviceValue.doubleValue();
-
+    private boolean triggerMatchesNumericValue(double triggerDoubleValue, double deviceDoubleValue, @NonNull OSTriggerOperator operator) {
         switch (operator) {
             case EXISTS:
             case CONTAINS:
@@ -175,31 +201,6 @@ class OSTriggerController {
         }
     }
 
-    /**
-     * Part of redisplay logic
-     *
-     * If trigger key is part of message triggers, then return true, otherwise false
-     * */
-    boolean isTriggerOnMessage(OSInAppMessage message, Collection<String> newTriggersKeys) {
-        if (message.triggers == null)
-            return false;
-
-        for (String triggerKey : newTriggersKeys) {
-            for (ArrayList<OSTrigger> andConditions : message.triggers) {
-                for (OSTrigger trigger : andConditions) {
-                    // Dynamic triggers depends on triggerId
-                    // Common triggers changed by user depends on property
-                    if (triggerKey.equals(trigger.property) || triggerKey.equals(trigger.triggerId)) {
-                        // At least one trigger has changed
-                        return true;
-                    }
-                }
-            }
-        }
-
-        return false;
-    }
-
     /**
      * Part of redisplay logic
      *
@@ -228,14 +229,17 @@ class OSTriggerController {
             for (String key : newTriggers.keySet()) {
                 Object value = newTriggers.get(key);
                 triggers.put(key, value);
+                deviceValues.put(key, new DeviceValue(value));
             }
         }
     }
 
     void removeTriggersForKeys(Collection<String> keys) {
         synchronized (triggers) {
-            for (String key : keys)
+            for (String key : keys) {
                 triggers.remove(key);
+                deviceValues.remove(key);
+            }
         }
     }
 
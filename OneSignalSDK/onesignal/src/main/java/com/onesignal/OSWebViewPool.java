@@ -0,0 +1,187 @@
+package com.onesignal;
+
+import android.annotation.SuppressLint;
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.os.Build;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Keeps an in-app message WebView ready to use, creating a WebView is the slowest part of displaying a message.
+ * - A WebView is pre-warmed once the main thread is idle, see {@link #prewarm()}
+ * - WebViews are reused across messages and activities, they are created with a {@link MutableContextWrapper}
+ *     so the Context can be swapped to the Activity displaying the message
+ * - The idle WebView is destroyed when the system asks the app to trim memory
+ *
+ * All methods other than {@link #prewarm()} must be called on the main thread.
+ */
+class OSWebViewPool {
+
+    private static final String ABOUT_BLANK = "about:blank";
+
+    // Only one message is displayed at a time so a single idle WebView covers the next display
+    @SuppressLint("StaticFieldLeak")
+    @Nullable
+    private static OSWebView idleWebView;
+    private static boolean prewarmScheduled = false;
+
+    private static int warmRenderCount = 0;
+    private static int coldRenderCount = 0;
+    private static long warmRenderTotalMillis = 0;
+    private static long coldRenderTotalMillis = 0;
+
+    /**
+     * Creates a WebView the next time the main thread is idle, so it doesn't delay anything the app is doing
+     */
+    static void prewarm() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT)
+            return;
+
+        OSUtils.runOnMainUIThread(new Runnable() {
+            @Override
+            public void run() {
+                if (prewarmScheduled || idleWebView != null || isLowRamDevice())
+                    return;
+
+                prewarmScheduled = true;
+                Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+                    @Override
+                    public boolean queueIdle() {
+                        prewarmScheduled = false;
+                        if (idleWebView == null && OneSignal.appContext != null) {
+                            try {
+                                idleWebView = createWebView(OneSignal.appContext);
+                                OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSWebViewPool: Pre-warmed in app message WebView");
+                            } catch (RuntimeException e) {
+                                // WebView provider can be missing or updating, a WebView is created when displaying instead
+                                OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "OSWebViewPool: Could not pre-warm WebView", e);
+                            }
+                        }
+                        // Only run once
+                        return false;
+                    }
+                });
+            }
+        });
+    }
+
+    static boolean hasIdleWebView() {
+        return idleWebView != null;
+    }
+
+    /**
+     * @return the idle WebView if there is one, otherwise a new WebView. It uses the Activity as its Context until released
+     */
+    static @NonNull OSWebView acquire(@NonNull Context activity) {
+        OSWebView webView = idleWebView;
+        idleWebView = null;
+
+        if (webView == null)
+            return createWebView(activity);
+
+        ((MutableContextWrapper) webView.getContext()).setBaseContext(activity);
+        return webView;
+    }
+
+    /**
+     * Clears the WebView and keeps it for the next message, or destroys it if a WebView is already kept.
+     * The caller must have removed its JavaScript interfaces.
+     */
+    static void release(@NonNull OSWebView webView) {
+        if (webView.getParent() instanceof ViewGroup)
+            ((ViewGroup) webView.getParent()).removeView(webView);
+
+        webView.stopLoading();
+        // Keep the Activity from leaking through the kept WebView
+        ((MutableContextWrapper) webView.getContext()).setBaseContext(webView.getContext().getApplicationContext());
+
+        if (idleWebView != null || isLowRamDevice()) {
+            webView.destroy();
+            return;
+        }
+
+        webView.loadUrl(ABOUT_BLANK);
+        idleWebView = webView;
+    }
+
+    /**
+     * Destroys the idle WebView when the system is low on memory or the app's UI is hidden
+     */
+    static void onTrimMemory(int level) {
+        if (level < ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW || idleWebView == null)
+            return;
+
+        OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSWebViewPool: Destroying idle WebView on trim memory level: " + level);
+        idleWebView.destroy();
+        idleWebView = null;
+    }
+
+    /**
+     * Logs the time from starting to set up the WebView until the page reported it finished rendering
+     * @param warm true if the WebView was taken from the pool
+     */
+    static synchronized void onRenderComplete(boolean warm, long renderMillis) {
+        if (warm) {
+            warmRenderCount++;
+            warmRenderTotalMillis += renderMillis;
+        } else {
+            coldRenderCount++;
+            coldRenderTotalMillis += renderMillis;
+        }
+
+        OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OSWebViewPool: In app message rendered in " + renderMillis + "ms with a " + (warm ? "warm" : "cold") + " WebView" +
+                ", average warm: " + average(warmRenderTotalMillis, warmRenderCount) + "ms" +
+                ", average cold: " + average(coldRenderTotalMillis, coldRenderCount) + "ms");
+    }
+
+    static synchronized int getWarmRenderCount() {
+        return warmRenderCount;
+    }
+
+    static synchronized int getColdRenderCount() {
+        return coldRenderCount;
+    }
+
+    private static long average(long totalMillis, int count) {
+        return count == 0 ? 0 : totalMillis / count;
+    }
+
+    @SuppressLint("SetJavaScriptEnabled")
+    private static OSWebView createWebView(@NonNull Context context) {
+        OSWebView webView = new OSWebView(new MutableContextWrapper(context));
+
+        webView.setOverScrollMode(View.OVER_SCROLL_NEVER);
+        webView.setVerticalScrollBarEnabled(false);
+        webView.setHorizontalScrollBarEnabled(false);
+        webView.getSettings().setJavaScriptEnabled(true);
+
+        blurryRenderingWebViewForKitKatWorkAround(webView);
+        return webView;
+    }
+
+    private static void blurryRenderingWebViewForKitKatWorkAround(@NonNull OSWebView webView) {
+        // Android 4.4 has a rendering bug that cause the whole WebView to by extremely blurry
+        // This is due to a bug with hardware rending so ensure it is disabled.
+        // Tested on other version of Android and it is specific to only Android 4.4
+        //    On both the emulator and real devices.
+        if (Build.VERSION.SDK_INT == Build.VERSION_CODES.KITKAT)
+            webView.setLayerType(View.LAYER_TYPE_SOFTWARE, null);
+    }
+
+    // Low RAM devices don't keep a WebView around when no message is displayed
+    private static boolean isLowRamDevice() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT || OneSignal.appContext == null)
+            return false;
+
+        ActivityManager activityManager = (ActivityManager) OneSignal.appContext.getSystemService(Context.ACTIVITY_SERVICE);
+        return activityManager != null && activityManager.isLowRamDevice();
+    }
+}
@@ -813,6 +813,7 @@ public class OneSignal {
       OneSignal.Log(LOG_LEVEL.VERBOSE, "OneSignal SDK initialization done.");
 
       outcomeEventsController.sendSavedOutcomes();
+      OSOutboundRequestQueue.getInstance().replayPendingRequests();
 
       // Clean up any pending tasks that were queued up before initialization
       taskRemoteController.startPendingTasks();
@@ -1306,6 +1307,9 @@ public class OneSignal {
 
       getFocusTimeController().appBackgrounded();
 
+      // Send buffered player updates while the process is still running instead of waiting for the sync job
+      OneSignalStateSynchronizer.flushBufferedUpdates(null);
+
       scheduleSyncService();
    }
 
@@ -1367,6 +1371,8 @@ public class OneSignal {
          trackFirebaseAnalytics.trackInfluenceOpenEvent();
 
       OSSyncService.getInstance().cancelSyncTask(appContext);
+
+      OSOutboundRequestQueue.getInstance().replayPendingRequests();
    }
 
    static void addNetType(JSONObject jsonObj) {
@@ -2277,13 +2283,16 @@ public class OneSignal {
     *   If a NotificationExtenderService is present in the developers app this will not fire for silent notifications.
     */
    static void handleNotificationReceived(OSNotificationGenerationJob notificationJob) {
+      // The result is only used to track the received event, don't build it for every notification
+      if (trackFirebaseAnalytics == null || !getFirebaseAnalyticsEnabled())
+         return;
+
       try {
-         JSONObject jsonObject = new JSONObject(notificationJob.getJsonPayload().toString());
+         JSONObject jsonObject = notificationJob.getPayload().copyJson();
          jsonObject.put(BUNDLE_KEY_ANDROID_NOTIFICATION_ID, notificationJob.getAndroidId());
 
          OSNotificationOpenedResult openResult = generateNotificationOpenedResult(newJsonArray(jsonObject));
-         if (trackFirebaseAnalytics != null && getFirebaseAnalyticsEnabled())
-            trackFirebaseAnalytics.trackReceivedEvent(openResult);
+         trackFirebaseAnalytics.trackReceivedEvent(openResult);
 
       } catch (JSONException e) {
          e.printStackTrace();
@@ -3085,23 +3094,6 @@ public class OneSignal {
       notificationDataController.notValidOrDuplicated(jsonPayload, callback);
    }
 
-   static String getNotificationIdFromFCMJson(@Nullable JSONObject fcmJson) {
-      if (fcmJson == null)
-         return null;
-      try {
-         JSONObject customJSON = new JSONObject(fcmJson.getString("custom"));
-
-         if (customJSON.has("i"))
-            return customJSON.optString("i", null);
-         else
-            logger.debug("Not a OneSignal formatted FCM message. No 'i' field in custom.");
-      } catch (JSONException e) {
-         logger.debug("Not a OneSignal formatted FCM message. No 'custom' field in the JSONObject.");
-      }
-
-      return null;
-   }
-
    static boolean isAppActive() {
       return initDone && isInForeground();
    }
@@ -25,4 +25,11 @@ public interface OneSignalDb {
     int update(@NonNull String table, @NonNull ContentValues values, @Nullable String whereClause, @Nullable String[] whereArgs);
 
     void delete(@NonNull String table, @Nullable String whereClause, @Nullable String[] whereArgs);
+
+    /**
+     * Runs every write of writes in a single transaction, rolled back if any of them throws
+     * Use it instead of the methods above when writing more than one row, each of those commits its own transaction
+     * @return true if the writes were committed
+     */
+    boolean runInTransaction(@NonNull OneSignalDbBatch.Writes writes);
 }
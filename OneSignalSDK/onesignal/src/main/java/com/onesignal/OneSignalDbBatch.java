@@ -0,0 +1,105 @@
+package com.onesignal;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * Writes made inside {@link OneSignalDb#runInTransaction(Writes)}, all of them are committed in a single transaction
+ * - Inserts and {@link #compileStatement(String)} reuse statements compiled by earlier batches,
+ *     writing many rows only binds new values instead of parsing the SQL for each row
+ * - Methods throw {@link SQLException} on failure, which rolls back every write of the batch
+ *
+ * Only valid inside {@link Writes#run(OneSignalDbBatch)}
+ */
+public class OneSignalDbBatch {
+
+    public interface Writes {
+        void run(@NonNull OneSignalDbBatch batch) throws SQLException;
+    }
+
+    /**
+     * Compiled statements kept by {@link OneSignalDbHelper} between batches
+     */
+    interface StatementCache {
+        @NonNull SQLiteStatement get(@NonNull SQLiteDatabase db, @NonNull String sql);
+    }
+
+    private final SQLiteDatabase db;
+    private final StatementCache statements;
+
+    OneSignalDbBatch(@NonNull SQLiteDatabase db, @NonNull StatementCache statements) {
+        this.db = db;
+        this.statements = statements;
+    }
+
+    /**
+     * @return the row id of the new row
+     */
+    public long insert(@NonNull String table, @NonNull ContentValues values) throws SQLException {
+        if (values.size() == 0)
+            throw new SQLException("Can't insert empty values on table: " + table);
+
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        StringBuilder bindings = new StringBuilder(" VALUES (");
+        Object[] args = new Object[values.size()];
+        int i = 0;
+        for (Map.Entry<String, Object> value : values.valueSet()) {
+            if (i > 0) {
+                sql.append(',');
+                bindings.append(',');
+            }
+            sql.append(value.getKey());
+            bindings.append('?');
+            args[i++] = value.getValue();
+        }
+        sql.append(')').append(bindings).append(')');
+
+        SQLiteStatement statement = compileStatement(sql.toString());
+        for (i = 0; i < args.length; i++)
+            DatabaseUtils.bindObjectToProgram(statement, i + 1, args[i]);
+        return executeInsert(statement);
+    }
+
+    /**
+     * @return the number of rows updated
+     */
+    public int update(@NonNull String table, @NonNull ContentValues values, @Nullable String whereClause, @Nullable String[] whereArgs) throws SQLException {
+        return db.update(table, values, whereClause, whereArgs);
+    }
+
+    /**
+     * @return the number of rows deleted
+     */
+    public int delete(@NonNull String table, @Nullable String whereClause, @Nullable String[] whereArgs) throws SQLException {
+        return db.delete(table, whereClause, whereArgs);
+    }
+
+    /**
+     * @return a compiled statement for sql with no values bound, reused by later calls with the same sql
+     *    Run it with {@link #executeInsert(SQLiteStatement)} or {@link #executeUpdateDelete(SQLiteStatement)}
+     */
+    public @NonNull SQLiteStatement compileStatement(@NonNull String sql) throws SQLException {
+        SQLiteStatement statement = statements.get(db, sql);
+        statement.clearBindings();
+        return statement;
+    }
+
+    public long executeInsert(@NonNull SQLiteStatement statement) throws SQLException {
+        long rowId = statement.executeInsert();
+        if (rowId == -1)
+            throw new SQLException("Error inserting with statement: " + statement);
+        return rowId;
+    }
+
+    public int executeUpdateDelete(@NonNull SQLiteStatement statement) throws SQLException {
+        return statement.executeUpdateDelete();
+    }
+}
@@ -68,4 +68,18 @@ class OneSignalDbContract {
       public static final String COLUMN_CLICK_IDS = "click_ids";
       public static final String COLUMN_DISPLAYED_IN_SESSION = "displayed_in_session";
    }
+
+   static abstract class OutboundRequestTable implements BaseColumns {
+      public static final String TABLE_NAME = "outbound_request";
+      public static final String COLUMN_NAME_IDEMPOTENCY_KEY = "idempotency_key"; // Only one pending request per key
+      public static final String COLUMN_NAME_METHOD = "method";
+      public static final String COLUMN_NAME_URL = "url";
+      public static final String COLUMN_NAME_BODY = "body"; // JSON formatted request body
+      public static final String COLUMN_NAME_ATTEMPTS = "attempts";
+      public static final String COLUMN_NAME_NEXT_ATTEMPT_TIME = "next_attempt_time"; // Millis
+      public static final String COLUMN_NAME_CREATED_TIME = "created_time"; // Millis
+
+      public static final String INDEX_CREATE_IDEMPOTENCY_KEY = "CREATE UNIQUE INDEX IF NOT EXISTS outbound_request_idempotency_key_idx ON outbound_request(idempotency_key); ";
+      public static final String INDEX_CREATE_NEXT_ATTEMPT_TIME = "CREATE INDEX IF NOT EXISTS outbound_request_next_attempt_time_idx ON outbound_request(next_attempt_time); ";
+   }
 }
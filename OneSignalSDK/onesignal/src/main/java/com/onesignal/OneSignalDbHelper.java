@@ -36,6 +36,7 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDatabaseLockedException;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
@@ -43,20 +44,31 @@ import androidx.annotation.Nullable;
 
 import com.onesignal.OneSignalDbContract.InAppMessageTable;
 import com.onesignal.OneSignalDbContract.NotificationTable;
+import com.onesignal.OneSignalDbContract.OutboundRequestTable;
 import com.onesignal.outcomes.data.OSOutcomeTableProvider;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static com.onesignal.outcomes.data.OutcomesDbContract.SQL_CREATE_OUTCOME_ENTRIES_V1;
-import static com.onesignal.outcomes.data.OutcomesDbContract.SQL_CREATE_OUTCOME_ENTRIES_V3;
+import static com.onesignal.outcomes.data.OutcomesDbContract.SQL_ADD_OUTCOME_UNIQUE_COLUMN;
+import static com.onesignal.outcomes.data.OutcomesDbContract.SQL_CREATE_OUTCOME_ENTRIES_V4;
 import static com.onesignal.outcomes.data.OutcomesDbContract.SQL_CREATE_UNIQUE_OUTCOME_ENTRIES_V1;
 import static com.onesignal.outcomes.data.OutcomesDbContract.SQL_CREATE_UNIQUE_OUTCOME_ENTRIES_V2;
 
 class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
 
-   static final int DATABASE_VERSION = 8;
+   static final int DATABASE_VERSION = 10;
    private static final Object LOCK = new Object();
+   // Single writer queue, writers wait in arrival order as SQLite only allows one write transaction at a time
+   // Queries don't take it, in WAL mode they read the last commit while a write is in progress
+   private static final ReentrantLock WRITE_LOCK = new ReentrantLock(true);
+   // Shared by queries while they get the database and create their cursor, close() waits for them with the exclusive lock
+   private static final ReentrantReadWriteLock CLOSE_LOCK = new ReentrantReadWriteLock();
    private static final String DATABASE_NAME = "OneSignal.db";
 
    private static final String INTEGER_PRIMARY_KEY_TYPE = " INTEGER PRIMARY KEY";
@@ -68,6 +80,8 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
 
    private static final int DB_OPEN_RETRY_MAX = 5;
    private static final int DB_OPEN_RETRY_BACKOFF = 400;
+   // Distinct statements used by batches are few, one per table and set of columns written
+   private static final int MAX_CACHED_STATEMENTS = 32;
 
    protected static final String SQL_CREATE_ENTRIES =
            "CREATE TABLE " + NotificationTable.TABLE_NAME + " (" +
@@ -96,6 +110,18 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
                    InAppMessageTable.COLUMN_CLICK_IDS + TEXT_TYPE +
                    ");";
 
+   private static final String SQL_CREATE_OUTBOUND_REQUEST_ENTRIES =
+           "CREATE TABLE IF NOT EXISTS " + OutboundRequestTable.TABLE_NAME + " (" +
+                   OutboundRequestTable._ID + INTEGER_PRIMARY_KEY_TYPE + COMMA_SEP +
+                   OutboundRequestTable.COLUMN_NAME_IDEMPOTENCY_KEY + TEXT_TYPE + COMMA_SEP +
+                   OutboundRequestTable.COLUMN_NAME_METHOD + TEXT_TYPE + COMMA_SEP +
+                   OutboundRequestTable.COLUMN_NAME_URL + TEXT_TYPE + COMMA_SEP +
+                   OutboundRequestTable.COLUMN_NAME_BODY + TEXT_TYPE + COMMA_SEP +
+                   OutboundRequestTable.COLUMN_NAME_ATTEMPTS + INT_TYPE + " DEFAULT 0" + COMMA_SEP +
+                   OutboundRequestTable.COLUMN_NAME_NEXT_ATTEMPT_TIME + INT_TYPE + COMMA_SEP +
+                   OutboundRequestTable.COLUMN_NAME_CREATED_TIME + INT_TYPE +
+                   ");";
+
    protected static final String[] SQL_INDEX_ENTRIES = {
       NotificationTable.INDEX_CREATE_NOTIFICATION_ID,
       NotificationTable.INDEX_CREATE_ANDROID_NOTIFICATION_ID,
@@ -120,9 +146,41 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
       return DATABASE_VERSION;
    }
 
+   // Compiled by batches and reused by later ones, only valid for statementsDb, accessed under WRITE_LOCK
+   private final LinkedHashMap<String, SQLiteStatement> statements = new LinkedHashMap<String, SQLiteStatement>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+         if (size() <= MAX_CACHED_STATEMENTS)
+            return false;
+         eldest.getValue().close();
+         return true;
+      }
+   };
+   private SQLiteDatabase statementsDb;
+
+   private final OneSignalDbBatch.StatementCache statementCache = new OneSignalDbBatch.StatementCache() {
+      @Override
+      public @NonNull SQLiteStatement get(@NonNull SQLiteDatabase db, @NonNull String sql) {
+         // Database was closed and opened again since the statements were compiled
+         if (statementsDb != db) {
+            closeStatements();
+            statementsDb = db;
+         }
+
+         SQLiteStatement statement = statements.get(sql);
+         if (statement == null) {
+            statement = db.compileStatement(sql);
+            statements.put(sql, statement);
+         }
+         return statement;
+      }
+   };
+
    OneSignalDbHelper(Context context) {
       super(context, DATABASE_NAME, null, getDbVersion());
-
+      // Lets queries run on their own connections while a write is in progress, see WRITE_LOCK
+      // The journal mode is switched when the database is opened, before onCreate or onUpgrade run
+      setWriteAheadLoggingEnabled(true);
    }
 
    public static OneSignalDbHelper getInstance(Context context) {
@@ -145,18 +203,17 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
     * @see <a href="https://stackoverflow.com/questions/2493331/what-are-the-best-practices-for-sqlite-on-android/3689883#3689883">StackOverflow | What are best practices for SQLite on Android</a>
     */
    private SQLiteDatabase getSQLiteDatabase() {
-      synchronized (LOCK) {
-         try {
-            return getWritableDatabase();
-         } catch (SQLiteCantOpenDatabaseException | SQLiteDatabaseLockedException e) {
-            // SQLiteCantOpenDatabaseException
-            // Retry in-case of rare device issues with opening database.
-            // https://github.com/OneSignal/OneSignal-Android-SDK/issues/136
-            // SQLiteDatabaseLockedException
-            // Retry in-case of rare device issues with locked database.
-            // https://github.com/OneSignal/OneSignal-Android-SDK/issues/988
-            throw e;
-         }
+      // Opening is synchronized by SQLiteOpenHelper, onCreate and onUpgrade finish before any query or write gets the database
+      try {
+         return getWritableDatabase();
+      } catch (SQLiteCantOpenDatabaseException | SQLiteDatabaseLockedException e) {
+         // SQLiteCantOpenDatabaseException
+         // Retry in-case of rare device issues with opening database.
+         // https://github.com/OneSignal/OneSignal-Android-SDK/issues/136
+         // SQLiteDatabaseLockedException
+         // Retry in-case of rare device issues with locked database.
+         // https://github.com/OneSignal/OneSignal-Android-SDK/issues/988
+         throw e;
       }
    }
 
@@ -167,16 +224,14 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
     * @see OneSignalDbHelper#getSQLiteDatabase()
     */
    private SQLiteDatabase getSQLiteDatabaseWithRetries() {
-      synchronized (LOCK) {
-         int count = 0;
-         while (true) {
-            try {
-               return getSQLiteDatabase();
-            } catch (SQLiteCantOpenDatabaseException | SQLiteDatabaseLockedException e) {
-               if (++count >= DB_OPEN_RETRY_MAX)
-                  throw e;
-               SystemClock.sleep(count * DB_OPEN_RETRY_BACKOFF);
-            }
+      int count = 0;
+      while (true) {
+         try {
+            return getSQLiteDatabase();
+         } catch (SQLiteCantOpenDatabaseException | SQLiteDatabaseLockedException e) {
+            if (++count >= DB_OPEN_RETRY_MAX)
+               throw e;
+            SystemClock.sleep(count * DB_OPEN_RETRY_BACKOFF);
          }
       }
    }
@@ -185,8 +240,11 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
    public Cursor query(@NonNull String table, @Nullable String[] columns, @Nullable String selection,
                        String[] selectionArgs, @Nullable String groupBy, @Nullable String having,
                        @Nullable String orderBy) {
-      synchronized (LOCK) {
+      CLOSE_LOCK.readLock().lock();
+      try {
          return getSQLiteDatabaseWithRetries().query(table, columns, selection, selectionArgs, groupBy, having, orderBy);
+      } finally {
+         CLOSE_LOCK.readLock().unlock();
       }
    }
 
@@ -194,14 +252,18 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
    public Cursor query(@NonNull String table, @Nullable String[] columns, @Nullable String selection,
                        @Nullable String[] selectionArgs, @Nullable String groupBy, @Nullable String having,
                        @Nullable String orderBy, @Nullable String limit) {
-      synchronized (LOCK) {
+      CLOSE_LOCK.readLock().lock();
+      try {
          return getSQLiteDatabaseWithRetries().query(table, columns, selection, selectionArgs, groupBy, having, orderBy, limit);
+      } finally {
+         CLOSE_LOCK.readLock().unlock();
       }
    }
 
    @Override
    public void insert(@NonNull String table, @Nullable String nullColumnHack, @Nullable ContentValues values) {
-      synchronized (LOCK) {
+      WRITE_LOCK.lock();
+      try {
          SQLiteDatabase writableDb = getSQLiteDatabaseWithRetries();
          try {
             writableDb.beginTransaction();
@@ -222,13 +284,16 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
                }
             }
          }
+      } finally {
+         WRITE_LOCK.unlock();
       }
    }
 
    @Override
    public void insertOrThrow(@NonNull String table, @Nullable String nullColumnHack, @Nullable ContentValues values)
            throws SQLException {
-      synchronized (LOCK) {
+      WRITE_LOCK.lock();
+      try {
          SQLiteDatabase writableDb = getSQLiteDatabaseWithRetries();
          try {
             writableDb.beginTransaction();
@@ -249,6 +314,8 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
                }
             }
          }
+      } finally {
+         WRITE_LOCK.unlock();
       }
    }
 
@@ -258,7 +325,8 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
       if (values == null || values.toString().isEmpty())
          return result;
 
-      synchronized (LOCK) {
+      WRITE_LOCK.lock();
+      try {
          SQLiteDatabase writableDb = getSQLiteDatabaseWithRetries();
          try {
             writableDb.beginTransaction();
@@ -279,13 +347,16 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
                }
             }
          }
+      } finally {
+         WRITE_LOCK.unlock();
       }
       return result;
    }
 
    @Override
    public void delete(@NonNull String table, @Nullable String whereClause, @Nullable String[] whereArgs) {
-      synchronized (LOCK) {
+      WRITE_LOCK.lock();
+      try {
          SQLiteDatabase writableDb = getSQLiteDatabaseWithRetries();
          try {
             writableDb.beginTransaction();
@@ -306,18 +377,76 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
                }
             }
          }
+      } finally {
+         WRITE_LOCK.unlock();
+      }
+   }
+
+   @Override
+   public boolean runInTransaction(@NonNull OneSignalDbBatch.Writes writes) {
+      WRITE_LOCK.lock();
+      try {
+         SQLiteDatabase writableDb = getSQLiteDatabaseWithRetries();
+         try {
+            writableDb.beginTransaction();
+            writes.run(new OneSignalDbBatch(writableDb, statementCache));
+            writableDb.setTransactionSuccessful();
+            return true;
+         } catch (SQLException e) {
+            // Includes SQLiteException
+            logger.error("Error writing batch, transaction rolled back", e);
+         } catch (IllegalStateException e) {
+            logger.error("Error under batch transaction", e);
+         } finally {
+            if (writableDb != null) {
+               try {
+                  writableDb.endTransaction(); // May throw if transaction was never opened or DB is full.
+               } catch (IllegalStateException e) {
+                  logger.error("Error closing transaction! ", e);
+               } catch (SQLiteException e) {
+                  logger.error("Error closing transaction! ", e);
+               }
+            }
+         }
+         return false;
+      } finally {
+         WRITE_LOCK.unlock();
+      }
+   }
+
+   private void closeStatements() {
+      for (SQLiteStatement statement : statements.values())
+         statement.close();
+      statements.clear();
+      statementsDb = null;
+   }
+
+   @Override
+   public void close() {
+      // Writes hold WRITE_LOCK, queries hold CLOSE_LOCK only until their cursor is created, an open cursor keeps its own reference
+      WRITE_LOCK.lock();
+      CLOSE_LOCK.writeLock().lock();
+      try {
+         closeStatements();
+         super.close();
+      } finally {
+         CLOSE_LOCK.writeLock().unlock();
+         WRITE_LOCK.unlock();
       }
    }
 
    @Override
    public void onCreate(SQLiteDatabase db) {
       db.execSQL(SQL_CREATE_ENTRIES);
-      db.execSQL(SQL_CREATE_OUTCOME_ENTRIES_V3);
+      db.execSQL(SQL_CREATE_OUTCOME_ENTRIES_V4);
       db.execSQL(SQL_CREATE_UNIQUE_OUTCOME_ENTRIES_V2);
       db.execSQL(SQL_CREATE_IN_APP_MESSAGE_ENTRIES);
+      db.execSQL(SQL_CREATE_OUTBOUND_REQUEST_ENTRIES);
       for (String ind : SQL_INDEX_ENTRIES) {
          db.execSQL(ind);
       }
+      db.execSQL(OutboundRequestTable.INDEX_CREATE_IDEMPOTENCY_KEY);
+      db.execSQL(OutboundRequestTable.INDEX_CREATE_NEXT_ATTEMPT_TIME);
    }
 
    @Override
@@ -354,6 +483,12 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
 
       if (oldVersion < 8)
          upgradeToV8(db);
+
+      if (oldVersion < 9)
+         upgradeToV9(db);
+
+      if (oldVersion < 10)
+         upgradeToV10(db);
    }
 
    // Add collapse_id field and index
@@ -409,6 +544,17 @@ class OneSignalDbHelper extends SQLiteOpenHelper implements OneSignalDb {
       outcomeTableProvider.upgradeCacheOutcomeTableRevision1To2(db);
    }
 
+   private static void upgradeToV9(SQLiteDatabase db) {
+      safeExecSQL(db, SQL_CREATE_OUTBOUND_REQUEST_ENTRIES);
+      safeExecSQL(db, OutboundRequestTable.INDEX_CREATE_IDEMPOTENCY_KEY);
+      safeExecSQL(db, OutboundRequestTable.INDEX_CREATE_NEXT_ATTEMPT_TIME);
+   }
+
+   // Add is_unique to saved outcomes, rows saved before are not unique
+   private static void upgradeToV10(SQLiteDatabase db) {
+      safeExecSQL(db, SQL_ADD_OUTCOME_UNIQUE_COLUMN);
+   }
+
    private static void safeExecSQL(SQLiteDatabase db, String sql) {
       try {
          db.execSQL(sql);
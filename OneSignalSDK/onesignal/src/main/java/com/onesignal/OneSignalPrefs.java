@@ -32,11 +32,14 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.Looper;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import java.util.HashMap;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 class OneSignalPrefs {
 
@@ -97,8 +100,20 @@ class OneSignalPrefs {
     public static final String PREFS_OS_RECEIVE_RECEIPTS_ENABLED = "PREFS_OS_RECEIVE_RECEIPTS_ENABLED";
     // Remote params - Outcomes V2 service enabled
     static final String PREFS_OS_OUTCOMES_V2 = "PREFS_OS_OUTCOMES_V2";
+    // Remote params - Outcomes batch requests enabled
+    static final String PREFS_OS_OUTCOMES_BATCH = "PREFS_OS_OUTCOMES_BATCH";
+    // Remote params - Gzip compressed request bodies enabled
+    static final String PREFS_OS_GZIP_REQUESTS_ENABLED = "PREFS_OS_GZIP_REQUESTS_ENABLED";
+    // Remote params - Minimum time between on_focus requests
+    static final String PREFS_OS_ON_FOCUS_FLUSH_INTERVAL = "PREFS_OS_ON_FOCUS_FLUSH_INTERVAL";
     // On Focus Influence
     public static final String PREFS_OS_ATTRIBUTED_INFLUENCES = "PREFS_OS_ATTRIBUTED_INFLUENCES";
+    // On Focus flush window
+    static final String PREFS_OS_LAST_UNATTRIBUTED_ON_FOCUS_TIME = "PREFS_OS_LAST_UNATTRIBUTED_ON_FOCUS_TIME";
+    static final String PREFS_OS_LAST_ATTRIBUTED_ON_FOCUS_TIME = "PREFS_OS_LAST_ATTRIBUTED_ON_FOCUS_TIME";
+    static final String PREFS_OS_UNSENT_BACKGROUND_EVENTS = "PREFS_OS_UNSENT_BACKGROUND_EVENTS";
+    static final String PREFS_OS_UNSENT_ATTRIBUTED_BACKGROUND_EVENTS = "PREFS_OS_UNSENT_ATTRIBUTED_BACKGROUND_EVENTS";
+    static final String PREFS_OS_ON_FOCUS_REQUESTS_SAVED = "PREFS_OS_ON_FOCUS_REQUESTS_SAVED";
     // Email
     public static final String PREFS_OS_EMAIL_ID = "OS_EMAIL_ID";
     public static final String PREFS_ONESIGNAL_EMAIL_ID_LAST = "PREFS_ONESIGNAL_EMAIL_ID_LAST";
@@ -118,10 +133,18 @@ class OneSignalPrefs {
     static final String PREFS_PURCHASE_TOKENS = "purchaseTokens";
     static final String PREFS_EXISTING_PURCHASES = "ExistingPurchases";
 
+    // Manifest meta-data to save prefs with OSPrefsLogStore instead of SharedPreferences
+    static final String MANIFEST_META_PREFS_LOG_STORE = "com.onesignal.PrefsLogStore";
+
     // Buffered writes to apply on WritePrefHandlerThread with a short delay
     static HashMap<String, HashMap<String, Object>> prefsToApply;
     public static WritePrefHandlerThread prefsHandler;
 
+    // Read from the manifest once a context is available, null until then
+    private static Boolean useLogStore;
+    // Prefs names already checked for a log store to move back into SharedPreferences
+    private static Set<String> checkedForLogStore;
+
     static {
         initializePool();
     }
@@ -130,6 +153,7 @@ class OneSignalPrefs {
         private @Nullable Handler mHandler;
 
         private static final int WRITE_CALL_DELAY_TO_BUFFER_MS = 200;
+        private static final long RUN_AND_WAIT_TIMEOUT_MS = 5_000;
         private long lastSyncTime = 0L;
 
         WritePrefHandlerThread(String name) {
@@ -143,6 +167,9 @@ class OneSignalPrefs {
             // Getting handler here as onLooperPrepared guarantees getLooper() will be non-null
             mHandler = new Handler(getLooper());
 
+            // Loads log stores here so the first read on another thread normally doesn't have to wait
+            prepareStores();
+
             // Kicks off our first flush, startDelayedWrite will schedule all flushes after that
             scheduleFlushToDisk();
         }
@@ -157,6 +184,48 @@ class OneSignalPrefs {
             scheduleFlushToDisk();
         }
 
+        /**
+         * Runs the task on this thread and blocks until it is done.
+         * The task runs on the calling thread instead if called from this thread,
+         *    or if this thread doesn't get to it within RUN_AND_WAIT_TIMEOUT_MS, so it must be safe to run twice.
+         */
+        void runAndWait(@NonNull final Runnable task) {
+            if (Thread.currentThread() == this) {
+                task.run();
+                return;
+            }
+
+            synchronized (this) {
+                startThread();
+            }
+
+            Looper looper = getLooper();
+            if (looper != null) {
+                final CountDownLatch latch = new CountDownLatch(1);
+                // Own Handler, scheduleFlushToDisk removes everything posted to mHandler
+                boolean posted = new Handler(looper).post(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            task.run();
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                });
+
+                try {
+                    if (posted && latch.await(RUN_AND_WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+                        return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "OneSignalPrefs: Write thread did not run task in time, running it on " + Thread.currentThread().getName());
+            }
+
+            task.run();
+        }
+
         private boolean threadStartCalled;
         private void startThread() {
             if (threadStartCalled)
@@ -187,6 +256,11 @@ class OneSignalPrefs {
         }
 
         private void flushBufferToDisk() {
+            if (isLogStoreEnabled()) {
+                flushBufferToLogStore();
+                return;
+            }
+
             for (String pref : prefsToApply.keySet()) {
                 SharedPreferences prefsToWrite = getSharedPrefsByName(pref);
                 SharedPreferences.Editor editor = prefsToWrite.edit();
@@ -204,6 +278,8 @@ class OneSignalPrefs {
                             editor.putLong(key, (Long)value);
                         else if (value instanceof Set)
                             editor.putStringSet(key, (Set<String>)value);
+                        else if (value == null)
+                            editor.remove(key);
                     }
                     prefHash.clear();
                 }
@@ -212,6 +288,29 @@ class OneSignalPrefs {
 
             lastSyncTime = OneSignal.getTime().getCurrentTimeMillis();
         }
+
+        // Only the changed keys are written, instead of the whole prefs file on each apply
+        private void flushBufferToLogStore() {
+            for (String pref : prefsToApply.keySet()) {
+                OSPrefsLogStore store = getOpenLogStore(pref);
+                if (store == null)
+                    continue;
+
+                HashMap<String, Object> prefHash = prefsToApply.get(pref);
+                byte[] record;
+                synchronized (prefHash) {
+                    if (prefHash.isEmpty())
+                        continue;
+                    // Store is updated before clearing the buffer so get() never misses a value
+                    record = store.update(prefHash);
+                    prefHash.clear();
+                }
+                if (record != null)
+                    store.write(record);
+            }
+
+            lastSyncTime = OneSignal.getTime().getCurrentTimeMillis();
+        }
     }
 
     public static void initializePool() {
@@ -221,6 +320,22 @@ class OneSignalPrefs {
         prefsToApply.put(PREFS_TRIGGERS, new HashMap<String, Object>());
 
         prefsHandler = new WritePrefHandlerThread("OSH_WritePrefs");
+
+        useLogStore = null;
+        checkedForLogStore = OSUtils.newConcurrentSet();
+    }
+
+    static synchronized void setUseLogStore(boolean enabled) {
+        useLogStore = enabled;
+    }
+
+    private static synchronized boolean isLogStoreEnabled() {
+        if (useLogStore == null) {
+            if (OneSignal.appContext == null)
+                return false;
+            useLogStore = OSUtils.getManifestMetaBoolean(OneSignal.appContext, MANIFEST_META_PREFS_LOG_STORE);
+        }
+        return useLogStore;
     }
 
     public static void startDelayedWrite() {
@@ -296,6 +411,18 @@ class OneSignalPrefs {
                 return cachedValue;
         }
 
+        if (isLogStoreEnabled()) {
+            OSPrefsLogStore store = getOpenLogStore(prefsName);
+            if (store == null)
+                return defValue;
+
+            if (type.equals(Object.class))
+                return store.contains(key);
+
+            Object value = store.get(key);
+            return value != null ? value : defValue;
+        }
+
         SharedPreferences prefs = getSharedPrefsByName(prefsName);
         if (prefs != null) {
             if (type.equals(String.class))
@@ -317,14 +444,56 @@ class OneSignalPrefs {
         return defValue;
     }
 
-    static synchronized SharedPreferences getSharedPrefsByName(String prefsName) {
-        if (OneSignal.appContext == null) {
+    // Not synchronized, it can wait on the write thread which takes the class lock in isLogStoreEnabled
+    static SharedPreferences getSharedPrefsByName(final String prefsName) {
+        final Context context = OneSignal.appContext;
+        if (context == null) {
             String msg = "OneSignal.appContext null, could not read " + prefsName + " from getSharedPreferences.";
             OneSignal.Log(OneSignal.LOG_LEVEL.WARN, msg, new Throwable());
             return null;
         }
 
-        return OneSignal.appContext.getSharedPreferences(prefsName, Context.MODE_PRIVATE);
+        // Values saved while OSPrefsLogStore was enabled are moved back on the write thread before first read
+        if (!checkedForLogStore.contains(prefsName)) {
+            if (OSPrefsLogStore.hasLogFile(context, prefsName)) {
+                prefsHandler.runAndWait(new Runnable() {
+                    @Override
+                    public void run() {
+                        OSPrefsLogStore.migrateToSharedPreferences(context, prefsName);
+                    }
+                });
+            }
+            checkedForLogStore.add(prefsName);
+        }
+
+        return context.getSharedPreferences(prefsName, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Gets the log store for the prefs name, opening it on the write thread if it isn't yet.
+     * Only the first read waits on it, the write thread normally opens the stores when it starts.
+     */
+    private static @Nullable OSPrefsLogStore getOpenLogStore(String prefsName) {
+        final OSPrefsLogStore store = OSPrefsLogStore.getStore(prefsName);
+        if (store != null && !store.isOpen()) {
+            prefsHandler.runAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    store.open();
+                }
+            });
+        }
+        return store;
+    }
+
+    // Called on the write thread when it starts
+    private static void prepareStores() {
+        for (String prefsName : prefsToApply.keySet()) {
+            if (isLogStoreEnabled())
+                getOpenLogStore(prefsName);
+            else
+                getSharedPrefsByName(prefsName);
+        }
     }
 
 }
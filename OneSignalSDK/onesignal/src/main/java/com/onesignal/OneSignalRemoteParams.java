@@ -1,12 +1,14 @@
 package com.onesignal;
 
+import android.util.JsonReader;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.net.HttpURLConnection;
 
 public class OneSignalRemoteParams {
@@ -29,6 +31,7 @@ public class OneSignalRemoteParams {
       boolean indirectEnabled = false;
       boolean unattributedEnabled = false;
       boolean outcomesV2ServiceEnabled = false;
+      boolean outcomesBatchEnabled = false;
 
       public int getIndirectNotificationAttributionWindow() {
          return indirectNotificationAttributionWindow;
@@ -68,6 +71,7 @@ public class OneSignalRemoteParams {
                  ", directEnabled=" + directEnabled +
                  ", indirectEnabled=" + indirectEnabled +
                  ", unattributedEnabled=" + unattributedEnabled +
+                 ", outcomesBatchEnabled=" + outcomesBatchEnabled +
                  '}';
       }
    }
@@ -83,10 +87,13 @@ public class OneSignalRemoteParams {
       boolean restoreTTLFilter;
       boolean clearGroupOnSummaryClick;
       boolean receiveReceiptEnabled;
+      boolean gzipRequestsEnabled;
       Boolean disableGMSMissingPrompt;
       Boolean unsubscribeWhenNotificationsDisabled;
       Boolean locationShared;
       Boolean requiresUserPrivacyConsent;
+      // Seconds, null to keep FocusTimeController.DEFAULT_ON_FOCUS_FLUSH_INTERVAL_SEC
+      Integer onFocusFlushInterval;
       InfluenceParams influenceParams;
       FCMParams fcmParams;
    }
@@ -99,6 +106,7 @@ public class OneSignalRemoteParams {
 
    private static final String OUTCOME_PARAM = "outcomes";
    private static final String OUTCOMES_V2_SERVICE_PARAM = "v2_enabled";
+   private static final String OUTCOMES_BATCH_PARAM = "batch_enabled";
    private static final String ENABLED_PARAM = "enabled";
    private static final String DIRECT_PARAM = "direct";
    private static final String INDIRECT_PARAM = "indirect";
@@ -110,6 +118,8 @@ public class OneSignalRemoteParams {
    private static final String DISABLE_GMS_MISSING_PROMPT = "disable_gms_missing_prompt";
    private static final String LOCATION_SHARED = "location_shared";
    private static final String REQUIRES_USER_PRIVACY_CONSENT = "requires_user_privacy_consent";
+   private static final String ON_FOCUS_FLUSH_INTERVAL = "on_focus_flush_interval";
+   private static final String GZIP_REQUESTS_ENABLED = "gzip_requests_enable";
 
    private static final String FCM_PARENT_PARAM = "fcm";
    private static final String FCM_PROJECT_ID = "project_id";
@@ -124,7 +134,7 @@ public class OneSignalRemoteParams {
    public static final int DEFAULT_NOTIFICATION_LIMIT = 10;
 
    static void makeAndroidParamsRequest(final String appId, final String userId, final @NonNull Callback callback) {
-      OneSignalRestClient.ResponseHandler responseHandler = new OneSignalRestClient.ResponseHandler() {
+      OneSignalRestClient.JsonResponseHandler<Params> responseHandler = new OneSignalRestClient.JsonResponseHandler<Params>() {
          @Override
          void onFailure(int statusCode, String response, Throwable throwable) {
             if (statusCode == HttpURLConnection.HTTP_FORBIDDEN) {
@@ -147,8 +157,20 @@ public class OneSignalRemoteParams {
          }
 
          @Override
-         void onSuccess(String response) {
-            processJson(response, callback);
+         Params parse(@NonNull JsonReader reader) throws IOException {
+            return parseParams(reader);
+         }
+
+         @Override
+         void onParsed(Params params) {
+            callback.complete(params);
+         }
+
+         @Override
+         void onParseFailure(@Nullable String response, Throwable throwable) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.FATAL, "Error parsing android_params!: ", throwable);
+            if (response != null)
+               OneSignal.Log(OneSignal.LOG_LEVEL.FATAL, "Response that errored from android_params!: " + response);
          }
       };
 
@@ -160,55 +182,99 @@ public class OneSignalRemoteParams {
       OneSignalRestClient.get(params_url, responseHandler, OneSignalRestClient.CACHE_KEY_REMOTE_PARAMS);
    }
 
-   static private void processJson(String json, final @NonNull Callback callBack) {
-      final JSONObject responseJson;
-      try {
-         responseJson = new JSONObject(json);
-      }
-      catch (NullPointerException | JSONException t) {
-         OneSignal.Log(OneSignal.LOG_LEVEL.FATAL, "Error parsing android_params!: ", t);
-         OneSignal.Log(OneSignal.LOG_LEVEL.FATAL, "Response that errored from android_params!: " + json);
-         return;
-      }
-
-      Params params = new Params() {{
-         enterprise = responseJson.optBoolean("enterp", false);
-         useEmailAuth = responseJson.optBoolean("require_email_auth", false);
-         useUserIdAuth = responseJson.optBoolean("require_user_id_auth", false);
-         notificationChannels = responseJson.optJSONArray("chnl_lst");
-         firebaseAnalytics = responseJson.optBoolean("fba", false);
-         restoreTTLFilter = responseJson.optBoolean("restore_ttl_filter", true);
-         googleProjectNumber = responseJson.optString("android_sender_id", null);
-         clearGroupOnSummaryClick = responseJson.optBoolean("clear_group_on_summary_click", true);
-         receiveReceiptEnabled = responseJson.optBoolean("receive_receipts_enable", false);
-
-         // Null assignation to avoid remote param override user configuration until backend is done
-         // TODO remove the has check when backend has new remote params and sets inside OneSignal.java are removed
-         disableGMSMissingPrompt = !responseJson.has(DISABLE_GMS_MISSING_PROMPT) ? null : responseJson.optBoolean(DISABLE_GMS_MISSING_PROMPT, false);
-         unsubscribeWhenNotificationsDisabled = !responseJson.has(UNSUBSCRIBE_ON_NOTIFICATION_DISABLE) ? null : responseJson.optBoolean(UNSUBSCRIBE_ON_NOTIFICATION_DISABLE, true);
-         locationShared = !responseJson.has(LOCATION_SHARED) ? null : responseJson.optBoolean(LOCATION_SHARED, true);
-         requiresUserPrivacyConsent = !responseJson.has(REQUIRES_USER_PRIVACY_CONSENT) ? null : responseJson.optBoolean(REQUIRES_USER_PRIVACY_CONSENT, false);
-
-         influenceParams = new InfluenceParams();
-         // Process outcomes params
-         if (responseJson.has(OUTCOME_PARAM))
-            processOutcomeJson(responseJson.optJSONObject(OUTCOME_PARAM), influenceParams);
-
-         fcmParams = new FCMParams();
-         if (responseJson.has(FCM_PARENT_PARAM)) {
-            JSONObject fcm = responseJson.optJSONObject(FCM_PARENT_PARAM);
-            fcmParams.apiKey = fcm.optString(FCM_API_KEY, null);
-            fcmParams.appId = fcm.optString(FCM_APP_ID, null);
-            fcmParams.projectId = fcm.optString(FCM_PROJECT_ID, null);
+   /**
+    * Decodes the android_params response into Params as it is read,
+    * only the small nested objects are read as JSONObjects
+    */
+   static private Params parseParams(JsonReader reader) throws IOException {
+      Params params = new Params();
+      params.restoreTTLFilter = true;
+      params.clearGroupOnSummaryClick = true;
+      params.influenceParams = new InfluenceParams();
+      params.fcmParams = new FCMParams();
+
+      reader.beginObject();
+      while (reader.hasNext()) {
+         switch (reader.nextName()) {
+            case "enterp":
+               params.enterprise = JSONUtils.optBoolean(JSONUtils.nextValue(reader), false);
+               break;
+            case "require_email_auth":
+               params.useEmailAuth = JSONUtils.optBoolean(JSONUtils.nextValue(reader), false);
+               break;
+            case "require_user_id_auth":
+               params.useUserIdAuth = JSONUtils.optBoolean(JSONUtils.nextValue(reader), false);
+               break;
+            case "chnl_lst":
+               Object channels = JSONUtils.nextValue(reader);
+               params.notificationChannels = channels instanceof JSONArray ? (JSONArray) channels : null;
+               break;
+            case "fba":
+               params.firebaseAnalytics = JSONUtils.optBoolean(JSONUtils.nextValue(reader), false);
+               break;
+            case "restore_ttl_filter":
+               params.restoreTTLFilter = JSONUtils.optBoolean(JSONUtils.nextValue(reader), true);
+               break;
+            case "android_sender_id":
+               params.googleProjectNumber = JSONUtils.optString(JSONUtils.nextValue(reader), null);
+               break;
+            case "clear_group_on_summary_click":
+               params.clearGroupOnSummaryClick = JSONUtils.optBoolean(JSONUtils.nextValue(reader), true);
+               break;
+            case "receive_receipts_enable":
+               params.receiveReceiptEnabled = JSONUtils.optBoolean(JSONUtils.nextValue(reader), false);
+               break;
+            case GZIP_REQUESTS_ENABLED:
+               params.gzipRequestsEnabled = JSONUtils.optBoolean(JSONUtils.nextValue(reader), false);
+               break;
+            // Null assignation to avoid remote param override user configuration until backend is done
+            // TODO remove the presence check when backend has new remote params and sets inside OneSignal.java are removed
+            case DISABLE_GMS_MISSING_PROMPT:
+               params.disableGMSMissingPrompt = JSONUtils.optBoolean(JSONUtils.nextValue(reader), false);
+               break;
+            case UNSUBSCRIBE_ON_NOTIFICATION_DISABLE:
+               params.unsubscribeWhenNotificationsDisabled = JSONUtils.optBoolean(JSONUtils.nextValue(reader), true);
+               break;
+            case LOCATION_SHARED:
+               params.locationShared = JSONUtils.optBoolean(JSONUtils.nextValue(reader), true);
+               break;
+            case REQUIRES_USER_PRIVACY_CONSENT:
+               params.requiresUserPrivacyConsent = JSONUtils.optBoolean(JSONUtils.nextValue(reader), false);
+               break;
+            case ON_FOCUS_FLUSH_INTERVAL:
+               Object onFocusFlushInterval = JSONUtils.nextValue(reader);
+               if (onFocusFlushInterval instanceof Number)
+                  params.onFocusFlushInterval = ((Number) onFocusFlushInterval).intValue();
+               break;
+            // Process outcomes params
+            case OUTCOME_PARAM:
+               Object outcomes = JSONUtils.nextValue(reader);
+               if (outcomes instanceof JSONObject)
+                  processOutcomeJson((JSONObject) outcomes, params.influenceParams);
+               break;
+            case FCM_PARENT_PARAM:
+               Object fcmValue = JSONUtils.nextValue(reader);
+               if (fcmValue instanceof JSONObject) {
+                  JSONObject fcm = (JSONObject) fcmValue;
+                  params.fcmParams.apiKey = fcm.optString(FCM_API_KEY, null);
+                  params.fcmParams.appId = fcm.optString(FCM_APP_ID, null);
+                  params.fcmParams.projectId = fcm.optString(FCM_PROJECT_ID, null);
+               }
+               break;
+            default:
+               reader.skipValue();
          }
-      }};
+      }
+      reader.endObject();
 
-      callBack.complete(params);
+      return params;
    }
 
    static private void processOutcomeJson(JSONObject outcomeJson, InfluenceParams influenceParams) {
       if (outcomeJson.has(OUTCOMES_V2_SERVICE_PARAM))
          influenceParams.outcomesV2ServiceEnabled = outcomeJson.optBoolean(OUTCOMES_V2_SERVICE_PARAM);
+      if (outcomeJson.has(OUTCOMES_BATCH_PARAM))
+         influenceParams.outcomesBatchEnabled = outcomeJson.optBoolean(OUTCOMES_BATCH_PARAM);
 
       if (outcomeJson.has(DIRECT_PARAM)) {
          JSONObject direct = outcomeJson.optJSONObject(DIRECT_PARAM);
@@ -29,17 +29,28 @@ package com.onesignal;
 
 import android.net.TrafficStats;
 import android.os.Build;
+import android.util.JsonReader;
+import android.util.MalformedJsonException;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.StringReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.Scanner;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 class OneSignalRestClient {
    static abstract class ResponseHandler {
@@ -47,13 +58,72 @@ class OneSignalRestClient {
       void onFailure(int statusCode, String response, Throwable throwable) {}
    }
 
+   /**
+    * Decodes a successful JSON response while it is read from the connection or the response cache,
+    *    the body is never held as a String.
+    * If the body is only available as a String it goes through onSuccess(String) and is read the same way.
+    */
+   static abstract class JsonResponseHandler<T> extends ResponseHandler {
+      /**
+       * Called on the request thread, throw a JSONException if the response is missing required values
+       */
+      abstract T parse(@NonNull JsonReader reader) throws IOException, JSONException;
+      void onParsed(T result) {}
+      void onParseFailure(@Nullable String response, Throwable throwable) {}
+
+      @Override
+      void onSuccess(String response) {
+         T result;
+         JsonReader reader = new JsonReader(new StringReader(response == null ? "" : response));
+         try {
+            result = parse(reader);
+         } catch (IOException | IllegalStateException | JSONException e) {
+            onParseFailure(response, e);
+            return;
+         } finally {
+            try {
+               reader.close();
+            } catch (IOException e) {
+               e.printStackTrace();
+            }
+         }
+         onParsed(result);
+      }
+   }
+
+   /**
+    * Handler for GET requests whose response the caller caches itself, see {@link #getWithETag}
+    */
+   static abstract class ETagResponseHandler extends ResponseHandler {
+      /**
+       * @param eTag ETag of the response, null if it has none
+       */
+      abstract void onSuccess(String response, @Nullable String eTag);
+      // The server answered 304 for the ETag given to the request, the caller's copy is current
+      abstract void onNotModified();
+
+      @Override
+      void onSuccess(String response) {
+         onSuccess(response, null);
+      }
+   }
+
    static final String CACHE_KEY_GET_TAGS = "CACHE_KEY_GET_TAGS";
    static final String CACHE_KEY_REMOTE_PARAMS = "CACHE_KEY_REMOTE_PARAMS";
+   // GET responses aren't cached with this key, for callers that cache the response themselves
+   static final String CACHE_KEY_NONE = "CACHE_KEY_NONE";
 
    private static final String OS_API_VERSION = "1";
    private static final String OS_ACCEPT_HEADER = "application/vnd.onesignal.v" + OS_API_VERSION + "+json";
    private static final String BASE_URL = "https://api.onesignal.com/";
    
+   private static final String GZIP_ENCODING = "gzip";
+   private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
+   // Smaller bodies don't save enough bytes to be worth the gzip header and CPU time
+   static final int GZIP_REQUEST_MIN_BYTES = 1_024;
+   // Turned off for the rest of the process if the server rejects a compressed body with a 415
+   private static volatile boolean gzipRequestsRejected = false;
+
    private static final int THREAD_ID = 10000;
    private static final int TIMEOUT = 120_000;
    private static final int GET_TIMEOUT = 60_000;
@@ -63,42 +133,60 @@ class OneSignalRestClient {
    }
 
    public static void put(final String url, final JSONObject jsonBody, final ResponseHandler responseHandler) {
-      new Thread(new Runnable() {
+      OSHttpRequestExecutor.executeRequest(new Runnable() {
          public void run() {
-            makeRequest(url, "PUT", jsonBody, responseHandler, TIMEOUT, null);
+            makeRequest(url, "PUT", jsonBody, responseHandler, TIMEOUT, null, null, true);
          }
-      }, "OS_REST_ASYNC_PUT").start();
+      });
    }
 
    public static void post(final String url, final JSONObject jsonBody, final ResponseHandler responseHandler) {
-      new Thread(new Runnable() {
+      OSHttpRequestExecutor.executeRequest(new Runnable() {
          public void run() {
-            makeRequest(url, "POST", jsonBody, responseHandler, TIMEOUT, null);
+            makeRequest(url, "POST", jsonBody, responseHandler, TIMEOUT, null, null, true);
          }
-      }, "OS_REST_ASYNC_POST").start();
+      });
    }
 
    public static void get(final String url, final ResponseHandler responseHandler, @NonNull final String cacheKey) {
-      new Thread(new Runnable() {
+      OSHttpRequestExecutor.executeRequest(new Runnable() {
+         public void run() {
+            makeRequest(url, null, null, responseHandler, GET_TIMEOUT, cacheKey, null, true);
+         }
+      });
+   }
+
+   /**
+    * GET that skips the response cache and sends if-none-match with the given ETag of the caller's own cached copy
+    * @param eTag ETag saved from a previous {@link ETagResponseHandler#onSuccess(String, String)}, null to always get the response
+    */
+   static void getWithETag(final String url, @Nullable final String eTag, final ETagResponseHandler responseHandler) {
+      OSHttpRequestExecutor.executeRequest(new Runnable() {
          public void run() {
-            makeRequest(url, null, null, responseHandler, GET_TIMEOUT, cacheKey);
+            makeRequest(url, null, null, responseHandler, GET_TIMEOUT, CACHE_KEY_NONE, eTag, true);
          }
-      }, "OS_REST_ASYNC_GET").start();
+      });
    }
 
    public static void getSync(final String url, final ResponseHandler responseHandler, @NonNull String cacheKey) {
-      makeRequest(url, null, null, responseHandler, GET_TIMEOUT, cacheKey);
+      makeRequest(url, null, null, responseHandler, GET_TIMEOUT, cacheKey, null, false);
    }
 
    public static void putSync(String url, JSONObject jsonBody, ResponseHandler responseHandler) {
-      makeRequest(url, "PUT", jsonBody, responseHandler, TIMEOUT, null);
+      makeRequest(url, "PUT", jsonBody, responseHandler, TIMEOUT, null, null, false);
    }
 
    public static void postSync(String url, JSONObject jsonBody, ResponseHandler responseHandler) {
-      makeRequest(url, "POST", jsonBody, responseHandler, TIMEOUT, null);
+      makeRequest(url, "POST", jsonBody, responseHandler, TIMEOUT, null, null, false);
    }
-   
-   private static void makeRequest(final String url, final String method, final JSONObject jsonBody, final ResponseHandler responseHandler, final int timeout, final String cacheKey) {
+
+   /**
+    * Runs the request on the calling thread
+    * @param requestETag sent as if-none-match when the response cache isn't used
+    * @param asyncCallback true to dispatch the ResponseHandler to a callback thread,
+    *                      false to call it on the calling thread before returning
+    */
+   private static void makeRequest(final String url, final String method, final JSONObject jsonBody, final ResponseHandler responseHandler, final int timeout, final String cacheKey, @Nullable final String requestETag, boolean asyncCallback) {
       if (OSUtils.isRunningOnMainThread())
          throw new OSThrowable.OSMainThreadException("Method: " + method + " was called from the Main Thread!");
 
@@ -106,32 +194,55 @@ class OneSignalRestClient {
       if (method != null && OneSignal.shouldLogUserPrivacyConsentErrorMessageForMethodName(null))
          return;
 
-      final Thread[] callbackThread = new Thread[1];
-      Thread connectionThread = new Thread(new Runnable() {
+      final Thread requestThread = Thread.currentThread();
+      final HttpURLConnection[] connection = new HttpURLConnection[1];
+
+      // getResponseCode() can hang past it's timeout setting so interrupt the request thread and close the connection to ensure it is timing out.
+      OSHttpRequestExecutor.TimeoutHandle timeoutHandle = OSHttpRequestExecutor.startTimeout(getThreadTimeout(timeout), new Runnable() {
+         @Override
          public void run() {
-            callbackThread[0] = startHTTPConnection(url, method, jsonBody, responseHandler, timeout, cacheKey);
+            OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "OneSignalRestClient: Request to: " + BASE_URL + url + " timed out, interrupting it");
+            OSHttpRequestExecutor.onRequestTimedOut();
+            requestThread.interrupt();
+            if (connection[0] != null)
+               connection[0].disconnect();
          }
-      }, "OS_HTTPConnection");
-      
-      connectionThread.start();
-      
-      // getResponseCode() can hang past it's timeout setting so join it's thread to ensure it is timing out.
+      });
+
+      Runnable callback;
       try {
-         // Sequentially wait for connectionThread to execute
-         connectionThread.join(getThreadTimeout(timeout));
-         if (connectionThread.getState() != Thread.State.TERMINATED)
-            connectionThread.interrupt();
-         if (callbackThread[0] != null)
-            callbackThread[0].join();
-      } catch (InterruptedException e) {
-         e.printStackTrace();
+         callback = startHTTPConnection(url, method, jsonBody, responseHandler, timeout, cacheKey, requestETag, connection, true);
+      } finally {
+         // Clear the interrupt so it doesn't leak into the next task ran by this thread
+         if (timeoutHandle.finish())
+            Thread.interrupted();
       }
+
+      OSHttpTrafficStats.logStats(url);
+
+      if (callback == null)
+         return;
+
+      if (asyncCallback)
+         OSHttpRequestExecutor.dispatchCallback(callback);
+      else
+         callback.run();
    }
    
-   private static Thread startHTTPConnection(String url, String method, JSONObject jsonBody, ResponseHandler responseHandler, int timeout, @Nullable String cacheKey) {
+   // Request compression is off unless turned on by the gzip_requests_enable remote param
+   private static boolean shouldGzipRequestBody(int length) {
+      return length >= GZIP_REQUEST_MIN_BYTES
+              && !gzipRequestsRejected
+              && OneSignalPrefs.getBool(
+                      OneSignalPrefs.PREFS_ONESIGNAL,
+                      OneSignalPrefs.PREFS_OS_GZIP_REQUESTS_ENABLED,
+                      false);
+   }
+
+   private static Runnable startHTTPConnection(String url, String method, JSONObject jsonBody, ResponseHandler responseHandler, int timeout, @Nullable String cacheKey, @Nullable String requestETag, HttpURLConnection[] connection, boolean allowGzip) {
       int httpResponse = -1;
       HttpURLConnection con = null;
-      Thread callbackThread;
+      Runnable callback;
 
       if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
          TrafficStats.setThreadStatsTag(THREAD_ID);
@@ -140,12 +251,15 @@ class OneSignalRestClient {
       try {
          OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: Making request to: " + BASE_URL + url);
          con = newHttpURLConnection(url);
+         connection[0] = con;
 
          con.setUseCaches(false);
          con.setConnectTimeout(timeout);
          con.setReadTimeout(timeout);
          con.setRequestProperty("SDK-Version", "onesignal/android/" + OneSignal.getSdkVersionRaw());
          con.setRequestProperty("Accept", OS_ACCEPT_HEADER);
+         // Setting it turns off the transparent decompression of the connection, see readResponseBody
+         con.setRequestProperty("Accept-Encoding", GZIP_ENCODING);
 
          if (jsonBody != null)
             con.setDoInput(true);
@@ -156,27 +270,34 @@ class OneSignalRestClient {
             con.setDoOutput(true);
          }
 
+         boolean sentCompressed = false;
          if (jsonBody != null) {
             String strJsonBody = jsonBody.toString();
             OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: " + method + " SEND JSON: " + strJsonBody);
 
-            byte[] sendBytes = strJsonBody.getBytes("UTF-8");
+            byte[] jsonBytes = strJsonBody.getBytes("UTF-8");
+            byte[] sendBytes = jsonBytes;
+            if (allowGzip && shouldGzipRequestBody(jsonBytes.length)) {
+               sendBytes = gzip(jsonBytes);
+               sentCompressed = true;
+               con.setRequestProperty("Content-Encoding", GZIP_ENCODING);
+            }
             con.setFixedLengthStreamingMode(sendBytes.length);
 
             OutputStream outputStream = con.getOutputStream();
             outputStream.write(sendBytes);
+            OSHttpTrafficStats.onRequestSent(url, jsonBytes.length, sendBytes.length);
          }
-
-         if (cacheKey != null) {
-            String eTag = OneSignalPrefs.getString(
-               OneSignalPrefs.PREFS_ONESIGNAL,
-               OneSignalPrefs.PREFS_OS_ETAG_PREFIX + cacheKey,
-               null
-            );
-            if (eTag != null) {
-               con.setRequestProperty("if-none-match", eTag);
-               OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: Adding header if-none-match: " + eTag);
-            }
+         else
+            OSHttpTrafficStats.onRequestSent(url, 0, 0);
+
+         // All GET responses with an ETag are cached, by url if the caller doesn't give a cacheKey
+         String responseCacheKey = method != null || CACHE_KEY_NONE.equals(cacheKey) ? null : (cacheKey != null ? cacheKey : url);
+         OSHttpResponseCache responseCache = responseCacheKey != null ? OSHttpResponseCache.getInstance() : null;
+         String eTag = responseCache != null ? responseCache.getETag(responseCacheKey) : requestETag;
+         if (eTag != null) {
+            con.setRequestProperty("if-none-match", eTag);
+            OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: Adding header if-none-match: " + eTag);
          }
 
          // Network request is made from getResponseCode()
@@ -184,44 +305,68 @@ class OneSignalRestClient {
 
          OneSignal.Log(OneSignal.LOG_LEVEL.VERBOSE, "OneSignalRestClient: After con.getResponseCode to: " + BASE_URL + url);
 
+         // A server or proxy that can't read the compressed body may answer either 415 or 400
+         if (sentCompressed && (httpResponse == HTTP_UNSUPPORTED_MEDIA_TYPE || httpResponse == HttpURLConnection.HTTP_BAD_REQUEST)) {
+            OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "OneSignalRestClient: Compressed body rejected with " + httpResponse + ", retrying request without compression to: " + BASE_URL + url);
+            if (httpResponse == HTTP_UNSUPPORTED_MEDIA_TYPE)
+               gzipRequestsRejected = true;
+            con.disconnect();
+            return startHTTPConnection(url, method, jsonBody, responseHandler, timeout, cacheKey, requestETag, connection, false);
+         }
+
          switch (httpResponse) {
            case HttpURLConnection.HTTP_NOT_MODIFIED: // 304
-               String cachedResponse = OneSignalPrefs.getString(
-                  OneSignalPrefs.PREFS_ONESIGNAL,
-                  OneSignalPrefs.PREFS_OS_HTTP_CACHE_PREFIX + cacheKey,
-                  null
-               );
+               // Only the caller has the cached response when the response cache isn't used
+               if (responseCache == null && responseHandler instanceof ETagResponseHandler) {
+                  OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: " + (method == null ? "GET" : method) + " - Caller's cached response is current due to 304");
+                  callback = callResponseHandlerOnNotModified((ETagResponseHandler) responseHandler);
+                  break;
+               }
+
+               if (responseHandler instanceof JsonResponseHandler && responseCache != null) {
+                  InputStream cachedBody = responseCache.openBody(responseCacheKey);
+                  if (cachedBody != null) {
+                     OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: " + (method == null ? "GET" : method) + " - Using Cached response due to 304");
+                     try {
+                        callback = parseJsonResponse(url, method, (JsonResponseHandler<?>) responseHandler, cachedBody);
+                     } finally {
+                        cachedBody.close();
+                     }
+                     break;
+                  }
+               }
+
+               String cachedResponse = responseCache != null ? responseCache.getBody(responseCacheKey) : null;
                OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: " + (method == null ? "GET" : method) + " - Using Cached response due to 304: " + cachedResponse);
-               callbackThread = callResponseHandlerOnSuccess(responseHandler, cachedResponse);
+               callback = callResponseHandlerOnSuccess(responseHandler, cachedResponse);
             break;
             case HttpURLConnection.HTTP_ACCEPTED:
             case HttpURLConnection.HTTP_OK: // 200
                OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: Successfully finished request to: " + BASE_URL + url);
 
                InputStream inputStream = con.getInputStream();
-               Scanner scanner = new Scanner(inputStream, "UTF-8");
-               String json = scanner.useDelimiter("\\A").hasNext() ? scanner.next() : "";
-               scanner.close();
+               eTag = responseCache != null ? con.getHeaderField("etag") : null;
+               if (eTag != null)
+                  OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: Response has etag of " + eTag + " so caching the response.");
+
+               if (responseHandler instanceof JsonResponseHandler) {
+                  OSHttpResponseCache.Editor cacheEditor = eTag != null ? responseCache.edit(responseCacheKey, eTag) : null;
+                  callback = streamResponseBody(url, method, (JsonResponseHandler<?>) responseHandler, inputStream, con.getContentEncoding(), cacheEditor);
+                  break;
+               }
+
+               String json = readResponseBody(url, inputStream, con.getContentEncoding());
                OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: " + (method == null ? "GET" : method) + " RECEIVED JSON: " + json);
 
-               if (cacheKey != null) {
-                  String eTag = con.getHeaderField("etag");
-                  if (eTag != null) {
-                     OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: Response has etag of " + eTag + " so caching the response.");
-                     OneSignalPrefs.saveString(
-                        OneSignalPrefs.PREFS_ONESIGNAL,
-                        OneSignalPrefs.PREFS_OS_ETAG_PREFIX + cacheKey,
-                        eTag
-                     );
-                     OneSignalPrefs.saveString(
-                        OneSignalPrefs.PREFS_ONESIGNAL,
-                        OneSignalPrefs.PREFS_OS_HTTP_CACHE_PREFIX + cacheKey,
-                        json
-                     );
-                  }
+               if (eTag != null)
+                  responseCache.put(responseCacheKey, eTag, json);
+
+               if (responseHandler instanceof ETagResponseHandler) {
+                  callback = callResponseHandlerOnSuccess((ETagResponseHandler) responseHandler, json, con.getHeaderField("etag"));
+                  break;
                }
 
-               callbackThread = callResponseHandlerOnSuccess(responseHandler, json);
+               callback = callResponseHandlerOnSuccess(responseHandler, json);
                break;
             default: // Request failed
                OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: Failed request to: " + BASE_URL + url);
@@ -231,15 +376,13 @@ class OneSignalRestClient {
 
                String jsonResponse = null;
                if (inputStream != null) {
-                  scanner = new Scanner(inputStream, "UTF-8");
-                  jsonResponse = scanner.useDelimiter("\\A").hasNext() ? scanner.next() : "";
-                  scanner.close();
+                  jsonResponse = readResponseBody(url, inputStream, con.getContentEncoding());
                   OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "OneSignalRestClient: " + method + " RECEIVED JSON: " + jsonResponse);
                }
                else
                   OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "OneSignalRestClient: " + method + " HTTP Code: " + httpResponse + " No response body!");
 
-               callbackThread = callResponseHandlerOnFailure(responseHandler, httpResponse, jsonResponse, null);
+               callback = callResponseHandlerOnFailure(responseHandler, httpResponse, jsonResponse, null);
          }
       } catch (Throwable t) {
          if (t instanceof java.net.ConnectException || t instanceof java.net.UnknownHostException)
@@ -247,45 +390,187 @@ class OneSignalRestClient {
          else
             OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "OneSignalRestClient: " + method + " Error thrown from network stack. ", t);
    
-         callbackThread = callResponseHandlerOnFailure(responseHandler, httpResponse, null, t);
+         callback = callResponseHandlerOnFailure(responseHandler, httpResponse, null, t);
       }
       finally {
          if (con != null)
             con.disconnect();
       }
       
-      return callbackThread;
+      return callback;
    }
    
    
-   // These helper methods run the callback a new thread so they don't count towards the fallback thread join timer.
-   
-   private static Thread callResponseHandlerOnSuccess(final ResponseHandler handler, final String response) {
+   private static byte[] gzip(byte[] bytes) throws IOException {
+      ByteArrayOutputStream byteStream = new ByteArrayOutputStream(bytes.length / 2);
+      GZIPOutputStream gzipStream = new GZIPOutputStream(byteStream);
+      try {
+         gzipStream.write(bytes);
+      } finally {
+         gzipStream.close();
+      }
+      return byteStream.toByteArray();
+   }
+
+   // Accept-Encoding is set manually so the body has to be decompressed here
+   private static @Nullable CountingInputStream decodedBodyStream(CountingInputStream wireStream, @Nullable String contentEncoding) throws IOException {
+      if (!GZIP_ENCODING.equalsIgnoreCase(contentEncoding))
+         return wireStream;
+
+      try {
+         return new CountingInputStream(new GZIPInputStream(wireStream));
+      } catch (EOFException e) {
+         // Empty body, there is no gzip header to read
+         return null;
+      }
+   }
+
+   private static String readResponseBody(String url, InputStream inputStream, @Nullable String contentEncoding) throws IOException {
+      CountingInputStream wireStream = new CountingInputStream(inputStream);
+      CountingInputStream bodyStream = decodedBodyStream(wireStream, contentEncoding);
+      if (bodyStream == null)
+         return "";
+
+      Scanner scanner = new Scanner(bodyStream, "UTF-8");
+      String body = scanner.useDelimiter("\\A").hasNext() ? scanner.next() : "";
+      scanner.close();
+
+      OSHttpTrafficStats.onResponseReceived(url, bodyStream.count, wireStream.count);
+      return body;
+   }
+
+   /**
+    * Parses the body with the handler as it is read, only the decoded result is kept.
+    * If cacheEditor is given the body is written to the response cache at the same time.
+    */
+   private static <T> Runnable streamResponseBody(String url, String method, JsonResponseHandler<T> handler, InputStream inputStream, @Nullable String contentEncoding, @Nullable OSHttpResponseCache.Editor cacheEditor) throws IOException {
+      try {
+         CountingInputStream wireStream = new CountingInputStream(inputStream);
+         CountingInputStream bodyStream = decodedBodyStream(wireStream, contentEncoding);
+         if (bodyStream == null)
+            return callResponseHandlerOnSuccess(handler, "");
+
+         InputStream parseStream = cacheEditor != null ? cacheEditor.copyWhileReading(bodyStream) : bodyStream;
+         Runnable callback = parseJsonResponse(url, method, handler, parseStream);
+
+         if (cacheEditor != null) {
+            // The parser can stop before the end of the body, the cached copy needs all of it
+            byte[] buffer = new byte[8 * 1024];
+            while (parseStream.read(buffer) != -1) {
+               // Bytes are written to the cache by copyWhileReading
+            }
+            cacheEditor.commit();
+         }
+
+         OSHttpTrafficStats.onResponseReceived(url, bodyStream.count, wireStream.count);
+         OneSignal.Log(OneSignal.LOG_LEVEL.DEBUG, "OneSignalRestClient: " + (method == null ? "GET" : method) + " RECEIVED JSON: " + bodyStream.count + " bytes parsed while streaming");
+         return callback;
+      } finally {
+         // No-op if committed
+         if (cacheEditor != null)
+            cacheEditor.abort();
+      }
+   }
+
+   /**
+    * Invalid JSON, including an empty or cut-off body, calls onParseFailure.
+    * Other IOExceptions are network or file errors thrown to the caller.
+    * The stream is left open for the caller to close.
+    */
+   private static <T> Runnable parseJsonResponse(String url, String method, final JsonResponseHandler<T> handler, InputStream inputStream) throws IOException {
+      final T result;
+      JsonReader reader = new JsonReader(new InputStreamReader(inputStream, "UTF-8"));
+      try {
+         result = handler.parse(reader);
+      } catch (MalformedJsonException | EOFException | IllegalStateException | JSONException e) {
+         OneSignal.Log(OneSignal.LOG_LEVEL.WARN, "OneSignalRestClient: " + (method == null ? "GET" : method) + " Error parsing response from: " + BASE_URL + url, e);
+         return callResponseHandlerOnParseFailure(handler, e);
+      }
+
+      return new Runnable() {
+         public void run() {
+            handler.onParsed(result);
+         }
+      };
+   }
+
+   private static class CountingInputStream extends FilterInputStream {
+      private long count;
+
+      CountingInputStream(InputStream in) {
+         super(in);
+      }
+
+      @Override
+      public int read() throws IOException {
+         int result = super.read();
+         if (result != -1)
+            count++;
+         return result;
+      }
+
+      @Override
+      public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+         int result = super.read(buffer, offset, length);
+         if (result != -1)
+            count += result;
+         return result;
+      }
+
+      @Override
+      public long skip(long n) throws IOException {
+         long result = super.skip(n);
+         count += result;
+         return result;
+      }
+   }
+
+   // These helper methods wrap the callback so it runs after the request timeout is released.
+
+   private static Runnable callResponseHandlerOnSuccess(final ResponseHandler handler, final String response) {
       if (handler == null)
          return null;
-      
-      Thread thread = new Thread(new Runnable() {
+
+      return new Runnable() {
          public void run() {
             handler.onSuccess(response);
          }
-      }, "OS_REST_SUCCESS_CALLBACK");
-      thread.start();
-      
-      return thread;
+      };
    }
-   
-   private static Thread callResponseHandlerOnFailure(final ResponseHandler handler, final int statusCode, final String response, final Throwable throwable) {
+
+   private static Runnable callResponseHandlerOnSuccess(final ETagResponseHandler handler, final String response, @Nullable final String eTag) {
+      return new Runnable() {
+         public void run() {
+            handler.onSuccess(response, eTag);
+         }
+      };
+   }
+
+   private static Runnable callResponseHandlerOnNotModified(final ETagResponseHandler handler) {
+      return new Runnable() {
+         public void run() {
+            handler.onNotModified();
+         }
+      };
+   }
+
+   private static Runnable callResponseHandlerOnParseFailure(final JsonResponseHandler<?> handler, final Throwable throwable) {
+      return new Runnable() {
+         public void run() {
+            handler.onParseFailure(null, throwable);
+         }
+      };
+   }
+
+   private static Runnable callResponseHandlerOnFailure(final ResponseHandler handler, final int statusCode, final String response, final Throwable throwable) {
       if (handler == null)
          return null;
-   
-      Thread thread = new Thread(new Runnable() {
+
+      return new Runnable() {
          public void run() {
             handler.onFailure(statusCode, response, throwable);
          }
-      }, "OS_REST_FAILURE_CALLBACK");
-      thread.start();
-      
-      return thread;
+      };
    }
 
    private static HttpURLConnection newHttpURLConnection(String url) throws IOException {
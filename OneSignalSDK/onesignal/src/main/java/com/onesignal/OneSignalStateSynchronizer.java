@@ -153,6 +153,19 @@ class OneSignalStateSynchronizer {
       getSMSStateSynchronizer().syncUserState(fromSyncService);
    }
 
+   // Sends buffered changes of every channel, except the one already syncing, without waiting for their buffer window to end
+   static void flushBufferedUpdates(@Nullable UserStateSynchronizer syncing) {
+      List<UserStateSynchronizer> synchronizers;
+      synchronized (LOCK) {
+         synchronizers = new ArrayList<>(userStateSynchronizers.values());
+      }
+
+      for (UserStateSynchronizer userStateSynchronizer : synchronizers) {
+         if (userStateSynchronizer != syncing && userStateSynchronizer.flushBufferedUpdates())
+            OneSignal.onesignalLog(OneSignal.LOG_LEVEL.DEBUG, "Flushing buffered updates for channel: " + userStateSynchronizer.getChannelString());
+      }
+   }
+
    static void sendTags(JSONObject newTags, @Nullable ChangeTagsUpdateHandler handler) {
       try {
          JSONObject jsonField = new JSONObject().put("tags", newTags);
@@ -5,7 +5,9 @@ import androidx.annotation.NonNull;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -58,6 +60,12 @@ abstract class UserState {
 
     private JSONObject dependValues, syncValues;
 
+    // Change tracking for the syncValues diff made by generateJsonDiff(UserState, boolean)
+    // Keys changed, on either this state or the state it is diffed with, since the last diff between them.
+    // Only these keys are compared instead of every key and tag, null means all keys have to be compared.
+    // Tags are tracked by tag key in dirtyTagKeys, TAGS itself is never added to dirtySyncKeys.
+    private Set<String> dirtySyncKeys, dirtyTagKeys;
+
     public ImmutableJSONObject getDependValues() {
         try {
             return new ImmutableJSONObject(getDependValuesCopy());
@@ -75,7 +83,7 @@ abstract class UserState {
 
     JSONObject getDependValuesCopy() throws JSONException {
         synchronized (LOCK) {
-            return new JSONObject(dependValues.toString());
+            return JSONUtils.deepCopy(dependValues);
         }
     }
 
@@ -90,13 +98,14 @@ abstract class UserState {
 
     public JSONObject getSyncValuesCopy() throws JSONException {
         synchronized (LOCK) {
-            return new JSONObject(syncValues.toString());
+            return JSONUtils.deepCopy(syncValues);
         }
     }
 
     public void setSyncValues(@NonNull JSONObject syncValues) {
         synchronized (LOCK) {
             this.syncValues = syncValues;
+            markAllSyncValuesDirty();
         }
     }
 
@@ -138,7 +147,7 @@ abstract class UserState {
                 syncValuesToPut.put("loc_bg", changedTo.dependValues.opt("loc_bg"));
                 syncValuesToPut.put("loc_time_stamp", changedTo.dependValues.opt("loc_time_stamp"));
 
-                putValues(changedTo.syncValues, syncValuesToPut);
+                changedTo.putSyncValues(syncValuesToPut);
 
                 return LOCATION_FIELDS_SET;
             }
@@ -150,6 +159,7 @@ abstract class UserState {
     void putOnSyncValues(String key, Object value) throws JSONException {
         synchronized (LOCK) {
             syncValues.put(key, value);
+            markSyncValueDirty(key);
         }
     }
 
@@ -168,9 +178,18 @@ abstract class UserState {
         }
     }
 
+    private void putSyncValues(HashMap<String, Object> values) throws JSONException {
+        synchronized (LOCK) {
+            putValues(syncValues, values);
+            for (String key : values.keySet())
+                markSyncValueDirty(key);
+        }
+    }
+
     void removeFromSyncValues(String key) {
         synchronized (LOCK) {
             syncValues.remove(key);
+            markSyncValueDirty(key);
         }
     }
 
@@ -178,6 +197,7 @@ abstract class UserState {
         synchronized (LOCK) {
             for (String key : keys) {
                 syncValues.remove(key);
+                markSyncValueDirty(key);
             }
         }
     }
@@ -203,7 +223,7 @@ abstract class UserState {
             syncValuesToPut.put("long",point.log);
             syncValuesToPut.put("loc_acc", point.accuracy);
             syncValuesToPut.put("loc_type", point.type);
-            putValues(syncValues, syncValuesToPut);
+            putSyncValues(syncValuesToPut);
 
             HashMap<String, Object> dependValuesToPut = new HashMap<>();
             dependValuesToPut.put("loc_bg", point.bg);
@@ -223,7 +243,7 @@ abstract class UserState {
             syncValuesToPut.put("loc_type", null);
             syncValuesToPut.put("loc_bg", null);
             syncValuesToPut.put("loc_time_stamp", null);
-            putValues(syncValues, syncValuesToPut);
+            putSyncValues(syncValuesToPut);
 
             HashMap<String, Object> dependValuesToPut = new HashMap<>();
             dependValuesToPut.put("loc_bg", null);
@@ -238,9 +258,9 @@ abstract class UserState {
         addDependFields();
         newState.addDependFields();
         Set<String> includeFields = getGroupChangeFields(newState);
-        JSONObject sendJson = generateJsonDiff(syncValues, newState.syncValues, null, includeFields);
+        JSONObject sendJson = generateSyncValuesDiff(newState, includeFields);
 
-        if (!isSessionCall && sendJson.toString().equals("{}"))
+        if (!isSessionCall && sendJson.length() == 0)
             return null;
 
         try {
@@ -260,6 +280,111 @@ abstract class UserState {
         return sendJson;
     }
 
+    /**
+     * Same result as JSONUtils.generateJsonDiff(syncValues, changedTo.syncValues, null, includeFields)
+     * Only compares the keys and tags changed since the last diff between these two states,
+     *    keys are kept dirty until a diff finds no differences for them, ex: a sync that failed.
+     */
+    private JSONObject generateSyncValuesDiff(UserState changedTo, Set<String> includeFields) {
+        synchronized (LOCK) {
+            if (includeFields != null) {
+                // includeFields are sent even when unchanged, compare everything and start tracking again on the next diff
+                markAllSyncValuesDirty();
+                changedTo.markAllSyncValuesDirty();
+                return JSONUtils.generateJsonDiff(syncValues, changedTo.syncValues, null, includeFields);
+            }
+
+            boolean compareAllKeys = dirtySyncKeys == null || changedTo.dirtySyncKeys == null;
+            Collection<String> keys = compareAllKeys ? keysOf(changedTo.syncValues) : union(dirtySyncKeys, changedTo.dirtySyncKeys);
+            keys.remove(TAGS);
+
+            Set<String> changedKeys = new HashSet<>();
+            JSONObject output = JSONUtils.generateJsonDiff(syncValues, changedTo.syncValues, keys, null, changedKeys);
+
+            Set<String> changedTagKeys = new HashSet<>();
+            boolean compareAllTags = compareAllKeys || dirtyTagKeys == null || changedTo.dirtyTagKeys == null;
+            boolean tagsChanged = compareAllTags || !dirtyTagKeys.isEmpty() || !changedTo.dirtyTagKeys.isEmpty();
+            if (tagsChanged && changedTo.syncValues.has(TAGS)) {
+                JSONObject curTags = syncValues.optJSONObject(TAGS);
+                JSONObject changedToTags = changedTo.syncValues.optJSONObject(TAGS);
+                try {
+                    if (curTags != null && changedToTags != null) {
+                        Collection<String> tagKeys = compareAllTags ? keysOf(changedToTags) : union(dirtyTagKeys, changedTo.dirtyTagKeys);
+                        JSONObject tagsDiff = JSONUtils.generateJsonDiff(curTags, changedToTags, tagKeys, null, changedTagKeys);
+                        if (tagsDiff.length() > 0)
+                            output.put(TAGS, JSONUtils.deepCopy(tagsDiff));
+                    } else {
+                        // Tags added or not an object, compared as a single value
+                        JSONObject tagsDiff = JSONUtils.generateJsonDiff(syncValues, changedTo.syncValues, Arrays.asList(TAGS), null, null);
+                        if (tagsDiff.has(TAGS)) {
+                            output.put(TAGS, tagsDiff.get(TAGS));
+                            changedTagKeys = null;
+                        }
+                    }
+                } catch (JSONException e) {
+                    e.printStackTrace();
+                    changedTagKeys = null;
+                }
+            }
+
+            // Dirty keys belong to this pair of states, keep the ones still different on changedTo only
+            dirtySyncKeys = new HashSet<>();
+            dirtyTagKeys = new HashSet<>();
+            changedTo.dirtySyncKeys = changedKeys;
+            changedTo.dirtyTagKeys = changedTagKeys;
+
+            return output;
+        }
+    }
+
+    private void markSyncValueDirty(String key) {
+        if (TAGS.equals(key))
+            dirtyTagKeys = null;
+        else if (dirtySyncKeys != null)
+            dirtySyncKeys.add(key);
+    }
+
+    private void markTagsDirty(JSONObject tags) {
+        if (dirtyTagKeys == null)
+            return;
+
+        Iterator<String> keys = tags.keys();
+        while (keys.hasNext())
+            dirtyTagKeys.add(keys.next());
+    }
+
+    // Marks the keys of values merged into syncValues, tags by tag key when they are an object
+    private void markSyncValuesDirty(JSONObject values) {
+        Iterator<String> keys = values.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            JSONObject tags = TAGS.equals(key) ? values.optJSONObject(TAGS) : null;
+            if (tags != null)
+                markTagsDirty(tags);
+            else
+                markSyncValueDirty(key);
+        }
+    }
+
+    private void markAllSyncValuesDirty() {
+        dirtySyncKeys = null;
+        dirtyTagKeys = null;
+    }
+
+    private static Collection<String> keysOf(JSONObject jsonObject) {
+        Collection<String> keys = new ArrayList<>(jsonObject.length());
+        Iterator<String> iterator = jsonObject.keys();
+        while (iterator.hasNext())
+            keys.add(iterator.next());
+        return keys;
+    }
+
+    private static Collection<String> union(Set<String> keys, Set<String> otherKeys) {
+        Set<String> union = new HashSet<>(keys);
+        union.addAll(otherKeys);
+        return union;
+    }
+
     private void loadState() {
         // null if first run of a 2.0+ version.
         String dependValuesStr = OneSignalPrefs.getString(OneSignalPrefs.PREFS_ONESIGNAL,
@@ -329,7 +454,7 @@ abstract class UserState {
             generateJsonDiff(dependValues, inDependValues, dependValues, null);
 
         if (inSyncValues != null) {
-            generateJsonDiff(syncValues, inSyncValues, syncValues, null);
+            generateJsonDiffFromIntoSyncValued(inSyncValues, null);
             mergeTags(inSyncValues, null);
         }
 
@@ -342,16 +467,21 @@ abstract class UserState {
             return;
 
         try {
-            JSONObject syncValues = getSyncValuesCopy();
             JSONObject newTags;
-            if (syncValues.has(TAGS)) {
-                try {
-                    newTags = new JSONObject(syncValues.optString(TAGS));
-                } catch (JSONException e) {
+            synchronized (LOCK) {
+                // Only the tags are copied, not all of syncValues
+                JSONObject syncTags = syncValues.optJSONObject(TAGS);
+                if (syncTags != null)
+                    newTags = JSONUtils.deepCopy(syncTags);
+                else if (syncValues.has(TAGS)) {
+                    try {
+                        newTags = new JSONObject(syncValues.optString(TAGS));
+                    } catch (JSONException e) {
+                        newTags = new JSONObject();
+                    }
+                } else {
                     newTags = new JSONObject();
                 }
-            } else {
-                newTags = new JSONObject();
             }
             JSONObject curTags = inSyncValues.optJSONObject(TAGS);
             Iterator<String> keys = curTags.keys();
@@ -366,10 +496,11 @@ abstract class UserState {
             }
 
             synchronized (LOCK) {
-                if (newTags.toString().equals("{}"))
+                if (newTags.length() == 0)
                     this.syncValues.remove(TAGS);
                 else
                     this.syncValues.put(TAGS, newTags);
+                markTagsDirty(curTags);
             }
         } catch (JSONException e) {
             e.printStackTrace();
@@ -378,6 +509,8 @@ abstract class UserState {
 
     JSONObject generateJsonDiffFromIntoSyncValued(JSONObject changedTo, Set<String> includeFields) {
         synchronized (LOCK) {
+            if (changedTo != null)
+                markSyncValuesDirty(changedTo);
             return JSONUtils.generateJsonDiff(syncValues, changedTo, syncValues, includeFields);
         }
     }
@@ -2,7 +2,9 @@ package com.onesignal;
 
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.util.JsonReader;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.onesignal.OneSignal.ChangeTagsUpdateHandler;
@@ -12,8 +14,10 @@ import com.onesignal.OneSignalStateSynchronizer.UserStateSynchronizerType;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -106,8 +110,17 @@ abstract class UserStateSynchronizer {
         Handler mHandler;
 
         static final int MAX_RETRIES = 3, NETWORK_CALL_DELAY_TO_BUFFER_MS = 5_000;
+        // Each new change pushes the buffered sync back, flush anyway once the oldest change is this old
+        static final int MAX_BUFFER_AGE_MS = 20_000;
+        // Flush right away once this many changes are buffered
+        static final int MAX_BUFFERED_CHANGES = 100;
         int currentRetry;
 
+        // Buffered sync state, guarded by mHandler
+        private boolean bufferedJobPending;
+        private long firstBufferedChangeTime;
+        private int bufferedChanges;
+
         NetworkHandlerThread(int type) {
             super(THREAD_NAME_PREFIX + UserStateSynchronizer.this.channel);
             mType = type;
@@ -120,9 +133,53 @@ abstract class UserStateSynchronizer {
                 return;
 
             synchronized (mHandler) {
+                long now = OneSignal.getTime().getElapsedRealtime();
+                if (!bufferedJobPending) {
+                    bufferedJobPending = true;
+                    firstBufferedChangeTime = now;
+                    bufferedChanges = 0;
+                }
+                bufferedChanges++;
+
+                long delay = NETWORK_CALL_DELAY_TO_BUFFER_MS;
+                long maxAgeDelay = firstBufferedChangeTime + MAX_BUFFER_AGE_MS - now;
+                if (bufferedChanges >= MAX_BUFFERED_CHANGES)
+                    delay = 0;
+                else if (maxAgeDelay < delay)
+                    delay = Math.max(0, maxAgeDelay);
+
                 currentRetry = 0;
                 mHandler.removeCallbacksAndMessages(null);
-                mHandler.postDelayed(getNewRunnable(), NETWORK_CALL_DELAY_TO_BUFFER_MS);
+                mHandler.postDelayed(getNewRunnable(), delay);
+            }
+        }
+
+        /**
+         * Sends the buffered changes now instead of waiting for the buffer window to end.
+         * Scheduled retries are not moved forward.
+         * @return true if a buffered sync was pending
+         */
+        boolean flushBufferedJob() {
+            synchronized (mHandler) {
+                if (!bufferedJobPending)
+                    return false;
+
+                mHandler.removeCallbacksAndMessages(null);
+                mHandler.post(getNewRunnable());
+                return true;
+            }
+        }
+
+        // Returns true if the running job is a buffered sync and not a retry
+        private boolean onBufferedJobStarted() {
+            synchronized (mHandler) {
+                if (!bufferedJobPending)
+                    return false;
+
+                bufferedJobPending = false;
+                OneSignal.onesignalLog(OneSignal.LOG_LEVEL.DEBUG, "UserStateSynchronizer flushing " + bufferedChanges + " buffered changes for channel: " + getChannelString() +
+                        " after " + (OneSignal.getTime().getElapsedRealtime() - firstBufferedChangeTime) + "ms");
+                return true;
             }
         }
 
@@ -132,6 +189,10 @@ abstract class UserStateSynchronizer {
                     return new Runnable() {
                         @Override
                         public void run() {
+                            // Send other channels' pending changes in the same radio wake-up
+                            if (onBufferedJobStarted())
+                                OneSignalStateSynchronizer.flushBufferedUpdates(UserStateSynchronizer.this);
+
                             boolean syncUserState = !runningSyncUserState.get();
                             if (syncUserState)
                                 syncUserState(false);
@@ -143,7 +204,10 @@ abstract class UserStateSynchronizer {
         }
 
         void stopScheduledRunnable() {
-            mHandler.removeCallbacksAndMessages(null);
+            synchronized (mHandler) {
+                bufferedJobPending = false;
+                mHandler.removeCallbacksAndMessages(null);
+            }
         }
 
         // Retries if not passed limit.
@@ -385,6 +449,37 @@ abstract class UserStateSynchronizer {
         });
     }
 
+    /**
+     * Values used from the players create and on_session responses, read while the response is streamed
+     */
+    private static class SessionResponse {
+        @Nullable String userId;
+        @Nullable List<OSInAppMessage> inAppMessages;
+
+        SessionResponse(JsonReader reader) throws IOException {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case ID:
+                        userId = JSONUtils.optString(JSONUtils.nextValue(reader), "");
+                        break;
+                    // List of in app messages to evaluate for the session
+                    case IN_APP_MESSAGES_JSON_KEY:
+                        try {
+                            inAppMessages = OSInAppMessageController.parseInAppMessages(reader);
+                        } catch (JSONException e) {
+                            // Same as before streaming, an invalid message list doesn't fail the session
+                            OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "ERROR processing InAppMessageJson JSON Response.", e);
+                        }
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+    }
+
     private void doCreateOrNewSession(final String userId, final JSONObject jsonBody, final JSONObject dependDiff) {
         String urlStr;
         if (userId == null)
@@ -394,7 +489,7 @@ abstract class UserStateSynchronizer {
 
         waitingForSessionResponse = true;
         addOnSessionOrCreateExtras(jsonBody);
-        OneSignalRestClient.postSync(urlStr, jsonBody, new OneSignalRestClient.ResponseHandler() {
+        OneSignalRestClient.postSync(urlStr, jsonBody, new OneSignalRestClient.JsonResponseHandler<SessionResponse>() {
             @Override
             void onFailure(int statusCode, String response, Throwable throwable) {
                 synchronized (LOCK) {
@@ -409,34 +504,43 @@ abstract class UserStateSynchronizer {
             }
 
             @Override
-            void onSuccess(String response) {
+            SessionResponse parse(@NonNull JsonReader reader) throws IOException {
+                return new SessionResponse(reader);
+            }
+
+            @Override
+            void onParsed(SessionResponse sessionResponse) {
                 synchronized (LOCK) {
                     waitingForSessionResponse = false;
                     currentUserState.persistStateAfterSync(dependDiff, jsonBody);
 
-                    try {
-                        OneSignal.onesignalLog(OneSignal.LOG_LEVEL.DEBUG, "doCreateOrNewSession:response: " + response);
-                        JSONObject jsonResponse = new JSONObject(response);
+                    OneSignal.onesignalLog(OneSignal.LOG_LEVEL.DEBUG, "doCreateOrNewSession:response: userId: " + sessionResponse.userId +
+                            ", in app messages: " + (sessionResponse.inAppMessages == null ? null : sessionResponse.inAppMessages.size()));
 
-                        if (jsonResponse.has(ID)) {
-                            String newUserId = jsonResponse.optString(ID);
-                            updateIdDependents(newUserId);
-                            OneSignal.Log(OneSignal.LOG_LEVEL.INFO, "Device registered, UserId = " + newUserId);
-                        }
-                        else
-                            OneSignal.Log(OneSignal.LOG_LEVEL.INFO, "session sent, UserId = " + userId);
+                    if (sessionResponse.userId != null) {
+                        String newUserId = sessionResponse.userId;
+                        updateIdDependents(newUserId);
+                        OneSignal.Log(OneSignal.LOG_LEVEL.INFO, "Device registered, UserId = " + newUserId);
+                    }
+                    else
+                        OneSignal.Log(OneSignal.LOG_LEVEL.INFO, "session sent, UserId = " + userId);
 
-                        getUserStateForModification().putOnDependValues(SESSION, false);
-                        getUserStateForModification().persistState();
+                    getUserStateForModification().putOnDependValues(SESSION, false);
+                    getUserStateForModification().persistState();
 
-                        // List of in app messages to evaluate for the session
-                        if (jsonResponse.has(IN_APP_MESSAGES_JSON_KEY))
-                            OneSignal.getInAppMessageController().receivedInAppMessageJson(jsonResponse.getJSONArray(IN_APP_MESSAGES_JSON_KEY));
+                    if (sessionResponse.inAppMessages != null)
+                        OneSignal.getInAppMessageController().receivedInAppMessages(sessionResponse.inAppMessages);
 
-                        onSuccessfulSync(jsonBody);
-                    } catch (JSONException e) {
-                        OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "ERROR parsing on_session or create JSON Response.", e);
-                    }
+                    onSuccessfulSync(jsonBody);
+                }
+            }
+
+            @Override
+            void onParseFailure(@Nullable String response, Throwable throwable) {
+                synchronized (LOCK) {
+                    waitingForSessionResponse = false;
+                    currentUserState.persistStateAfterSync(dependDiff, jsonBody);
+                    OneSignal.Log(OneSignal.LOG_LEVEL.ERROR, "ERROR parsing on_session or create JSON Response: " + response, throwable);
                 }
             }
         });
@@ -491,6 +595,13 @@ abstract class UserStateSynchronizer {
         }
     }
 
+    boolean flushBufferedUpdates() {
+        synchronized (networkHandlerSyncLock) {
+            NetworkHandlerThread handlerThread = networkHandlerThreads.get(NetworkHandlerThread.NETWORK_HANDLER_USERSTATE);
+            return handlerThread != null && handlerThread.flushBufferedJob();
+        }
+    }
+
     // Get a JSONObject to apply changes to
     // Schedules a job with a short delay to compare changes
     //   If there are differences a network call with the changes to made
@@ -7,7 +7,6 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Base64;
-import android.view.View;
 import android.webkit.JavascriptInterface;
 import android.webkit.ValueCallback;
 import android.webkit.WebView;
@@ -26,7 +25,7 @@ import static com.onesignal.OSViewUtils.dpToPx;
 //   Includes a static map for pre-loading, showing, and dismissed so these events can't be duplicated.
 
 // Flow for Displaying WebView
-// 1. showHTMLString - Creates WebView and loads page.
+// 1. showHTMLString - Takes a WebView from OSWebViewPool and loads page.
 // 2. Wait for JavaScriptInterface.postMessage to fire with "rendering_complete"
 // 3. This calls showActivity which starts a new WebView
 // 4. WebViewActivity will call WebViewManager.instanceFromIam(...) to get this instance and
@@ -67,6 +66,11 @@ class WebViewManager extends ActivityLifecycleHandler.ActivityAvailableListener
     @Nullable private String currentActivityName = null;
     private Integer lastPageHeight = null;
 
+    // Elapsed realtime when the WebView started to be set up, 0 once rendered
+    private long renderStartTime = 0;
+    // True if the WebView came pre-warmed from OSWebViewPool
+    private boolean warmWebView = false;
+
     interface OneSignalGenericCallback {
         void onComplete();
     }
@@ -191,6 +195,11 @@ class WebViewManager extends ActivityLifecycleHandler.ActivityAvailableListener
         }
 
         private void handleRenderComplete(JSONObject jsonObject) {
+            if (renderStartTime > 0) {
+                OSWebViewPool.onRenderComplete(warmWebView, OneSignal.getTime().getElapsedRealtime() - renderStartTime);
+                renderStartTime = 0;
+            }
+
             Position displayType = getDisplayLocation(jsonObject);
             int pageHeight = displayType == Position.FULL_SCREEN ? -1 : getPageHeightData(jsonObject);
             boolean dragToDismissDisabled = getDragToDismissDisabled(jsonObject);
@@ -280,6 +289,10 @@ class WebViewManager extends ActivityLifecycleHandler.ActivityAvailableListener
         OSViewUtils.decorViewReady(activity, new Runnable() {
             @Override
             public void run() {
+                // Message was dismissed and the WebView released meanwhile
+                if (webView == null)
+                    return;
+
                 // At time point the webView isn't attached to a view
                 // Set the WebView to the max screen size then run JS to evaluate the height.
                 setWebViewToMaxSize(activity);
@@ -331,6 +344,7 @@ class WebViewManager extends ActivityLifecycleHandler.ActivityAvailableListener
 
     @Override
     void lostFocus() {
+        releaseWebView();
         OneSignal.getInAppMessageController().messageWasDismissedByBackPress(message);
         removeActivityListener();
         messageView = null;
@@ -352,38 +366,45 @@ class WebViewManager extends ActivityLifecycleHandler.ActivityAvailableListener
         messageView.checkIfShouldDismiss();
     }
 
-    @SuppressLint({"SetJavaScriptEnabled", "AddJavascriptInterface"})
+    @SuppressLint("AddJavascriptInterface")
     private void setupWebView(@NonNull final Activity currentActivity, final @NonNull String base64Message) {
        enableWebViewRemoteDebugging();
 
-       webView = new OSWebView(currentActivity);
-
-       webView.setOverScrollMode(View.OVER_SCROLL_NEVER);
-       webView.setVerticalScrollBarEnabled(false);
-       webView.setHorizontalScrollBarEnabled(false);
-       webView.getSettings().setJavaScriptEnabled(true);
+       renderStartTime = OneSignal.getTime().getElapsedRealtime();
+       warmWebView = OSWebViewPool.hasIdleWebView();
+       webView = OSWebViewPool.acquire(currentActivity);
 
        // Setup receiver for page events / data from JS
        webView.addJavascriptInterface(new OSJavaScriptInterface(), OSJavaScriptInterface.JS_OBJ_NAME);
 
-       blurryRenderingWebViewForKitKatWorkAround(webView);
-
        OSViewUtils.decorViewReady(currentActivity, new Runnable() {
           @Override
           public void run() {
+             if (webView == null)
+                return;
+
              setWebViewToMaxSize(currentActivity);
              webView.loadData(base64Message,"text/html; charset=utf-8","base64");
           }
        });
     }
 
-    private void blurryRenderingWebViewForKitKatWorkAround(@NonNull WebView webView) {
-        // Android 4.4 has a rendering bug that cause the whole WebView to by extremely blurry
-        // This is due to a bug with hardware rending so ensure it is disabled.
-        // Tested on other version of Android and it is specific to only Android 4.4
-        //    On both the emulator and real devices.
-        if (Build.VERSION.SDK_INT == Build.VERSION_CODES.KITKAT)
-            webView.setLayerType(View.LAYER_TYPE_SOFTWARE, null);
+    /**
+     * Gives the WebView back to {@link OSWebViewPool} so the next message can reuse it
+     */
+    private void releaseWebView() {
+        if (webView == null)
+            return;
+
+        final OSWebView releasedWebView = webView;
+        webView = null;
+        OSUtils.runOnMainUIThread(new Runnable() {
+            @Override
+            public void run() {
+                releasedWebView.removeJavascriptInterface(OSJavaScriptInterface.JS_OBJ_NAME);
+                OSWebViewPool.release(releasedWebView);
+            }
+        });
     }
 
     // This sets the WebView view port sizes to the max screen sizes so the initialize
@@ -406,6 +427,8 @@ class WebViewManager extends ActivityLifecycleHandler.ActivityAvailableListener
 
             @Override
             public void onMessageWasDismissed() {
+                // Released first so the next message in the queue can reuse the WebView
+                releaseWebView();
                 OneSignal.getInAppMessageController().messageWasDismissed(message);
                 removeActivityListener();
             }
@@ -25,8 +25,10 @@ internal object OSInfluenceConstants {
     // OUTCOMES KEYS
     // Outcomes Influence Ids
     const val PREFS_OS_LAST_ATTRIBUTED_NOTIFICATION_OPEN = "PREFS_OS_LAST_ATTRIBUTED_NOTIFICATION_OPEN"
-    const val PREFS_OS_LAST_NOTIFICATIONS_RECEIVED = "PREFS_OS_LAST_NOTIFICATIONS_RECEIVED"
-    const val PREFS_OS_LAST_IAMS_RECEIVED = "PREFS_OS_LAST_IAMS_RECEIVED"
+    const val PREFS_OS_LAST_NOTIFICATIONS_RECEIVED = "PREFS_OS_LAST_NOTIFICATIONS_RECEIVED" // JSON array until OSReceivedIdsStore
+    const val PREFS_OS_LAST_IAMS_RECEIVED = "PREFS_OS_LAST_IAMS_RECEIVED" // JSON array until OSReceivedIdsStore
+    const val PREFS_OS_NOTIFICATIONS_RECEIVED = "PREFS_OS_NOTIFICATIONS_RECEIVED"
+    const val PREFS_OS_IAMS_RECEIVED = "PREFS_OS_IAMS_RECEIVED"
 
     // Outcomes Influence params
     const val PREFS_OS_NOTIFICATION_LIMIT = "PREFS_OS_NOTIFICATION_LIMIT"
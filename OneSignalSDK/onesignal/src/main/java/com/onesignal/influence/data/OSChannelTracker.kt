@@ -2,12 +2,10 @@ package com.onesignal.influence.data
 
 import com.onesignal.OSLogger
 import com.onesignal.OSTime
-import com.onesignal.influence.OSInfluenceConstants
 import com.onesignal.influence.domain.OSInfluence
 import com.onesignal.influence.domain.OSInfluenceChannel
 import com.onesignal.influence.domain.OSInfluenceType
 import org.json.JSONArray
-import org.json.JSONException
 import org.json.JSONObject
 
 abstract class OSChannelTracker internal constructor(protected var dataRepository: OSInfluenceDataRepository, var logger: OSLogger, private var timeProvider: OSTime) {
@@ -18,12 +16,9 @@ abstract class OSChannelTracker internal constructor(protected var dataRepositor
     abstract val idTag: String
     abstract val channelType: OSInfluenceChannel
 
-    @get:Throws(JSONException::class)
-    abstract val lastChannelObjects: JSONArray
+    internal abstract val receivedIds: OSReceivedIdsStore
     abstract val channelLimit: Int
     abstract val indirectAttributionWindow: Int
-    abstract fun getLastChannelObjectsReceivedByNewId(id: String?): JSONArray
-    abstract fun saveChannelObjects(channelObjects: JSONArray)
     abstract fun initInfluencedTypeFromCache()
     abstract fun cacheState()
     abstract fun addSessionData(jsonObject: JSONObject, influence: OSInfluence)
@@ -77,24 +72,9 @@ abstract class OSChannelTracker internal constructor(protected var dataRepositor
      */
     val lastReceivedIds: JSONArray
         get() {
-            val ids = JSONArray()
-            try {
-                val lastChannelObjectReceived = lastChannelObjects
-                logger.debug("OneSignal ChannelTracker getLastReceivedIds lastChannelObjectReceived: $lastChannelObjectReceived")
-                val attributionWindow = indirectAttributionWindow * 60 * 1000L
-                val currentTime = timeProvider.currentTimeMillis
-                for (i in 0 until lastChannelObjectReceived.length()) {
-                    val jsonObject = lastChannelObjectReceived.getJSONObject(i)
-                    val time = jsonObject.getLong(OSInfluenceConstants.TIME)
-                    val difference = currentTime - time
-                    if (difference <= attributionWindow) {
-                        val id = jsonObject.getString(idTag)
-                        ids.put(id)
-                    }
-                }
-            } catch (exception: JSONException) {
-                logger.error("Generating tracker getLastReceivedIds JSONObject ", exception)
-            }
+            val attributionWindow = indirectAttributionWindow * 60 * 1000L
+            val ids = receivedIds.getIdsReceivedSince(timeProvider.currentTimeMillis - attributionWindow)
+            logger.debug("OneSignal ChannelTracker getLastReceivedIds: $ids")
             return ids
         }
 
@@ -108,46 +88,14 @@ abstract class OSChannelTracker internal constructor(protected var dataRepositor
 
     /**
      * Save state of last ids received
+     * Only the last ids without surpassing the limit are kept
+     * If the attribution window increases, old ids might influence
      */
     fun saveLastId(id: String?) {
         logger.debug("OneSignal OSChannelTracker for: $idTag saveLastId: $id")
         if (id == null || id.isEmpty()) return
 
-        val lastChannelObjectsReceived = getLastChannelObjectsReceivedByNewId(id)
-        logger.debug("OneSignal OSChannelTracker for: $idTag saveLastId with lastChannelObjectsReceived: $lastChannelObjectsReceived")
-
-        try {
-            timeProvider.run {
-                JSONObject()
-                        .put(idTag, id)
-                        .put(OSInfluenceConstants.TIME, currentTimeMillis)
-            }.also { newInfluenceId ->
-                lastChannelObjectsReceived.put(newInfluenceId)
-            }
-        } catch (exception: JSONException) {
-            logger.error("Generating tracker newInfluenceId JSONObject ", exception)
-            // We don't have new data, stop logic
-            return
-        }
-
-        var channelObjectToSave = lastChannelObjectsReceived
-        // Only save the last ids without surpassing the limit
-        // Always keep the max quantity of ids possible
-        // If the attribution window increases, old ids might influence
-        if (lastChannelObjectsReceived.length() > channelLimit) {
-            val lengthDifference = lastChannelObjectsReceived.length() - channelLimit
-            // If min sdk is greater than KITKAT we can refactor this logic to removeObject from JSONArray
-            channelObjectToSave = JSONArray()
-            for (i in lengthDifference until lastChannelObjectsReceived.length()) {
-                try {
-                    channelObjectToSave.put(lastChannelObjectsReceived[i])
-                } catch (exception: JSONException) {
-                    logger.error("Generating tracker lastChannelObjectsReceived get JSONObject ", exception)
-                }
-            }
-        }
-        logger.debug("OneSignal OSChannelTracker for: $idTag with channelObjectToSave: $channelObjectToSave")
-        saveChannelObjects(channelObjectToSave)
+        receivedIds.add(id, timeProvider.currentTimeMillis, channelLimit)
     }
 
     override fun toString(): String {
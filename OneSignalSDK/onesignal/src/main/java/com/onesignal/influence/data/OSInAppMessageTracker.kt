@@ -6,8 +6,6 @@ import com.onesignal.influence.OSInfluenceConstants
 import com.onesignal.influence.domain.OSInfluence
 import com.onesignal.influence.domain.OSInfluenceChannel
 import com.onesignal.influence.domain.OSInfluenceType
-import org.json.JSONArray
-import org.json.JSONException
 import org.json.JSONObject
 
 internal class OSInAppMessageTracker(dataRepository: OSInfluenceDataRepository, logger: OSLogger, timeProvider: OSTime) : OSChannelTracker(dataRepository, logger, timeProvider) {
@@ -17,34 +15,8 @@ internal class OSInAppMessageTracker(dataRepository: OSInfluenceDataRepository,
     override val channelType: OSInfluenceChannel
         get() = OSInfluenceChannel.IAM
 
-    override fun getLastChannelObjectsReceivedByNewId(id: String?): JSONArray {
-        var lastChannelObjectReceived: JSONArray
-        lastChannelObjectReceived = try {
-            lastChannelObjects
-        } catch (exception: JSONException) {
-            logger.error("Generating IAM tracker getLastChannelObjects JSONObject ", exception)
-            return JSONArray()
-        }
-        // For IAM we handle redisplay, we need to remove duplicates for new influence Id
-        // If min sdk is greater than KITKAT we can refactor this logic to removeObject from JSONArray
-        try {
-            val auxLastChannelObjectReceived = JSONArray()
-            for (i in 0 until lastChannelObjectReceived.length()) {
-                val objectId = lastChannelObjectReceived.getJSONObject(i).getString(idTag)
-                if (id != objectId) {
-                    auxLastChannelObjectReceived.put(lastChannelObjectReceived.getJSONObject(i))
-                }
-            }
-            lastChannelObjectReceived = auxLastChannelObjectReceived
-        } catch (exception: JSONException) {
-            logger.error("Generating tracker lastChannelObjectReceived get JSONObject ", exception)
-        }
-        return lastChannelObjectReceived
-    }
-
-    @get:Throws(JSONException::class)
-    override val lastChannelObjects: JSONArray
-        get() = dataRepository.lastIAMsReceivedData
+    override val receivedIds: OSReceivedIdsStore
+        get() = dataRepository.iamsReceived
 
     override val channelLimit: Int
         get() = dataRepository.iamLimit
@@ -52,10 +24,6 @@ internal class OSInAppMessageTracker(dataRepository: OSInfluenceDataRepository,
     override val indirectAttributionWindow: Int
         get() = dataRepository.iamIndirectAttributionWindow
 
-    override fun saveChannelObjects(channelObjects: JSONArray) {
-        dataRepository.saveIAMs(channelObjects)
-    }
-
     override fun initInfluencedTypeFromCache() {
         influenceType = dataRepository.iamCachedInfluenceType.also {
             if (it.isIndirect()) indirectIds = lastReceivedIds
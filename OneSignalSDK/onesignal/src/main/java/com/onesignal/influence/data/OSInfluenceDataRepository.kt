@@ -6,8 +6,6 @@ import com.onesignal.OneSignalRemoteParams.InfluenceParams
 import com.onesignal.influence.OSInfluenceConstants
 import com.onesignal.influence.domain.OSInfluenceType
 import com.onesignal.influence.domain.OSInfluenceType.Companion.fromString
-import org.json.JSONArray
-import org.json.JSONException
 
 /**
  * Setter and Getter of Notifications received
@@ -83,39 +81,28 @@ class OSInfluenceDataRepository(private val preferences: OSSharedPreferences) {
                 null
         )
 
-    fun saveNotifications(notifications: JSONArray) {
-        preferences.saveString(
-                preferences.preferencesName,
-                OSInfluenceConstants.PREFS_OS_LAST_NOTIFICATIONS_RECEIVED,
-                notifications.toString())
-    }
-
-    fun saveIAMs(iams: JSONArray) {
-        preferences.saveString(
-                preferences.preferencesName,
-                OSInfluenceConstants.PREFS_OS_LAST_IAMS_RECEIVED,
-                iams.toString())
-    }
-
-    @get:Throws(JSONException::class)
-    val lastNotificationsReceivedData: JSONArray
-        get() {
-            val notificationsReceived = preferences.getString(
-                    preferences.preferencesName,
-                    OSInfluenceConstants.PREFS_OS_LAST_NOTIFICATIONS_RECEIVED,
-                    "[]")
-            return notificationsReceived?.let { JSONArray(it) } ?: JSONArray()
-        }
+    /**
+     * Last notifications received, for indirect influence
+     */
+    internal val notificationsReceived = OSReceivedIdsStore(
+            preferences,
+            OSInfluenceConstants.PREFS_OS_NOTIFICATIONS_RECEIVED,
+            OSInfluenceConstants.PREFS_OS_LAST_NOTIFICATIONS_RECEIVED,
+            OSInfluenceConstants.NOTIFICATION_ID_TAG,
+            false
+    )
 
-    @get:Throws(JSONException::class)
-    val lastIAMsReceivedData: JSONArray
-        get() {
-            val iamReceived = preferences.getString(
-                    preferences.preferencesName,
-                    OSInfluenceConstants.PREFS_OS_LAST_IAMS_RECEIVED,
-                    "[]")
-            return iamReceived?.let { JSONArray(it) } ?: JSONArray()
-        }
+    /**
+     * Last IAMs received, for indirect influence
+     * IAMs can be redisplayed, an IAM received again is moved to the newest one
+     */
+    internal val iamsReceived = OSReceivedIdsStore(
+            preferences,
+            OSInfluenceConstants.PREFS_OS_IAMS_RECEIVED,
+            OSInfluenceConstants.PREFS_OS_LAST_IAMS_RECEIVED,
+            OSInfluenceConstants.IAM_ID_TAG,
+            true
+    )
 
     val notificationLimit: Int
         get() = preferences.getInt(
@@ -6,23 +6,13 @@ import com.onesignal.influence.OSInfluenceConstants
 import com.onesignal.influence.domain.OSInfluence
 import com.onesignal.influence.domain.OSInfluenceChannel
 import com.onesignal.influence.domain.OSInfluenceType
-import org.json.JSONArray
 import org.json.JSONException
 import org.json.JSONObject
 
 internal class OSNotificationTracker(dataRepository: OSInfluenceDataRepository, logger: OSLogger, timeProvider: OSTime) : OSChannelTracker(dataRepository, logger, timeProvider) {
-    override fun getLastChannelObjectsReceivedByNewId(id: String?): JSONArray {
-        return try {
-            lastChannelObjects
-        } catch (exception: JSONException) {
-            logger.error("Generating Notification tracker getLastChannelObjects JSONObject ", exception)
-            JSONArray()
-        }
-    }
+    override val receivedIds: OSReceivedIdsStore
+        get() = dataRepository.notificationsReceived
 
-    @get:Throws(JSONException::class)
-    override val lastChannelObjects: JSONArray
-        get() = dataRepository.lastNotificationsReceivedData
     override val idTag: String
         get() = OSInfluenceConstants.NOTIFICATION_ID_TAG
 
@@ -35,10 +25,6 @@ internal class OSNotificationTracker(dataRepository: OSInfluenceDataRepository,
     override val indirectAttributionWindow: Int
         get() = dataRepository.notificationIndirectAttributionWindow
 
-    override fun saveChannelObjects(channelObjects: JSONArray) {
-        dataRepository.saveNotifications(channelObjects)
-    }
-
     override fun initInfluencedTypeFromCache() {
         influenceType = dataRepository.notificationCachedInfluenceType.also {
             if (it.isIndirect())
@@ -0,0 +1,178 @@
+package com.onesignal.influence.data
+
+import com.onesignal.OSSharedPreferences
+import com.onesignal.influence.OSInfluenceConstants
+import org.json.JSONArray
+import org.json.JSONException
+
+/**
+ * Last ids received on a channel with the time they were received, at most capacity of them
+ * - Ring buffer ordered by time received, a new id overwrites the oldest one once full
+ * - Each slot is its own preference, adding an id only saves its slot and the ring position
+ *     instead of the whole list as a JSON string
+ * - Ids saved before this store, a JSON array string on legacyKey, are moved to it on first read
+ */
+internal class OSReceivedIdsStore(private val preferences: OSSharedPreferences,
+                                  private val key: String,
+                                  private val legacyKey: String,
+                                  private val idTag: String,
+                                  // A received id already stored is moved to the newest slot, for IAM redisplays
+                                  private val replaceSameId: Boolean) {
+    private var ids: Array<String?> = arrayOfNulls(0)
+    private var times = LongArray(0)
+    // Slot of the next id
+    private var head = 0
+    private var size = 0
+    private var loaded = false
+
+    @Synchronized
+    fun add(id: String, time: Long, capacity: Int) {
+        load()
+        // Limit comes from the remote params, it can change between two ids
+        if (capacity != ids.size) resize(maxOf(capacity, 0))
+        if (ids.isEmpty()) return
+
+        if (replaceSameId) remove(id)
+
+        ids[head] = id
+        times[head] = time
+        saveSlot(head)
+        head = (head + 1) % ids.size
+        if (size < ids.size) size++
+        saveRing()
+    }
+
+    /**
+     * @return ids received at minTime or later, oldest first
+     */
+    @Synchronized
+    fun getIdsReceivedSince(minTime: Long): JSONArray {
+        load()
+        // Newest ids are last, walk back only while ids are in the window
+        var first = size
+        while (first > 0 && times[slotOf(first - 1)] >= minTime) first--
+
+        val result = JSONArray()
+        for (i in first until size) {
+            ids[slotOf(i)]?.let { result.put(it) }
+        }
+        return result
+    }
+
+    // i from 0, the oldest id, to size - 1, the newest one
+    private fun slotOf(i: Int) = (head - size + i + ids.size) % ids.size
+
+    private fun remove(id: String) {
+        var position = -1
+        for (i in 0 until size) {
+            if (ids[slotOf(i)] == id) {
+                position = i
+                break
+            }
+        }
+        if (position == -1) return
+
+        // Shift newer ids one slot back, only their slots are saved again
+        for (i in position until size - 1) {
+            val slot = slotOf(i)
+            val nextSlot = slotOf(i + 1)
+            ids[slot] = ids[nextSlot]
+            times[slot] = times[nextSlot]
+            saveSlot(slot)
+        }
+        head = (head - 1 + ids.size) % ids.size
+        size--
+    }
+
+    private fun resize(capacity: Int) {
+        val keep = minOf(size, capacity)
+        val newIds = arrayOfNulls<String>(capacity)
+        val newTimes = LongArray(capacity)
+        // Keep the newest ids
+        for (i in 0 until keep) {
+            val slot = slotOf(size - keep + i)
+            newIds[i] = ids[slot]
+            newTimes[i] = times[slot]
+        }
+        val oldCapacity = ids.size
+        ids = newIds
+        times = newTimes
+        size = keep
+        head = if (capacity == 0) 0 else keep % capacity
+
+        for (slot in 0 until capacity) saveSlot(slot)
+        for (slot in capacity until oldCapacity) preferences.saveString(preferences.preferencesName, slotKey(slot), null)
+        preferences.saveInt(preferences.preferencesName, key + CAPACITY_SUFFIX, capacity)
+        saveRing()
+    }
+
+    private fun load() {
+        if (loaded) return
+        loaded = true
+
+        val capacity = preferences.getInt(preferences.preferencesName, key + CAPACITY_SUFFIX, -1)
+        if (capacity < 0) {
+            loadLegacy()
+            return
+        }
+
+        ids = arrayOfNulls(capacity)
+        times = LongArray(capacity)
+        head = preferences.getInt(preferences.preferencesName, key + HEAD_SUFFIX, 0)
+        size = preferences.getInt(preferences.preferencesName, key + SIZE_SUFFIX, 0)
+        for (slot in 0 until capacity) {
+            val value = preferences.getString(preferences.preferencesName, slotKey(slot), null) ?: continue
+            val separator = value.indexOf(SLOT_SEPARATOR)
+            if (separator == -1) continue
+            times[slot] = value.substring(0, separator).toLongOrNull() ?: continue
+            ids[slot] = value.substring(separator + 1)
+        }
+    }
+
+    private fun loadLegacy() {
+        val legacyIds = preferences.getString(preferences.preferencesName, legacyKey, null) ?: return
+        try {
+            val legacyObjects = JSONArray(legacyIds)
+            val capacity = legacyObjects.length()
+            ids = arrayOfNulls(capacity)
+            times = LongArray(capacity)
+            for (i in 0 until capacity) {
+                val legacyObject = legacyObjects.getJSONObject(i)
+                ids[i] = legacyObject.getString(idTag)
+                times[i] = legacyObject.getLong(OSInfluenceConstants.TIME)
+            }
+            size = capacity
+            head = 0
+        } catch (exception: JSONException) {
+            // Unreadable ids can't be attributed anyway, start empty
+            ids = arrayOfNulls(0)
+            times = LongArray(0)
+            size = 0
+            head = 0
+        }
+
+        for (slot in ids.indices) saveSlot(slot)
+        preferences.saveInt(preferences.preferencesName, key + CAPACITY_SUFFIX, ids.size)
+        saveRing()
+        preferences.saveString(preferences.preferencesName, legacyKey, null)
+    }
+
+    private fun saveSlot(slot: Int) {
+        val id = ids[slot]
+        preferences.saveString(preferences.preferencesName, slotKey(slot), if (id == null) null else times[slot].toString() + SLOT_SEPARATOR + id)
+    }
+
+    private fun saveRing() {
+        preferences.saveInt(preferences.preferencesName, key + HEAD_SUFFIX, head)
+        preferences.saveInt(preferences.preferencesName, key + SIZE_SUFFIX, size)
+    }
+
+    private fun slotKey(slot: Int) = key + "_" + slot
+
+    companion object {
+        private const val CAPACITY_SUFFIX = "_CAPACITY"
+        private const val HEAD_SUFFIX = "_HEAD"
+        private const val SIZE_SUFFIX = "_SIZE"
+        private const val SLOT_SEPARATOR = ','
+    }
+}
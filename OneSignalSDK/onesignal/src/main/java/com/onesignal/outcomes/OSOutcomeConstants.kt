@@ -9,6 +9,8 @@ internal object OSOutcomeConstants {
     const val APP_ID = "app_id"
     const val DEVICE_TYPE = "device_type"
     const val DIRECT_PARAM = "direct"
+    const val OUTCOMES = "outcomes"
+    const val COUNT = "count"
 
     // OSOutcomeEventParams Constants
     const val OUTCOME_ID = "id"
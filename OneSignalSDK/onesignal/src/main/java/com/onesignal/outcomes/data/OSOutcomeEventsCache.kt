@@ -1,7 +1,6 @@
 package com.onesignal.outcomes.data
 
 import android.content.ContentValues
-import android.database.Cursor
 import android.database.sqlite.SQLiteDatabase
 import androidx.annotation.WorkerThread
 import com.onesignal.OSLogger
@@ -10,11 +9,9 @@ import com.onesignal.OneSignalDb
 import com.onesignal.influence.domain.OSInfluence
 import com.onesignal.influence.domain.OSInfluenceChannel
 import com.onesignal.influence.domain.OSInfluenceType
-import com.onesignal.influence.domain.OSInfluenceType.Companion.fromString
 import com.onesignal.outcomes.OSOutcomeConstants
 import com.onesignal.outcomes.domain.OSCachedUniqueOutcome
 import com.onesignal.outcomes.domain.OSOutcomeEventParams
-import com.onesignal.outcomes.domain.OSOutcomeSource
 import com.onesignal.outcomes.domain.OSOutcomeSourceBody
 import org.json.JSONArray
 import org.json.JSONException
@@ -23,12 +20,20 @@ import java.util.*
 internal class OSOutcomeEventsCache(private val logger: OSLogger,
                                     private val dbHelper: OneSignalDb,
                                     private val preferences: OSSharedPreferences) {
+    private val uniqueOutcomeIndex = OSUniqueOutcomeIndex(dbHelper)
+
     val isOutcomesV2ServiceEnabled: Boolean
         get() = preferences.getBool(
                 preferences.preferencesName,
                 preferences.outcomesV2KeyName,
                 false)
 
+    val isOutcomesBatchEnabled: Boolean
+        get() = preferences.getBool(
+                preferences.preferencesName,
+                preferences.outcomesBatchKeyName,
+                false)
+
     val unattributedUniqueOutcomeEventsSentByChannel: Set<String>?
         get() = preferences.getStringSet(
                 preferences.preferencesName,
@@ -51,6 +56,23 @@ internal class OSOutcomeEventsCache(private val logger: OSLogger,
         dbHelper.delete(OutcomeEventsTable.TABLE_NAME, OutcomeEventsTable.COLUMN_NAME_TIMESTAMP + " = ?", arrayOf(event.timestamp.toString()))
     }
 
+    /**
+     * Delete events from the DB in one transaction
+     */
+    @WorkerThread
+    @Synchronized
+    fun deleteOldOutcomeEvents(events: List<OSOutcomeEventParams>) {
+        if (events.isEmpty()) return
+
+        dbHelper.runInTransaction { batch ->
+            val statement = batch.compileStatement(SQL_DELETE_OUTCOME_BY_TIMESTAMP)
+            for (event in events) {
+                statement.bindLong(1, event.timestamp)
+                batch.executeUpdateDelete(statement)
+            }
+        }
+    }
+
     /**
      * Save an outcome event to send it on the future
      * For offline mode and contingency of errors
@@ -103,11 +125,19 @@ internal class OSOutcomeEventsCache(private val logger: OSLogger,
             put(OutcomeEventsTable.COLUMN_NAME_NAME, eventParams.outcomeId)
             put(OutcomeEventsTable.COLUMN_NAME_WEIGHT, eventParams.weight)
             put(OutcomeEventsTable.COLUMN_NAME_TIMESTAMP, eventParams.timestamp)
+            put(OutcomeEventsTable.COLUMN_NAME_UNIQUE, if (eventParams.isUnique) 1 else 0)
         }.also { values ->
             dbHelper.insert(OutcomeEventsTable.TABLE_NAME, null, values)
         }
     }
 
+    /**
+     * Saved outcome events read page by page, parsed one at a time while iterating
+     * For sending a big outcome table without holding all of it
+     */
+    @WorkerThread
+    fun getEventsToSend(pageSize: Int = EVENTS_PAGE_SIZE): Iterator<OSOutcomeEventParams> = OSOutcomeEventsIterator(logger, dbHelper, pageSize)
+
     /**
      * Save an outcome event to send it on the future
      * For offline mode and contingency of errors
@@ -116,102 +146,10 @@ internal class OSOutcomeEventsCache(private val logger: OSLogger,
     @Synchronized
     fun getAllEventsToSend(): List<OSOutcomeEventParams> {
         val events: MutableList<OSOutcomeEventParams> = ArrayList()
-        var cursor: Cursor? = null
-        try {
-            cursor = dbHelper.query(
-                    OutcomeEventsTable.TABLE_NAME,
-                    null,
-                    null,
-                    null,
-                    null,
-                    null,
-                    null
-            )
-            with(cursor) {
-                if (moveToFirst()) {
-                    do {
-                        // Retrieve influence types
-                        val notificationInfluenceTypeString = getString(getColumnIndex(OutcomeEventsTable.COLUMN_NAME_NOTIFICATION_INFLUENCE_TYPE))
-                        val notificationInfluenceType = fromString(notificationInfluenceTypeString)
-                        val iamInfluenceTypeString = getString(getColumnIndex(OutcomeEventsTable.COLUMN_NAME_IAM_INFLUENCE_TYPE))
-                        val iamInfluenceType = fromString(iamInfluenceTypeString)
-
-                        // Retrieve influence ids
-                        val notificationIds = getString(getColumnIndex(OutcomeEventsTable.COLUMN_NAME_NOTIFICATION_IDS))
-                                ?: "[]"
-                        val iamIds = getString(getColumnIndex(OutcomeEventsTable.COLUMN_NAME_IAM_IDS))
-                                ?: "[]"
-
-                        // Retrieve Outcome data
-                        val name = getString(getColumnIndex(OutcomeEventsTable.COLUMN_NAME_NAME))
-                        val weight = getFloat(getColumnIndex(OutcomeEventsTable.COLUMN_NAME_WEIGHT))
-                        val timestamp = getLong(getColumnIndex(OutcomeEventsTable.COLUMN_NAME_TIMESTAMP))
-
-                        try {
-                            val directSourceBody = OSOutcomeSourceBody()
-                            val indirectSourceBody = OSOutcomeSourceBody()
-                            val source: OSOutcomeSource = getNotificationInfluenceSource(notificationInfluenceType, directSourceBody, indirectSourceBody, notificationIds)
-                                    .also {
-                                        getIAMInfluenceSource(iamInfluenceType, directSourceBody, indirectSourceBody, iamIds, it)
-                                    } ?: OSOutcomeSource(null, null)
-                            OSOutcomeEventParams(name, source, weight, timestamp).also {
-                                events.add(it)
-                            }
-                        } catch (e: JSONException) {
-                            logger.error("Generating JSONArray from notifications ids outcome:JSON Failed.", e)
-                        }
-                    } while (moveToNext())
-                }
-            }
-        } finally {
-            cursor?.let {
-                if (!it.isClosed) it.close()
-            }
-        }
+        getEventsToSend().forEach { events.add(it) }
         return events
     }
 
-    private fun getNotificationInfluenceSource(notificationInfluenceType: OSInfluenceType,
-                                               directSourceBody: OSOutcomeSourceBody,
-                                               indirectSourceBody: OSOutcomeSourceBody,
-                                               notificationIds: String): OSOutcomeSource? {
-        return when (notificationInfluenceType) {
-            OSInfluenceType.DIRECT -> {
-                directSourceBody.notificationIds = JSONArray(notificationIds)
-                OSOutcomeSource(directSourceBody, null)
-            }
-            OSInfluenceType.INDIRECT -> {
-                indirectSourceBody.notificationIds = JSONArray(notificationIds)
-                OSOutcomeSource(null, indirectSourceBody)
-            }
-            else -> {
-                null
-            }
-        }
-    }
-
-    private fun getIAMInfluenceSource(iamInfluenceType: OSInfluenceType,
-                                      directSourceBody: OSOutcomeSourceBody,
-                                      indirectSourceBody: OSOutcomeSourceBody,
-                                      iamIds: String,
-                                      source: OSOutcomeSource?): OSOutcomeSource? {
-        return when (iamInfluenceType) {
-            OSInfluenceType.DIRECT -> {
-                directSourceBody.inAppMessagesIds = JSONArray(iamIds)
-                source?.setDirectBody(directSourceBody)
-                        ?: OSOutcomeSource(directSourceBody, null)
-            }
-            OSInfluenceType.INDIRECT -> {
-                indirectSourceBody.inAppMessagesIds = JSONArray(iamIds)
-                source?.setIndirectBody(indirectSourceBody)
-                        ?: OSOutcomeSource(null, indirectSourceBody)
-            }
-            else -> {
-                source
-            }
-        }
-    }
-
     private fun addIdToListFromChannel(cachedUniqueOutcomes: MutableList<OSCachedUniqueOutcome>, channelIds: JSONArray?, channel: OSInfluenceChannel) {
         channelIds?.let {
             for (i in 0 until it.length()) {
@@ -248,25 +186,33 @@ internal class OSOutcomeEventsCache(private val logger: OSLogger,
         addIdsToListFromSource(cachedUniqueOutcomes, directBody)
         addIdsToListFromSource(cachedUniqueOutcomes, indirectBody)
 
-        for (uniqueOutcome in cachedUniqueOutcomes) {
-            ContentValues().apply {
-                put(CachedUniqueOutcomeTable.COLUMN_CHANNEL_INFLUENCE_ID, uniqueOutcome.getInfluenceId())
-                put(CachedUniqueOutcomeTable.COLUMN_CHANNEL_TYPE, uniqueOutcome.getChannel().toString())
-                put(CachedUniqueOutcomeTable.COLUMN_NAME_NAME, outcomeName)
-            }.also { values ->
-                dbHelper.insert(CachedUniqueOutcomeTable.TABLE_NAME, null, values)
+        if (cachedUniqueOutcomes.isEmpty()) return
+
+        // All rows in one transaction, binding the same compiled insert for each
+        val saved = dbHelper.runInTransaction { batch ->
+            val statement = batch.compileStatement(SQL_INSERT_UNIQUE_OUTCOME)
+            for (uniqueOutcome in cachedUniqueOutcomes) {
+                statement.bindString(1, uniqueOutcome.getInfluenceId())
+                statement.bindString(2, uniqueOutcome.getChannel().toString())
+                statement.bindString(3, outcomeName)
+                batch.executeInsert(statement)
             }
         }
+        if (!saved) return
+
+        for (uniqueOutcome in cachedUniqueOutcomes) {
+            uniqueOutcomeIndex.onUniqueOutcomeSaved(outcomeName, uniqueOutcome.getChannel().toString(), uniqueOutcome.getInfluenceId())
+        }
     }
 
     /**
      * Create a JSONArray of not cached notification ids from the unique outcome notifications SQL table
+     * Looked up in OSUniqueOutcomeIndex, the table is only read on the first call
      */
     @WorkerThread
     @Synchronized
     fun getNotCachedUniqueInfluencesForOutcome(name: String, influences: List<OSInfluence>): List<OSInfluence> {
         val uniqueInfluences: MutableList<OSInfluence> = ArrayList()
-        var cursor: Cursor? = null
         try {
             for (influence in influences) {
                 val availableInfluenceIds = JSONArray()
@@ -275,24 +221,9 @@ internal class OSOutcomeEventsCache(private val logger: OSLogger,
                 for (i in 0 until influenceIds.length()) {
                     val channelInfluenceId = influenceIds.getString(i)
                     val channel = influence.influenceChannel
-                    val columns = arrayOf<String>()
-                    val where = CachedUniqueOutcomeTable.COLUMN_CHANNEL_INFLUENCE_ID + " = ? AND " +
-                            CachedUniqueOutcomeTable.COLUMN_CHANNEL_TYPE + " = ? AND " +
-                            CachedUniqueOutcomeTable.COLUMN_NAME_NAME + " = ?"
-                    val args = arrayOf(channelInfluenceId, channel.toString(), name)
-                    cursor = dbHelper.query(
-                            CachedUniqueOutcomeTable.TABLE_NAME,
-                            columns,
-                            where,
-                            args,
-                            null,
-                            null,
-                            null,
-                            "1"
-                    )
-
                     // Item is not cached, we can use the influence id, add it to the JSONArray
-                    if (cursor.count == 0) availableInfluenceIds.put(channelInfluenceId)
+                    if (!uniqueOutcomeIndex.contains(name, channel.toString(), channelInfluenceId))
+                        availableInfluenceIds.put(channelInfluenceId)
                 }
 
                 if (availableInfluenceIds.length() > 0) {
@@ -305,10 +236,6 @@ internal class OSOutcomeEventsCache(private val logger: OSLogger,
             }
         } catch (e: JSONException) {
             e.printStackTrace()
-        } finally {
-            cursor?.let {
-                if (!it.isClosed) it.close()
-            }
         }
         return uniqueInfluences
     }
@@ -328,5 +255,16 @@ internal class OSOutcomeEventsCache(private val logger: OSLogger,
                 OutcomesDbContract.CACHE_UNIQUE_OUTCOME_TABLE,
                 whereStr,
                 null)
+        uniqueOutcomeIndex.onUniqueOutcomesDeleted()
+    }
+
+    companion object {
+        private const val EVENTS_PAGE_SIZE = 100
+        private const val SQL_INSERT_UNIQUE_OUTCOME = "INSERT INTO " + CachedUniqueOutcomeTable.TABLE_NAME + " (" +
+                CachedUniqueOutcomeTable.COLUMN_CHANNEL_INFLUENCE_ID + "," +
+                CachedUniqueOutcomeTable.COLUMN_CHANNEL_TYPE + "," +
+                CachedUniqueOutcomeTable.COLUMN_NAME_NAME + ") VALUES (?,?,?)"
+        private const val SQL_DELETE_OUTCOME_BY_TIMESTAMP = "DELETE FROM " + OutcomeEventsTable.TABLE_NAME +
+                " WHERE " + OutcomeEventsTable.COLUMN_NAME_TIMESTAMP + " = ?"
     }
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package com.onesignal.outcomes.data
+
+import androidx.annotation.WorkerThread
+import com.onesignal.OSLogger
+import com.onesignal.OneSignalDb
+import com.onesignal.influence.domain.OSInfluenceType
+import com.onesignal.influence.domain.OSInfluenceType.Companion.fromString
+import com.onesignal.outcomes.domain.OSOutcomeEventParams
+import com.onesignal.outcomes.domain.OSOutcomeSource
+import com.onesignal.outcomes.domain.OSOutcomeSourceBody
+import org.json.JSONArray
+import org.json.JSONException
+import java.util.*
+
+/**
+ * Saved outcome events in row id order, read from the outcome table one page at a time
+ * - Only the rows of the current page are held, each query starts after the last row id read
+ *     so rows deleted while iterating don't shift the next page
+ * - Influence ids JSON of a row is parsed when the row is returned by next(), rows that can't be parsed are skipped
+ */
+internal class OSOutcomeEventsIterator(private val logger: OSLogger,
+                                       private val dbHelper: OneSignalDb,
+                                       private val pageSize: Int) : Iterator<OSOutcomeEventParams> {
+    private val page: MutableList<OutcomeEventRow> = ArrayList(pageSize)
+    private var pagePosition = 0
+    private var lastRowId = -1L
+    private var lastPage = false
+    private var nextEvent: OSOutcomeEventParams? = null
+
+    @WorkerThread
+    override fun hasNext(): Boolean {
+        while (nextEvent == null) {
+            if (pagePosition == page.size) {
+                if (lastPage) return false
+                readPage()
+                if (page.isEmpty()) return false
+            }
+            nextEvent = parse(page[pagePosition++])
+        }
+        return true
+    }
+
+    @WorkerThread
+    override fun next(): OSOutcomeEventParams {
+        if (!hasNext()) throw NoSuchElementException()
+        val event = nextEvent!!
+        nextEvent = null
+        return event
+    }
+
+    private fun readPage() {
+        page.clear()
+        pagePosition = 0
+        dbHelper.query(
+                OutcomeEventsTable.TABLE_NAME,
+                COLUMNS,
+                OutcomeEventsTable.ID + " > ?",
+                arrayOf(lastRowId.toString()),
+                null,
+                null,
+                OutcomeEventsTable.ID + " ASC",
+                pageSize.toString()
+        ).use { cursor ->
+            // Same column order on every page as the projection is fixed
+            while (cursor.moveToNext()) {
+                OutcomeEventRow(
+                        cursor.getString(NOTIFICATION_INFLUENCE_TYPE),
+                        cursor.getString(IAM_INFLUENCE_TYPE),
+                        cursor.getString(NOTIFICATION_IDS) ?: "[]",
+                        cursor.getString(IAM_IDS) ?: "[]",
+                        cursor.getString(NAME),
+                        cursor.getFloat(WEIGHT),
+                        cursor.getLong(TIMESTAMP),
+                        cursor.getInt(UNIQUE) == 1
+                ).also { page.add(it) }
+                lastRowId = cursor.getLong(ID)
+            }
+        }
+        lastPage = page.size < pageSize
+    }
+
+    private fun parse(row: OutcomeEventRow): OSOutcomeEventParams? {
+        return try {
+            val directSourceBody = OSOutcomeSourceBody()
+            val indirectSourceBody = OSOutcomeSourceBody()
+            // IAM source is created when there is no notification source, an outcome only influenced by an IAM keeps it
+            val source: OSOutcomeSource = getNotificationInfluenceSource(fromString(row.notificationInfluenceType), directSourceBody, indirectSourceBody, row.notificationIds)
+                    .let {
+                        getIAMInfluenceSource(fromString(row.iamInfluenceType), directSourceBody, indirectSourceBody, row.iamIds, it)
+                    } ?: OSOutcomeSource(null, null)
+            OSOutcomeEventParams(row.name, source, row.weight, row.timestamp).apply { isUnique = row.unique }
+        } catch (e: JSONException) {
+            logger.error("Generating JSONArray from notifications ids outcome:JSON Failed.", e)
+            null
+        }
+    }
+
+    private fun getNotificationInfluenceSource(notificationInfluenceType: OSInfluenceType,
+                                               directSourceBody: OSOutcomeSourceBody,
+                                               indirectSourceBody: OSOutcomeSourceBody,
+                                               notificationIds: String): OSOutcomeSource? {
+        return when (notificationInfluenceType) {
+            OSInfluenceType.DIRECT -> {
+                directSourceBody.notificationIds = JSONArray(notificationIds)
+                OSOutcomeSource(directSourceBody, null)
+            }
+            OSInfluenceType.INDIRECT -> {
+                indirectSourceBody.notificationIds = JSONArray(notificationIds)
+                OSOutcomeSource(null, indirectSourceBody)
+            }
+            else -> {
+                null
+            }
+        }
+    }
+
+    private fun getIAMInfluenceSource(iamInfluenceType: OSInfluenceType,
+                                      directSourceBody: OSOutcomeSourceBody,
+                                      indirectSourceBody: OSOutcomeSourceBody,
+                                      iamIds: String,
+                                      source: OSOutcomeSource?): OSOutcomeSource? {
+        return when (iamInfluenceType) {
+            OSInfluenceType.DIRECT -> {
+                directSourceBody.inAppMessagesIds = JSONArray(iamIds)
+                source?.setDirectBody(directSourceBody)
+                        ?: OSOutcomeSource(directSourceBody, null)
+            }
+            OSInfluenceType.INDIRECT -> {
+                indirectSourceBody.inAppMessagesIds = JSONArray(iamIds)
+                source?.setIndirectBody(indirectSourceBody)
+                        ?: OSOutcomeSource(null, indirectSourceBody)
+            }
+            else -> {
+                source
+            }
+        }
+    }
+
+    /**
+     * Column values of a row as read from the cursor, influence ids are still JSON strings
+     */
+    private class OutcomeEventRow(val notificationInfluenceType: String?,
+                                  val iamInfluenceType: String?,
+                                  val notificationIds: String,
+                                  val iamIds: String,
+                                  val name: String,
+                                  val weight: Float,
+                                  val timestamp: Long,
+                                  val unique: Boolean)
+
+    companion object {
+        // Indexes of COLUMNS, resolved once instead of calling getColumnIndex for each row
+        private const val ID = 0
+        private const val NOTIFICATION_INFLUENCE_TYPE = 1
+        private const val IAM_INFLUENCE_TYPE = 2
+        private const val NOTIFICATION_IDS = 3
+        private const val IAM_IDS = 4
+        private const val NAME = 5
+        private const val WEIGHT = 6
+        private const val TIMESTAMP = 7
+        private const val UNIQUE = 8
+
+        private val COLUMNS = arrayOf(
+                OutcomeEventsTable.ID,
+                OutcomeEventsTable.COLUMN_NAME_NOTIFICATION_INFLUENCE_TYPE,
+                OutcomeEventsTable.COLUMN_NAME_IAM_INFLUENCE_TYPE,
+                OutcomeEventsTable.COLUMN_NAME_NOTIFICATION_IDS,
+                OutcomeEventsTable.COLUMN_NAME_IAM_IDS,
+                OutcomeEventsTable.COLUMN_NAME_NAME,
+                OutcomeEventsTable.COLUMN_NAME_WEIGHT,
+                OutcomeEventsTable.COLUMN_NAME_TIMESTAMP,
+                OutcomeEventsTable.COLUMN_NAME_UNIQUE
+        )
+    }
+}
@@ -7,12 +7,14 @@ import com.onesignal.outcomes.domain.OSOutcomeEventParams
 import com.onesignal.outcomes.domain.OSOutcomeEventsRepository
 
 internal abstract class OSOutcomeEventsRepository(protected val logger: OSLogger,
-                                                  private val outcomeEventsCache: OSOutcomeEventsCache,
+                                                  protected val outcomeEventsCache: OSOutcomeEventsCache,
                                                   val outcomeEventsService: OutcomeEventsService) : OSOutcomeEventsRepository {
     abstract override fun requestMeasureOutcomeEvent(appId: String, deviceType: Int, event: OSOutcomeEventParams, responseHandler: OneSignalApiResponseHandler)
 
     override fun getSavedOutcomeEvents(): List<OSOutcomeEventParams> = outcomeEventsCache.getAllEventsToSend()
 
+    override fun getSavedOutcomeEventsIterator(): Iterator<OSOutcomeEventParams> = outcomeEventsCache.getEventsToSend()
+
     override fun saveOutcomeEvent(event: OSOutcomeEventParams) {
         outcomeEventsCache.saveOutcomeEvent(event)
     }
@@ -21,6 +23,24 @@ internal abstract class OSOutcomeEventsRepository(protected val logger: OSLogger
         outcomeEventsCache.deleteOldOutcomeEvent(outcomeEvent)
     }
 
+    override fun removeEvents(outcomeEvents: List<OSOutcomeEventParams>) {
+        outcomeEventsCache.deleteOldOutcomeEvents(outcomeEvents)
+    }
+
+    override fun isOutcomesBatchEnabled() = false
+
+    /**
+     * One event per batch, without a batch endpoint events are sent with requestMeasureOutcomeEvent
+     */
+    override fun getOutcomeEventBatches(events: List<OSOutcomeEventParams>): List<List<OSOutcomeEventParams>> = events.map { listOf(it) }
+
+    override fun requestMeasureOutcomeEvents(appId: String, deviceType: Int, events: List<OSOutcomeEventParams>, responseHandler: OneSignalApiResponseHandler) {
+        if (events.size == 1)
+            requestMeasureOutcomeEvent(appId, deviceType, events[0], responseHandler)
+        else
+            logger.error("OneSignal requestMeasureOutcomeEvents batch requests not supported, events: $events")
+    }
+
     override fun saveUniqueOutcomeNotifications(eventParams: OSOutcomeEventParams) {
         outcomeEventsCache.saveUniqueOutcomeEventParams(eventParams)
     }
@@ -4,11 +4,21 @@ import com.onesignal.OSLogger
 import com.onesignal.OneSignalApiResponseHandler
 import com.onesignal.outcomes.OSOutcomeConstants
 import com.onesignal.outcomes.domain.OSOutcomeEventParams
+import org.json.JSONArray
 import org.json.JSONException
+import org.json.JSONObject
+import java.util.*
 
+/**
+ * Sends outcomes to the v2 measure endpoints, one request per outcome or, with batch_enabled, one request for all cached outcomes
+ *
+ * Batched events with the same name and sources are sent as one outcome with a count.
+ * Cached retries of the same attributed unique outcome, ex: sent twice while offline before the unique cache was updated,
+ * are sent once. Unattributed unique outcomes are unique per session, so each saved one is counted.
+ */
 internal class OSOutcomeEventsV2Repository(logger: OSLogger,
                                            outcomeEventsCache: OSOutcomeEventsCache,
-                                           outcomeEventsService: OutcomeEventsService) : OSOutcomeEventsRepository(logger, outcomeEventsCache, outcomeEventsService) {
+                                           private val outcomeEventsV2Service: OSOutcomeEventsV2Service) : OSOutcomeEventsRepository(logger, outcomeEventsCache, outcomeEventsV2Service) {
     override fun requestMeasureOutcomeEvent(appId: String, deviceType: Int, event: OSOutcomeEventParams, responseHandler: OneSignalApiResponseHandler) {
         try {
             event.toJSONObject()
@@ -21,4 +31,75 @@ internal class OSOutcomeEventsV2Repository(logger: OSLogger,
             logger.error("Generating indirect outcome:JSON Failed.", e)
         }
     }
-}
\ No newline at end of file
+
+    override fun isOutcomesBatchEnabled() = outcomeEventsCache.isOutcomesBatchEnabled
+
+    /**
+     * Events with the same name and sources are sent as one outcome of the batch request,
+     * so they are kept in the same batch. Each batch has at most MAX_OUTCOMES_PER_BATCH outcomes
+     */
+    override fun getOutcomeEventBatches(events: List<OSOutcomeEventParams>): List<List<OSOutcomeEventParams>> {
+        val batches: MutableList<List<OSOutcomeEventParams>> = ArrayList()
+        var batch: MutableList<OSOutcomeEventParams> = ArrayList()
+        var batchOutcomes = 0
+        for (sameOutcomeEvents in groupSameOutcomeEvents(events)) {
+            if (batchOutcomes == MAX_OUTCOMES_PER_BATCH) {
+                batches.add(batch)
+                batch = ArrayList()
+                batchOutcomes = 0
+            }
+            batch.addAll(sameOutcomeEvents)
+            batchOutcomes++
+        }
+        if (batch.isNotEmpty()) batches.add(batch)
+        return batches
+    }
+
+    /**
+     * One request for all the events, weights of events with the same name and sources are summed
+     * and count is the number of events summed, attributed unique outcomes are counted once, see the class doc
+     */
+    override fun requestMeasureOutcomeEvents(appId: String, deviceType: Int, events: List<OSOutcomeEventParams>, responseHandler: OneSignalApiResponseHandler) {
+        try {
+            val outcomes = JSONArray()
+            for (sameOutcomeEvents in groupSameOutcomeEvents(events)) {
+                var weight = 0f
+                var timestamp = 0L
+                for (event in sameOutcomeEvents) {
+                    weight += event.weight
+                    timestamp = maxOf(timestamp, event.timestamp)
+                }
+                val first = sameOutcomeEvents[0]
+                val count = if (first.isUnique && !first.isUnattributed()) 1 else sameOutcomeEvents.size
+                OSOutcomeEventParams(first.outcomeId, first.outcomeSource, weight, timestamp).toJSONObject()
+                        .put(OSOutcomeConstants.COUNT, count)
+                        .also { outcomes.put(it) }
+            }
+            JSONObject()
+                    .put(OSOutcomeConstants.APP_ID, appId)
+                    .put(OSOutcomeConstants.DEVICE_TYPE, deviceType)
+                    .put(OSOutcomeConstants.OUTCOMES, outcomes)
+                    .also { jsonObject ->
+                        outcomeEventsV2Service.sendOutcomeEvents(jsonObject, responseHandler)
+                    }
+        } catch (e: JSONException) {
+            logger.error("Generating batch outcomes:JSON Failed.", e)
+        }
+    }
+
+    /**
+     * Unique and regular outcomes with the same name and sources are kept apart,
+     * every duplicate stays in its group so all of their rows are deleted once sent
+     */
+    private fun groupSameOutcomeEvents(events: List<OSOutcomeEventParams>): Collection<List<OSOutcomeEventParams>> {
+        val groups = LinkedHashMap<String, MutableList<OSOutcomeEventParams>>()
+        for (event in events) {
+            groups.getOrPut(event.outcomeId + event.outcomeSource + event.isUnique) { ArrayList() }.add(event)
+        }
+        return groups.values
+    }
+
+    companion object {
+        private const val MAX_OUTCOMES_PER_BATCH = 100
+    }
+}
@@ -11,4 +11,11 @@ internal class OSOutcomeEventsV2Service(client: OneSignalAPIClient) : OSOutcomeE
     override fun sendOutcomeEvent(jsonObject: JSONObject, responseHandler: OneSignalApiResponseHandler) {
         client.post("outcomes/measure_sources", jsonObject, responseHandler)
     }
-}
\ No newline at end of file
+
+    /***
+     * API endpoint /api/v1/outcomes/measure_sources_batch
+     */
+    fun sendOutcomeEvents(jsonObject: JSONObject, responseHandler: OneSignalApiResponseHandler) {
+        client.post("outcomes/measure_sources_batch", jsonObject, responseHandler)
+    }
+}
@@ -19,6 +19,7 @@ internal object OutcomeEventsTable {
     const val COLUMN_NAME_NAME = "name" // Added on DB v4 SDK v3.12.0
     const val COLUMN_NAME_WEIGHT = "weight" // Added on DB v5 SDK v3.12.1, migration added on DB v6 SDK v3.12.2
     const val COLUMN_NAME_TIMESTAMP = "timestamp" // Added on DB v4 SDK v3.12.0
+    const val COLUMN_NAME_UNIQUE = "is_unique" // Added on DB v10 SDK v4.4.1
     const val COLUMN_NAME_PARAMS = "params" // Added on DB v4 SDK v3.12.0 replaced with weight on DB v5 SDK v3.12.1, migration added on DB v6 SDK v3.12.2
 }
 
@@ -70,6 +71,19 @@ internal object OutcomesDbContract {
             OutcomeEventsTable.COLUMN_NAME_TIMESTAMP + TIMESTAMP_TYPE + "," +  // "params TEXT" Added in v4, removed in v5.
             OutcomeEventsTable.COLUMN_NAME_WEIGHT + FLOAT_TYPE +  // New in v5, missing migration added in v6
             ");"
+    const val SQL_CREATE_OUTCOME_ENTRIES_V4 = "CREATE TABLE " + OutcomeEventsTable.TABLE_NAME + " (" +
+            OutcomeEventsTable.ID + INTEGER_PRIMARY_KEY_TYPE + "," +
+            OutcomeEventsTable.COLUMN_NAME_NOTIFICATION_INFLUENCE_TYPE + TEXT_TYPE + "," +
+            OutcomeEventsTable.COLUMN_NAME_IAM_INFLUENCE_TYPE + TEXT_TYPE + "," +
+            OutcomeEventsTable.COLUMN_NAME_NOTIFICATION_IDS + TEXT_TYPE + "," +
+            OutcomeEventsTable.COLUMN_NAME_IAM_IDS + TEXT_TYPE + "," +
+            OutcomeEventsTable.COLUMN_NAME_NAME + TEXT_TYPE + "," +
+            OutcomeEventsTable.COLUMN_NAME_TIMESTAMP + TIMESTAMP_TYPE + "," +  // "params TEXT" Added in v4, removed in v5.
+            OutcomeEventsTable.COLUMN_NAME_WEIGHT + FLOAT_TYPE + "," +  // New in v5, missing migration added in v6
+            OutcomeEventsTable.COLUMN_NAME_UNIQUE + INT_TYPE + " DEFAULT 0" +  // New in v10
+            ");"
+    const val SQL_ADD_OUTCOME_UNIQUE_COLUMN = "ALTER TABLE " + OutcomeEventsTable.TABLE_NAME + " " +
+            "ADD COLUMN " + OutcomeEventsTable.COLUMN_NAME_UNIQUE + INT_TYPE + " DEFAULT 0;"
     const val SQL_CREATE_UNIQUE_OUTCOME_ENTRIES_V1 = "CREATE TABLE " + CachedUniqueOutcomeTable.TABLE_NAME_V1 + " (" +
             CachedUniqueOutcomeTable.ID + INTEGER_PRIMARY_KEY_TYPE + "," +
             CachedUniqueOutcomeTable.COLUMN_NAME_NOTIFICATION_ID + TEXT_TYPE + "," +
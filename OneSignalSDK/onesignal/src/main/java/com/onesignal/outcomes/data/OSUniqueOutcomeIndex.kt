@@ -0,0 +1,72 @@
+package com.onesignal.outcomes.data
+
+import androidx.annotation.WorkerThread
+import com.onesignal.OneSignalDb
+import java.util.*
+
+/**
+ * Unique outcomes already sent for an influence id, the rows of the cached unique outcome table in memory
+ * - Read from the db on the first lookup, then updated with every saved row
+ * - Dropped when rows are deleted from the table, like the ones of notifications past their TTL,
+ *     so the next lookup reads the table again
+ *
+ * Not thread safe, OSOutcomeEventsCache calls it from its synchronized methods
+ */
+internal class OSUniqueOutcomeIndex(private val dbHelper: OneSignalDb) {
+    // Null until read from the db
+    private var uniqueOutcomes: MutableSet<UniqueOutcome>? = null
+
+    @WorkerThread
+    fun contains(name: String, channel: String, influenceId: String): Boolean {
+        return getUniqueOutcomes().contains(UniqueOutcome(name, channel, influenceId))
+    }
+
+    /**
+     * Only call once the row is committed to the db
+     */
+    fun onUniqueOutcomeSaved(name: String, channel: String, influenceId: String) {
+        uniqueOutcomes?.add(UniqueOutcome(name, channel, influenceId))
+    }
+
+    fun onUniqueOutcomesDeleted() {
+        uniqueOutcomes = null
+    }
+
+    private fun getUniqueOutcomes(): MutableSet<UniqueOutcome> {
+        uniqueOutcomes?.let { return it }
+
+        val loaded: MutableSet<UniqueOutcome> = HashSet()
+        dbHelper.query(
+                CachedUniqueOutcomeTable.TABLE_NAME,
+                COLUMNS,
+                null,
+                null,
+                null,
+                null,
+                null
+        ).use { cursor ->
+            while (cursor.moveToNext()) {
+                val name = cursor.getString(NAME) ?: continue
+                val channel = cursor.getString(CHANNEL_TYPE) ?: continue
+                val influenceId = cursor.getString(CHANNEL_INFLUENCE_ID) ?: continue
+                loaded.add(UniqueOutcome(name, channel, influenceId))
+            }
+        }
+        uniqueOutcomes = loaded
+        return loaded
+    }
+
+    private data class UniqueOutcome(val name: String, val channel: String, val influenceId: String)
+
+    companion object {
+        private const val NAME = 0
+        private const val CHANNEL_TYPE = 1
+        private const val CHANNEL_INFLUENCE_ID = 2
+
+        private val COLUMNS = arrayOf(
+                CachedUniqueOutcomeTable.COLUMN_NAME_NAME,
+                CachedUniqueOutcomeTable.COLUMN_CHANNEL_TYPE,
+                CachedUniqueOutcomeTable.COLUMN_CHANNEL_INFLUENCE_ID
+        )
+    }
+}
@@ -8,6 +8,9 @@ class OSOutcomeEventParams constructor(val outcomeId: String,
                                        val outcomeSource: OSOutcomeSource?, // This field is optional
                                        var weight: Float, // This field is optional.
                                        var timestamp: Long = 0) {
+    // Sent with sendUniqueOutcome, saved with the event so a batch sends cached retries of it once
+    var isUnique = false
+
     @Throws(JSONException::class)
     fun toJSONObject(): JSONObject {
         val json = JSONObject()
@@ -5,9 +5,14 @@ import com.onesignal.influence.domain.OSInfluence
 
 interface OSOutcomeEventsRepository {
     fun getSavedOutcomeEvents(): List<OSOutcomeEventParams>
+    fun getSavedOutcomeEventsIterator(): Iterator<OSOutcomeEventParams>
     fun saveOutcomeEvent(event: OSOutcomeEventParams)
     fun removeEvent(outcomeEvent: OSOutcomeEventParams)
+    fun removeEvents(outcomeEvents: List<OSOutcomeEventParams>)
     fun requestMeasureOutcomeEvent(appId: String, deviceType: Int, event: OSOutcomeEventParams, responseHandler: OneSignalApiResponseHandler)
+    fun isOutcomesBatchEnabled(): Boolean
+    fun getOutcomeEventBatches(events: List<OSOutcomeEventParams>): List<List<OSOutcomeEventParams>>
+    fun requestMeasureOutcomeEvents(appId: String, deviceType: Int, events: List<OSOutcomeEventParams>, responseHandler: OneSignalApiResponseHandler)
     fun saveUniqueOutcomeNotifications(eventParams: OSOutcomeEventParams)
     fun getNotCachedUniqueOutcome(name: String, influences: List<OSInfluence>): List<OSInfluence>
     fun getUnattributedUniqueOutcomeEventsSent(): Set<String>?
@@ -0,0 +1,131 @@
+package com.onesignal;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.onesignal.outcomes.data.CachedUniqueOutcomeTable;
+import com.onesignal.outcomes.data.OSOutcomeEventsCache;
+import com.onesignal.outcomes.domain.OSOutcomeEventParams;
+import com.onesignal.outcomes.domain.OSOutcomeSource;
+import com.onesignal.outcomes.domain.OSOutcomeSourceBody;
+
+import org.json.JSONArray;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@Config(packageName = "com.onesignal.example", sdk = 26)
+@RunWith(RobolectricTestRunner.class)
+public class DbBatchWriteBenchmark {
+
+    private static final int ROWS = 100;
+    private static final String SQL_INSERT_UNIQUE_OUTCOME = "INSERT INTO " + CachedUniqueOutcomeTable.TABLE_NAME + " (" +
+            CachedUniqueOutcomeTable.COLUMN_CHANNEL_INFLUENCE_ID + "," +
+            CachedUniqueOutcomeTable.COLUMN_CHANNEL_TYPE + "," +
+            CachedUniqueOutcomeTable.COLUMN_NAME_NAME + ") VALUES (?,?,?)";
+
+    private static final OSBenchmark benchmark = new OSBenchmark(DbBatchWriteBenchmark.class);
+
+    private MockOneSignalDBHelper dbHelper;
+
+    @AfterClass
+    public static void afterEverything() throws Exception {
+        benchmark.writeReport();
+    }
+
+    @Before
+    public void beforeEachTest() {
+        dbHelper = new MockOneSignalDBHelper(ApplicationProvider.getApplicationContext());
+    }
+
+    @Test
+    public void insertRowByRow() throws Exception {
+        benchmark.measure("OneSignalDbHelper.insert per row rows=" + ROWS, ROWS, new OSBenchmark.Operation() {
+            @Override
+            public void run() {
+                for (int i = 0; i < ROWS; i++)
+                    dbHelper.insert(CachedUniqueOutcomeTable.TABLE_NAME, null, newUniqueOutcomeValues(i));
+                deleteAll();
+            }
+        });
+    }
+
+    @Test
+    public void insertBatchWithContentValues() throws Exception {
+        benchmark.measure("OneSignalDbHelper.runInTransaction insert rows=" + ROWS, ROWS, new OSBenchmark.Operation() {
+            @Override
+            public void run() {
+                dbHelper.runInTransaction(new OneSignalDbBatch.Writes() {
+                    @Override
+                    public void run(@NonNull OneSignalDbBatch batch) {
+                        for (int i = 0; i < ROWS; i++)
+                            batch.insert(CachedUniqueOutcomeTable.TABLE_NAME, newUniqueOutcomeValues(i));
+                    }
+                });
+                deleteAll();
+            }
+        });
+    }
+
+    @Test
+    public void insertBatchWithCompiledStatement() throws Exception {
+        benchmark.measure("OneSignalDbHelper.runInTransaction compiled statement rows=" + ROWS, ROWS, new OSBenchmark.Operation() {
+            @Override
+            public void run() {
+                dbHelper.runInTransaction(new OneSignalDbBatch.Writes() {
+                    @Override
+                    public void run(@NonNull OneSignalDbBatch batch) {
+                        SQLiteStatement statement = batch.compileStatement(SQL_INSERT_UNIQUE_OUTCOME);
+                        for (int i = 0; i < ROWS; i++) {
+                            statement.bindString(1, "notification" + i);
+                            statement.bindString(2, "notification");
+                            statement.bindString(3, "outcome");
+                            batch.executeInsert(statement);
+                        }
+                    }
+                });
+                deleteAll();
+            }
+        });
+    }
+
+    @Test
+    public void saveUniqueOutcomeEventParams() throws Exception {
+        final OSOutcomeEventsCache outcomeEventsCache = new OSOutcomeEventsCache(new MockOSLog(), dbHelper, new MockOSSharedPreferences());
+        JSONArray notificationIds = new JSONArray();
+        for (int i = 0; i < ROWS; i++)
+            notificationIds.put("notification" + i);
+        final OSOutcomeEventParams eventParams = new OSOutcomeEventParams(
+                "unique_outcome",
+                new OSOutcomeSource(null, new OSOutcomeSourceBody(notificationIds, new JSONArray())),
+                0,
+                1);
+
+        benchmark.measure("OSOutcomeEventsCache.saveUniqueOutcomeEventParams ids=" + ROWS, ROWS, new OSBenchmark.Operation() {
+            @Override
+            public void run() {
+                outcomeEventsCache.saveUniqueOutcomeEventParams(eventParams);
+                deleteAll();
+            }
+        });
+    }
+
+    private static ContentValues newUniqueOutcomeValues(int i) {
+        ContentValues values = new ContentValues();
+        values.put(CachedUniqueOutcomeTable.COLUMN_CHANNEL_INFLUENCE_ID, "notification" + i);
+        values.put(CachedUniqueOutcomeTable.COLUMN_CHANNEL_TYPE, "notification");
+        values.put(CachedUniqueOutcomeTable.COLUMN_NAME_NAME, "outcome");
+        return values;
+    }
+
+    // Keeps the table the same size between ops, one statement in every benchmark
+    private void deleteAll() {
+        dbHelper.delete(CachedUniqueOutcomeTable.TABLE_NAME, null, null);
+    }
+}
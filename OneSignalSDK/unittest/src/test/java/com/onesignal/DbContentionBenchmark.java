@@ -0,0 +1,185 @@
+package com.onesignal;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.onesignal.OneSignalDbContract.NotificationTable;
+import com.onesignal.outcomes.data.OSOutcomeEventsCache;
+import com.onesignal.outcomes.domain.OSOutcomeEventParams;
+import com.onesignal.outcomes.domain.OSOutcomeSource;
+import com.onesignal.outcomes.domain.OSOutcomeSourceBody;
+
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Notification receipt on the benchmark thread while other threads save and flush outcomes,
+ *    compare each case with and without the outcome threads to see how much receipt waits on them
+ */
+@Config(packageName = "com.onesignal.example", sdk = 26)
+@RunWith(RobolectricTestRunner.class)
+public class DbContentionBenchmark {
+
+    private static final int OUTCOME_THREADS = 2;
+    private static final int OUTCOMES_PER_FLUSH = 10;
+
+    private static final OSBenchmark benchmark = new OSBenchmark(DbContentionBenchmark.class);
+
+    private MockOneSignalDBHelper dbHelper;
+    private OSOutcomeEventsCache outcomeEventsCache;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong outcomesFlushed = new AtomicLong();
+    private final List<Thread> outcomeThreads = new ArrayList<>();
+
+    @AfterClass
+    public static void afterEverything() throws Exception {
+        benchmark.writeReport();
+    }
+
+    @Before
+    public void beforeEachTest() {
+        dbHelper = new MockOneSignalDBHelper(ApplicationProvider.getApplicationContext());
+        outcomeEventsCache = new OSOutcomeEventsCache(new MockOSLog(), dbHelper, new MockOSSharedPreferences());
+    }
+
+    @After
+    public void afterEachTest() throws Exception {
+        stopOutcomeThreads();
+    }
+
+    @Test
+    public void duplicateCheck() throws Exception {
+        measureDuplicateCheck("duplicate check");
+    }
+
+    @Test
+    public void duplicateCheckWithOutcomeFlushes() throws Exception {
+        startOutcomeThreads();
+        measureDuplicateCheck("duplicate check with outcome flushes threads=" + OUTCOME_THREADS);
+    }
+
+    @Test
+    public void duplicateCheckWithDedupeIndexAndOutcomeFlushes() throws Exception {
+        for (int i = 0; i < 100; i++)
+            saveNotification(UUID.randomUUID().toString());
+        OSNotificationDedupeIndex.clear();
+        OSNotificationDedupeIndex.isDuplicate(dbHelper, UUID.randomUUID().toString());
+        startOutcomeThreads();
+
+        benchmark.measure("duplicate check with OSNotificationDedupeIndex and outcome flushes threads=" + OUTCOME_THREADS, new OSBenchmark.Operation() {
+            @Override
+            public void run() {
+                String id = UUID.randomUUID().toString();
+                if (OSNotificationDedupeIndex.lookup(id) == OSNotificationDedupeIndex.Lookup.CHECK_DB)
+                    OSBenchmark.blackhole = OSNotificationDedupeIndex.isDuplicate(dbHelper, id);
+                else
+                    OSBenchmark.blackhole = id;
+            }
+        });
+    }
+
+    @Test
+    public void notificationReceipt() throws Exception {
+        measureNotificationReceipt("notification receipt");
+    }
+
+    @Test
+    public void notificationReceiptWithOutcomeFlushes() throws Exception {
+        startOutcomeThreads();
+        measureNotificationReceipt("notification receipt with outcome flushes threads=" + OUTCOME_THREADS);
+    }
+
+    private void measureDuplicateCheck(String name) throws Exception {
+        for (int i = 0; i < 100; i++)
+            saveNotification(UUID.randomUUID().toString());
+
+        benchmark.measure(name, new OSBenchmark.Operation() {
+            @Override
+            public void run() {
+                OSBenchmark.blackhole = isDuplicateNotification(UUID.randomUUID().toString());
+            }
+        });
+    }
+
+    private void measureNotificationReceipt(String name) throws Exception {
+        benchmark.measure(name, new OSBenchmark.Operation() {
+            @Override
+            public void run() {
+                String id = UUID.randomUUID().toString();
+                if (!isDuplicateNotification(id))
+                    saveNotification(id);
+            }
+        });
+    }
+
+    // Query run for every push before OSNotificationDedupeIndex, still used on a possible match
+    private boolean isDuplicateNotification(String id) {
+        Cursor cursor = dbHelper.query(
+                NotificationTable.TABLE_NAME,
+                new String[]{ NotificationTable.COLUMN_NAME_NOTIFICATION_ID },
+                NotificationTable.COLUMN_NAME_NOTIFICATION_ID + " = ?",
+                new String[]{ id },
+                null, null, null);
+        boolean exists = cursor.moveToFirst();
+        cursor.close();
+        return exists;
+    }
+
+    private void saveNotification(String id) {
+        ContentValues values = new ContentValues();
+        values.put(NotificationTable.COLUMN_NAME_NOTIFICATION_ID, id);
+        values.put(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID, id.hashCode());
+        values.put(NotificationTable.COLUMN_NAME_FULL_DATA, "{\"custom\":{\"i\":\"" + id + "\"}}");
+        dbHelper.insert(NotificationTable.TABLE_NAME, null, values);
+    }
+
+    private void startOutcomeThreads() {
+        running.set(true);
+        for (int i = 0; i < OUTCOME_THREADS; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long timestamp = Thread.currentThread().getId() * 1_000_000_000L;
+                    while (running.get()) {
+                        for (int j = 0; j < OUTCOMES_PER_FLUSH; j++)
+                            outcomeEventsCache.saveOutcomeEvent(buildOutcomeEvent(++timestamp));
+                        for (OSOutcomeEventParams event : outcomeEventsCache.getAllEventsToSend())
+                            outcomeEventsCache.deleteOldOutcomeEvent(event);
+                        outcomesFlushed.addAndGet(OUTCOMES_PER_FLUSH);
+                    }
+                }
+            });
+            outcomeThreads.add(thread);
+            thread.start();
+        }
+    }
+
+    private void stopOutcomeThreads() throws InterruptedException {
+        running.set(false);
+        for (Thread thread : outcomeThreads)
+            thread.join();
+        outcomeThreads.clear();
+        if (outcomesFlushed.get() > 0)
+            System.out.println("Benchmark outcomes flushed during measurement: " + outcomesFlushed.getAndSet(0));
+    }
+
+    private static OSOutcomeEventParams buildOutcomeEvent(long timestamp) {
+        JSONArray notificationIds = new JSONArray().put(UUID.randomUUID().toString());
+        OSOutcomeSourceBody directBody = new OSOutcomeSourceBody(notificationIds, new JSONArray());
+        return new OSOutcomeEventParams("outcome", new OSOutcomeSource(directBody, null), 1, timestamp);
+    }
+}
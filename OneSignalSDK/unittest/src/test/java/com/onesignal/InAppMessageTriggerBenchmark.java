@@ -0,0 +1,148 @@
+package com.onesignal;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Config(packageName = "com.onesignal.example", sdk = 26)
+@RunWith(RobolectricTestRunner.class)
+public class InAppMessageTriggerBenchmark {
+
+    private static final int MESSAGE_COUNT = 50;
+    private static final int TRIGGER_KEY_COUNT = 20;
+
+    private static final OSBenchmark benchmark = new OSBenchmark(InAppMessageTriggerBenchmark.class);
+
+    @AfterClass
+    public static void afterEverything() throws Exception {
+        benchmark.writeReport();
+    }
+
+    @Test
+    public void evaluateMessageTriggers() throws Exception {
+        final List<OSInAppMessage> messages = buildMessages();
+        final OSTriggerController triggerController = buildTriggerController();
+
+        benchmark.measure("OSTriggerController.evaluateMessageTriggers messages=" + MESSAGE_COUNT, new OSBenchmark.Operation() {
+            @Override
+            public void run() {
+                int shown = 0;
+                for (OSInAppMessage message : messages) {
+                    if (triggerController.evaluateMessageTriggers(message))
+                        shown++;
+                }
+                OSBenchmark.blackhole = shown;
+            }
+        });
+    }
+
+    // What addTrigger evaluates for one changed key
+    @Test
+    public void evaluateMessagesForChangedKey() throws Exception {
+        final OSInAppMessageTriggerIndex triggerIndex = new OSInAppMessageTriggerIndex(buildMessages());
+        final OSTriggerController triggerController = buildTriggerController();
+        final List<String> changedKeys = Collections.singletonList("key0");
+
+        benchmark.measure("OSInAppMessageTriggerIndex.getMessagesToEvaluate + evaluateMessageTriggers messages=" + MESSAGE_COUNT, new OSBenchmark.Operation() {
+            @Override
+            public void run() {
+                int shown = 0;
+                for (OSInAppMessage message : triggerIndex.getMessagesToEvaluate(changedKeys)) {
+                    if (triggerController.evaluateMessageTriggers(message))
+                        shown++;
+                }
+                OSBenchmark.blackhole = shown;
+            }
+        });
+    }
+
+    @Test
+    public void parseInAppMessages() throws Exception {
+        final JSONArray messagesJson = buildMessagesJson();
+
+        benchmark.measure("OSInAppMessage(JSONObject) messages=" + MESSAGE_COUNT, new OSBenchmark.Operation() {
+            @Override
+            public void run() throws Exception {
+                List<OSInAppMessage> messages = new ArrayList<>();
+                for (int i = 0; i < messagesJson.length(); i++)
+                    messages.add(new OSInAppMessage(messagesJson.getJSONObject(i)));
+                OSBenchmark.blackhole = messages;
+            }
+        });
+    }
+
+    private static OSTriggerController buildTriggerController() {
+        OSTriggerController triggerController = new OSTriggerController(new OSDynamicTriggerController.OSDynamicTriggerControllerObserver() {
+            @Override
+            public void messageDynamicTriggerCompleted(String triggerId) {
+            }
+
+            @Override
+            public void messageTriggerConditionChanged() {
+            }
+        });
+
+        // Mix of values that match on type and values compared with the flex conversions
+        Map<String, Object> triggers = new HashMap<>();
+        for (int i = 0; i < TRIGGER_KEY_COUNT; i++)
+            triggers.put("key" + i, i % 2 == 0 ? (Object) i : String.valueOf(i));
+        triggerController.addTriggers(triggers);
+        return triggerController;
+    }
+
+    private static List<OSInAppMessage> buildMessages() throws JSONException {
+        JSONArray messagesJson = buildMessagesJson();
+        List<OSInAppMessage> messages = new ArrayList<>();
+        for (int i = 0; i < messagesJson.length(); i++)
+            messages.add(new OSInAppMessage(messagesJson.getJSONObject(i)));
+        return messages;
+    }
+
+    // Each message has 2 OR blocks of 3 AND triggers
+    private static JSONArray buildMessagesJson() throws JSONException {
+        String[] operators = { "greater", "less_or_equal", "equal", "not_equal", "exists", "not_exists" };
+
+        JSONArray messagesJson = new JSONArray();
+        for (int m = 0; m < MESSAGE_COUNT; m++) {
+            JSONArray ors = new JSONArray();
+            for (int o = 0; o < 2; o++) {
+                JSONArray ands = new JSONArray();
+                for (int a = 0; a < 3; a++) {
+                    int keyIndex = (m + o * 3 + a) % (TRIGGER_KEY_COUNT + 5);
+                    ands.put(new JSONObject()
+                            .put("id", UUID.randomUUID().toString())
+                            .put("kind", "custom")
+                            .put("property", "key" + keyIndex)
+                            .put("operator", operators[(m + a) % operators.length])
+                            .put("value", a % 2 == 0 ? (Object) keyIndex : String.valueOf(keyIndex)));
+                }
+                ors.put(ands);
+            }
+
+            messagesJson.put(new JSONObject()
+                    .put("id", UUID.randomUUID().toString())
+                    .put("variants", new JSONObject()
+                            .put("android", new JSONObject()
+                                    .put("en", UUID.randomUUID().toString())
+                                    .put("es", UUID.randomUUID().toString())))
+                    .put("max_display_time", 30)
+                    .put("triggers", ors)
+                    .put("redisplay", new JSONObject()
+                            .put("limit", 5)
+                            .put("delay", 60)));
+        }
+        return messagesJson;
+    }
+}
@@ -5,7 +5,9 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 import static com.onesignal.OneSignalPackagePrivateHelper.OSTestInAppMessage;
@@ -24,6 +26,24 @@ public class InAppMessagingHelpers {
         return OneSignal.getInAppMessageController().triggerController.evaluateMessageTriggers(message);
     }
 
+    // Ids of the messages evaluated again when the trigger keys change, in message order
+    public static List<String> getMessageIdsToEvaluate(List<OSTestInAppMessage> messages, Collection<String> changedKeys) {
+        OSInAppMessageTriggerIndex index = new OSInAppMessageTriggerIndex(new ArrayList<OSInAppMessage>(messages));
+        return messageIds(index.getMessagesToEvaluate(changedKeys));
+    }
+
+    public static List<String> getMessageIdsWithTriggerKeys(List<OSTestInAppMessage> messages, Collection<String> keys) {
+        OSInAppMessageTriggerIndex index = new OSInAppMessageTriggerIndex(new ArrayList<OSInAppMessage>(messages));
+        return messageIds(index.getMessagesWithTriggerKeys(keys));
+    }
+
+    private static List<String> messageIds(List<OSInAppMessage> messages) {
+        List<String> messageIds = new ArrayList<>();
+        for (OSInAppMessage message : messages)
+            messageIds.add(message.messageId);
+        return messageIds;
+    }
+
     public static boolean dynamicTriggerShouldFire(OSTrigger trigger) {
         return OneSignal.getInAppMessageController().triggerController.dynamicTriggerController.dynamicTriggerShouldFire(trigger);
     }
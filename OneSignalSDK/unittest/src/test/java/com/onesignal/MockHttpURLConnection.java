@@ -28,13 +28,16 @@
 package com.onesignal;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 public class MockHttpURLConnection extends HttpURLConnection {
    private boolean didInterruptMockHang;
@@ -47,11 +50,18 @@ public class MockHttpURLConnection extends HttpURLConnection {
       public String responseBody;
       public String errorResponseBody;
       public boolean mockThreadHang;
+      // Sends responseBody gzip compressed, mockProps needs content-encoding set to gzip
+      public boolean gzipResponseBody;
       public int status;
       public Map<String, String> mockProps = new HashMap<>();
    }
 
    private MockResponse mockResponse;
+   private ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+   public byte[] getSentBytes() {
+      return outputStream.toByteArray();
+   }
 
    MockHttpURLConnection(URL url, MockResponse response) {
       super(url);
@@ -92,8 +102,20 @@ public class MockHttpURLConnection extends HttpURLConnection {
       return mockResponse.status;
    }
 
+   @Override
+   public OutputStream getOutputStream() {
+      return outputStream;
+   }
+
    @Override
    public InputStream getInputStream() throws IOException {
+      if (mockResponse.gzipResponseBody) {
+         ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+         GZIPOutputStream gzipStream = new GZIPOutputStream(compressed);
+         gzipStream.write(mockResponse.responseBody.getBytes(StandardCharsets.UTF_8));
+         gzipStream.close();
+         return new ByteArrayInputStream(compressed.toByteArray());
+      }
       return new ByteArrayInputStream(StandardCharsets.UTF_8.encode(mockResponse.responseBody).array());
    }
 
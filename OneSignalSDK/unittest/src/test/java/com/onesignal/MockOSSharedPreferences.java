@@ -18,6 +18,11 @@ public class MockOSSharedPreferences extends OneSignalPackagePrivateHelper.OSSha
         return super.getOutcomesV2KeyName();
     }
 
+    @Override
+    public String getOutcomesBatchKeyName() {
+        return super.getOutcomesBatchKeyName();
+    }
+
     @Override
     public String getPreferencesName() {
         return super.getPreferencesName();
@@ -67,4 +67,9 @@ public class MockOneSignalDBHelper implements OneSignalDb {
     public void delete(String table, String whereClause, String[] whereArgs) {
         OneSignalDbHelper.getInstance(context).delete(table, whereClause, whereArgs);
     }
+
+    @Override
+    public boolean runInTransaction(OneSignalDbBatch.Writes writes) {
+        return OneSignalDbHelper.getInstance(context).runInTransaction(writes);
+    }
 }
@@ -0,0 +1,161 @@
+package com.onesignal;
+
+import android.os.Bundle;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.UUID;
+
+@Config(packageName = "com.onesignal.example", sdk = 26)
+@RunWith(RobolectricTestRunner.class)
+public class NotificationPayloadBenchmark {
+
+    private static final OSBenchmark benchmark = new OSBenchmark(NotificationPayloadBenchmark.class);
+
+    @AfterClass
+    public static void afterEverything() throws Exception {
+        benchmark.writeReport();
+    }
+
+    @Test
+    public void bundleAsJSONObject() throws Exception {
+        final Bundle bundle = buildFCMBundle();
+
+        benchmark.measure("NotificationBundleProcessor.bundleAsJSONObject", new OSBenchmark.Operation() {
+            @Override
+            public void run() {
+                OSBenchmark.blackhole = NotificationBundleProcessor.bundleAsJSONObject(bundle);
+            }
+        });
+    }
+
+    @Test
+    public void parseOSNotification() throws Exception {
+        final JSONObject payload = NotificationBundleProcessor.bundleAsJSONObject(buildFCMBundle());
+
+        benchmark.measure("OSNotification(JSONObject)", new OSBenchmark.Operation() {
+            @Override
+            public void run() {
+                OSBenchmark.blackhole = new OSNotification(payload);
+            }
+        });
+    }
+
+    // Payload reads of one push from received to saved, each step parsing the payload itself as it did before OSNotificationPayload
+    @Test
+    public void processingStepsParsingPayloadEach() throws Exception {
+        final JSONObject payload = NotificationBundleProcessor.bundleAsJSONObject(buildFCMBundle());
+
+        benchmark.measure("Processing steps, each parsing the payload", new OSBenchmark.Operation() {
+            @Override
+            public void run() throws Exception {
+                // OSNotificationDataController, OSNotification, getApiNotificationId, processJobForDisplay, saveNotification
+                for (int i = 0; i < 5; i++)
+                    OSBenchmark.blackhole = new JSONObject(payload.optString("custom")).optString("i");
+                parseOSNotificationFields(payload);
+                // Action buttons
+                JSONArray buttons = new JSONObject(payload.optString("custom")).getJSONObject("a").getJSONArray("actionButtons");
+                for (int i = 0; i < buttons.length(); i++)
+                    OSBenchmark.blackhole = new JSONObject(payload.toString()).put("actionId", buttons.getJSONObject(i).optString("id")).toString();
+                // Content intent, saved full_data and job log
+                for (int i = 0; i < 3; i++)
+                    OSBenchmark.blackhole = payload.toString();
+            }
+        });
+    }
+
+    // OSNotification(JSONObject) field reads as they were before OSNotificationPayload
+    private static void parseOSNotificationFields(JSONObject payload) throws JSONException {
+        JSONObject custom = new JSONObject(payload.getString("custom"));
+        OSBenchmark.blackhole = custom.optString("i");
+        OSBenchmark.blackhole = custom.optString("ti");
+        OSBenchmark.blackhole = custom.optString("tn");
+        OSBenchmark.blackhole = custom.optString("u", null);
+        OSBenchmark.blackhole = payload.toString();
+        for (String key : new String[] { "alert", "title", "sicon", "bicon", "licon", "sound", "grp", "grp_msg", "bgac", "ledc", "vis", "from", "collapse_key" })
+            OSBenchmark.blackhole = payload.optString(key, null);
+        OSBenchmark.blackhole = payload.optInt("pri", 0);
+
+        JSONObject additionalData = custom.optJSONObject(NotificationBundleProcessor.PUSH_ADDITIONAL_DATA_KEY);
+        if (additionalData != null && additionalData.has("actionButtons")) {
+            JSONArray jsonActionButtons = additionalData.getJSONArray("actionButtons");
+            for (int i = 0; i < jsonActionButtons.length(); i++) {
+                JSONObject jsonActionButton = jsonActionButtons.getJSONObject(i);
+                OSBenchmark.blackhole = new OSNotification.ActionButton(
+                        jsonActionButton.optString("id", null),
+                        jsonActionButton.optString("text", null),
+                        jsonActionButton.optString("icon", null));
+            }
+            additionalData.remove("actionId");
+            additionalData.remove("actionButtons");
+        }
+
+        String backgroundImage = payload.optString("bg_img", null);
+        if (backgroundImage != null)
+            OSBenchmark.blackhole = new JSONObject(backgroundImage);
+    }
+
+    @Test
+    public void processingStepsSharingPayload() throws Exception {
+        final JSONObject payload = NotificationBundleProcessor.bundleAsJSONObject(buildFCMBundle());
+
+        benchmark.measure("Processing steps, sharing OSNotificationPayload", new OSBenchmark.Operation() {
+            @Override
+            public void run() throws Exception {
+                OSNotificationPayload parsedPayload = new OSNotificationPayload(payload);
+                OSBenchmark.blackhole = parsedPayload.getNotificationId();
+                OSBenchmark.blackhole = new OSNotification(parsedPayload);
+                for (OSNotification.ActionButton button : parsedPayload.getActionButtons())
+                    OSBenchmark.blackhole = parsedPayload.copyJson().put("actionId", button.getId()).toString();
+                for (int i = 0; i < 3; i++)
+                    OSBenchmark.blackhole = parsedPayload.getRawPayload();
+            }
+        });
+    }
+
+    // Same keys as a push sent from the dashboard with additional data, buttons and a big picture
+    static Bundle buildFCMBundle() throws JSONException {
+        JSONObject additionalData = new JSONObject();
+        for (int i = 0; i < 10; i++)
+            additionalData.put("data_key" + i, "data_value" + i);
+        additionalData.put("actionButtons", new JSONArray()
+                .put(new JSONObject().put("id", "accept").put("text", "Accept").put("icon", "ic_accept"))
+                .put(new JSONObject().put("id", "decline").put("text", "Decline").put("icon", "ic_decline")));
+        additionalData.put("actionSelected", "__DEFAULT__");
+
+        JSONObject custom = new JSONObject()
+                .put("i", UUID.randomUUID().toString())
+                .put("ti", UUID.randomUUID().toString())
+                .put("tn", "Weekly digest")
+                .put("u", "https://onesignal.com/articles/weekly-digest")
+                .put("a", additionalData);
+
+        Bundle bundle = new Bundle();
+        bundle.putString("custom", custom.toString());
+        bundle.putString("alert", "Your weekly digest is ready, tap to see what you missed this week");
+        bundle.putString("title", "Weekly digest");
+        bundle.putString("sicon", "ic_stat_onesignal_default");
+        bundle.putString("licon", "https://img.onesignal.com/large_icon.png");
+        bundle.putString("bicon", "https://img.onesignal.com/big_picture.png");
+        bundle.putString("grp", "digest");
+        bundle.putString("grp_msg", "$[notif_count] new digests");
+        bundle.putString("bgac", "FF0000FF");
+        bundle.putString("ledc", "FF00FF00");
+        bundle.putString("sound", "digest_sound");
+        bundle.putString("pri", "5");
+        bundle.putString("vis", "1");
+        bundle.putString("from", "123456789012");
+        bundle.putString("collapse_key", "do_not_collapse");
+        bundle.putString("google.message_id", "0:" + UUID.randomUUID().toString());
+        bundle.putLong("google.sent_time", System.currentTimeMillis());
+        bundle.putInt("google.ttl", 259200);
+        return bundle;
+    }
+}
@@ -0,0 +1,161 @@
+package com.onesignal;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Small benchmark harness for the *Benchmark classes, run with ./gradlew :unittest:testDebugUnitTest -Pbenchmark
+ *
+ * The SDK code needs the Android runtime Robolectric provides, JMH forks its own JVM and can't load
+ *    classes through Robolectric's sandbox so measurements are done in the test itself:
+ * - Operation runs for WARMUP_MILLIS so the JIT compiles it, then MEASURE_ITERATIONS windows of MEASURE_MILLIS
+ * - Throughput is the best window, allocation is bytes allocated by the benchmark thread per operation
+ * Results are printed and written to build/reports/benchmarks/{class}.json so runs can be compared before a release.
+ */
+public class OSBenchmark {
+
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    public static class Result {
+        public final String name;
+        public final double opsPerSecond;
+        public final double nanosPerOp;
+        // -1 if the JVM does not report thread allocations
+        public final double bytesPerOp;
+        // Rows, items... handled by each op, see measure(String, int, Operation)
+        public final int itemsPerOp;
+
+        Result(String name, double opsPerSecond, double bytesPerOp, int itemsPerOp) {
+            this.name = name;
+            this.opsPerSecond = opsPerSecond;
+            this.nanosPerOp = 1_000_000_000d / opsPerSecond;
+            this.bytesPerOp = bytesPerOp;
+            this.itemsPerOp = itemsPerOp;
+        }
+
+        public double itemsPerSecond() {
+            return opsPerSecond * itemsPerOp;
+        }
+
+        JSONObject toJSONObject() throws JSONException {
+            return new JSONObject()
+                    .put("name", name)
+                    .put("ops_per_second", opsPerSecond)
+                    .put("nanos_per_op", nanosPerOp)
+                    .put("bytes_per_op", bytesPerOp)
+                    .put("items_per_op", itemsPerOp)
+                    .put("items_per_second", itemsPerSecond());
+        }
+
+        @Override
+        public String toString() {
+            String result = String.format(Locale.US, "%-60s %14.1f ops/s %14.1f ns/op %14.1f B/op", name, opsPerSecond, nanosPerOp, bytesPerOp);
+            if (itemsPerOp > 1)
+                result += String.format(Locale.US, " %14.1f items/s", itemsPerSecond());
+            return result;
+        }
+    }
+
+    private static final long WARMUP_MILLIS = 1_000;
+    private static final long MEASURE_MILLIS = 500;
+    private static final int MEASURE_ITERATIONS = 5;
+
+    // Results are consumed here so the JIT can't remove the measured code
+    public static volatile Object blackhole;
+
+    private final String reportName;
+    private final List<Result> results = new ArrayList<>();
+
+    public OSBenchmark(Class<?> benchmarkClass) {
+        this.reportName = benchmarkClass.getSimpleName();
+    }
+
+    public Result measure(String name, Operation operation) throws Exception {
+        return measure(name, 1, operation);
+    }
+
+    /**
+     * Same as measure(String, Operation) for operations that each handle itemsPerOp items, ex: rows written
+     *    items/s is reported along with ops/s
+     */
+    public Result measure(String name, int itemsPerOp, Operation operation) throws Exception {
+        runFor(WARMUP_MILLIS, operation);
+
+        double bestOpsPerSecond = 0;
+        long totalOps = 0;
+        long allocatedBefore = allocatedBytes();
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            long ops = runFor(MEASURE_MILLIS, operation);
+            long elapsed = System.nanoTime() - start;
+            totalOps += ops;
+            bestOpsPerSecond = Math.max(bestOpsPerSecond, ops * 1_000_000_000d / elapsed);
+        }
+        long allocatedAfter = allocatedBytes();
+
+        double bytesPerOp = allocatedBefore < 0 ? -1 : (allocatedAfter - allocatedBefore) / (double) totalOps;
+        Result result = new Result(name, bestOpsPerSecond, bytesPerOp, itemsPerOp);
+        results.add(result);
+        System.out.println("Benchmark " + result);
+        return result;
+    }
+
+    /**
+     * Writes all results measured by this instance, call from an @AfterClass method
+     */
+    public void writeReport() throws IOException, JSONException {
+        JSONArray resultsJson = new JSONArray();
+        for (Result result : results)
+            resultsJson.put(result.toJSONObject());
+
+        File directory = new File("build/reports/benchmarks");
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IOException("Could not create " + directory.getAbsolutePath());
+
+        FileWriter writer = new FileWriter(new File(directory, reportName + ".json"));
+        try {
+            writer.write(new JSONObject()
+                    .put("benchmark", reportName)
+                    .put("java_version", System.getProperty("java.version"))
+                    .put("results", resultsJson)
+                    .toString(2));
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static long runFor(long millis, Operation operation) throws Exception {
+        long end = System.nanoTime() + millis * 1_000_000;
+        long ops = 0;
+        // Checking the clock every op would be measured too, check it every 16 ops
+        do {
+            for (int i = 0; i < 16; i++)
+                operation.run();
+            ops += 16;
+        } while (System.nanoTime() < end);
+        return ops;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean))
+            return -1;
+
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        if (!allocationBean.isThreadAllocatedMemorySupported() || !allocationBean.isThreadAllocatedMemoryEnabled())
+            return -1;
+        return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
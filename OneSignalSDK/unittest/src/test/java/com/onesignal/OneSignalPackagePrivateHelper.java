@@ -3,7 +3,10 @@ package com.onesignal;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
+import android.database.Cursor;
+import android.graphics.Bitmap;
 import android.os.Bundle;
+import android.util.JsonReader;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -16,6 +19,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.robolectric.util.Scheduler;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.math.BigInteger;
 import java.util.ArrayList;
@@ -219,9 +223,52 @@ public class OneSignalPackagePrivateHelper {
    public static class InAppMessageTable extends OneSignalDbContract.InAppMessageTable {
    }
 
+   public static class OutboundRequestTable extends OneSignalDbContract.OutboundRequestTable {
+   }
+
+   public static class OSOutboundRequestQueue extends com.onesignal.OSOutboundRequestQueue {
+      public static final int MAX_ATTEMPTS = com.onesignal.OSOutboundRequestQueue.MAX_ATTEMPTS;
+
+      private final OneSignalDb dbHelper;
+
+      public OSOutboundRequestQueue(OneSignalDb dbHelper, OSTime time) {
+         super(dbHelper, new MockOSLog(), time);
+         this.dbHelper = dbHelper;
+      }
+
+      @Override
+      public boolean enqueueIfRetryable(int statusCode, @NonNull String idempotencyKey, @NonNull String method, @NonNull String url, @Nullable JSONObject body) {
+         return super.enqueueIfRetryable(statusCode, idempotencyKey, method, url, body);
+      }
+
+      @Override
+      public void replayPendingRequests() {
+         super.replayPendingRequests();
+      }
+
+      public int getQueuedRequestCount() {
+         Cursor cursor = dbHelper.query(OutboundRequestTable.TABLE_NAME, null, null, null, null, null, null);
+         int count = cursor.getCount();
+         cursor.close();
+         return count;
+      }
+   }
+
    public static class OSNotificationRestoreWorkManager extends com.onesignal.OSNotificationRestoreWorkManager {
    }
 
+   public static class OSNotificationRateLimiter extends com.onesignal.OSNotificationRateLimiter {
+      @Override
+      public long delayBeforeNextPost(long now) {
+         return super.delayBeforeNextPost(now);
+      }
+
+      @Override
+      public void onPosted(long now) {
+         super.onPosted(now);
+      }
+   }
+
    public static class OSNotificationGenerationJob extends com.onesignal.OSNotificationGenerationJob {
       OSNotificationGenerationJob(Context context) {
          super(context);
@@ -243,12 +290,36 @@ public class OneSignalPackagePrivateHelper {
    public static class PushRegistratorFCM extends com.onesignal.PushRegistratorFCM {}
 
    public static class OneSignalRestClient extends com.onesignal.OneSignalRestClient {
+      public static final String CACHE_KEY_NONE = com.onesignal.OneSignalRestClient.CACHE_KEY_NONE;
+
       public static abstract class ResponseHandler extends com.onesignal.OneSignalRestClient.ResponseHandler {
          @Override
          public void onSuccess(String response) {}
          @Override
          public void onFailure(int statusCode, String response, Throwable throwable) {}
       }
+
+      public static abstract class JsonResponseHandler<T> extends com.onesignal.OneSignalRestClient.JsonResponseHandler<T> {
+         @Override
+         public abstract T parse(@NonNull JsonReader reader) throws IOException, JSONException;
+         @Override
+         public void onParsed(T result) {}
+         @Override
+         public void onParseFailure(@Nullable String response, Throwable throwable) {}
+      }
+
+      public static abstract class ETagResponseHandler extends com.onesignal.OneSignalRestClient.ETagResponseHandler {
+         @Override
+         public void onSuccess(String response, @Nullable String eTag) {}
+         @Override
+         public void onNotModified() {}
+         @Override
+         public void onFailure(int statusCode, String response, Throwable throwable) {}
+      }
+
+      public static void getWithETag(String url, @Nullable String eTag, ETagResponseHandler responseHandler) {
+         com.onesignal.OneSignalRestClient.getWithETag(url, eTag, responseHandler);
+      }
    }
 
    public static String NotificationChannelManager_createNotificationChannel(Context context, JSONObject payload) {
@@ -287,6 +358,193 @@ public class OneSignalPackagePrivateHelper {
       OneSignal.getTaskRemoteController().shutdownNow();
       OneSignal.getTaskController().shutdownNow();
       OneSignal.getDelayTaskController().shutdownNow();
+      com.onesignal.OSHttpRequestExecutor.shutdownNow();
+   }
+
+   public static void OneSignalRestClient_setGzipRequestsEnabled(boolean enabled) {
+      OneSignalPrefs.saveBool(OneSignalPrefs.PREFS_ONESIGNAL, OneSignalPrefs.PREFS_OS_GZIP_REQUESTS_ENABLED, enabled);
+   }
+
+   public static boolean OSHttpRequestExecutor_isTimeoutThread(Thread thread) {
+      return thread.isDaemon() && com.onesignal.OSHttpRequestExecutor.OS_HTTP_TIMEOUT.equals(thread.getName());
+   }
+
+   public static void OSHttpRequestExecutor_setKeepAliveMillis(long keepAliveMillis) {
+      com.onesignal.OSHttpRequestExecutor.setKeepAliveMillis(keepAliveMillis);
+   }
+
+   public static void OSHttpRequestExecutor_setMaxConcurrentRequests(int maxRequests) {
+      com.onesignal.OSHttpRequestExecutor.setMaxConcurrentRequests(maxRequests);
+   }
+
+   public static void OSHttpRequestExecutor_resetMaxConcurrentRequests() {
+      com.onesignal.OSHttpRequestExecutor.setMaxConcurrentRequests(com.onesignal.OSHttpRequestExecutor.DEFAULT_MAX_CONCURRENT_REQUESTS);
+   }
+
+   public static int OSHttpRequestExecutor_getInFlightRequests() {
+      return com.onesignal.OSHttpRequestExecutor.getInFlightRequests();
+   }
+
+   public static long OSHttpRequestExecutor_getCompletedRequests() {
+      return com.onesignal.OSHttpRequestExecutor.getCompletedRequests();
+   }
+
+   public static long OSHttpTrafficStats_getRequests(String url) {
+      OSHttpTrafficStats.EndpointStats stats = OSHttpTrafficStats.getStatsByEndpoint().get(OSHttpTrafficStats.endpointForUrl(url));
+      return stats == null ? 0 : stats.requests.get();
+   }
+
+   public static long OSHttpTrafficStats_getBytesSent(String url) {
+      OSHttpTrafficStats.EndpointStats stats = OSHttpTrafficStats.getStatsByEndpoint().get(OSHttpTrafficStats.endpointForUrl(url));
+      return stats == null ? 0 : stats.bytesSent.get();
+   }
+
+   public static long OSHttpTrafficStats_getBytesSentOnWire(String url) {
+      OSHttpTrafficStats.EndpointStats stats = OSHttpTrafficStats.getStatsByEndpoint().get(OSHttpTrafficStats.endpointForUrl(url));
+      return stats == null ? 0 : stats.bytesSentOnWire.get();
+   }
+
+   public static void OSHttpResponseCache_setMaxBytes(long maxBytes) {
+      com.onesignal.OSHttpResponseCache.getInstance().setMaxBytes(maxBytes);
+   }
+
+   public static long OSHttpResponseCache_getSizeBytes() {
+      return com.onesignal.OSHttpResponseCache.getInstance().getSizeBytes();
+   }
+
+   public static String OSHttpResponseCache_getETag(String key) {
+      return com.onesignal.OSHttpResponseCache.getInstance().getETag(key);
+   }
+
+   public static String OSHttpResponseCache_getBody(String key) {
+      return com.onesignal.OSHttpResponseCache.getInstance().getBody(key);
+   }
+
+   public static void OSHttpResponseCache_put(String key, String eTag, String body) {
+      com.onesignal.OSHttpResponseCache.getInstance().put(key, eTag, body);
+   }
+
+   public static class InAppMessageDisplayTiming {
+      public final String messageId;
+      public final long timeToDisplayMillis;
+      public final boolean contentFromCache;
+
+      InAppMessageDisplayTiming(String messageId, long timeToDisplayMillis, boolean contentFromCache) {
+         this.messageId = messageId;
+         this.timeToDisplayMillis = timeToDisplayMillis;
+         this.contentFromCache = contentFromCache;
+      }
+   }
+
+   public static List<InAppMessageDisplayTiming> OSInAppMessageController_recordDisplayTimings() {
+      final List<InAppMessageDisplayTiming> timings = new ArrayList<>();
+      OneSignal.getInAppMessageController().setDisplayTimingListener(new OSInAppMessageController.DisplayTimingListener() {
+         @Override
+         public void onMessageDisplayed(@NonNull String messageId, long timeToDisplayMillis, boolean contentFromCache) {
+            timings.add(new InAppMessageDisplayTiming(messageId, timeToDisplayMillis, contentFromCache));
+         }
+      });
+      return timings;
+   }
+
+   public static boolean OSInAppMessageContentCache_contains(String messageId, String variantId, String language) {
+      return com.onesignal.OSInAppMessageContentCache.getInstance().contains(OSInAppMessageContentCache.keyFor(messageId, variantId, language));
+   }
+
+   public static int OSNotificationRestoreWorkManager_getLastRestoredCount() {
+      return com.onesignal.OSNotificationRestoreWorkManager.lastRestoreMetrics.restoredCount;
+   }
+
+   public static int OSNotificationRestoreWorkManager_getLastRestoredSummaryCount() {
+      return com.onesignal.OSNotificationRestoreWorkManager.lastRestoreMetrics.summaryCount;
+   }
+
+   public static void OSNotificationMediaLoader_putOnDisk(Context context, String url, byte[] data) throws IOException {
+      OSNotificationMediaLoader.getInstance(context).putOnDisk(url, data);
+   }
+
+   public static boolean OSNotificationMediaLoader_isOnDisk(Context context, String url) {
+      return OSNotificationMediaLoader.getInstance(context).isOnDisk(url);
+   }
+
+   public static Bitmap OSNotificationMediaLoader_getBitmap(Context context, String url, int targetWidth, int targetHeight) {
+      return OSNotificationMediaLoader.getInstance(context).getBitmap(url, targetWidth, targetHeight, OSNotificationMediaLoader.LOAD_TIMEOUT_MS);
+   }
+
+   public static boolean OSNotificationMediaLoader_isDownloadFailing(Context context, String url) {
+      return OSNotificationMediaLoader.getInstance(context).isDownloadFailing(url);
+   }
+
+   public static long OSNotificationMediaLoader_FAILED_DOWNLOAD_RETRY_MS() {
+      return OSNotificationMediaLoader.FAILED_DOWNLOAD_RETRY_MS;
+   }
+
+   public static int OSNotificationMediaLoader_calculateInSampleSize(int width, int height, int targetWidth, int targetHeight) {
+      return OSNotificationMediaLoader.calculateInSampleSize(width, height, targetWidth, targetHeight);
+   }
+
+   public interface BitmapLoader extends OSNotificationResourceCache.BitmapLoader {
+      @Nullable Bitmap load() throws IOException;
+   }
+
+   public static Bitmap OSNotificationResourceCache_getBitmap(String key, BitmapLoader loader) throws IOException {
+      return OSNotificationResourceCache.getBitmap(key, loader);
+   }
+
+   public static int OSNotificationResourceCache_getLookupCount() {
+      return OSNotificationResourceCache.getLookupCount();
+   }
+
+   public static int OSNotificationSummaryIndex_getLoadCount() {
+      return OSNotificationSummaryIndex.getLoadCount();
+   }
+
+   public static int OSNotificationDedupeIndex_getDbLookupCount() {
+      return OSNotificationDedupeIndex.getDbLookupCount();
+   }
+
+   public static int OSWebViewPool_getWarmRenderCount() {
+      return OSWebViewPool.getWarmRenderCount();
+   }
+
+   public static int OSWebViewPool_getColdRenderCount() {
+      return OSWebViewPool.getColdRenderCount();
+   }
+
+   public static boolean OSWebViewPool_hasIdleWebView() {
+      return OSWebViewPool.hasIdleWebView();
+   }
+
+   public static void OSWebViewPool_onTrimMemory(int level) {
+      OSWebViewPool.onTrimMemory(level);
+   }
+
+   public static long FocusTimeController_getOnFocusRequestsSaved() {
+      return OneSignal.getFocusTimeController().getOnFocusRequestsSaved();
+   }
+
+   public static int FocusTimeController_DEFAULT_ON_FOCUS_FLUSH_INTERVAL_SEC() {
+      return FocusTimeController.DEFAULT_ON_FOCUS_FLUSH_INTERVAL_SEC;
+   }
+
+   public static String OneSignalPrefs_getString(String key) {
+      return OneSignalPrefs.getString(OneSignalPrefs.PREFS_ONESIGNAL, key, null);
+   }
+
+   public static void OneSignalPrefs_setUseLogStore(boolean enabled) {
+      OneSignalPrefs.setUseLogStore(enabled);
+   }
+
+   public static long OSPrefsLogStore_getLogBytes(String prefsName) {
+      return OSPrefsLogStore.getStore(prefsName).getLogBytes();
+   }
+
+   public static int OSPrefsLogStore_getCompactionCount(String prefsName) {
+      return OSPrefsLogStore.getStore(prefsName).getCompactionCount();
+   }
+
+   public static long OSPrefsLogStore_COMPACT_MIN_BYTES() {
+      return OSPrefsLogStore.COMPACT_MIN_BYTES;
    }
 
    public static boolean OneSignal_requiresUserPrivacyConsent() {
@@ -511,6 +769,10 @@ public class OneSignalPackagePrivateHelper {
       public OSTestTrigger(JSONObject json) throws JSONException {
          super(json);
       }
+
+      public String getTriggerId() {
+         return triggerId;
+      }
    }
 
    public static class OSTestInAppMessageAction extends com.onesignal.OSInAppMessageAction {
@@ -0,0 +1,128 @@
+package com.onesignal;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.HashMap;
+
+@Config(packageName = "com.onesignal.example", sdk = 26)
+@RunWith(RobolectricTestRunner.class)
+public class OneSignalPrefsBenchmark {
+
+    private static final int[] KEY_COUNTS = { 10, 100, 1000 };
+    // Size of a typical cached value, ex: user state sync values
+    private static final int VALUE_LENGTH = 200;
+
+    private static final OSBenchmark benchmark = new OSBenchmark(OneSignalPrefsBenchmark.class);
+
+    private Context context;
+
+    @AfterClass
+    public static void afterEverything() throws Exception {
+        benchmark.writeReport();
+    }
+
+    @Before
+    public void beforeEachTest() {
+        context = ApplicationProvider.getApplicationContext();
+        OneSignal.appContext = context;
+        OneSignalPrefs.initializePool();
+    }
+
+    @Test
+    public void saveAndReadBuffered() throws Exception {
+        final String value = buildValue(0);
+
+        benchmark.measure("OneSignalPrefs.saveString + getString buffered", new OSBenchmark.Operation() {
+            @Override
+            public void run() {
+                OneSignalPrefs.saveString(OneSignalPrefs.PREFS_ONESIGNAL, "key", value);
+                OSBenchmark.blackhole = OneSignalPrefs.getString(OneSignalPrefs.PREFS_ONESIGNAL, "key", null);
+            }
+        });
+    }
+
+    @Test
+    public void readFromSharedPreferences() throws Exception {
+        SharedPreferences.Editor editor = context.getSharedPreferences(OneSignalPrefs.PREFS_ONESIGNAL, Context.MODE_PRIVATE).edit();
+        for (int i = 0; i < 100; i++)
+            editor.putString("key" + i, buildValue(i));
+        editor.commit();
+        OneSignalPrefs.setUseLogStore(false);
+
+        benchmark.measure("OneSignalPrefs.getString SharedPreferences", new OSBenchmark.Operation() {
+            @Override
+            public void run() {
+                OSBenchmark.blackhole = OneSignalPrefs.getString(OneSignalPrefs.PREFS_ONESIGNAL, "key50", null);
+            }
+        });
+    }
+
+    @Test
+    public void readFromLogStore() throws Exception {
+        SharedPreferences.Editor editor = context.getSharedPreferences(OneSignalPrefs.PREFS_ONESIGNAL, Context.MODE_PRIVATE).edit();
+        for (int i = 0; i < 100; i++)
+            editor.putString("key" + i, buildValue(i));
+        editor.commit();
+        OneSignalPrefs.setUseLogStore(true);
+
+        benchmark.measure("OneSignalPrefs.getString OSPrefsLogStore", new OSBenchmark.Operation() {
+            @Override
+            public void run() {
+                OSBenchmark.blackhole = OneSignalPrefs.getString(OneSignalPrefs.PREFS_ONESIGNAL, "key50", null);
+            }
+        });
+    }
+
+    // Cost of writing one changed key to disk as the number of saved keys grows
+    @Test
+    public void flushOneChangedKey() throws Exception {
+        for (int keyCount : KEY_COUNTS) {
+            final SharedPreferences sharedPreferences = context.getSharedPreferences("benchmark_" + keyCount, Context.MODE_PRIVATE);
+            final OSPrefsLogStore logStore = new OSPrefsLogStore(new File(context.getFilesDir(), "benchmark_" + keyCount + ".log"), sharedPreferences);
+
+            HashMap<String, Object> allValues = new HashMap<>();
+            SharedPreferences.Editor editor = sharedPreferences.edit();
+            for (int i = 0; i < keyCount; i++) {
+                allValues.put("key" + i, buildValue(i));
+                editor.putString("key" + i, buildValue(i));
+            }
+            editor.commit();
+            logStore.write(logStore.update(allValues));
+
+            final int[] count = { 0 };
+            benchmark.measure("SharedPreferences commit keys=" + keyCount, new OSBenchmark.Operation() {
+                @Override
+                public void run() {
+                    sharedPreferences.edit().putString("key0", buildValue(count[0]++)).commit();
+                }
+            });
+            benchmark.measure("OSPrefsLogStore write keys=" + keyCount, new OSBenchmark.Operation() {
+                @Override
+                public void run() {
+                    HashMap<String, Object> changes = new HashMap<>();
+                    changes.put("key0", buildValue(count[0]++));
+                    logStore.write(logStore.update(changes));
+                }
+            });
+        }
+    }
+
+    private static String buildValue(int seed) {
+        StringBuilder value = new StringBuilder(VALUE_LENGTH);
+        value.append(seed).append('_');
+        while (value.length() < VALUE_LENGTH)
+            value.append('v');
+        return value.toString();
+    }
+}
@@ -0,0 +1,92 @@
+package com.onesignal;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.onesignal.influence.domain.OSInfluence;
+import com.onesignal.influence.domain.OSInfluenceChannel;
+import com.onesignal.influence.domain.OSInfluenceType;
+import com.onesignal.outcomes.data.OSOutcomeEventsCache;
+import com.onesignal.outcomes.domain.OSOutcomeEventParams;
+import com.onesignal.outcomes.domain.OSOutcomeSource;
+import com.onesignal.outcomes.domain.OSOutcomeSourceBody;
+
+import org.json.JSONArray;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Config(packageName = "com.onesignal.example", sdk = 26)
+@RunWith(RobolectricTestRunner.class)
+public class OutcomeEventsCacheBenchmark {
+
+    private static final int CACHED_EVENT_COUNT = 1000;
+    private static final int UNIQUE_OUTCOME_NOTIFICATION_COUNT = 100;
+
+    private static final OSBenchmark benchmark = new OSBenchmark(OutcomeEventsCacheBenchmark.class);
+
+    private OSOutcomeEventsCache outcomeEventsCache;
+
+    @AfterClass
+    public static void afterEverything() throws Exception {
+        benchmark.writeReport();
+    }
+
+    @Before
+    public void beforeEachTest() {
+        MockOneSignalDBHelper dbHelper = new MockOneSignalDBHelper(ApplicationProvider.getApplicationContext());
+        outcomeEventsCache = new OSOutcomeEventsCache(new MockOSLog(), dbHelper, new MockOSSharedPreferences());
+    }
+
+    @Test
+    public void getAllEventsToSend() throws Exception {
+        for (int i = 0; i < CACHED_EVENT_COUNT; i++)
+            outcomeEventsCache.saveOutcomeEvent(buildOutcomeEvent("outcome" + (i % 10), i + 1));
+
+        benchmark.measure("OSOutcomeEventsCache.getAllEventsToSend events=" + CACHED_EVENT_COUNT, new OSBenchmark.Operation() {
+            @Override
+            public void run() {
+                OSBenchmark.blackhole = outcomeEventsCache.getAllEventsToSend();
+            }
+        });
+    }
+
+    @Test
+    public void getNotCachedUniqueInfluencesForOutcome() throws Exception {
+        JSONArray cachedIds = new JSONArray();
+        for (int i = 0; i < UNIQUE_OUTCOME_NOTIFICATION_COUNT; i++)
+            cachedIds.put("notification" + i);
+        outcomeEventsCache.saveUniqueOutcomeEventParams(new OSOutcomeEventParams(
+                "unique_outcome",
+                new OSOutcomeSource(null, new OSOutcomeSourceBody(cachedIds, new JSONArray())),
+                0,
+                1));
+
+        // Half of the influences are already cached
+        final List<OSInfluence> influences = new ArrayList<>();
+        JSONArray influenceIds = new JSONArray();
+        for (int i = UNIQUE_OUTCOME_NOTIFICATION_COUNT / 2; i < UNIQUE_OUTCOME_NOTIFICATION_COUNT * 3 / 2; i++)
+            influenceIds.put("notification" + i);
+        influences.add(new OSInfluence(OSInfluenceChannel.NOTIFICATION, OSInfluenceType.INDIRECT, influenceIds));
+        influences.add(new OSInfluence(OSInfluenceChannel.IAM, OSInfluenceType.DIRECT, new JSONArray().put(UUID.randomUUID().toString())));
+
+        benchmark.measure("OSOutcomeEventsCache.getNotCachedUniqueInfluencesForOutcome ids=" + UNIQUE_OUTCOME_NOTIFICATION_COUNT, new OSBenchmark.Operation() {
+            @Override
+            public void run() {
+                OSBenchmark.blackhole = outcomeEventsCache.getNotCachedUniqueInfluencesForOutcome("unique_outcome", influences);
+            }
+        });
+    }
+
+    private static OSOutcomeEventParams buildOutcomeEvent(String name, long timestamp) {
+        JSONArray notificationIds = new JSONArray().put(UUID.randomUUID().toString()).put(UUID.randomUUID().toString());
+        OSOutcomeSourceBody indirectBody = new OSOutcomeSourceBody(notificationIds, new JSONArray());
+        return new OSOutcomeEventParams(name, new OSOutcomeSource(null, indirectBody), 1.5f, timestamp);
+    }
+}
@@ -396,6 +396,10 @@ public class ShadowOneSignalRestClient {
        }
    }
 
+   public static void getWithETag(final String url, String eTag, final OneSignalRestClient.ETagResponseHandler responseHandler) throws JSONException {
+      get(url, responseHandler, OneSignalRestClient.CACHE_KEY_NONE);
+   }
+
    public static void getSync(final String url, final OneSignalRestClient.ResponseHandler responseHandler, String cacheKey) throws JSONException {
       trackRequest(REST_METHOD.GET, null, url);
 
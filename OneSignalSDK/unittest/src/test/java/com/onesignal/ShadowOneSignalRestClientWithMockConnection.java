@@ -39,13 +39,18 @@ public class ShadowOneSignalRestClientWithMockConnection {
 
    public static MockHttpURLConnection lastConnection;
    public static MockHttpURLConnection.MockResponse mockResponse;
+   // Served to the next connection only, mockResponse is used after it
+   public static MockHttpURLConnection.MockResponse nextMockResponse;
+   public static int connectionCount;
 
    public static void resetStatics() {
       mockResponse = new MockHttpURLConnection.MockResponse() {{
          responseBody = "{}";
          status = 200;
       }};
+      nextMockResponse = null;
       lastConnection = null;
+      connectionCount = 0;
    }
    
    public static int getThreadTimeout(int timeout) {
@@ -54,9 +59,15 @@ public class ShadowOneSignalRestClientWithMockConnection {
 
    @Implementation
    public static HttpURLConnection newHttpURLConnection(String url) throws IOException {
+      connectionCount++;
+      MockHttpURLConnection.MockResponse response = mockResponse;
+      if (nextMockResponse != null) {
+         response = nextMockResponse;
+         nextMockResponse = null;
+      }
       lastConnection = new MockHttpURLConnection(
          new URL("https://onesignal.com/api/v1/" + url),
-         mockResponse
+         response
       );
       return lastConnection;
    }
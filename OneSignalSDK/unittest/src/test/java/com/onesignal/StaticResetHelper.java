@@ -51,6 +51,13 @@ public class StaticResetHelper {
       }));
 
       classes.add(new ClassState(OneSignalDbHelper.class, null));
+      classes.add(new ClassState(OneSignalRestClient.class, null));
+      classes.add(new ClassState(OSOutboundRequestQueue.class, null));
+      classes.add(new ClassState(OSHttpResponseCache.class, null));
+      classes.add(new ClassState(OSInAppMessageContentCache.class, null));
+      classes.add(new ClassState(OSWebViewPool.class, null));
+      classes.add(new ClassState(OSNotificationMediaLoader.class, null));
+      classes.add(new ClassState(OSPrefsLogStore.class, null));
       classes.add(new ClassState(LocationController.class, null));
       classes.add(new ClassState(OSInAppMessageController.class, null));
       classes.add(new ClassState(ActivityLifecycleListener.class, null));
@@ -63,13 +70,7 @@ public class StaticResetHelper {
       }));
       classes.add(new ClassState(OSSessionManager.class, null));
       classes.add(new ClassState(MockSessionManager.class, null));
-      classes.add(new ClassState(OSNotificationWorkManager.class,  field -> {
-         if (field.getName().equals("notificationIds")) {
-            field.set(null, OSUtils.newConcurrentSet());
-            return true;
-         }
-         return false;
-      }));
+      classes.add(new ClassState(OSNotificationWorkManager.class, null));
    }
 
    private interface OtherFieldHandler {
@@ -130,6 +131,10 @@ public class StaticResetHelper {
          aClass.restSetStaticFields();
 
       clearWebViewManger();
+      OSNotificationResourceCache.clear();
+      OSNotificationSummaryIndex.clear();
+      OSNotificationDedupeIndex.clear();
+      OSHttpTrafficStats.reset();
    }
 
    private static void clearWebViewManger() throws NoSuchFieldException, IllegalAccessException {
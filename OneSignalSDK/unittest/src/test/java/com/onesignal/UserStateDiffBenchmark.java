@@ -0,0 +1,104 @@
+package com.onesignal;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@Config(packageName = "com.onesignal.example", sdk = 26)
+@RunWith(RobolectricTestRunner.class)
+public class UserStateDiffBenchmark {
+
+    private static final int[] TAG_COUNTS = { 10, 100, 1000 };
+
+    private static final OSBenchmark benchmark = new OSBenchmark(UserStateDiffBenchmark.class);
+
+    @AfterClass
+    public static void afterEverything() throws Exception {
+        benchmark.writeReport();
+    }
+
+    @Test
+    public void generateJsonDiff() throws Exception {
+        for (int tagCount : TAG_COUNTS) {
+            final JSONObject cur = buildSyncValues(tagCount, "value");
+            final JSONObject changedTo = buildSyncValues(tagCount, "value");
+            changedTo.getJSONObject(UserState.TAGS).put("key0", "changed");
+
+            benchmark.measure("JSONUtils.generateJsonDiff tags=" + tagCount, new OSBenchmark.Operation() {
+                @Override
+                public void run() {
+                    OSBenchmark.blackhole = JSONUtils.generateJsonDiff(cur, changedTo, null, null);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void copySyncValues() throws Exception {
+        for (int tagCount : TAG_COUNTS) {
+            final JSONObject syncValues = buildSyncValues(tagCount, "value");
+
+            benchmark.measure("new JSONObject(toString()) tags=" + tagCount, new OSBenchmark.Operation() {
+                @Override
+                public void run() throws Exception {
+                    OSBenchmark.blackhole = new JSONObject(syncValues.toString());
+                }
+            });
+            benchmark.measure("JSONUtils.deepCopy tags=" + tagCount, new OSBenchmark.Operation() {
+                @Override
+                public void run() {
+                    OSBenchmark.blackhole = JSONUtils.deepCopy(syncValues);
+                }
+            });
+        }
+    }
+
+    // One tag changed per sync, what sendTag does between syncs
+    @Test
+    public void userStateDiffAfterSendTag() throws Exception {
+        for (int tagCount : TAG_COUNTS) {
+            final UserState currentState = new UserStatePush("BENCHMARK_CURRENT", false);
+            final UserState toSyncState = new UserStatePush("BENCHMARK_TOSYNC", false);
+            currentState.generateJsonDiffFromIntoSyncValued(buildSyncValues(tagCount, "value"), null);
+            toSyncState.generateJsonDiffFromIntoSyncValued(buildSyncValues(tagCount, "value"), null);
+            // First diff compares everything, next ones only the changed tags
+            currentState.generateJsonDiff(toSyncState, false);
+
+            final int[] count = { 0 };
+            benchmark.measure("UserState.generateJsonDiff after sendTag tags=" + tagCount, new OSBenchmark.Operation() {
+                @Override
+                public void run() throws Exception {
+                    JSONObject tags = new JSONObject().put("key0", "value" + count[0]++);
+                    toSyncState.generateJsonDiffFromIntoSyncValued(new JSONObject().put(UserState.TAGS, tags), null);
+                    JSONObject sendJson = currentState.generateJsonDiff(toSyncState, false);
+                    // Simulates the successful sync
+                    currentState.persistStateAfterSync(null, sendJson);
+                    OSBenchmark.blackhole = sendJson;
+                }
+            });
+        }
+    }
+
+    static JSONObject buildSyncValues(int tagCount, String valuePrefix) throws JSONException {
+        JSONObject tags = new JSONObject();
+        for (int i = 0; i < tagCount; i++)
+            tags.put("key" + i, valuePrefix + i);
+
+        return new JSONObject()
+                .put("app_id", "b4f7f966-d8cc-11e4-bed1-df8f05be55ba")
+                .put("device_type", 1)
+                .put("identifier", "fcm-token-0123456789abcdef")
+                .put("language", "en")
+                .put("timezone", -28800)
+                .put("timezone_id", "America/Los_Angeles")
+                .put("device_os", "11")
+                .put("device_model", "Pixel 5")
+                .put("sdk", "040600")
+                .put("notification_types", 1)
+                .put(UserState.TAGS, tags);
+    }
+}
@@ -14,4 +14,5 @@ public class MockOSOutcomeEventsTable {
     public static final String COLUMN_NAME_NAME = OutcomeEventsTable.COLUMN_NAME_NAME;
     public static final String COLUMN_NAME_WEIGHT = OutcomeEventsTable.COLUMN_NAME_WEIGHT;
     public static final String COLUMN_NAME_TIMESTAMP = OutcomeEventsTable.COLUMN_NAME_TIMESTAMP;
+    public static final String COLUMN_NAME_UNIQUE = OutcomeEventsTable.COLUMN_NAME_UNIQUE;
 }
@@ -4,6 +4,7 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
+import androidx.annotation.NonNull;
 import androidx.test.core.app.ApplicationProvider;
 
 import com.onesignal.InAppMessagingHelpers;
@@ -12,7 +13,9 @@ import com.onesignal.OneSignalPackagePrivateHelper;
 import com.onesignal.OneSignalPackagePrivateHelper.InAppMessageTable;
 import com.onesignal.OneSignalPackagePrivateHelper.NotificationTable;
 import com.onesignal.OneSignalPackagePrivateHelper.OSTestInAppMessage;
+import com.onesignal.OneSignalPackagePrivateHelper.OutboundRequestTable;
 import com.onesignal.OSOutcomeEvent;
+import com.onesignal.OneSignalDbBatch;
 import com.onesignal.ShadowOneSignalDbHelper;
 import com.onesignal.StaticResetHelper;
 import com.onesignal.influence.domain.OSInfluenceChannel;
@@ -645,4 +648,162 @@ public class DatabaseRunner {
         assertEquals(outcomeEventDB.getIamInfluenceType(), outcomeSaved.getIamInfluenceType());
     }
 
+    @Test
+    public void shouldUpgradeDbFromV8ToV9OutboundRequestTable() {
+        // 1. Init DB as version 8
+        ShadowOneSignalDbHelper.DATABASE_VERSION = 8;
+        SQLiteDatabase writableDatabase = dbHelper.getSQLiteDatabaseWithRetries();
+
+        // Remove the table as it didn't exist on DB v8
+        writableDatabase.execSQL("DROP TABLE IF EXISTS " + OutboundRequestTable.TABLE_NAME);
+        assertFalse(tableExists(writableDatabase, OutboundRequestTable.TABLE_NAME));
+
+        writableDatabase.setVersion(8);
+        writableDatabase.close();
+
+        // 2. Clear the cache of the DB so it reloads the file and next getSQLiteDatabaseWithRetries will auto trigger the update
+        ShadowOneSignalDbHelper.restSetStaticFields();
+
+        // 3. Opening the DB will auto trigger the update to DB version 9.
+        writableDatabase = dbHelper.getSQLiteDatabaseWithRetries();
+        assertTrue(tableExists(writableDatabase, OutboundRequestTable.TABLE_NAME));
+
+        ContentValues values = new ContentValues();
+        values.put(OutboundRequestTable.COLUMN_NAME_IDEMPOTENCY_KEY, "key");
+        values.put(OutboundRequestTable.COLUMN_NAME_METHOD, "POST");
+        values.put(OutboundRequestTable.COLUMN_NAME_URL, "url");
+        values.put(OutboundRequestTable.COLUMN_NAME_NEXT_ATTEMPT_TIME, 1);
+        values.put(OutboundRequestTable.COLUMN_NAME_CREATED_TIME, 1);
+        dbHelper.insert(OutboundRequestTable.TABLE_NAME, null, values);
+        // Idempotency key is unique
+        dbHelper.insert(OutboundRequestTable.TABLE_NAME, null, values);
+
+        Cursor cursor = dbHelper.query(OutboundRequestTable.TABLE_NAME, null, null, null, null, null, null);
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+    }
+
+    private static final String SQL_CREATE_OUTCOME_REVISION3_ENTRIES =
+            "CREATE TABLE outcome (" +
+                    "_id INTEGER PRIMARY KEY, " +
+                    "notification_influence_type TEXT," +
+                    "iam_influence_type TEXT," +
+                    "notification_ids TEXT, " +
+                    "iam_ids TEXT, " +
+                    "name TEXT, " +
+                    "timestamp TIMESTAMP, " +
+                    "weight FLOAT " +
+                    ")";
+
+    @Test
+    public void shouldUpgradeDbFromV9ToV10OutcomeUniqueColumn() {
+        // 1. Init DB as version 9 with the outcome table of DB v8
+        ShadowOneSignalDbHelper.DATABASE_VERSION = 9;
+        SQLiteDatabase writableDatabase = dbHelper.getSQLiteDatabaseWithRetries();
+
+        writableDatabase.execSQL("DROP TABLE IF EXISTS " + MockOSOutcomeEventsTable.TABLE_NAME);
+        writableDatabase.execSQL(SQL_CREATE_OUTCOME_REVISION3_ENTRIES);
+
+        ContentValues values = new ContentValues();
+        values.put(MockOSOutcomeEventsTable.COLUMN_NAME_NAME, "outcome");
+        values.put(MockOSOutcomeEventsTable.COLUMN_NAME_TIMESTAMP, 1);
+        writableDatabase.insert(MockOSOutcomeEventsTable.TABLE_NAME, null, values);
+
+        writableDatabase.setVersion(9);
+        writableDatabase.close();
+
+        // 2. Clear the cache of the DB so it reloads the file and next getSQLiteDatabaseWithRetries will auto trigger the update
+        ShadowOneSignalDbHelper.restSetStaticFields();
+
+        // 3. Opening the DB will auto trigger the update to DB version 10, saved rows are not unique
+        writableDatabase = dbHelper.getSQLiteDatabaseWithRetries();
+        Cursor cursor = writableDatabase.query(MockOSOutcomeEventsTable.TABLE_NAME, new String[] { MockOSOutcomeEventsTable.COLUMN_NAME_UNIQUE }, null, null, null, null, null);
+        assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(0, cursor.getInt(0));
+        cursor.close();
+    }
+
+    @Test
+    public void shouldCommitAllWritesOfBatch() {
+        boolean committed = dbHelper.runInTransaction(new OneSignalDbBatch.Writes() {
+            @Override
+            public void run(@NonNull OneSignalDbBatch batch) {
+                for (int i = 1; i <= 3; i++)
+                    batch.insert(NotificationTable.TABLE_NAME, newNotificationValues(i));
+                batch.delete(NotificationTable.TABLE_NAME, NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " = ?", new String[]{ "1" });
+            }
+        });
+
+        assertTrue(committed);
+        assertEquals(2, getAllNotificationRecords(dbHelper).size());
+    }
+
+    @Test
+    public void shouldRollBackBatchWhenAWriteFails() {
+        boolean committed = dbHelper.runInTransaction(new OneSignalDbBatch.Writes() {
+            @Override
+            public void run(@NonNull OneSignalDbBatch batch) {
+                batch.insert(NotificationTable.TABLE_NAME, newNotificationValues(1));
+                batch.insert("missing_table", newNotificationValues(2));
+            }
+        });
+
+        assertFalse(committed);
+        assertEquals(0, getAllNotificationRecords(dbHelper).size());
+    }
+
+    @Test
+    public void shouldUseWriteAheadLogging() {
+        Cursor cursor = dbHelper.getSQLiteDatabaseWithRetries().rawQuery("PRAGMA journal_mode", null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals("wal", cursor.getString(0).toLowerCase());
+        cursor.close();
+    }
+
+    @Test
+    public void shouldCompleteQueryWhileWriteTransactionIsInProgress() throws Exception {
+        final int[] countDuringWrite = { -1 };
+        boolean committed = dbHelper.runInTransaction(new OneSignalDbBatch.Writes() {
+            @Override
+            public void run(@NonNull OneSignalDbBatch batch) {
+                batch.insert(NotificationTable.TABLE_NAME, newNotificationValues(1));
+
+                // Writes hold WRITE_LOCK until the transaction ends, queries don't wait on it
+                Thread queryThread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        countDuringWrite[0] = getAllNotificationRecords(dbHelper).size();
+                    }
+                });
+                queryThread.start();
+                try {
+                    queryThread.join(5_000);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                assertFalse(queryThread.isAlive());
+            }
+        });
+
+        assertTrue(committed);
+        // Query reads the last commit, not the write in progress
+        assertEquals(0, countDuringWrite[0]);
+        assertEquals(1, getAllNotificationRecords(dbHelper).size());
+    }
+
+    private static ContentValues newNotificationValues(int androidNotificationId) {
+        ContentValues values = new ContentValues();
+        values.put(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID, androidNotificationId);
+        values.put(NotificationTable.COLUMN_NAME_NOTIFICATION_ID, "notification" + androidNotificationId);
+        return values;
+    }
+
+    private static boolean tableExists(SQLiteDatabase database, String tableName) {
+        Cursor cursor = database.rawQuery("SELECT name FROM sqlite_master WHERE type ='table' AND name='" + tableName + "'", null);
+        boolean exist = cursor.getCount() > 0;
+        cursor.close();
+        return exist;
+    }
+
 }
@@ -36,6 +36,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -59,6 +60,7 @@ import com.onesignal.OneSignal;
 import com.onesignal.OneSignalNotificationManagerPackageHelper;
 import com.onesignal.OneSignalPackagePrivateHelper;
 import com.onesignal.OneSignalPackagePrivateHelper.NotificationTable;
+import com.onesignal.OneSignalPackagePrivateHelper.OSTestNotification;
 import com.onesignal.OneSignalPackagePrivateHelper.OSNotificationRestoreWorkManager;
 import com.onesignal.OneSignalPackagePrivateHelper.TestOneSignalPrefs;
 import com.onesignal.OneSignalShadowPackageManager;
@@ -101,6 +103,8 @@ import org.robolectric.annotation.Config;
 import org.robolectric.annotation.LooperMode;
 import org.robolectric.shadows.ShadowLog;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.math.BigInteger;
 import java.util.HashMap;
@@ -138,6 +142,7 @@ import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertThat;
@@ -939,6 +944,265 @@ public class GenerateNotificationRunner {
       assertEquals(0, ShadowBadgeCountUpdater.lastCount);
    }
 
+   @Test
+   @Config(shadows = { ShadowGenerateNotification.class })
+   public void shouldRestoreGroupSummaryOncePerGroup() throws Exception {
+      for (int i = 0; i < 3; i++) {
+         Bundle bundle = getBaseNotifBundle("UUID" + i);
+         bundle.putString("grp", "test1");
+         NotificationBundleProcessor_ProcessFromFCMIntentService(blankActivity, bundle);
+      }
+      NotificationBundleProcessor_ProcessFromFCMIntentService(blankActivity, getBaseNotifBundle("UUID3"));
+      threadAndTaskWait();
+      ShadowRoboNotificationManager.notifications.clear();
+
+      restoreNotifications();
+      threadAndTaskWait();
+
+      assertEquals(4, OneSignalPackagePrivateHelper.OSNotificationRestoreWorkManager_getLastRestoredCount());
+      assertEquals(1, OneSignalPackagePrivateHelper.OSNotificationRestoreWorkManager_getLastRestoredSummaryCount());
+      // 4 notifications and the summary of test1
+      assertEquals(5, ShadowRoboNotificationManager.notifications.size());
+      assertEquals(3, ShadowRoboNotificationManager.getNotificationsInGroup("test1").size());
+   }
+
+   @Test
+   public void rateLimiterDoesNotDelayFirstPost() {
+      OneSignalPackagePrivateHelper.OSNotificationRateLimiter rateLimiter = new OneSignalPackagePrivateHelper.OSNotificationRateLimiter();
+      assertEquals(0, rateLimiter.delayBeforeNextPost(1_000));
+   }
+
+   @Test
+   public void rateLimiterDelaysPostsOnceBurstIsUsedUp() {
+      OneSignalPackagePrivateHelper.OSNotificationRateLimiter rateLimiter = new OneSignalPackagePrivateHelper.OSNotificationRateLimiter();
+      long now = 1_000;
+      int burstCount = 0;
+      while (rateLimiter.delayBeforeNextPost(now) == 0) {
+         rateLimiter.onPosted(now);
+         burstCount++;
+      }
+
+      // A few posts go out right away before the estimate reaches 4 posts per second
+      assertEquals(7, burstCount);
+      assertEquals(200, rateLimiter.delayBeforeNextPost(now));
+   }
+
+   @Test
+   public void rateLimiterDelayGoesDownAsTimePasses() {
+      OneSignalPackagePrivateHelper.OSNotificationRateLimiter rateLimiter = new OneSignalPackagePrivateHelper.OSNotificationRateLimiter();
+      long now = 1_000;
+      while (rateLimiter.delayBeforeNextPost(now) == 0)
+         rateLimiter.onPosted(now);
+
+      long delay = rateLimiter.delayBeforeNextPost(now);
+      assertEquals(delay - 50, rateLimiter.delayBeforeNextPost(now + 50));
+      assertEquals(1, rateLimiter.delayBeforeNextPost(now + delay - 1));
+      assertEquals(0, rateLimiter.delayBeforeNextPost(now + delay));
+
+      // Posting as soon as allowed settles at 4 posts per second
+      for (int i = 0; i < 40; i++) {
+         now += rateLimiter.delayBeforeNextPost(now);
+         rateLimiter.onPosted(now);
+      }
+      assertEquals(250, rateLimiter.delayBeforeNextPost(now));
+   }
+
+   @Test
+   @Config(shadows = { ShadowGenerateNotification.class })
+   public void shouldUseCachedRemoteLargeIcon() throws Exception {
+      String largeIconUrl = "https://img.onesignal.com/cached_large_icon.png";
+      ByteArrayOutputStream image = new ByteArrayOutputStream();
+      Bitmap.createBitmap(512, 512, Bitmap.Config.ARGB_8888).compress(Bitmap.CompressFormat.PNG, 100, image);
+      OneSignalPackagePrivateHelper.OSNotificationMediaLoader_putOnDisk(blankActivity, largeIconUrl, image.toByteArray());
+
+      Bundle bundle = getBaseNotifBundle();
+      bundle.putString("licon", largeIconUrl);
+      NotificationBundleProcessor_ProcessFromFCMIntentService(blankActivity, bundle);
+      threadAndTaskWait();
+
+      assertNotNull(ShadowRoboNotificationManager.getLastNotif().largeIcon);
+   }
+
+   @Test
+   public void shouldParsePayloadWithoutModifyingIt() throws Exception {
+      JSONArray actionButtons = new JSONArray()
+              .put(new JSONObject().put("id", "id1").put("text", "button1").put("icon", "ic_menu_share"))
+              .put(new JSONObject().put("id", "id2").put("text", "button2"));
+      JSONObject additionalData = new JSONObject()
+              .put("myKey", "myValue")
+              .put("actionId", "id1")
+              .put("actionButtons", actionButtons);
+      // custom is a JSONObject when the payload comes from a sync or is built in the SDK
+      JSONObject custom = new JSONObject()
+              .put("i", "notification_id")
+              .put("ti", "template_id")
+              .put("tn", "template_name")
+              .put("u", "https://onesignal.com")
+              .put("a", additionalData);
+      JSONObject payload = new JSONObject().put("custom", custom).put("alert", "Test B");
+      String rawPayload = payload.toString();
+
+      OSNotification notification = new OSTestNotification(payload);
+
+      assertEquals("notification_id", notification.getNotificationId());
+      assertEquals("template_id", notification.getTemplateId());
+      assertEquals("template_name", notification.getTemplateName());
+      assertEquals("https://onesignal.com", notification.getLaunchURL());
+      assertEquals("Test B", notification.getBody());
+
+      assertEquals(2, notification.getActionButtons().size());
+      assertEquals("id1", notification.getActionButtons().get(0).getId());
+      assertEquals("button1", notification.getActionButtons().get(0).getText());
+      assertEquals("ic_menu_share", notification.getActionButtons().get(0).getIcon());
+      assertEquals("id2", notification.getActionButtons().get(1).getId());
+      assertNull(notification.getActionButtons().get(1).getIcon());
+
+      JsonAsserts.equals(new JSONObject().put("myKey", "myValue"), notification.getAdditionalData());
+
+      // The caller's payload still has the action buttons
+      assertTrue(additionalData.has("actionButtons"));
+      assertTrue(additionalData.has("actionId"));
+      assertEquals(rawPayload, payload.toString());
+      assertEquals(rawPayload, notification.getRawPayload());
+   }
+
+   @Test
+   public void shouldParsePayloadWithoutAdditionalData() throws Exception {
+      JSONObject payload = new JSONObject().put("custom", new JSONObject().put("i", "notification_id").toString());
+
+      OSNotification notification = new OSTestNotification(payload);
+
+      assertEquals("notification_id", notification.getNotificationId());
+      assertNull(notification.getAdditionalData());
+      assertNull(notification.getActionButtons());
+   }
+
+   @Test
+   public void shouldExpireCachedRemoteImageAfterMaxAge() throws Exception {
+      String largeIconUrl = "https://img.onesignal.com/expiring_large_icon.png";
+      time.setMockedTime(1_000_000L);
+      OneSignalPackagePrivateHelper.OSNotificationMediaLoader_putOnDisk(blankActivity, largeIconUrl, new byte[] { 1, 2, 3 });
+      assertTrue(OneSignalPackagePrivateHelper.OSNotificationMediaLoader_isOnDisk(blankActivity, largeIconUrl));
+
+      time.advanceSystemTimeBy(6 * 24 * 60 * 60);
+      assertTrue(OneSignalPackagePrivateHelper.OSNotificationMediaLoader_isOnDisk(blankActivity, largeIconUrl));
+
+      time.advanceSystemTimeBy(24 * 60 * 60);
+      assertFalse(OneSignalPackagePrivateHelper.OSNotificationMediaLoader_isOnDisk(blankActivity, largeIconUrl));
+   }
+
+   @Test
+   public void shouldNotRetryFailedRemoteImageUntilRetryDelay() throws Exception {
+      // Nothing listens on port 1, the connection is refused
+      String largeIconUrl = "http://127.0.0.1:1/failing_large_icon.png";
+      time.setMockedElapsedTime(1_000_000L);
+      assertNull(OneSignalPackagePrivateHelper.OSNotificationMediaLoader_getBitmap(blankActivity, largeIconUrl, 64, 64));
+      assertTrue(OneSignalPackagePrivateHelper.OSNotificationMediaLoader_isDownloadFailing(blankActivity, largeIconUrl));
+
+      long retryDelay = OneSignalPackagePrivateHelper.OSNotificationMediaLoader_FAILED_DOWNLOAD_RETRY_MS();
+      time.setMockedElapsedTime(1_000_000L + retryDelay - 1);
+      assertTrue(OneSignalPackagePrivateHelper.OSNotificationMediaLoader_isDownloadFailing(blankActivity, largeIconUrl));
+
+      time.setMockedElapsedTime(1_000_000L + retryDelay);
+      assertFalse(OneSignalPackagePrivateHelper.OSNotificationMediaLoader_isDownloadFailing(blankActivity, largeIconUrl));
+   }
+
+   @Test
+   @Config(shadows = { ShadowGenerateNotification.class })
+   public void shouldOnlyLookUpIconResourcesOnce() throws Exception {
+      Bundle bundle = getBundleWithAllOptionsSet();
+      NotificationBundleProcessor_ProcessFromFCMIntentService(blankActivity, bundle);
+      threadAndTaskWait();
+      int lookupCount = OneSignalPackagePrivateHelper.OSNotificationResourceCache_getLookupCount();
+      assertTrue(lookupCount > 0);
+
+      // Same icons, including the ones that don't exist, come from the cache
+      bundle = getBundleWithAllOptionsSet();
+      bundle.putString("custom", "{\"i\": \"UUID2\"}");
+      NotificationBundleProcessor_ProcessFromFCMIntentService(blankActivity, bundle);
+      threadAndTaskWait();
+
+      assertEquals(lookupCount, OneSignalPackagePrivateHelper.OSNotificationResourceCache_getLookupCount());
+   }
+
+   @Test
+   public void shouldOnlyCacheBitmapAsMissingWhenLoaderFindsNothing() throws Exception {
+      final int[] loads = new int[1];
+      try {
+         OneSignalPackagePrivateHelper.OSNotificationResourceCache_getBitmap("failing_icon", () -> {
+            loads[0]++;
+            throw new IOException("Could not read failing_icon");
+         });
+         fail("Loader exception should be thrown");
+      } catch (IOException expected) {}
+
+      // Loader that failed is tried again
+      final Bitmap bitmap = Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
+      assertEquals(bitmap, OneSignalPackagePrivateHelper.OSNotificationResourceCache_getBitmap("failing_icon", () -> {
+         loads[0]++;
+         return bitmap;
+      }));
+      assertEquals(2, loads[0]);
+
+      // Bitmap that doesn't exist is only looked up once
+      for (int i = 0; i < 2; i++) {
+         assertNull(OneSignalPackagePrivateHelper.OSNotificationResourceCache_getBitmap("missing_icon", () -> {
+            loads[0]++;
+            return null;
+         }));
+      }
+      assertEquals(3, loads[0]);
+   }
+
+   @Test
+   @Config(shadows = { ShadowGenerateNotification.class })
+   public void shouldReadGroupFromDbOnceForSummaryUpdates() throws Exception {
+      OneSignal.setAppId("b2f7f966-d8cc-11e4-bed1-df8f05be55ba");
+      OneSignal.initWithContext(blankActivity);
+      threadAndTaskWait();
+
+      for (int i = 1; i <= 3; i++) {
+         Bundle bundle = getBaseNotifBundle("UUID" + i);
+         bundle.putString("grp", "test1");
+         NotificationBundleProcessor_ProcessFromFCMIntentService(blankActivity, bundle);
+         threadAndTaskWait();
+      }
+
+      Iterator<Map.Entry<Integer, PostedNotification>> postedNotifsIterator = ShadowRoboNotificationManager.notifications.entrySet().iterator();
+      assertEquals("3 new messages", postedNotifsIterator.next().getValue().getShadow().getContentText());
+      assertEquals(1, OneSignalPackagePrivateHelper.OSNotificationSummaryIndex_getLoadCount());
+
+      // Dismissing a child updates the summary from memory
+      OneSignal.removeNotification(postedNotifsIterator.next().getValue().id);
+      threadAndTaskWait();
+
+      postedNotifsIterator = ShadowRoboNotificationManager.notifications.entrySet().iterator();
+      assertEquals("2 new messages", postedNotifsIterator.next().getValue().getShadow().getContentText());
+      assertEquals(1, OneSignalPackagePrivateHelper.OSNotificationSummaryIndex_getLoadCount());
+
+      // Removing the whole group drops it, it is read again for the next notification
+      OneSignal.removeGroupedNotifications("test1");
+      threadAndTaskWait();
+
+      Bundle bundle = getBaseNotifBundle("UUID4");
+      bundle.putString("grp", "test1");
+      NotificationBundleProcessor_ProcessFromFCMIntentService(blankActivity, bundle);
+      threadAndTaskWait();
+
+      assertEquals(2, OneSignalPackagePrivateHelper.OSNotificationSummaryIndex_getLoadCount());
+      assertEquals(2, ShadowRoboNotificationManager.notifications.size()); // 1 notif + 1 summary
+   }
+
+   @Test
+   public void shouldDecodeRemoteImagesCloseToTheirDisplaySize() {
+      assertEquals(1, OneSignalPackagePrivateHelper.OSNotificationMediaLoader_calculateInSampleSize(100, 100, 128, 128));
+      assertEquals(1, OneSignalPackagePrivateHelper.OSNotificationMediaLoader_calculateInSampleSize(255, 255, 128, 128));
+      assertEquals(2, OneSignalPackagePrivateHelper.OSNotificationMediaLoader_calculateInSampleSize(256, 256, 128, 128));
+      assertEquals(8, OneSignalPackagePrivateHelper.OSNotificationMediaLoader_calculateInSampleSize(2048, 1024, 256, 128));
+      // Both sides have to stay over the target size
+      assertEquals(2, OneSignalPackagePrivateHelper.OSNotificationMediaLoader_calculateInSampleSize(4096, 512, 128, 128));
+   }
+
    private void restoreNotifications() {
       OSNotificationRestoreWorkManager.restored = false;
       OSNotificationRestoreWorkManager.beginEnqueueingWork(blankActivity, false);
@@ -2157,6 +2421,28 @@ public class GenerateNotificationRunner {
               });
    }
 
+   @Test
+   public void shouldDetectDuplicatesWithoutQueryingEachNotification() throws Exception {
+      OneSignal.setAppId(ONESIGNAL_APP_ID);
+      OneSignal.initWithContext(blankActivity);
+      threadAndTaskWait();
+
+      // First notification reads the saved ids from the db
+      FCMBroadcastReceiver_processBundle(blankActivity, getBaseNotifBundle("UUID1"));
+      threadAndTaskWait();
+      assertNotificationDbRecords(1);
+      assertEquals(1, OneSignalPackagePrivateHelper.OSNotificationDedupeIndex_getDbLookupCount());
+
+      // New ids and redeliveries are answered from memory
+      FCMBroadcastReceiver_processBundle(blankActivity, getBaseNotifBundle("UUID2"));
+      threadAndTaskWait();
+      FCMBroadcastReceiver_processBundle(blankActivity, getBaseNotifBundle("UUID1"));
+      threadAndTaskWait();
+
+      assertNotificationDbRecords(2);
+      assertEquals(1, OneSignalPackagePrivateHelper.OSNotificationDedupeIndex_getDbLookupCount());
+   }
+
    @Test
    @Config (shadows = { ShadowGenerateNotification.class })
    public void testNotificationReceived_duplicatesInShortTime() throws Exception {
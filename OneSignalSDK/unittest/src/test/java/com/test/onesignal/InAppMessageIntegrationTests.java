@@ -2,6 +2,10 @@ package com.test.onesignal;
 
 import android.annotation.SuppressLint;
 import android.app.Activity;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
 
 import androidx.test.core.app.ApplicationProvider;
 
@@ -14,6 +18,7 @@ import com.onesignal.MockSessionManager;
 import com.onesignal.OSInAppMessageAction;
 import com.onesignal.OneSignal;
 import com.onesignal.OneSignalPackagePrivateHelper;
+import com.onesignal.OneSignalPackagePrivateHelper.InAppMessageDisplayTiming;
 import com.onesignal.OneSignalPackagePrivateHelper.OSTestInAppMessage;
 import com.onesignal.OneSignalPackagePrivateHelper.OSTestTrigger;
 import com.onesignal.OneSignalPackagePrivateHelper.TestOneSignalPrefs;
@@ -49,6 +54,7 @@ import org.robolectric.android.controller.ActivityController;
 import org.robolectric.annotation.Config;
 import org.robolectric.annotation.LooperMode;
 import org.robolectric.shadows.ShadowLog;
+import org.robolectric.shadows.ShadowNetworkInfo;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
@@ -59,6 +65,8 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
+import static com.onesignal.OneSignalPackagePrivateHelper.OSInAppMessageContentCache_contains;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSInAppMessageController_recordDisplayTimings;
 import static com.onesignal.OneSignalPackagePrivateHelper.OSTestTrigger.OSTriggerKind;
 import static com.onesignal.OneSignalPackagePrivateHelper.OneSignal_getSessionListener;
 import static com.onesignal.OneSignalPackagePrivateHelper.OneSignal_setSessionManager;
@@ -76,6 +84,7 @@ import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
 
 @Config(packageName = "com.onesignal.example",
         shadows = {
@@ -178,6 +187,32 @@ public class InAppMessageIntegrationTests {
         assertFalse(OneSignalPackagePrivateHelper.isInAppMessageShowing());
     }
 
+    @Test
+    public void testMalformedMessagesDoNotFailRegistration() throws Exception {
+        final OSTestInAppMessage testMessage = InAppMessagingHelpers.buildTestMessageWithSingleTrigger(OSTriggerKind.CUSTOM, "test_key", OSTestTrigger.OSTriggerOperator.EQUAL_TO.toString(), 3);
+        final JSONObject nullValuesMessage = testMessage.toJSONObject();
+        nullValuesMessage.put("has_liquid", JSONObject.NULL);
+        nullValuesMessage.put("triggers", new JSONArray("[[{\"id\": null, \"kind\": {}, \"operator\": []}]]"));
+        final JSONObject wrongTypesMessage = testMessage.toJSONObject();
+        wrongTypesMessage.put("variants", "not_an_object");
+        wrongTypesMessage.put("redisplay", new JSONArray());
+
+        ShadowOneSignalRestClient.setNextSuccessfulRegistrationResponse(new JSONObject() {{
+            put("id", "df8f05be55ba-b2f7f966-d8cc-11e4-bed1");
+            put("success", 1);
+            put(OneSignalPackagePrivateHelper.IN_APP_MESSAGES_JSON_KEY, new JSONArray()
+                    .put(nullValuesMessage)
+                    .put(wrongTypesMessage)
+                    .put(testMessage.toJSONObject()));
+        }});
+
+        OneSignalInit();
+        threadAndTaskWait();
+
+        // The invalid messages only drop the message list, the player is still registered
+        assertEquals("df8f05be55ba-b2f7f966-d8cc-11e4-bed1", OneSignal.getDeviceState().getUserId());
+    }
+
     @Test
     public void testPauseInAppMessageGetterAndSetter() throws Exception {
         OneSignalInit();
@@ -320,6 +355,38 @@ public class InAppMessageIntegrationTests {
         blankActivityController.resume();
     }
 
+    @Test
+    public void testNextMessageReusesWebViewAndTrimMemoryReleasesIt() throws Exception {
+        initializeSdkWithMultiplePendingMessages();
+        int coldRenderCount = OneSignalPackagePrivateHelper.OSWebViewPool_getColdRenderCount();
+        int warmRenderCount = OneSignalPackagePrivateHelper.OSWebViewPool_getWarmRenderCount();
+
+        // 1. Add triggers to queue both IAMs
+        OneSignal.addTriggers(new HashMap<String, Object>() {{
+            put("test_1", 3);
+            put("test_2", 2);
+        }});
+        threadAndTaskWait();
+
+        // 2. Dismiss the first IAM, the second IAM is displayed with the released WebView
+        OneSignalPackagePrivateHelper.WebViewManager.callDismissAndAwaitNextMessage();
+        threadAndTaskWait();
+        assertTrue(OneSignalPackagePrivateHelper.isInAppMessageShowing());
+        assertEquals(2, OneSignalPackagePrivateHelper.OSWebViewPool_getColdRenderCount() - coldRenderCount
+                + OneSignalPackagePrivateHelper.OSWebViewPool_getWarmRenderCount() - warmRenderCount);
+        assertTrue(OneSignalPackagePrivateHelper.OSWebViewPool_getWarmRenderCount() > warmRenderCount);
+
+        // 3. Dismiss the last IAM, its WebView is kept for the next message
+        OneSignalPackagePrivateHelper.WebViewManager.callDismissAndAwaitNextMessage();
+        threadAndTaskWait();
+        assertFalse(OneSignalPackagePrivateHelper.isInAppMessageShowing());
+        assertTrue(OneSignalPackagePrivateHelper.OSWebViewPool_hasIdleWebView());
+
+        // 4. Kept WebView is destroyed under memory pressure
+        OneSignalPackagePrivateHelper.OSWebViewPool_onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertFalse(OneSignalPackagePrivateHelper.OSWebViewPool_hasIdleWebView());
+    }
+
 
     private void nextResponseMultiplePendingMessages() throws JSONException {
         final OSTestInAppMessage testFirstMessage = InAppMessagingHelpers.buildTestMessageWithSingleTrigger(OSTriggerKind.CUSTOM, "test_1", OSTestTrigger.OSTriggerOperator.EQUAL_TO.toString(), 3);
@@ -1257,6 +1324,61 @@ public class InAppMessageIntegrationTests {
         assertEquals(1, testImpressionedMessages.size());
     }
 
+    @Test
+    public void testInAppMessageImpressionStaysRecordedAfterServerError() throws Exception {
+        OneSignalInit();
+        threadAndTaskWait();
+
+        final OSTestInAppMessage message = InAppMessagingHelpers.buildTestMessageWithSingleTrigger(
+                OSTriggerKind.SESSION_TIME,
+                null,
+                OSTestTrigger.OSTriggerOperator.NOT_EXISTS.toString(),
+                null);
+
+        // Impression fails with a server error, it is queued to be sent later
+        ShadowOneSignalRestClient.failNext = true;
+        ShadowOneSignalRestClient.failHttpCode = 503;
+        OneSignalPackagePrivateHelper.onMessageWasShown(message);
+        threadAndTaskWait();
+        assertEquals(3, ShadowOneSignalRestClient.requests.size());
+
+        // Showing it again doesn't send a second impression
+        OneSignalPackagePrivateHelper.onMessageWasShown(message);
+        threadAndTaskWait();
+        assertEquals(3, ShadowOneSignalRestClient.requests.size());
+
+        Set<String> testImpressionedMessages = TestOneSignalPrefs.getStringSet(
+                TestOneSignalPrefs.PREFS_ONESIGNAL,
+                TestOneSignalPrefs.PREFS_OS_IMPRESSIONED_IAMS,
+                null
+        );
+        assertEquals(1, testImpressionedMessages.size());
+    }
+
+    @Test
+    public void testInAppMessageImpressionIsSentAgainAfterClientError() throws Exception {
+        OneSignalInit();
+        threadAndTaskWait();
+
+        final OSTestInAppMessage message = InAppMessagingHelpers.buildTestMessageWithSingleTrigger(
+                OSTriggerKind.SESSION_TIME,
+                null,
+                OSTestTrigger.OSTriggerOperator.NOT_EXISTS.toString(),
+                null);
+
+        // A 4xx would fail again, the impression is not queued nor kept
+        ShadowOneSignalRestClient.failNext = true;
+        ShadowOneSignalRestClient.failHttpCode = 400;
+        OneSignalPackagePrivateHelper.onMessageWasShown(message);
+        threadAndTaskWait();
+        assertEquals(3, ShadowOneSignalRestClient.requests.size());
+
+        OneSignalPackagePrivateHelper.onMessageWasShown(message);
+        threadAndTaskWait();
+        assertEquals(4, ShadowOneSignalRestClient.requests.size());
+        assertEquals("in_app_messages/" + message.messageId + "/impression", ShadowOneSignalRestClient.requests.get(3).url);
+    }
+
     @Test
     public void testInAppMessageOnlyReceivesOneImpression_onColdRestart() throws Exception {
         // Init OneSignal
@@ -1904,6 +2026,91 @@ public class InAppMessageIntegrationTests {
         assertEquals("in_app_messages/" + message.messageId + "/impression", iamImpressionRequest.url);
     }
 
+    @Test
+    public void testInAppMessageRedisplayUsesCachedContent() throws Exception {
+        final OSTestInAppMessage message = InAppMessagingHelpers.buildTestMessageWithSingleTriggerAndRedisplay(
+                OSTriggerKind.CUSTOM, "test_1", OSTestTrigger.OSTriggerOperator.EQUAL_TO.toString(), 2, LIMIT, DELAY);
+
+        setMockRegistrationResponseWithMessages(new ArrayList<OSTestInAppMessage>() {{
+            add(message);
+        }});
+
+        OneSignalInit();
+        threadAndTaskWait();
+        List<InAppMessageDisplayTiming> displayTimings = OSInAppMessageController_recordDisplayTimings();
+
+        // 1. First display downloads the content and caches it
+        OneSignal.addTrigger("test_1", 2);
+        dismissCurrentMessage();
+        assertTrue(OSInAppMessageContentCache_contains(message.messageId, InAppMessagingHelpers.TEST_ENGLISH_ANDROID_VARIANT_ID, "en"));
+
+        // 2. Redisplay shows the cached content, the content is still requested to refresh the cache
+        time.advanceSystemTimeBy(DELAY);
+        OneSignal.addTrigger("test_1", 2);
+        dismissCurrentMessage();
+
+        assertEquals(2, displayTimings.size());
+        assertFalse(displayTimings.get(0).contentFromCache);
+        assertTrue(displayTimings.get(1).contentFromCache);
+        assertEquals(2, countHtmlRequests(message));
+
+        // 3. Impression is still sent last on redisplay
+        ShadowOneSignalRestClient.Request lastRequest = ShadowOneSignalRestClient.requests.get(ShadowOneSignalRestClient.requests.size() - 1);
+        assertEquals("in_app_messages/" + message.messageId + "/impression", lastRequest.url);
+    }
+
+    @Test
+    public void testInAppMessageContentPrefetchedOnUnmeteredNetwork() throws Exception {
+        setActiveNetworkType(ConnectivityManager.TYPE_WIFI);
+        final OSTestInAppMessage message = InAppMessagingHelpers.buildTestMessageWithSingleTrigger(
+                OSTriggerKind.SESSION_TIME, null, OSTestTrigger.OSTriggerOperator.GREATER_THAN.toString(), 60);
+
+        setMockRegistrationResponseWithMessages(new ArrayList<OSTestInAppMessage>() {{
+            add(message);
+        }});
+
+        OneSignalInit();
+        threadAndTaskWait();
+
+        // Content is downloaded while the message is waiting on its trigger
+        assertFalse(OneSignalPackagePrivateHelper.isInAppMessageShowing());
+        assertEquals(1, countHtmlRequests(message));
+        assertTrue(OSInAppMessageContentCache_contains(message.messageId, InAppMessagingHelpers.TEST_ENGLISH_ANDROID_VARIANT_ID, "en"));
+    }
+
+    @Test
+    public void testInAppMessageContentNotPrefetchedOnMeteredNetwork() throws Exception {
+        setActiveNetworkType(ConnectivityManager.TYPE_MOBILE);
+        final OSTestInAppMessage message = InAppMessagingHelpers.buildTestMessageWithSingleTrigger(
+                OSTriggerKind.SESSION_TIME, null, OSTestTrigger.OSTriggerOperator.GREATER_THAN.toString(), 60);
+
+        setMockRegistrationResponseWithMessages(new ArrayList<OSTestInAppMessage>() {{
+            add(message);
+        }});
+
+        OneSignalInit();
+        threadAndTaskWait();
+
+        assertEquals(0, countHtmlRequests(message));
+        assertFalse(OSInAppMessageContentCache_contains(message.messageId, InAppMessagingHelpers.TEST_ENGLISH_ANDROID_VARIANT_ID, "en"));
+    }
+
+    private static int countHtmlRequests(OSTestInAppMessage message) {
+        int count = 0;
+        for (ShadowOneSignalRestClient.Request request : ShadowOneSignalRestClient.requests) {
+            if (request.method == ShadowOneSignalRestClient.REST_METHOD.GET &&
+                    request.url.startsWith("in_app_messages/" + message.messageId + "/variants/"))
+                count++;
+        }
+        return count;
+    }
+
+    private static void setActiveNetworkType(int networkType) {
+        ConnectivityManager connectivityManager = (ConnectivityManager) ApplicationProvider.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        shadowOf(connectivityManager).setActiveNetworkInfo(
+                ShadowNetworkInfo.newInstance(NetworkInfo.DetailedState.CONNECTED, networkType, 0, true, NetworkInfo.State.CONNECTED));
+    }
+
     private void setMockRegistrationResponseWithMessages(ArrayList<OSTestInAppMessage> messages) throws JSONException {
         final JSONArray jsonMessages = new JSONArray();
 
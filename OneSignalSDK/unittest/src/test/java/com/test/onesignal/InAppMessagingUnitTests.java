@@ -40,6 +40,7 @@ import org.robolectric.annotation.LooperMode;
 import org.robolectric.shadows.ShadowLog;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -499,6 +500,59 @@ public class InAppMessagingUnitTests {
         assertFalse(comparativeOperatorTest(OSTriggerOperator.NOT_EXISTS, null, "test"));
     }
 
+    @Test
+    public void testReplacedTriggerValueIsComparedWithNewValue() throws JSONException {
+        OSTestInAppMessage testMessage = InAppMessagingHelpers.buildTestMessageWithSingleTrigger(OSTriggerKind.CUSTOM, "test_property", OSTriggerOperator.GREATER_THAN.toString(), 2);
+
+        OneSignal.addTrigger("test_property", "3");
+        assertTrue(InAppMessagingHelpers.evaluateMessage(testMessage));
+
+        OneSignal.addTrigger("test_property", "a");
+        assertFalse(InAppMessagingHelpers.evaluateMessage(testMessage));
+
+        OneSignal.addTrigger("test_property", 3.5);
+        assertTrue(InAppMessagingHelpers.evaluateMessage(testMessage));
+    }
+
+    @Test
+    public void testOnlyMessagesUsingChangedTriggerKeysAreEvaluated() throws JSONException {
+        OSTestInAppMessage messageA = InAppMessagingHelpers.buildTestMessageWithSingleTrigger(OSTriggerKind.CUSTOM, "a", OSTriggerOperator.EQUAL_TO.toString(), 1);
+        OSTestInAppMessage messageB = InAppMessagingHelpers.buildTestMessageWithSingleTrigger(OSTriggerKind.CUSTOM, "b", OSTriggerOperator.EQUAL_TO.toString(), 1);
+        OSTestInAppMessage messageSessionTime = InAppMessagingHelpers.buildTestMessageWithSingleTrigger(OSTriggerKind.SESSION_TIME, null, OSTriggerOperator.GREATER_THAN.toString(), 5);
+        OSTestInAppMessage messageNoTriggers = InAppMessagingHelpers.buildTestMessage(null);
+
+        ArrayList<ArrayList<OSTestTrigger>> triggers = new ArrayList<>();
+        ArrayList<OSTestTrigger> orA = new ArrayList<>();
+        orA.add(InAppMessagingHelpers.buildTrigger(OSTriggerKind.CUSTOM, "a", OSTriggerOperator.EXISTS.toString(), null));
+        ArrayList<OSTestTrigger> orB = new ArrayList<>();
+        orB.add(InAppMessagingHelpers.buildTrigger(OSTriggerKind.CUSTOM, "b", OSTriggerOperator.EXISTS.toString(), null));
+        triggers.add(orA);
+        triggers.add(orB);
+        OSTestInAppMessage messageAOrB = InAppMessagingHelpers.buildTestMessageWithMultipleTriggers(triggers);
+
+        List<OSTestInAppMessage> messages = new ArrayList<>();
+        messages.add(messageA);
+        messages.add(messageB);
+        messages.add(messageSessionTime);
+        messages.add(messageNoTriggers);
+        messages.add(messageAOrB);
+
+        List<String> expectedToEvaluate = new ArrayList<>();
+        expectedToEvaluate.add(messageA.messageId);
+        expectedToEvaluate.add(messageSessionTime.messageId);
+        expectedToEvaluate.add(messageAOrB.messageId);
+        assertEquals(expectedToEvaluate, InAppMessagingHelpers.getMessageIdsToEvaluate(messages, Collections.singletonList("a")));
+
+        List<String> expectedWithKey = new ArrayList<>();
+        expectedWithKey.add(messageB.messageId);
+        expectedWithKey.add(messageAOrB.messageId);
+        assertEquals(expectedWithKey, InAppMessagingHelpers.getMessageIdsWithTriggerKeys(messages, Collections.singletonList("b")));
+
+        // Dynamic triggers are also found by trigger id, used when their timer completes
+        String sessionTimeTriggerId = ((OSTestTrigger) messageSessionTime.triggers.get(0).get(0)).getTriggerId();
+        assertEquals(Collections.singletonList(messageSessionTime.messageId), InAppMessagingHelpers.getMessageIdsWithTriggerKeys(messages, Collections.singletonList(sessionTimeTriggerId)));
+    }
+
     @Test
     public void testMessageSchedulesSessionDurationTimer() throws JSONException {
         OSTestTrigger trigger = InAppMessagingHelpers.buildTrigger(OSTriggerKind.SESSION_TIME, null, OSTriggerOperator.EQUAL_TO.toString(), 10);
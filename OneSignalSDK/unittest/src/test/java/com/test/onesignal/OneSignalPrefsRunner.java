@@ -23,9 +23,22 @@ import org.robolectric.annotation.Config;
 import org.robolectric.annotation.LooperMode;
 import org.robolectric.shadows.ShadowLog;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 import static com.onesignal.ShadowOneSignalRestClient.setRemoteParamsGetHtmlResponse;
 import static com.test.onesignal.TestHelpers.threadAndTaskWait;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSPrefsLogStore_COMPACT_MIN_BYTES;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSPrefsLogStore_getCompactionCount;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSPrefsLogStore_getLogBytes;
+import static com.onesignal.OneSignalPackagePrivateHelper.OneSignalPrefs_getString;
+import static com.onesignal.OneSignalPackagePrivateHelper.OneSignalPrefs_setUseLogStore;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 @Config(packageName = "com.onesignal.example",
         shadows = {
@@ -118,4 +131,115 @@ public class OneSignalPrefsRunner {
       String value = prefs.getString(KEY, "");
       assertEquals(VALUE, value);
    }
+
+   @Test
+   public void testLogStoreKeepsValuesAcrossColdStart() throws Exception {
+      OneSignalPrefs_setUseLogStore(true);
+      OneSignal.initWithContext(blankActivity);
+      TestOneSignalPrefs.saveString(TestOneSignalPrefs.PREFS_ONESIGNAL, KEY, VALUE);
+      TestHelpers.flushBufferedSharedPrefs();
+
+      TestHelpers.fastColdRestartApp();
+      OneSignal.initWithContext(blankActivity);
+
+      assertEquals(VALUE, OneSignalPrefs_getString(KEY));
+      final SharedPreferences prefs = blankActivity.getSharedPreferences(TestOneSignalPrefs.PREFS_ONESIGNAL, Context.MODE_PRIVATE);
+      assertFalse(prefs.contains(KEY));
+   }
+
+   @Test
+   public void testLogStoreMovesValuesOutOfSharedPreferences() {
+      final SharedPreferences prefs = blankActivity.getSharedPreferences(TestOneSignalPrefs.PREFS_ONESIGNAL, Context.MODE_PRIVATE);
+      prefs.edit().putString(KEY, VALUE).commit();
+
+      OneSignalPrefs_setUseLogStore(true);
+      OneSignal.initWithContext(blankActivity);
+
+      assertEquals(VALUE, OneSignalPrefs_getString(KEY));
+      assertFalse(prefs.contains(KEY));
+   }
+
+   @Test
+   public void testLogStoreMovesValuesBackToSharedPreferencesWhenDisabled() throws Exception {
+      OneSignalPrefs_setUseLogStore(true);
+      OneSignal.initWithContext(blankActivity);
+      TestOneSignalPrefs.saveString(TestOneSignalPrefs.PREFS_ONESIGNAL, KEY, VALUE);
+      TestHelpers.flushBufferedSharedPrefs();
+
+      TestHelpers.fastColdRestartApp();
+      OneSignalPrefs_setUseLogStore(false);
+      OneSignal.initWithContext(blankActivity);
+
+      assertEquals(VALUE, OneSignalPrefs_getString(KEY));
+      final SharedPreferences prefs = blankActivity.getSharedPreferences(TestOneSignalPrefs.PREFS_ONESIGNAL, Context.MODE_PRIVATE);
+      assertEquals(VALUE, prefs.getString(KEY, null));
+      // Log is deleted once the values are on disk
+      threadAndTaskWait();
+      assertFalse(getLogStoreFile().exists());
+   }
+
+   @Test
+   public void testLogStoreReturnsCopyOfStringSet() throws Exception {
+      OneSignalPrefs_setUseLogStore(true);
+      OneSignal.initWithContext(blankActivity);
+      TestOneSignalPrefs.saveStringSet(TestOneSignalPrefs.PREFS_ONESIGNAL, KEY, new HashSet<>(Collections.singletonList(VALUE)));
+      TestHelpers.flushBufferedSharedPrefs();
+
+      Set<String> savedSet = TestOneSignalPrefs.getStringSet(TestOneSignalPrefs.PREFS_ONESIGNAL, KEY, null);
+      savedSet.add("not saved");
+
+      assertEquals(Collections.singleton(VALUE), TestOneSignalPrefs.getStringSet(TestOneSignalPrefs.PREFS_ONESIGNAL, KEY, null));
+   }
+
+   @Test
+   public void testLogStoreCompactsLog() throws Exception {
+      OneSignalPrefs_setUseLogStore(true);
+      OneSignal.initWithContext(blankActivity);
+
+      StringBuilder largeValue = new StringBuilder();
+      for (int i = 0; i < 1024; i++)
+         largeValue.append('a');
+
+      int compactionCount = OSPrefsLogStore_getCompactionCount(TestOneSignalPrefs.PREFS_ONESIGNAL);
+
+      // Each flush appends a new record for the same key
+      long maxLogBytes = OSPrefsLogStore_COMPACT_MIN_BYTES();
+      for (int i = 0; i * 1024 < maxLogBytes * 2; i++) {
+         TestOneSignalPrefs.saveString(TestOneSignalPrefs.PREFS_ONESIGNAL, KEY, largeValue.toString() + i);
+         TestHelpers.flushBufferedSharedPrefs();
+      }
+
+      assertTrue(OSPrefsLogStore_getCompactionCount(TestOneSignalPrefs.PREFS_ONESIGNAL) > compactionCount);
+      assertTrue(OSPrefsLogStore_getLogBytes(TestOneSignalPrefs.PREFS_ONESIGNAL) <= maxLogBytes);
+
+      String lastValue = OneSignalPrefs_getString(KEY);
+      TestHelpers.fastColdRestartApp();
+      OneSignal.initWithContext(blankActivity);
+      assertEquals(lastValue, OneSignalPrefs_getString(KEY));
+   }
+
+   @Test
+   public void testLogStoreDropsIncompleteRecord() throws Exception {
+      OneSignalPrefs_setUseLogStore(true);
+      OneSignal.initWithContext(blankActivity);
+      TestOneSignalPrefs.saveString(TestOneSignalPrefs.PREFS_ONESIGNAL, KEY, VALUE);
+      TestHelpers.flushBufferedSharedPrefs();
+      TestHelpers.fastColdRestartApp();
+
+      // Simulate the process being killed in the middle of an append
+      File logFile = getLogStoreFile();
+      long validLength = logFile.length();
+      FileOutputStream outputStream = new FileOutputStream(logFile, true);
+      outputStream.write(new byte[] { 0, 0, 1, 0, 1, 2, 3 });
+      outputStream.close();
+
+      OneSignal.initWithContext(blankActivity);
+
+      assertEquals(VALUE, OneSignalPrefs_getString(KEY));
+      assertEquals(validLength, logFile.length());
+   }
+
+   private static File getLogStoreFile() {
+      return new File(new File(blankActivity.getFilesDir(), "onesignal_prefs"), TestOneSignalPrefs.PREFS_ONESIGNAL + ".log");
+   }
 }
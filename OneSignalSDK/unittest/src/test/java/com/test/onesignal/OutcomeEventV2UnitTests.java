@@ -27,7 +27,10 @@
 
 package com.test.onesignal;
 
+import android.database.sqlite.SQLiteStatement;
+
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.test.core.app.ApplicationProvider;
 
 import com.onesignal.MockOSLog;
@@ -37,9 +40,12 @@ import com.onesignal.MockOneSignalAPIClient;
 import com.onesignal.MockOneSignalDBHelper;
 import com.onesignal.MockOutcomeEventsController;
 import com.onesignal.MockSessionManager;
+import com.onesignal.OSOutcomeEvent;
 import com.onesignal.OSSessionManager;
 import com.onesignal.OneSignal;
+import com.onesignal.OneSignalDbBatch;
 import com.onesignal.OneSignalPackagePrivateHelper;
+import com.onesignal.OneSignalPackagePrivateHelper.NotificationTable;
 import com.onesignal.OneSignalRemoteParams;
 import com.onesignal.ShadowOSUtils;
 import com.onesignal.StaticResetHelper;
@@ -47,9 +53,12 @@ import com.onesignal.influence.data.OSTrackerFactory;
 import com.onesignal.influence.domain.OSInfluence;
 import com.onesignal.influence.domain.OSInfluenceType;
 import com.onesignal.outcomes.data.OSOutcomeEventsFactory;
+import com.onesignal.outcomes.data.OutcomeEventsTable;
 import com.onesignal.outcomes.domain.OSOutcomeEventParams;
 import com.onesignal.outcomes.domain.OSOutcomeEventsRepository;
 
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -59,11 +68,14 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowLog;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import static com.test.onesignal.TestHelpers.threadAndTaskWait;
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
@@ -441,6 +453,39 @@ public class OutcomeEventV2UnitTests {
         assertEquals(OUTCOME_NAME, outcomeEvents.get(0).getOutcomeId());
     }
 
+    @Test
+    public void testUniqueOutcomeSentAgainAfterCachedUniqueOutcomesCleaned() throws Exception {
+        service.setSuccess(true);
+        sessionManager.initSessionFromCache();
+        // Set DIRECT notification id influence
+        sessionManager.onDirectInfluenceFromNotificationOpen(NOTIFICATION_ID);
+        final List<OSOutcomeEvent> sentEvents = new ArrayList<>();
+        OneSignal.OutcomeCallback callback = new OneSignal.OutcomeCallback() {
+            @Override
+            public void onSuccess(@Nullable OSOutcomeEvent outcomeEvent) {
+                sentEvents.add(outcomeEvent);
+            }
+        };
+
+        controller.sendUniqueOutcomeEvent(OUTCOME_NAME, callback);
+        threadAndTaskWait();
+        controller.sendUniqueOutcomeEvent(OUTCOME_NAME, callback);
+        threadAndTaskWait();
+
+        assertEquals(2, sentEvents.size());
+        assertNotNull(sentEvents.get(0));
+        // Already sent for the notification, found without sending
+        assertNull(sentEvents.get(1));
+
+        // No notification in the db, so the unique outcome of notification_id is deleted
+        repository.cleanCachedUniqueOutcomeEventNotifications(NotificationTable.TABLE_NAME, NotificationTable.COLUMN_NAME_NOTIFICATION_ID);
+        controller.sendUniqueOutcomeEvent(OUTCOME_NAME, callback);
+        threadAndTaskWait();
+
+        assertEquals(3, sentEvents.size());
+        assertNotNull(sentEvents.get(2));
+    }
+
     @Test
     public void testOutcomeDirectFailSavedOnDB() throws Exception {
         service.setSuccess(false);
@@ -471,6 +516,37 @@ public class OutcomeEventV2UnitTests {
         assertNull(params.getOutcomeSource().getIndirectBody());
     }
 
+    @Test
+    public void testOutcomeDirectIAMOnlyFailSavedOnDBKeepsIAMSource() throws Exception {
+        service.setSuccess(false);
+        sessionManager.initSessionFromCache();
+        sessionManager.onDirectInfluenceFromIAMClick(IAM_ID);
+
+        controller.sendOutcomeEvent(OUTCOME_NAME);
+        threadAndTaskWait();
+
+        handler.setOutcomes(repository.getSavedOutcomeEvents());
+
+        threadAndTaskWait();
+        assertEquals(1, outcomeEvents.size());
+        OSOutcomeEventParams params = outcomeEvents.get(0);
+        assertEquals(OUTCOME_NAME, params.getOutcomeId());
+        assertNotNull(params.getOutcomeSource());
+        // Direct body
+        assertEquals(1, params.getOutcomeSource().getDirectBody().getInAppMessagesIds().length());
+        assertEquals(IAM_ID, params.getOutcomeSource().getDirectBody().getInAppMessagesIds().get(0));
+        assertEquals(0, params.getOutcomeSource().getDirectBody().getNotificationIds().length());
+        // Indirect body
+        assertNull(params.getOutcomeSource().getIndirectBody());
+
+        service.setSuccess(true);
+        controller.sendSavedOutcomes();
+        threadAndTaskWait();
+
+        JSONObject sentSources = new JSONObject(service.getLastJsonObjectSent()).getJSONObject("sources");
+        assertEquals("{\"direct\":{\"notification_ids\":[],\"in_app_message_ids\":[\"iam_id\"]}}", sentSources.toString());
+    }
+
     @Test
     public void testOutcomeIndirectFailSavedOnDB() throws Exception {
         service.setSuccess(false);
@@ -627,4 +703,158 @@ public class OutcomeEventV2UnitTests {
         assertEquals("{\"id\":\"testing\",\"sources\":{},\"weight\":1.1,\"timestamp\":" + timestamp + ",\"app_id\":\"" + APP_ID + "\",\"device_type\":1}", service.getLastJsonObjectSent());
     }
 
+    @Test
+    public void testSavedOutcomeEventsIteratorReadsLargeTableInOrder() throws Exception {
+        final int rows = 50_000;
+        saveOutcomeEventRows(rows);
+
+        Iterator<OSOutcomeEventParams> iterator = repository.getSavedOutcomeEventsIterator();
+        int count = 0;
+        while (iterator.hasNext()) {
+            OSOutcomeEventParams event = iterator.next();
+            assertEquals(OUTCOME_NAME, event.getOutcomeId());
+            assertEquals(count % 10, event.getWeight(), 0);
+            assertEquals(count + 1, event.getTimestamp());
+            assertEquals(NOTIFICATION_ID + count, event.getOutcomeSource().getDirectBody().getNotificationIds().getString(0));
+            assertNull(event.getOutcomeSource().getIndirectBody());
+            count++;
+        }
+
+        assertEquals(rows, count);
+    }
+
+    @Test
+    public void testSavedOutcomeEventsIteratorDoesNotSkipEventsRemovedWhileIterating() throws Exception {
+        final int rows = 250;
+        saveOutcomeEventRows(rows);
+
+        Iterator<OSOutcomeEventParams> iterator = repository.getSavedOutcomeEventsIterator();
+        int count = 0;
+        while (iterator.hasNext()) {
+            OSOutcomeEventParams event = iterator.next();
+            assertEquals(count + 1, event.getTimestamp());
+            repository.removeEvent(event);
+            count++;
+        }
+
+        assertEquals(rows, count);
+        assertEquals(0, repository.getSavedOutcomeEvents().size());
+    }
+
+    @Test
+    public void testSendFailedOutcomesOnDBInAggregatedBatch() throws Exception {
+        preferences.saveBool(preferences.getPreferencesName(), preferences.getOutcomesBatchKeyName(), true);
+        service.setSuccess(false);
+        // Restart session by app open should set UNATTRIBUTED influence
+        sessionManager.restartSessionIfNeeded(OneSignal.AppEntryAction.APP_OPEN);
+        controller.sendOutcomeEventWithValue(OUTCOME_NAME, 1);
+        controller.sendOutcomeEventWithValue(OUTCOME_NAME, 2);
+        controller.sendOutcomeEvent(OUTCOME_NAME + "1");
+        threadAndTaskWait();
+
+        handler.setOutcomes(repository.getSavedOutcomeEvents());
+
+        threadAndTaskWait();
+        assertEquals(3, outcomeEvents.size());
+
+        service.setSuccess(true);
+        service.resetLastJsonObjectSent();
+        controller.sendSavedOutcomes();
+        threadAndTaskWait();
+
+        handler.setOutcomes(repository.getSavedOutcomeEvents());
+
+        threadAndTaskWait();
+
+        assertEquals(0, outcomeEvents.size());
+        // Both events of the same outcome are sent summed, all of them in one request
+        JSONObject batch = new JSONObject(service.getLastJsonObjectSent());
+        assertEquals(APP_ID, batch.getString("app_id"));
+        assertEquals(1, batch.getInt("device_type"));
+        JSONArray outcomes = batch.getJSONArray("outcomes");
+        assertEquals(2, outcomes.length());
+        for (int i = 0; i < outcomes.length(); i++) {
+            JSONObject outcome = outcomes.getJSONObject(i);
+            assertEquals("{}", outcome.getJSONObject("sources").toString());
+            assertTrue(outcome.getLong("timestamp") > 0);
+            if (OUTCOME_NAME.equals(outcome.getString("id"))) {
+                assertEquals(3, outcome.getDouble("weight"), 0);
+                assertEquals(2, outcome.getInt("count"));
+            } else {
+                assertEquals(OUTCOME_NAME + "1", outcome.getString("id"));
+                assertFalse(outcome.has("weight"));
+                assertEquals(1, outcome.getInt("count"));
+            }
+        }
+    }
+
+    @Test
+    public void testSendFailedUniqueOutcomeRetriesOnDBInAggregatedBatchOnce() throws Exception {
+        preferences.saveBool(preferences.getPreferencesName(), preferences.getOutcomesBatchKeyName(), true);
+        service.setSuccess(false);
+        sessionManager.initSessionFromCache();
+        sessionManager.onNotificationReceived(NOTIFICATION_ID);
+        sessionManager.onDirectInfluenceFromNotificationOpen(NOTIFICATION_ID);
+
+        // Unique cache is only updated on success, so both retries are saved
+        controller.sendUniqueOutcomeEvent(OUTCOME_NAME);
+        controller.sendUniqueOutcomeEvent(OUTCOME_NAME);
+        controller.sendOutcomeEvent(OUTCOME_NAME);
+        controller.sendOutcomeEvent(OUTCOME_NAME);
+        threadAndTaskWait();
+
+        handler.setOutcomes(repository.getSavedOutcomeEvents());
+
+        threadAndTaskWait();
+        assertEquals(4, outcomeEvents.size());
+
+        service.setSuccess(true);
+        service.resetLastJsonObjectSent();
+        controller.sendSavedOutcomes();
+        threadAndTaskWait();
+
+        handler.setOutcomes(repository.getSavedOutcomeEvents());
+
+        threadAndTaskWait();
+
+        assertEquals(0, outcomeEvents.size());
+        // Unique retries are sent once, regular outcomes with the same name and sources are still counted
+        JSONArray outcomes = new JSONObject(service.getLastJsonObjectSent()).getJSONArray("outcomes");
+        assertEquals(2, outcomes.length());
+        int count = 0;
+        for (int i = 0; i < outcomes.length(); i++) {
+            JSONObject outcome = outcomes.getJSONObject(i);
+            assertEquals(OUTCOME_NAME, outcome.getString("id"));
+            assertEquals(NOTIFICATION_ID, outcome.getJSONObject("sources").getJSONObject("direct").getJSONArray("notification_ids").get(0));
+            count += outcome.getInt("count");
+        }
+        assertEquals(3, count);
+    }
+
+    private void saveOutcomeEventRows(final int rows) {
+        dbHelper.runInTransaction(new OneSignalDbBatch.Writes() {
+            @Override
+            public void run(@NonNull OneSignalDbBatch batch) {
+                SQLiteStatement statement = batch.compileStatement("INSERT INTO " + OutcomeEventsTable.TABLE_NAME + " (" +
+                        OutcomeEventsTable.COLUMN_NAME_NOTIFICATION_INFLUENCE_TYPE + "," +
+                        OutcomeEventsTable.COLUMN_NAME_IAM_INFLUENCE_TYPE + "," +
+                        OutcomeEventsTable.COLUMN_NAME_NOTIFICATION_IDS + "," +
+                        OutcomeEventsTable.COLUMN_NAME_IAM_IDS + "," +
+                        OutcomeEventsTable.COLUMN_NAME_NAME + "," +
+                        OutcomeEventsTable.COLUMN_NAME_WEIGHT + "," +
+                        OutcomeEventsTable.COLUMN_NAME_TIMESTAMP + ") VALUES (?,?,?,?,?,?,?)");
+                for (int i = 0; i < rows; i++) {
+                    statement.bindString(1, "direct");
+                    statement.bindString(2, "unattributed");
+                    statement.bindString(3, "[\"" + NOTIFICATION_ID + i + "\"]");
+                    statement.bindString(4, "[]");
+                    statement.bindString(5, OUTCOME_NAME);
+                    statement.bindDouble(6, i % 10);
+                    statement.bindLong(7, i + 1);
+                    batch.executeInsert(statement);
+                }
+            }
+        });
+    }
+
 }
\ No newline at end of file
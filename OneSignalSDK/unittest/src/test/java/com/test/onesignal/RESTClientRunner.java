@@ -27,14 +27,24 @@
 
 package com.test.onesignal;
 
+import android.util.JsonReader;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.test.core.app.ApplicationProvider;
 
 import com.onesignal.MockHttpURLConnection;
+import com.onesignal.MockOSTimeImpl;
+import com.onesignal.MockOneSignalDBHelper;
 import com.onesignal.OneSignal;
+import com.onesignal.OneSignalPackagePrivateHelper.OSOutboundRequestQueue;
 import com.onesignal.OneSignalPackagePrivateHelper.OneSignalRestClient;
+import com.onesignal.OneSignalPackagePrivateHelper.TestOneSignalPrefs;
 import com.onesignal.ShadowOneSignalRestClientWithMockConnection;
 import com.onesignal.StaticResetHelper;
 
+import org.json.JSONObject;
+import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -44,10 +54,36 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowLog;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static com.onesignal.OneSignalPackagePrivateHelper.OSHttpRequestExecutor_getCompletedRequests;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSHttpRequestExecutor_getInFlightRequests;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSHttpRequestExecutor_resetMaxConcurrentRequests;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSHttpRequestExecutor_setKeepAliveMillis;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSHttpRequestExecutor_setMaxConcurrentRequests;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSHttpResponseCache_getBody;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSHttpResponseCache_getETag;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSHttpResponseCache_getSizeBytes;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSHttpResponseCache_put;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSHttpResponseCache_setMaxBytes;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSHttpTrafficStats_getBytesSent;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSHttpTrafficStats_getBytesSentOnWire;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSHttpTrafficStats_getRequests;
+import static com.onesignal.OneSignalPackagePrivateHelper.OneSignalPrefs_getString;
+import static com.onesignal.OneSignalPackagePrivateHelper.OneSignalRestClient_setGzipRequestsEnabled;
 import static com.onesignal.OneSignalPackagePrivateHelper.OneSignal_savePrivacyConsentRequired;
 import static com.test.onesignal.TestHelpers.threadAndTaskWait;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 
 @Config(packageName = "com.onesignal.example",
@@ -70,6 +106,13 @@ public class RESTClientRunner {
    public void beforeEachTest() throws Exception {
       firstResponse = secondResponse = null;
       TestHelpers.beforeTestInitAndCleanup();
+      // Release idle pool threads right away so threadAndTaskWait doesn't wait on them
+      OSHttpRequestExecutor_setKeepAliveMillis(1);
+   }
+
+   @After
+   public void afterEachTest() throws Exception {
+      OSHttpRequestExecutor_resetMaxConcurrentRequests();
    }
 
    @AfterClass
@@ -202,6 +245,193 @@ public class RESTClientRunner {
       assertEquals(newMockResponse, secondResponse);
    }
 
+   @Test
+   public void testGetWithETagSendsGivenETagAndCallsOnNotModifiedOn304() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      ShadowOneSignalRestClientWithMockConnection.mockResponse = new MockHttpURLConnection.MockResponse() {{
+         status = 304;
+      }};
+
+      final boolean[] notModified = new boolean[1];
+      OneSignalRestClient.getWithETag("URL", MOCK_ETAG_VALUE, new OneSignalRestClient.ETagResponseHandler() {
+         @Override
+         public void onSuccess(String response, @Nullable String eTag) {
+            firstResponse = response;
+         }
+
+         @Override
+         public void onNotModified() {
+            notModified[0] = true;
+         }
+      });
+      threadAndTaskWait();
+      Thread.sleep(200);
+
+      assertEquals(MOCK_ETAG_VALUE, getLastHTTPHeaderProp("if-none-match"));
+      assertTrue(notModified[0]);
+      assertNull(firstResponse);
+   }
+
+   @Test
+   public void testGetWithETagGivesResponseETagAndDoesNotCacheIt() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      final String mockResponse = "{\"key1\": \"value1\"}";
+      ShadowOneSignalRestClientWithMockConnection.mockResponse = new MockHttpURLConnection.MockResponse() {{
+         status = 200;
+         responseBody = mockResponse;
+         mockProps.put("etag", MOCK_ETAG_VALUE);
+      }};
+
+      final String[] responseETag = new String[1];
+      OneSignalRestClient.getWithETag("URL", null, new OneSignalRestClient.ETagResponseHandler() {
+         @Override
+         public void onSuccess(String response, @Nullable String eTag) {
+            firstResponse = response.replace("\u0000", "");
+            responseETag[0] = eTag;
+         }
+      });
+      threadAndTaskWait();
+      Thread.sleep(200);
+
+      assertNull(getLastHTTPHeaderProp("if-none-match"));
+      assertEquals(mockResponse, firstResponse);
+      assertEquals(MOCK_ETAG_VALUE, responseETag[0]);
+      assertNull(OSHttpResponseCache_getETag("URL"));
+   }
+
+   @Test
+   public void testCachesGetResponseWithoutCacheKeyByUrl() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      ShadowOneSignalRestClientWithMockConnection.mockResponse = new MockHttpURLConnection.MockResponse() {{
+         status = 200;
+         responseBody = "{\"html\": \"<html></html>\"}";
+         mockProps.put("etag", MOCK_ETAG_VALUE);
+      }};
+      OneSignalRestClient.get("in_app_messages/id/variants/id/html", new OneSignalRestClient.ResponseHandler() {
+         @Override
+         public void onSuccess(String response) {
+            firstResponse = response;
+         }
+      }, null);
+      threadAndTaskWait();
+      Thread.sleep(200);
+
+      ShadowOneSignalRestClientWithMockConnection.mockResponse = new MockHttpURLConnection.MockResponse() {{
+         status = 304;
+      }};
+      OneSignalRestClient.get("in_app_messages/id/variants/id/html", new OneSignalRestClient.ResponseHandler() {
+         @Override
+         public void onSuccess(String response) {
+            secondResponse = response;
+         }
+      }, null);
+      threadAndTaskWait();
+      Thread.sleep(200);
+
+      assertNotNull(firstResponse);
+      assertEquals(firstResponse, secondResponse);
+      assertEquals(MOCK_ETAG_VALUE, getLastHTTPHeaderProp("if-none-match"));
+   }
+
+   @Test
+   public void testJsonResponseHandlerCachesStreamedResponse() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      final String mockResponseBody = "{\"key1\": \"value1\", \"key2\": \"value2\"}";
+      ShadowOneSignalRestClientWithMockConnection.mockResponse = new MockHttpURLConnection.MockResponse() {{
+         status = 200;
+         responseBody = mockResponseBody;
+         mockProps.put("etag", MOCK_ETAG_VALUE);
+      }};
+      OneSignalRestClient.get("URL", new Key1ResponseHandler(), MOCK_CACHE_KEY);
+      threadAndTaskWait();
+      Thread.sleep(200);
+
+      // Parser stops after key1, the rest of the body still has to be cached
+      assertEquals("value1", firstResponse);
+      assertEquals(mockResponseBody, OSHttpResponseCache_getBody(MOCK_CACHE_KEY));
+
+      firstResponse = null;
+      ShadowOneSignalRestClientWithMockConnection.mockResponse = new MockHttpURLConnection.MockResponse() {{
+         status = 304;
+      }};
+      OneSignalRestClient.get("URL", new Key1ResponseHandler(), MOCK_CACHE_KEY);
+      threadAndTaskWait();
+      Thread.sleep(200);
+
+      assertEquals("value1", firstResponse);
+   }
+
+   private class Key1ResponseHandler extends OneSignalRestClient.JsonResponseHandler<String> {
+      @Override
+      public String parse(@NonNull JsonReader reader) throws IOException {
+         reader.beginObject();
+         reader.nextName();
+         return reader.nextString();
+      }
+
+      @Override
+      public void onParsed(String result) {
+         firstResponse = result;
+      }
+   }
+
+   @Test
+   public void testResponseCacheEvictsLeastRecentlyUsedOverMaxBytes() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      // Fits 2 of the responses below
+      OSHttpResponseCache_setMaxBytes(150);
+
+      String body = "{\"key\": \"0123456789012345678901234567890123456789\"}";
+      OSHttpResponseCache_put("KEY_1", "ETAG_1", body);
+      OSHttpResponseCache_put("KEY_2", "ETAG_2", body);
+      // Reading KEY_1 makes KEY_2 the least recently used
+      assertEquals(body, OSHttpResponseCache_getBody("KEY_1"));
+      OSHttpResponseCache_put("KEY_3", "ETAG_3", body);
+
+      assertEquals("ETAG_1", OSHttpResponseCache_getETag("KEY_1"));
+      assertNull(OSHttpResponseCache_getETag("KEY_2"));
+      assertEquals("ETAG_3", OSHttpResponseCache_getETag("KEY_3"));
+      assertTrue(OSHttpResponseCache_getSizeBytes() <= 150);
+   }
+
+   @Test
+   public void testResponseNotCachedWithCacheKeyNone() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      ShadowOneSignalRestClientWithMockConnection.mockResponse = new MockHttpURLConnection.MockResponse() {{
+         status = 200;
+         responseBody = "{\"key1\": \"value1\"}";
+         mockProps.put("etag", MOCK_ETAG_VALUE);
+      }};
+
+      OneSignalRestClient.get("URL", new OneSignalRestClient.ResponseHandler() {
+         @Override
+         public void onSuccess(String response) {
+            firstResponse = response;
+         }
+      }, OneSignalRestClient.CACHE_KEY_NONE);
+      threadAndTaskWait();
+
+      assertEquals("{\"key1\": \"value1\"}", firstResponse);
+      assertNull(OSHttpResponseCache_getETag("URL"));
+      assertNull(OSHttpResponseCache_getETag(OneSignalRestClient.CACHE_KEY_NONE));
+      assertNull(getLastHTTPHeaderProp("if-none-match"));
+   }
+
+   @Test
+   public void testResponseCacheMovesResponsesOutOfPrefs() throws Exception {
+      // Saved as an older SDK version would have, the cache can't load before OneSignal has a context
+      String etagPrefKey = TestOneSignalPrefs.PREFS_OS_ETAG_PREFIX + "CACHE_KEY_GET_TAGS";
+      String bodyPrefKey = TestOneSignalPrefs.PREFS_OS_HTTP_CACHE_PREFIX + "CACHE_KEY_GET_TAGS";
+      TestOneSignalPrefs.saveString(TestOneSignalPrefs.PREFS_ONESIGNAL, etagPrefKey, MOCK_ETAG_VALUE);
+      TestOneSignalPrefs.saveString(TestOneSignalPrefs.PREFS_ONESIGNAL, bodyPrefKey, "{\"key1\": \"value1\"}");
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+
+      assertEquals(MOCK_ETAG_VALUE, OSHttpResponseCache_getETag("CACHE_KEY_GET_TAGS"));
+      assertEquals("{\"key1\": \"value1\"}", OSHttpResponseCache_getBody("CACHE_KEY_GET_TAGS"));
+      assertNull(OneSignalPrefs_getString(etagPrefKey));
+      assertNull(OneSignalPrefs_getString(bodyPrefKey));
+   }
+
    @Test
    public void testApiCall400Response() throws Exception {
       OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
@@ -270,6 +500,412 @@ public class RESTClientRunner {
       assertEquals(statusCode, statusCodeResponse[0]);
    }
 
+   @Test
+   public void testRequestsOverConcurrencyLimitAreQueuedAndAllComplete() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      OSHttpRequestExecutor_setMaxConcurrentRequests(1);
+
+      long completedBefore = OSHttpRequestExecutor_getCompletedRequests();
+      final CountDownLatch successLatch = new CountDownLatch(5);
+      final AtomicInteger maxInFlight = new AtomicInteger();
+      OneSignalRestClient.ResponseHandler responseHandler = new OneSignalRestClient.ResponseHandler() {
+         @Override
+         public void onSuccess(String response) {
+            int inFlight = OSHttpRequestExecutor_getInFlightRequests();
+            int currentMax;
+            do {
+               currentMax = maxInFlight.get();
+            } while (inFlight > currentMax && !maxInFlight.compareAndSet(currentMax, inFlight));
+            successLatch.countDown();
+         }
+      };
+
+      for (int i = 0; i < 5; i++)
+         OneSignalRestClient.get("URL", responseHandler, null);
+
+      assertTrue(successLatch.await(5, TimeUnit.SECONDS));
+      // Callbacks can run before their request is counted as completed
+      threadAndTaskWait();
+      assertEquals(5, OSHttpRequestExecutor_getCompletedRequests() - completedBefore);
+      assertTrue(maxInFlight.get() <= 1);
+   }
+
+   @Test
+   public void testAcceptEncodingGzipHeaderIsSent() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      OneSignalRestClient.get("URL", null, null);
+      threadAndTaskWait();
+
+      assertEquals("gzip", getLastHTTPHeaderProp("Accept-Encoding"));
+   }
+
+   @Test
+   public void testGzipResponseIsDecompressed() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      final String mockResponseBody = "{\"key1\": \"value1\"}";
+      ShadowOneSignalRestClientWithMockConnection.mockResponse = new MockHttpURLConnection.MockResponse() {{
+         status = 200;
+         responseBody = mockResponseBody;
+         gzipResponseBody = true;
+         mockProps.put("content-encoding", "gzip");
+      }};
+
+      OneSignalRestClient.get("URL", new OneSignalRestClient.ResponseHandler() {
+         @Override
+         public void onSuccess(String response) {
+            firstResponse = response;
+         }
+      }, null);
+      threadAndTaskWait();
+      Thread.sleep(200);
+
+      assertEquals(mockResponseBody, firstResponse);
+   }
+
+   @Test
+   public void testJsonResponseHandlerParsesStreamedResponse() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      ShadowOneSignalRestClientWithMockConnection.mockResponse = new MockHttpURLConnection.MockResponse() {{
+         status = 200;
+         responseBody = "{\"key1\": \"value1\", \"key2\": [1, 2, 3]}";
+         gzipResponseBody = true;
+         mockProps.put("content-encoding", "gzip");
+      }};
+
+      OneSignalRestClient.get("URL", new OneSignalRestClient.JsonResponseHandler<String>() {
+         @Override
+         public String parse(@NonNull JsonReader reader) throws IOException {
+            String value = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+               if (reader.nextName().equals("key1"))
+                  value = reader.nextString();
+               else
+                  reader.skipValue();
+            }
+            reader.endObject();
+            return value;
+         }
+
+         @Override
+         public void onParsed(String result) {
+            firstResponse = result;
+         }
+      }, null);
+      threadAndTaskWait();
+      Thread.sleep(200);
+
+      assertEquals("value1", firstResponse);
+   }
+
+   @Test
+   public void testJsonResponseHandlerInvalidResponseCallsOnParseFailure() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      ShadowOneSignalRestClientWithMockConnection.mockResponse = new MockHttpURLConnection.MockResponse() {{
+         status = 200;
+         responseBody = "[\"not an object\"]";
+      }};
+
+      final Throwable[] parseFailure = new Throwable[1];
+      OneSignalRestClient.get("URL", new OneSignalRestClient.JsonResponseHandler<String>() {
+         @Override
+         public String parse(@NonNull JsonReader reader) throws IOException {
+            reader.beginObject();
+            return null;
+         }
+
+         @Override
+         public void onParsed(String result) {
+            firstResponse = "onParsed";
+         }
+
+         @Override
+         public void onParseFailure(@Nullable String response, Throwable throwable) {
+            parseFailure[0] = throwable;
+         }
+      }, null);
+      threadAndTaskWait();
+      Thread.sleep(200);
+
+      assertNull(firstResponse);
+      assertTrue(parseFailure[0] instanceof IllegalStateException);
+   }
+
+   @Test
+   public void testJsonResponseHandlerEmptyResponseCallsOnParseFailure() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      ShadowOneSignalRestClientWithMockConnection.mockResponse = new MockHttpURLConnection.MockResponse() {{
+         status = 200;
+         responseBody = "";
+      }};
+
+      final Throwable[] parseFailure = new Throwable[1];
+      final int[] failureStatus = new int[1];
+      OneSignalRestClient.get("URL", new OneSignalRestClient.JsonResponseHandler<String>() {
+         @Override
+         public String parse(@NonNull JsonReader reader) throws IOException {
+            reader.beginObject();
+            return null;
+         }
+
+         @Override
+         public void onParsed(String result) {
+            firstResponse = "onParsed";
+         }
+
+         @Override
+         public void onParseFailure(@Nullable String response, Throwable throwable) {
+            parseFailure[0] = throwable;
+         }
+
+         @Override
+         public void onFailure(int statusCode, String response, Throwable throwable) {
+            failureStatus[0] = statusCode;
+         }
+      }, null);
+      threadAndTaskWait();
+      Thread.sleep(200);
+
+      assertNull(firstResponse);
+      assertEquals(0, failureStatus[0]);
+      assertTrue(parseFailure[0] instanceof EOFException);
+   }
+
+   @Test
+   public void testSmallRequestBodyIsNotCompressed() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      OneSignal_savePrivacyConsentRequired(false);
+
+      JSONObject body = new JSONObject().put("key", "value");
+      OneSignalRestClient.post("URL", body, null);
+      threadAndTaskWait();
+
+      assertNull(getLastHTTPHeaderProp("Content-Encoding"));
+      assertEquals(body.toString(), new String(ShadowOneSignalRestClientWithMockConnection.lastConnection.getSentBytes(), "UTF-8"));
+   }
+
+   private static JSONObject largeRequestBody() throws Exception {
+      JSONObject tags = new JSONObject();
+      for (int i = 0; i < 200; i++)
+         tags.put("tag_key_" + i, "tag_value_" + i);
+      return new JSONObject().put("tags", tags);
+   }
+
+   @Test
+   public void testLargeRequestBodyIsNotCompressedByDefault() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      OneSignal_savePrivacyConsentRequired(false);
+
+      JSONObject body = largeRequestBody();
+      OneSignalRestClient.put("URL", body, null);
+      threadAndTaskWait();
+
+      assertNull(getLastHTTPHeaderProp("Content-Encoding"));
+      assertEquals(body.toString(), new String(ShadowOneSignalRestClientWithMockConnection.lastConnection.getSentBytes(), "UTF-8"));
+   }
+
+   @Test
+   public void testLargeRequestBodyIsGzipCompressed() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      OneSignal_savePrivacyConsentRequired(false);
+      OneSignalRestClient_setGzipRequestsEnabled(true);
+
+      JSONObject body = largeRequestBody();
+      OneSignalRestClient.put("URL", body, null);
+      threadAndTaskWait();
+
+      assertEquals("gzip", getLastHTTPHeaderProp("Content-Encoding"));
+      byte[] sentBytes = ShadowOneSignalRestClientWithMockConnection.lastConnection.getSentBytes();
+      assertTrue(sentBytes.length < body.toString().getBytes("UTF-8").length);
+
+      Scanner scanner = new Scanner(new GZIPInputStream(new ByteArrayInputStream(sentBytes)), "UTF-8");
+      String sentJson = scanner.useDelimiter("\\A").next();
+      scanner.close();
+      assertEquals(body.toString(), sentJson);
+   }
+
+   @Test
+   public void testCompressedBodyRejectedWithBadRequestIsSentAgainUncompressed() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      OneSignal_savePrivacyConsentRequired(false);
+      OneSignalRestClient_setGzipRequestsEnabled(true);
+      ShadowOneSignalRestClientWithMockConnection.nextMockResponse = new MockHttpURLConnection.MockResponse() {{
+         status = 400;
+         errorResponseBody = "{}";
+      }};
+
+      JSONObject body = largeRequestBody();
+      OneSignalRestClient.put("URL", body, new OneSignalRestClient.ResponseHandler() {
+         @Override
+         public void onSuccess(String response) {
+            firstResponse = response;
+         }
+      });
+      threadAndTaskWait();
+
+      assertEquals(2, ShadowOneSignalRestClientWithMockConnection.connectionCount);
+      assertNull(getLastHTTPHeaderProp("Content-Encoding"));
+      assertEquals(body.toString(), new String(ShadowOneSignalRestClientWithMockConnection.lastConnection.getSentBytes(), "UTF-8"));
+      assertEquals("{}", firstResponse);
+
+      // A 400 may be caused by the request itself, so later requests are still compressed
+      OneSignalRestClient.put("URL", body, null);
+      threadAndTaskWait();
+      assertEquals("gzip", getLastHTTPHeaderProp("Content-Encoding"));
+   }
+
+   @Test
+   public void testCompressedBodyRejectedWithUnsupportedMediaTypeTurnsOffCompression() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      OneSignal_savePrivacyConsentRequired(false);
+      OneSignalRestClient_setGzipRequestsEnabled(true);
+      ShadowOneSignalRestClientWithMockConnection.nextMockResponse = new MockHttpURLConnection.MockResponse() {{
+         status = 415;
+         errorResponseBody = "{}";
+      }};
+
+      JSONObject body = largeRequestBody();
+      OneSignalRestClient.put("URL", body, null);
+      threadAndTaskWait();
+
+      assertEquals(2, ShadowOneSignalRestClientWithMockConnection.connectionCount);
+      assertNull(getLastHTTPHeaderProp("Content-Encoding"));
+
+      OneSignalRestClient.put("URL", body, null);
+      threadAndTaskWait();
+      assertEquals(3, ShadowOneSignalRestClientWithMockConnection.connectionCount);
+      assertNull(getLastHTTPHeaderProp("Content-Encoding"));
+   }
+
+   @Test
+   public void testTrafficStatsRecordBytesSentWithAndWithoutCompression() throws Exception {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      OneSignal_savePrivacyConsentRequired(false);
+      JSONObject body = largeRequestBody();
+      int bodyLength = body.toString().getBytes("UTF-8").length;
+
+      OneSignalRestClient.put("players/a1b2c3d4-e5f6-4a5b-8c7d-9e0f1a2b3c4d", body, null);
+      threadAndTaskWait();
+
+      String endpoint = "players/{id}";
+      assertEquals(1, OSHttpTrafficStats_getRequests(endpoint));
+      assertEquals(bodyLength, OSHttpTrafficStats_getBytesSent(endpoint));
+      assertEquals(bodyLength, OSHttpTrafficStats_getBytesSentOnWire(endpoint));
+
+      OneSignalRestClient_setGzipRequestsEnabled(true);
+      OneSignalRestClient.put("players/f0e1d2c3-b4a5-4968-8776-5a4b3c2d1e0f", body, null);
+      threadAndTaskWait();
+
+      int compressedLength = ShadowOneSignalRestClientWithMockConnection.lastConnection.getSentBytes().length;
+      assertTrue(compressedLength < bodyLength);
+      assertEquals(2, OSHttpTrafficStats_getRequests(endpoint));
+      assertEquals(2 * bodyLength, OSHttpTrafficStats_getBytesSent(endpoint));
+      assertEquals(bodyLength + compressedLength, OSHttpTrafficStats_getBytesSentOnWire(endpoint));
+   }
+
+   private OSOutboundRequestQueue initOutboundRequestQueue(MockOSTimeImpl time) {
+      OneSignal.initWithContext(ApplicationProvider.getApplicationContext());
+      OneSignal_savePrivacyConsentRequired(false);
+      return new OSOutboundRequestQueue(new MockOneSignalDBHelper(ApplicationProvider.getApplicationContext()), time);
+   }
+
+   @Test
+   public void testOutboundQueueOnlyQueuesRetryableFailures() throws Exception {
+      OSOutboundRequestQueue queue = initOutboundRequestQueue(new MockOSTimeImpl());
+      JSONObject body = new JSONObject().put("key", "value");
+
+      assertFalse(queue.enqueueIfRetryable(400, "key_400", "POST", "URL", body));
+      assertFalse(queue.enqueueIfRetryable(404, "key_404", "POST", "URL", body));
+      assertTrue(queue.enqueueIfRetryable(0, "key_network", "POST", "URL", body));
+      assertTrue(queue.enqueueIfRetryable(429, "key_429", "POST", "URL", body));
+      assertTrue(queue.enqueueIfRetryable(500, "key_500", "PUT", "URL", body));
+
+      assertEquals(3, queue.getQueuedRequestCount());
+   }
+
+   @Test
+   public void testOutboundQueueKeepsOneRequestPerIdempotencyKey() throws Exception {
+      MockOSTimeImpl time = new MockOSTimeImpl();
+      time.setMockedTime(1_000_000L);
+      OSOutboundRequestQueue queue = initOutboundRequestQueue(time);
+
+      assertTrue(queue.enqueueIfRetryable(500, "key", "POST", "URL_1", new JSONObject().put("attempt", 1)));
+      assertTrue(queue.enqueueIfRetryable(500, "key", "POST", "URL_2", new JSONObject().put("attempt", 2)));
+      assertEquals(1, queue.getQueuedRequestCount());
+
+      // The first request is the one kept
+      time.advanceSystemTimeBy(31);
+      queue.replayPendingRequests();
+      threadAndTaskWait();
+      assertEquals("https://onesignal.com/api/v1/URL_1", ShadowOneSignalRestClientWithMockConnection.lastConnection.getURL().toString());
+   }
+
+   @Test
+   public void testOutboundQueueReplaysRequestOnlyAfterBackoff() throws Exception {
+      MockOSTimeImpl time = new MockOSTimeImpl();
+      time.setMockedTime(1_000_000L);
+      OSOutboundRequestQueue queue = initOutboundRequestQueue(time);
+      JSONObject body = new JSONObject().put("key", "value");
+      queue.enqueueIfRetryable(500, "key", "POST", "URL", body);
+      ShadowOneSignalRestClientWithMockConnection.connectionCount = 0;
+
+      // First retry waits at least half of the 30 second base backoff
+      time.advanceSystemTimeBy(14);
+      queue.replayPendingRequests();
+      threadAndTaskWait();
+      assertEquals(0, ShadowOneSignalRestClientWithMockConnection.connectionCount);
+      assertEquals(1, queue.getQueuedRequestCount());
+
+      time.advanceSystemTimeBy(17);
+      queue.replayPendingRequests();
+      threadAndTaskWait();
+      assertEquals(1, ShadowOneSignalRestClientWithMockConnection.connectionCount);
+      assertEquals("https://onesignal.com/api/v1/URL", ShadowOneSignalRestClientWithMockConnection.lastConnection.getURL().toString());
+      assertEquals(body.toString(), new String(ShadowOneSignalRestClientWithMockConnection.lastConnection.getSentBytes(), "UTF-8"));
+      assertEquals(0, queue.getQueuedRequestCount());
+   }
+
+   @Test
+   public void testOutboundQueueDropsRequestOnClientErrorReplay() throws Exception {
+      MockOSTimeImpl time = new MockOSTimeImpl();
+      time.setMockedTime(1_000_000L);
+      OSOutboundRequestQueue queue = initOutboundRequestQueue(time);
+      queue.enqueueIfRetryable(500, "key", "POST", "URL", new JSONObject());
+      ShadowOneSignalRestClientWithMockConnection.mockResponse = new MockHttpURLConnection.MockResponse() {{
+         status = 400;
+         errorResponseBody = "{}";
+      }};
+
+      time.advanceSystemTimeBy(31);
+      queue.replayPendingRequests();
+      threadAndTaskWait();
+
+      assertEquals(0, queue.getQueuedRequestCount());
+   }
+
+   @Test
+   public void testOutboundQueueGivesUpAfterMaxAttempts() throws Exception {
+      MockOSTimeImpl time = new MockOSTimeImpl();
+      time.setMockedTime(1_000_000L);
+      OSOutboundRequestQueue queue = initOutboundRequestQueue(time);
+      queue.enqueueIfRetryable(500, "key", "POST", "URL", new JSONObject());
+      ShadowOneSignalRestClientWithMockConnection.mockResponse = new MockHttpURLConnection.MockResponse() {{
+         status = 500;
+         errorResponseBody = "{}";
+      }};
+      ShadowOneSignalRestClientWithMockConnection.connectionCount = 0;
+
+      for (int attempt = 1; attempt <= OSOutboundRequestQueue.MAX_ATTEMPTS; attempt++) {
+         // Longer than the max backoff of 6 hours
+         time.advanceSystemTimeBy(7 * 60 * 60);
+         queue.replayPendingRequests();
+         threadAndTaskWait();
+
+         assertEquals(attempt, ShadowOneSignalRestClientWithMockConnection.connectionCount);
+         assertEquals(attempt < OSOutboundRequestQueue.MAX_ATTEMPTS ? 1 : 0, queue.getQueuedRequestCount());
+      }
+   }
+
    private static String getLastHTTPHeaderProp(String prop) {
       return ShadowOneSignalRestClientWithMockConnection.lastConnection.getRequestProperty(prop);
    }
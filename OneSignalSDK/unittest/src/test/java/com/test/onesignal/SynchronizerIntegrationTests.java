@@ -19,6 +19,7 @@ import com.onesignal.ShadowGMSLocationController;
 import com.onesignal.ShadowOSUtils;
 import com.onesignal.ShadowOneSignalRestClient;
 import com.onesignal.StaticResetHelper;
+import com.onesignal.SyncJobService;
 import com.onesignal.example.BlankActivity;
 import com.onesignal.influence.data.OSTrackerFactory;
 
@@ -40,6 +41,8 @@ import java.lang.reflect.Field;
 import java.util.List;
 
 import static com.onesignal.OneSignal.ExternalIdErrorType.REQUIRES_EXTERNAL_ID_AUTH;
+import static com.onesignal.OneSignalPackagePrivateHelper.FocusTimeController_DEFAULT_ON_FOCUS_FLUSH_INTERVAL_SEC;
+import static com.onesignal.OneSignalPackagePrivateHelper.FocusTimeController_getOnFocusRequestsSaved;
 import static com.onesignal.OneSignalPackagePrivateHelper.OneSignal_getSessionListener;
 import static com.onesignal.OneSignalPackagePrivateHelper.OneSignal_setSessionManager;
 import static com.onesignal.OneSignalPackagePrivateHelper.OneSignal_setTime;
@@ -53,6 +56,7 @@ import static com.test.onesignal.RestClientAsserts.assertRestCalls;
 import static com.test.onesignal.TestHelpers.afterTestCleanup;
 import static com.test.onesignal.TestHelpers.assertAndRunSyncService;
 import static com.test.onesignal.TestHelpers.fastColdRestartApp;
+import static com.test.onesignal.TestHelpers.getJob;
 import static com.test.onesignal.TestHelpers.pauseActivity;
 import static com.test.onesignal.TestHelpers.restartAppAndElapseTimeToNextSession;
 import static com.test.onesignal.TestHelpers.threadAndTaskWait;
@@ -475,6 +479,45 @@ public class SynchronizerIntegrationTests {
         assertEquals(tagsJson.toString(), smsPut.payload.getJSONObject("tags").toString());
     }
 
+    @Test
+    public void shouldOnlySendChangedTags() throws Exception {
+        OneSignalInit();
+        threadAndTaskWait();
+
+        JSONObject tagsJson = new JSONObject();
+        for (int i = 0; i < 100; i++)
+            tagsJson.put("key" + i, "value" + i);
+        OneSignal.sendTags(tagsJson);
+        threadAndTaskWait();
+        assertEquals(tagsJson.toString(), ShadowOneSignalRestClient.lastPost.getJSONObject("tags").toString());
+
+        OneSignal.sendTags(new JSONObject("{\"key1\": \"value1\", \"key2\": \"changed\", \"key100\": \"value100\"}"));
+        threadAndTaskWait();
+
+        JSONObject sentTags = ShadowOneSignalRestClient.lastPost.getJSONObject("tags");
+        assertEquals(2, sentTags.length());
+        assertEquals("changed", sentTags.getString("key2"));
+        assertEquals("value100", sentTags.getString("key100"));
+    }
+
+    @Test
+    public void shouldOnlySendChangedTagsAfterColdStart() throws Exception {
+        OneSignalInit();
+        threadAndTaskWait();
+
+        OneSignal.sendTags(new JSONObject("{\"key1\": \"value1\", \"key2\": \"value2\"}"));
+        threadAndTaskWait();
+
+        fastColdRestartApp();
+        OneSignalInit();
+        threadAndTaskWait();
+
+        OneSignal.sendTags(new JSONObject("{\"key1\": \"value1\", \"key2\": \"changed\"}"));
+        threadAndTaskWait();
+
+        assertEquals("{\"key2\":\"changed\"}", ShadowOneSignalRestClient.lastPost.getJSONObject("tags").toString());
+    }
+
     @Test
     public void shouldSetEmailWithAuthHash() throws Exception {
         OneSignalInit();
@@ -1976,6 +2019,119 @@ public class SynchronizerIntegrationTests {
         assertRestCalls(3);
     }
 
+    @Test
+    public void sendsOnFocusOncePerFlushWindow() throws Exception {
+        time.advanceSystemAndElapsedTimeBy(0);
+        OneSignalInit();
+        threadAndTaskWait();
+
+        time.advanceSystemAndElapsedTimeBy(60);
+        pauseActivity(blankActivityController);
+        assertAndRunSyncService();
+        assertOnFocusAtIndex(2, 60);
+
+        // Two more focuses in the window of the first on_focus, their time is held
+        for (int i = 0; i < 2; i++) {
+            blankActivityController.resume();
+            threadAndTaskWait();
+            time.advanceSystemAndElapsedTimeBy(60);
+            pauseActivity(blankActivityController);
+            assertAndRunSyncService();
+        }
+        assertRestCalls(3);
+
+        // Sync job at the end of the window sends the time of both in one request
+        time.advanceSystemAndElapsedTimeBy(FocusTimeController_DEFAULT_ON_FOCUS_FLUSH_INTERVAL_SEC());
+        assertAndRunSyncService();
+
+        assertOnFocusAtIndex(3, 120);
+        assertRestCalls(4);
+        assertEquals(1, FocusTimeController_getOnFocusRequestsSaved());
+    }
+
+    @Test
+    public void syncJobRunInFlushWindowIsScheduledAgainForEndOfWindow() throws Exception {
+        time.advanceSystemAndElapsedTimeBy(0);
+        OneSignalInit();
+        threadAndTaskWait();
+
+        time.advanceSystemAndElapsedTimeBy(60);
+        pauseActivity(blankActivityController);
+        assertAndRunSyncService();
+        assertOnFocusAtIndex(2, 60);
+
+        blankActivityController.resume();
+        threadAndTaskWait();
+        time.advanceSystemAndElapsedTimeBy(60);
+        pauseActivity(blankActivityController);
+
+        // Sync job runs before the end of the window, ex: for a location update
+        time.advanceSystemAndElapsedTimeBy(60);
+        assertAndRunSyncService();
+        assertRestCalls(3);
+
+        // Scheduled for the time left in the window, not the job backoff
+        long windowLeftSec = FocusTimeController_DEFAULT_ON_FOCUS_FLUSH_INTERVAL_SEC() - 120;
+        assertEquals(windowLeftSec * 1_000L, getJob(SyncJobService.class).getMinLatencyMillis());
+
+        time.advanceSystemAndElapsedTimeBy(windowLeftSec);
+        assertAndRunSyncService();
+        assertOnFocusAtIndex(3, 60);
+        assertRestCalls(4);
+    }
+
+    @Test
+    public void sendsOnFocusOncePerFlushWindowFromRemoteParam() throws Exception {
+        setRemoteParamsGetHtmlResponse(new JSONObject().put("on_focus_flush_interval", 120));
+        time.advanceSystemAndElapsedTimeBy(0);
+        OneSignalInit();
+        threadAndTaskWait();
+
+        time.advanceSystemAndElapsedTimeBy(60);
+        pauseActivity(blankActivityController);
+        assertAndRunSyncService();
+        assertOnFocusAtIndex(2, 60);
+
+        blankActivityController.resume();
+        threadAndTaskWait();
+        time.advanceSystemAndElapsedTimeBy(60);
+        pauseActivity(blankActivityController);
+
+        // Held for the 60 seconds left of the 120 second window instead of the default
+        assertEquals(60_000L, getJob(SyncJobService.class).getMinLatencyMillis());
+
+        time.advanceSystemAndElapsedTimeBy(60);
+        assertAndRunSyncService();
+        assertOnFocusAtIndex(3, 60);
+        assertRestCalls(4);
+    }
+
+    @Test
+    public void sendsHeldOnFocusTimeAfterColdRestartInFlushWindow() throws Exception {
+        time.advanceSystemAndElapsedTimeBy(0);
+        OneSignalInit();
+        threadAndTaskWait();
+
+        time.advanceSystemAndElapsedTimeBy(60);
+        pauseActivity(blankActivityController);
+        assertAndRunSyncService();
+        assertOnFocusAtIndex(2, 60);
+
+        blankActivityController.resume();
+        threadAndTaskWait();
+        time.advanceSystemAndElapsedTimeBy(60);
+        pauseActivity(blankActivityController);
+        assertRestCalls(3);
+
+        // Process is killed in the window, the held time and the window start are in prefs
+        fastColdRestartApp();
+        OneSignal_setTime(time);
+        time.advanceSystemAndElapsedTimeBy(FocusTimeController_DEFAULT_ON_FOCUS_FLUSH_INTERVAL_SEC());
+        assertAndRunSyncService();
+
+        assertOnFocusAtIndex(ShadowOneSignalRestClient.requests.size() - 1, 60);
+    }
+
     @Test
     public void sendsOnFocusWithExternalId() throws Exception {
         time.advanceSystemAndElapsedTimeBy(0);
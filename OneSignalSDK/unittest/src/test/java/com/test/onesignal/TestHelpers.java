@@ -73,6 +73,7 @@ import java.util.List;
 import java.util.Set;
 
 import static com.onesignal.OneSignalPackagePrivateHelper.JSONUtils;
+import static com.onesignal.OneSignalPackagePrivateHelper.OSHttpRequestExecutor_isTimeoutThread;
 import static com.onesignal.OneSignalPackagePrivateHelper.OneSignal_OSTaskController_ShutdownNow;
 import static junit.framework.Assert.assertEquals;
 import static org.robolectric.Shadows.shadowOf;
@@ -156,6 +157,9 @@ public class TestHelpers {
          Set<Thread> threadSet = Thread.getAllStackTraces().keySet();
 
          for (Thread thread : threadSet) {
+            // Timer thread waits on cancelled timeouts, it is stopped by OSHttpRequestExecutor.shutdownNow() in afterTestCleanup
+            if (OSHttpRequestExecutor_isTimeoutThread(thread))
+               continue;
             if (thread.getName().startsWith("OS_")) {
                thread.interrupt();
                joinedAThread = true;
@@ -187,6 +191,9 @@ public class TestHelpers {
                continue;
             if (ShadowOneSignalRestClient.isAFrozenThread(thread))
                continue;
+            // Only waits on request timeouts, never runs anything a test waits for
+            if (OSHttpRequestExecutor_isTimeoutThread(thread))
+               continue;
 
             thread.join(0, 1);
 
@@ -535,6 +542,16 @@ public class TestHelpers {
          return jobs.get(index);
    }
 
+   public static @Nullable JobInfo getJob(Class jobClass) {
+      JobScheduler jobScheduler =
+              (JobScheduler)ApplicationProvider.getApplicationContext().getSystemService(Context.JOB_SCHEDULER_SERVICE);
+      for (JobInfo jobInfo : jobScheduler.getAllPendingJobs()) {
+         if (jobInfo.getService().getClassName().equals(jobClass.getName()))
+            return jobInfo;
+      }
+      return null;
+   }
+
    public static void runNextJob() {
       try {
          Class jobClass = Class.forName(getNextJob().getService().getClassName());
@@ -63,6 +63,9 @@ public class TrackerUnitTests {
     private static final String IAM_ID = "iam_id";
 
     private OSTrackerFactory trackerFactory;
+    private MockOSSharedPreferences preferences;
+    private MockOSLog logger;
+    private MockOSTimeImpl time;
 
     @BeforeClass // Runs only once, before any tests
     public static void setUpClass() throws Exception {
@@ -73,9 +76,9 @@ public class TrackerUnitTests {
 
     @Before // Before each test
     public void beforeEachTest() throws Exception {
-        MockOSLog logger = new MockOSLog();
-        MockOSTimeImpl time = new MockOSTimeImpl();
-        MockOSSharedPreferences preferences = new MockOSSharedPreferences();
+        logger = new MockOSLog();
+        time = new MockOSTimeImpl();
+        preferences = new MockOSSharedPreferences();
         trackerFactory = new OSTrackerFactory(preferences, logger, time);
     }
 
@@ -109,6 +112,79 @@ public class TrackerUnitTests {
         assertEquals(IAM_ID, lastIAMIds.get(0));
     }
 
+    @Test
+    public void testInfluenceIdsKeepNewestIdsUpToLimit() throws Exception {
+        trackerFactory.saveInfluenceParams(new OneSignalPackagePrivateHelper.RemoteOutcomeParams());
+
+        for (int i = 0; i < 15; i++)
+            trackerFactory.getNotificationChannelTracker().saveLastId(NOTIFICATION_ID + i);
+
+        JSONArray lastNotificationIds = trackerFactory.getNotificationChannelTracker().getLastReceivedIds();
+        assertEquals(10, lastNotificationIds.length());
+        for (int i = 0; i < 10; i++)
+            assertEquals(NOTIFICATION_ID + (i + 5), lastNotificationIds.get(i));
+    }
+
+    @Test
+    public void testInfluenceIdsOutsideAttributionWindowNotReceived() throws Exception {
+        trackerFactory.saveInfluenceParams(new OneSignalPackagePrivateHelper.RemoteOutcomeParams());
+        time.setMockedTime(1_000_000L);
+        trackerFactory.getNotificationChannelTracker().saveLastId(NOTIFICATION_ID + 1);
+        // Default window is one day
+        time.advanceSystemTimeBy(12 * 60 * 60);
+        trackerFactory.getNotificationChannelTracker().saveLastId(NOTIFICATION_ID + 2);
+        time.advanceSystemTimeBy(13 * 60 * 60);
+
+        JSONArray lastNotificationIds = trackerFactory.getNotificationChannelTracker().getLastReceivedIds();
+        assertEquals(1, lastNotificationIds.length());
+        assertEquals(NOTIFICATION_ID + 2, lastNotificationIds.get(0));
+    }
+
+    @Test
+    public void testIAMInfluenceIdReceivedAgainIsNewest() throws Exception {
+        trackerFactory.saveInfluenceParams(new OneSignalPackagePrivateHelper.RemoteOutcomeParams());
+
+        trackerFactory.getIAMChannelTracker().saveLastId(IAM_ID + 1);
+        trackerFactory.getIAMChannelTracker().saveLastId(IAM_ID + 2);
+        trackerFactory.getIAMChannelTracker().saveLastId(IAM_ID + 1);
+
+        JSONArray lastIAMIds = trackerFactory.getIAMChannelTracker().getLastReceivedIds();
+        assertEquals(2, lastIAMIds.length());
+        assertEquals(IAM_ID + 2, lastIAMIds.get(0));
+        assertEquals(IAM_ID + 1, lastIAMIds.get(1));
+    }
+
+    @Test
+    public void testInfluenceIdsReadBackFromPreferences() throws Exception {
+        trackerFactory.saveInfluenceParams(new OneSignalPackagePrivateHelper.RemoteOutcomeParams());
+        for (int i = 0; i < 12; i++)
+            trackerFactory.getNotificationChannelTracker().saveLastId(NOTIFICATION_ID + i);
+
+        // Same preferences as after an app restart
+        OSTrackerFactory restartedTrackerFactory = new OSTrackerFactory(preferences, logger, time);
+
+        JSONArray lastNotificationIds = restartedTrackerFactory.getNotificationChannelTracker().getLastReceivedIds();
+        assertEquals(10, lastNotificationIds.length());
+        assertEquals(NOTIFICATION_ID + 2, lastNotificationIds.get(0));
+        assertEquals(NOTIFICATION_ID + 11, lastNotificationIds.get(9));
+    }
+
+    @Test
+    public void testInfluenceIdsSavedAsJSONArrayAreRead() throws Exception {
+        trackerFactory.saveInfluenceParams(new OneSignalPackagePrivateHelper.RemoteOutcomeParams());
+        JSONArray legacyNotifications = new JSONArray()
+                .put(new JSONObject().put("notification_id", NOTIFICATION_ID).put("time", time.getCurrentTimeMillis()));
+        preferences.saveString(preferences.getPreferencesName(), "PREFS_OS_LAST_NOTIFICATIONS_RECEIVED", legacyNotifications.toString());
+
+        trackerFactory.getNotificationChannelTracker().saveLastId(NOTIFICATION_ID + 1);
+
+        JSONArray lastNotificationIds = trackerFactory.getNotificationChannelTracker().getLastReceivedIds();
+        assertEquals(2, lastNotificationIds.length());
+        assertEquals(NOTIFICATION_ID, lastNotificationIds.get(0));
+        assertEquals(NOTIFICATION_ID + 1, lastNotificationIds.get(1));
+        assertNull(preferences.getString(preferences.getPreferencesName(), "PREFS_OS_LAST_NOTIFICATIONS_RECEIVED", null));
+    }
+
     @Test
     public void testDisabledInitInfluence() {
         trackerFactory.saveInfluenceParams(new OneSignalPackagePrivateHelper.RemoteOutcomeParams(false, false, false));